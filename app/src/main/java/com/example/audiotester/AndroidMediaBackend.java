@@ -0,0 +1,191 @@
+package com.example.audiotester;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.media.MediaRecorder;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link MediaBackend} on top of MediaPlayer and MediaRecorder.
+ *
+ * The player and recorder are created on first use, on the engine's audio thread, so building
+ * the backend costs nothing on the UI thread. Every call into the framework is timed into
+ * {@link Telemetry}; the player prepare is timed from prepareAsync() to the prepared callback.
+ */
+public class AndroidMediaBackend implements MediaBackend {
+
+    private static final LatencyHistogram PLAYER_CREATE = histogram("media_player.create");
+    private static final LatencyHistogram RECORDER_CREATE = histogram("media_recorder.create");
+    private static final LatencyHistogram PLAYER_SET_SOURCE = histogram("media_player.set_data_source");
+    private static final LatencyHistogram PLAYER_PREPARE = histogram("media_player.prepare");
+    private static final LatencyHistogram PLAYER_START = histogram("media_player.start");
+    private static final LatencyHistogram PLAYER_STOP = histogram("media_player.stop");
+    private static final LatencyHistogram PLAYER_RESET = histogram("media_player.reset");
+    private static final LatencyHistogram PLAYER_RELEASE = histogram("media_player.release");
+    private static final LatencyHistogram RECORDER_PREPARE = histogram("media_recorder.prepare");
+    private static final LatencyHistogram RECORDER_START = histogram("media_recorder.start");
+    private static final LatencyHistogram RECORDER_STOP = histogram("media_recorder.stop");
+    private static final LatencyHistogram RECORDER_RESET = histogram("media_recorder.reset");
+    private static final LatencyHistogram RECORDER_RELEASE = histogram("media_recorder.release");
+
+    private final Context mContext;
+    private Callback mCallback;
+
+    // created lazily on the audio thread
+    private MediaPlayer mMediaPlayer;
+    private MediaRecorder mMediaRecorder;
+
+    // System.nanoTime() of the pending prepareAsync(), 0 when none
+    private volatile long mPrepareStartNanos = 0;
+
+    public AndroidMediaBackend(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Creates the player ahead of the first playback; the recorder is cheap to create and
+     * stays lazy.
+     */
+    @Override
+    public void warmUp() {
+        player();
+    }
+
+    @Override
+    public void setPlaybackSource(String uri) throws IOException {
+        MediaPlayer player = player();
+        long start = System.nanoTime();
+        player.setDataSource(mContext, Uri.parse(uri));
+        PLAYER_SET_SOURCE.recordSince(start);
+    }
+
+    @Override
+    public void prepareAsync() {
+        MediaPlayer player = player();
+        mPrepareStartNanos = System.nanoTime();
+        player.prepareAsync();
+    }
+
+    @Override
+    public void startPlayback() {
+        MediaPlayer player = player();
+        long start = System.nanoTime();
+        player.start();
+        PLAYER_START.recordSince(start);
+    }
+
+    @Override
+    public void stopPlayback() {
+        MediaPlayer player = player();
+        long start = System.nanoTime();
+        player.stop();
+        PLAYER_STOP.recordSince(start);
+    }
+
+    @Override
+    public void startRecording(int audioSource, File outputFile) throws IOException {
+        MediaRecorder recorder = recorder();
+        recorder.setAudioSource(audioSource);
+        recorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
+        recorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
+        recorder.setOutputFile(outputFile);
+
+        long start = System.nanoTime();
+        recorder.prepare();
+        RECORDER_PREPARE.recordSince(start);
+
+        start = System.nanoTime();
+        recorder.start();
+        RECORDER_START.recordSince(start);
+    }
+
+    @Override
+    public void stopRecording() {
+        MediaRecorder recorder = recorder();
+        long start = System.nanoTime();
+        recorder.stop();
+        RECORDER_STOP.recordSince(start);
+    }
+
+    @Override
+    public void reset() {
+        // a reset abandons a pending prepare
+        mPrepareStartNanos = 0;
+
+        if (mMediaPlayer != null) {
+            long start = System.nanoTime();
+            mMediaPlayer.reset();
+            PLAYER_RESET.recordSince(start);
+        }
+
+        if (mMediaRecorder != null) {
+            long start = System.nanoTime();
+            mMediaRecorder.reset();
+            RECORDER_RESET.recordSince(start);
+        }
+    }
+
+    @Override
+    public void release() {
+        if (mMediaPlayer != null) {
+            long start = System.nanoTime();
+            mMediaPlayer.release();
+            PLAYER_RELEASE.recordSince(start);
+            mMediaPlayer = null;
+        }
+
+        if (mMediaRecorder != null) {
+            long start = System.nanoTime();
+            mMediaRecorder.release();
+            RECORDER_RELEASE.recordSince(start);
+            mMediaRecorder = null;
+        }
+    }
+
+    private MediaPlayer player() {
+        if (mMediaPlayer == null) {
+            long start = System.nanoTime();
+            mMediaPlayer = new MediaPlayer();
+            PLAYER_CREATE.recordSince(start);
+
+            Callback callback = mCallback;
+            mMediaPlayer.setOnPreparedListener((mediaPlayer) -> {
+                long prepareStart = mPrepareStartNanos;
+                if (prepareStart != 0) PLAYER_PREPARE.recordSince(prepareStart);
+                mPrepareStartNanos = 0;
+
+                callback.onPrepared();
+            });
+            mMediaPlayer.setOnCompletionListener((mediaPlayer) -> callback.onCompletion());
+            mMediaPlayer.setOnErrorListener((mediaPlayer, what, extra) -> {
+                callback.onError(what, extra);
+                return true;
+            });
+        }
+        return mMediaPlayer;
+    }
+
+    private MediaRecorder recorder() {
+        if (mMediaRecorder == null) {
+            long start = System.nanoTime();
+            mMediaRecorder = new MediaRecorder();
+            RECORDER_CREATE.recordSince(start);
+
+            Callback callback = mCallback;
+            mMediaRecorder.setOnErrorListener((mediaRecorder, what, extra) -> callback.onError(what, extra));
+        }
+        return mMediaRecorder;
+    }
+
+    private static LatencyHistogram histogram(String operation) {
+        return Telemetry.getInstance().histogram(operation);
+    }
+}
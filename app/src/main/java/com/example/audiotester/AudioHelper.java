@@ -4,8 +4,12 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.media.AudioAttributes;
+import android.media.AudioDeviceCallback;
 import android.media.AudioDeviceInfo;
+import android.media.AudioFocusRequest;
 import android.media.AudioManager;
+import android.media.MediaRecorder;
 import android.util.Log;
 
 import androidx.core.util.Consumer;
@@ -23,6 +27,11 @@ public class AudioHelper {
     public static final int TYPE_RECEIVER   = 1;
     public static final int TYPE_SPEAKER    = 2;
 
+    private static final LatencyHistogram SET_MODE = Telemetry.getInstance().histogram("audio_manager.set_mode");
+    private static final LatencyHistogram SET_SPEAKERPHONE = Telemetry.getInstance().histogram("audio_manager.set_speakerphone_on");
+    private static final LatencyHistogram REQUEST_FOCUS = Telemetry.getInstance().histogram("audio_manager.request_focus");
+    private static final LatencyHistogram ABANDON_FOCUS = Telemetry.getInstance().histogram("audio_manager.abandon_focus");
+
     AudioManager audioManager;
 
     HeadsetPlugReceiver headsetPlugReceiver;
@@ -31,13 +40,37 @@ public class AudioHelper {
     NoisyAudioStreamReceiver noisyAudioStreamReceiver;
     Consumer<AudioHelper> noisyAudioListener;
 
-    FragmentActivity context;
+    final AudioRouteCache routeCache = new AudioRouteCache();
+    RouteCallback routeCallback;
+
+    AudioFocusRequest focusRequest;
+    volatile InterruptionListener interruptionListener;
+
+    Context context;
 
     public AudioHelper(FragmentActivity context) {
         this.context = context;
 
         this.audioManager = (AudioManager)(context.getSystemService(Context.AUDIO_SERVICE));
-        context.getLifecycle().addObserver(new LifecycleListener());
+        context.getLifecycle().addObserver(new LifecycleListener(context));
+    }
+
+    /**
+     * Helper without an activity, e.g. for a service. Receivers and the route callback are
+     * registered right away and stay registered until {@link #release}.
+     */
+    public AudioHelper(Context context) {
+        this.context = context;
+
+        this.audioManager = (AudioManager)(context.getSystemService(Context.AUDIO_SERVICE));
+        register();
+    }
+
+    public void release() {
+        unregisterHeadsetPlugReceiver();
+        unregisterNoisyAudioStreamReceiver();
+        unregisterRouteCallback();
+        abandonFocus();
     }
 
     public void setDestination(int type, int mode) {
@@ -57,7 +90,9 @@ public class AudioHelper {
     public void setMode(int mode) {
 
         // setMode directly
+        long start = System.nanoTime();
         audioManager.setMode(mode);
+        SET_MODE.recordSince(start);
     }
 
     public int getMode() {
@@ -67,7 +102,9 @@ public class AudioHelper {
     public void setSpeakerphoneOn(boolean value) {
 
         // setSpeakerphone directly
+        long start = System.nanoTime();
         audioManager.setSpeakerphoneOn(value);
+        SET_SPEAKERPHONE.recordSince(start);
     }
 
     public boolean isSpeakerphoneOn() {
@@ -75,18 +112,201 @@ public class AudioHelper {
     }
 
     public boolean isWiredHeadsetOn() {
+        return routeCache.hasOutput(AudioDeviceInfo.TYPE_WIRED_HEADPHONES)
+                || routeCache.hasOutput(AudioDeviceInfo.TYPE_WIRED_HEADSET);
+    }
 
-        AudioDeviceInfo[] audioDevices = audioManager.getDevices(AudioManager.GET_DEVICES_ALL);
+    public boolean isUsbHeadsetOn() {
+        return routeCache.hasOutput(AudioDeviceInfo.TYPE_USB_HEADSET)
+                || routeCache.hasOutput(AudioDeviceInfo.TYPE_USB_DEVICE);
+    }
 
-        for (AudioDeviceInfo deviceInfo : audioDevices) {
-            if (deviceInfo.getType() == AudioDeviceInfo.TYPE_WIRED_HEADPHONES
-                    || deviceInfo.getType() == AudioDeviceInfo.TYPE_WIRED_HEADSET) {
-                return true;
-            }
+    public boolean isBluetoothOn() {
+        return routeCache.hasOutput(AudioDeviceInfo.TYPE_BLUETOOTH_SCO)
+                || routeCache.hasOutput(AudioDeviceInfo.TYPE_BLUETOOTH_A2DP);
+    }
+
+    public boolean isHearingAidOn() {
+        return routeCache.hasOutput(AudioDeviceInfo.TYPE_HEARING_AID);
+    }
+
+    /**
+     * Input and output devices, updated by AudioDeviceCallback while the activity is alive.
+     */
+    public AudioRouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * AudioTrack usage that follows the given audio mode, so the stream goes where setMode routes it.
+     */
+    public static int usageForMode(int mode) {
+        return (mode == AudioManager.MODE_IN_CALL || mode == AudioManager.MODE_IN_COMMUNICATION)
+                ? AudioAttributes.USAGE_VOICE_COMMUNICATION
+                : AudioAttributes.USAGE_MEDIA;
+    }
 
+    /**
+     * Short name of an audio mode, for result keys.
+     */
+    public static String modeName(int mode) {
+        switch (mode) {
+            case AudioManager.MODE_NORMAL:
+                return "normal";
+            case AudioManager.MODE_RINGTONE:
+                return "ringtone";
+            case AudioManager.MODE_IN_CALL:
+                return "in call";
+            case AudioManager.MODE_IN_COMMUNICATION:
+                return "in communication";
+            case AudioManager.MODE_CALL_SCREENING:
+                return "call screening";
+            case AudioManager.MODE_CURRENT:
+                return "current";
+            default:
+                return "mode " + mode;
         }
+    }
 
-        return false;
+    /**
+     * Audio mode for a name from {@link #modeName}.
+     */
+    public static int modeForName(String name) {
+        switch (name) {
+            case "normal":
+                return AudioManager.MODE_NORMAL;
+            case "ringtone":
+                return AudioManager.MODE_RINGTONE;
+            case "in call":
+                return AudioManager.MODE_IN_CALL;
+            case "in communication":
+                return AudioManager.MODE_IN_COMMUNICATION;
+            case "call screening":
+                return AudioManager.MODE_CALL_SCREENING;
+            case "current":
+                return AudioManager.MODE_CURRENT;
+            default:
+                throw new IllegalArgumentException("Unknown mode \"" + name + "\"");
+        }
+    }
+
+    /**
+     * Short name of an output type, for result keys.
+     */
+    public static String outputName(int type) {
+        return type == TYPE_RECEIVER ? "handset" : "speaker";
+    }
+
+    public static int outputForName(String name) {
+        switch (name) {
+            case "handset":
+                return TYPE_RECEIVER;
+            case "speaker":
+                return TYPE_SPEAKER;
+            default:
+                throw new IllegalArgumentException("Unknown route \"" + name + "\"");
+        }
+    }
+
+    /**
+     * Input source for a short name such as "mic" or "voice communication".
+     */
+    public static int sourceForName(String name) {
+        switch (name) {
+            case "default":
+                return MediaRecorder.AudioSource.DEFAULT;
+            case "mic":
+                return MediaRecorder.AudioSource.MIC;
+            case "camcorder":
+                return MediaRecorder.AudioSource.CAMCORDER;
+            case "remote submix":
+                return MediaRecorder.AudioSource.REMOTE_SUBMIX;
+            case "unprocessed":
+                return MediaRecorder.AudioSource.UNPROCESSED;
+            case "voice call":
+                return MediaRecorder.AudioSource.VOICE_CALL;
+            case "voice communication":
+                return MediaRecorder.AudioSource.VOICE_COMMUNICATION;
+            case "voice downlink":
+                return MediaRecorder.AudioSource.VOICE_DOWNLINK;
+            case "voice performance":
+                return MediaRecorder.AudioSource.VOICE_PERFORMANCE;
+            case "voice recognition":
+                return MediaRecorder.AudioSource.VOICE_RECOGNITION;
+            case "voice uplink":
+                return MediaRecorder.AudioSource.VOICE_UPLINK;
+            default:
+                throw new IllegalArgumentException("Unknown source \"" + name + "\"");
+        }
+    }
+
+    /**
+     * Requests transient audio focus for a test run with the given AudioTrack usage. Until
+     * {@link #abandonFocus}, focus changes, becoming noisy and headset plugs are reported to the
+     * listener on the main thread. Returns false if focus was not granted; the listener is set
+     * either way.
+     */
+    public synchronized boolean requestFocus(int usage, InterruptionListener listener) {
+        abandonFocus();
+
+        focusRequest = new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN_TRANSIENT)
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(usage)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                        .build())
+                // a ducked signal is a wrong signal, so report ducking instead of letting it happen
+                .setWillPauseWhenDucked(true)
+                .setOnAudioFocusChangeListener(this::onAudioFocusChange)
+                .build();
+        interruptionListener = listener;
+
+        long start = System.nanoTime();
+        int result = audioManager.requestAudioFocus(focusRequest);
+        REQUEST_FOCUS.recordSince(start);
+        Log.d(TAG, "Audio focus request: " + result);
+        return result == AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+    }
+
+    public synchronized void abandonFocus() {
+        interruptionListener = null;
+
+        if (focusRequest != null) {
+            long start = System.nanoTime();
+            audioManager.abandonAudioFocusRequest(focusRequest);
+            ABANDON_FOCUS.recordSince(start);
+            focusRequest = null;
+        }
+    }
+
+    private void onAudioFocusChange(int focusChange) {
+        InterruptionListener listener = interruptionListener;
+        if (listener == null) return;
+
+        switch (focusChange) {
+            case AudioManager.AUDIOFOCUS_GAIN:
+                listener.onFocusReturned();
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS:
+                listener.onInterrupted(InterruptionTimeline.Type.FOCUS_LOSS);
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
+                listener.onInterrupted(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT);
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
+                listener.onInterrupted(InterruptionTimeline.Type.FOCUS_LOSS_DUCK);
+                break;
+        }
+
+        Log.w(TAG, "Audio focus changed: " + focusChange);
+    }
+
+    // a route change does not take focus, so the run may go on right away on the new route
+    private void onRouteInterruption(InterruptionTimeline.Type type) {
+        InterruptionListener listener = interruptionListener;
+        if (listener == null) return;
+
+        listener.onInterrupted(type);
+        listener.onFocusReturned();
     }
 
     public void setOnHeadsetPlugListener(BiConsumer<AudioHelper, Integer> listener) {
@@ -102,10 +322,20 @@ public class AudioHelper {
         // set params directly
 
         // must be first
+        long start = System.nanoTime();
         audioManager.setMode(mode);
+        SET_MODE.recordSince(start);
 
         // and second
+        start = System.nanoTime();
         audioManager.setSpeakerphoneOn(speaker);
+        SET_SPEAKERPHONE.recordSince(start);
+    }
+
+    private void register() {
+        registerHeadsetPlugReceiver();
+        registerNoisyAudioStreamReceiver();
+        registerRouteCallback();
     }
 
     private void registerHeadsetPlugReceiver(){
@@ -128,6 +358,35 @@ public class AudioHelper {
         }
     }
 
+    private void registerRouteCallback(){
+        if (routeCallback == null) {
+            routeCallback = new RouteCallback();
+
+            // seed once, the callback then reports every change including the initial set
+            routeCache.setDevices(toRoutes(audioManager.getDevices(AudioManager.GET_DEVICES_ALL)));
+            audioManager.registerAudioDeviceCallback(routeCallback, null);
+        }
+    }
+
+    private void unregisterRouteCallback(){
+        if (routeCallback != null) {
+
+            audioManager.unregisterAudioDeviceCallback(routeCallback);
+
+            routeCallback = null;
+        }
+    }
+
+    static AudioRoute[] toRoutes(AudioDeviceInfo[] devices) {
+        AudioRoute[] routes = new AudioRoute[devices.length];
+        for (int i = 0; i < devices.length; i++) {
+            AudioDeviceInfo device = devices[i];
+            routes[i] = new AudioRoute(device.getId(), device.getType(), device.isSink(),
+                    String.valueOf(device.getProductName()));
+        }
+        return routes;
+    }
+
     private void registerNoisyAudioStreamReceiver(){
         if (noisyAudioStreamReceiver == null) {
             this.noisyAudioStreamReceiver = new NoisyAudioStreamReceiver();
@@ -153,21 +412,25 @@ public class AudioHelper {
      */
     private class LifecycleListener implements LifecycleObserver {
 
+        private final FragmentActivity activity;
+
+        LifecycleListener(FragmentActivity activity) {
+            this.activity = activity;
+        }
+
         @OnLifecycleEvent(Lifecycle.Event.ON_CREATE)
         void onCreate() {
 
-            registerHeadsetPlugReceiver();
-            registerNoisyAudioStreamReceiver();
+            register();
 
         }
 
         @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
         void onDestroy() {
 
-            unregisterHeadsetPlugReceiver();
-            unregisterNoisyAudioStreamReceiver();
+            release();
 
-            context.getLifecycle().removeObserver(this);
+            activity.getLifecycle().removeObserver(this);
         }
     }
 
@@ -185,6 +448,11 @@ public class AudioHelper {
 
             int microphone = intent.getIntExtra("microphone", 0);
 
+            // the sticky broadcast replayed on registration is not a plug
+            if (!isInitialStickyBroadcast()) {
+                onRouteInterruption(InterruptionTimeline.Type.HEADSET_PLUG);
+            }
+
             if (headsetPlugListener != null) {
                 headsetPlugListener.accept(AudioHelper.this, state);
             }
@@ -194,6 +462,35 @@ public class AudioHelper {
 
     }
 
+    /**
+     *
+     */
+    private class RouteCallback extends AudioDeviceCallback {
+
+        @Override
+        public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
+            routeCache.onDevicesAdded(toRoutes(addedDevices));
+        }
+
+        @Override
+        public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
+            routeCache.onDevicesRemoved(toRoutes(removedDevices));
+        }
+    }
+
+    /**
+     * Receives the interruptions of a test run that holds audio focus.
+     */
+    public interface InterruptionListener {
+
+        void onInterrupted(InterruptionTimeline.Type type);
+
+        /**
+         * Focus is back, or the route change has happened, so the run can resume.
+         */
+        void onFocusReturned();
+    }
+
     /**
      *
      */
@@ -205,6 +502,8 @@ public class AudioHelper {
 
             if (action.equals(intent.getAction())) {
 
+                onRouteInterruption(InterruptionTimeline.Type.BECOMING_NOISY);
+
                 if (noisyAudioListener != null) {
                     noisyAudioListener.accept(AudioHelper.this);
                 }
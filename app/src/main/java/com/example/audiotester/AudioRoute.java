@@ -0,0 +1,40 @@
+package com.example.audiotester;
+
+/**
+ * Immutable snapshot of one audio device, detached from AudioDeviceInfo so route bookkeeping
+ * can run on the JVM.
+ */
+public final class AudioRoute {
+
+    public final int id;
+    /** One of the AudioDeviceInfo.TYPE_* values. */
+    public final int type;
+    public final boolean sink;
+    public final String name;
+
+    public AudioRoute(int id, int type, boolean sink, String name) {
+        this.id = id;
+        this.type = type;
+        this.sink = sink;
+        this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AudioRoute)) return false;
+
+        AudioRoute other = (AudioRoute) o;
+        return id == other.id && type == other.type && sink == other.sink;
+    }
+
+    @Override
+    public int hashCode() {
+        return id * 31 + type * 2 + (sink ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return (sink ? "out " : "in ") + type + " #" + id + " " + name;
+    }
+}
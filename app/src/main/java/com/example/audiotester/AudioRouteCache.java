@@ -0,0 +1,153 @@
+package com.example.audiotester;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Current set of input and output devices, kept up to date from device added/removed events.
+ *
+ * Devices are indexed by id for diffing and counted per type and direction, so presence checks
+ * are O(1) and never reach the audio service. Listeners are told about every change that adds
+ * or removes at least one device, outside the cache lock.
+ */
+public class AudioRouteCache {
+
+    public interface Listener {
+        void onRoutesChanged(List<AudioRoute> added, List<AudioRoute> removed);
+    }
+
+    private final Map<Integer, AudioRoute> mRoutes = new HashMap<>();
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    // device counts indexed by type, grown on demand
+    private int[] mInputCounts = new int[32];
+    private int[] mOutputCounts = new int[32];
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    public void onDevicesAdded(AudioRoute[] routes) {
+        List<AudioRoute> added = new ArrayList<>();
+
+        synchronized (this) {
+            for (AudioRoute route : routes) {
+                if (!mRoutes.containsKey(route.id)) {
+                    put(route);
+                    added.add(route);
+                }
+            }
+        }
+
+        notifyListeners(added, Collections.emptyList());
+    }
+
+    public void onDevicesRemoved(AudioRoute[] routes) {
+        List<AudioRoute> removed = new ArrayList<>();
+
+        synchronized (this) {
+            for (AudioRoute route : routes) {
+                AudioRoute known = mRoutes.get(route.id);
+                if (known != null) {
+                    remove(known);
+                    removed.add(known);
+                }
+            }
+        }
+
+        notifyListeners(Collections.emptyList(), removed);
+    }
+
+    /**
+     * Replaces the cache with a full device list and reports the difference.
+     */
+    public void setDevices(AudioRoute[] routes) {
+        List<AudioRoute> added = new ArrayList<>();
+        List<AudioRoute> removed = new ArrayList<>();
+
+        synchronized (this) {
+            Map<Integer, AudioRoute> current = new HashMap<>();
+            for (AudioRoute route : routes) {
+                current.put(route.id, route);
+            }
+
+            for (AudioRoute known : new ArrayList<>(mRoutes.values())) {
+                if (!known.equals(current.get(known.id))) {
+                    remove(known);
+                    removed.add(known);
+                }
+            }
+            for (AudioRoute route : current.values()) {
+                if (!mRoutes.containsKey(route.id)) {
+                    put(route);
+                    added.add(route);
+                }
+            }
+        }
+
+        notifyListeners(added, removed);
+    }
+
+    public synchronized boolean hasOutput(int type) {
+        return type >= 0 && type < mOutputCounts.length && mOutputCounts[type] > 0;
+    }
+
+    public synchronized boolean hasInput(int type) {
+        return type >= 0 && type < mInputCounts.length && mInputCounts[type] > 0;
+    }
+
+    public synchronized AudioRoute getRoute(int id) {
+        return mRoutes.get(id);
+    }
+
+    public synchronized int size() {
+        return mRoutes.size();
+    }
+
+    public synchronized List<AudioRoute> getRoutes() {
+        return new ArrayList<>(mRoutes.values());
+    }
+
+    private void put(AudioRoute route) {
+        mRoutes.put(route.id, route);
+        count(route, 1);
+    }
+
+    private void remove(AudioRoute route) {
+        mRoutes.remove(route.id);
+        count(route, -1);
+    }
+
+    private void count(AudioRoute route, int delta) {
+        if (route.type < 0) return;
+
+        if (route.sink) {
+            if (route.type >= mOutputCounts.length) {
+                mOutputCounts = Arrays.copyOf(mOutputCounts, route.type * 2);
+            }
+            mOutputCounts[route.type] += delta;
+        } else {
+            if (route.type >= mInputCounts.length) {
+                mInputCounts = Arrays.copyOf(mInputCounts, route.type * 2);
+            }
+            mInputCounts[route.type] += delta;
+        }
+    }
+
+    private void notifyListeners(List<AudioRoute> added, List<AudioRoute> removed) {
+        if (added.isEmpty() && removed.isEmpty()) return;
+
+        for (Listener listener : mListeners) {
+            listener.onRoutesChanged(added, removed);
+        }
+    }
+}
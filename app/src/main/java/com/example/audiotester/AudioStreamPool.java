@@ -0,0 +1,240 @@
+package com.example.audiotester;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTrack;
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Idle AudioTracks and AudioRecords kept for reuse between tests.
+ *
+ * Creating a stream goes through the audio server and often costs tens of ms, which lands on
+ * the first sound of every test. {@link SignalPlayer} and {@link PcmCapture} take their
+ * streams from here and give them back stopped, and {@link #prewarmTrack} and
+ * {@link #prewarmRecord} create the common ones on a background thread before the first test.
+ * At most one idle stream is kept per configuration and {@link #MAX_IDLE} overall; an idle
+ * record does not capture, so it holds no microphone.
+ */
+public final class AudioStreamPool {
+
+    private static final String TAG = "AudioStreamPool";
+
+    public static final int MAX_IDLE = 4;
+
+    private static final AudioStreamPool INSTANCE = new AudioStreamPool();
+
+    private static final LatencyHistogram TRACK_CREATE = Telemetry.getInstance().histogram("audio_track.create");
+    private static final LatencyHistogram RECORD_CREATE = Telemetry.getInstance().histogram("audio_record.create");
+
+    // idle streams by configuration, oldest first
+    private final Map<String, AudioTrack> mTracks = new LinkedHashMap<>();
+    private final Map<String, AudioRecord> mRecords = new LinkedHashMap<>();
+
+    private int mHits = 0;
+    private int mMisses = 0;
+
+    public static AudioStreamPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Idle float mono low-latency track for the configuration, or a new one. The caller owns it
+     * until {@link #recycleTrack}.
+     */
+    public AudioTrack acquireTrack(int sampleRate, int usage) {
+        synchronized (this) {
+            AudioTrack track = mTracks.remove(trackKey(sampleRate, usage));
+            if (track != null) {
+                mHits++;
+                return track;
+            }
+            mMisses++;
+        }
+        return createTrack(sampleRate, usage);
+    }
+
+    /**
+     * Takes back a track from {@link #acquireTrack}, stopped and flushed, or releases it if
+     * it is unusable or one like it is already idle.
+     */
+    public void recycleTrack(AudioTrack track, int sampleRate, int usage) {
+        try {
+            track.stop();
+            // drops what the last user wrote, so the next one starts on an empty buffer
+            track.flush();
+        } catch (IllegalStateException e) {
+            track.release();
+            return;
+        }
+        if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+            track.release();
+            return;
+        }
+
+        AudioTrack previous;
+        synchronized (this) {
+            previous = mTracks.put(trackKey(sampleRate, usage), track);
+            trim();
+        }
+        if (previous != null) previous.release();
+    }
+
+    /**
+     * Idle 16-bit mono record for the source, or a new one with twice the minimum buffer.
+     * Throws IllegalStateException if the record cannot be created.
+     */
+    public AudioRecord acquireRecord(int audioSource, int sampleRate) {
+        synchronized (this) {
+            AudioRecord record = mRecords.remove(recordKey(audioSource, sampleRate));
+            if (record != null) {
+                mHits++;
+                return record;
+            }
+            mMisses++;
+        }
+        return createRecord(audioSource, sampleRate);
+    }
+
+    /**
+     * Takes back a stopped record from {@link #acquireRecord}.
+     */
+    public void recycleRecord(AudioRecord record, int audioSource, int sampleRate) {
+        if (record.getState() != AudioRecord.STATE_INITIALIZED
+                || record.getRecordingState() != AudioRecord.RECORDSTATE_STOPPED) {
+            record.release();
+            return;
+        }
+
+        AudioRecord previous;
+        synchronized (this) {
+            previous = mRecords.put(recordKey(audioSource, sampleRate), record);
+            trim();
+        }
+        if (previous != null) previous.release();
+    }
+
+    /**
+     * Creates an idle track for the configuration unless there is one. Blocks, so call it off
+     * the main thread.
+     */
+    public void prewarmTrack(int sampleRate, int usage) {
+        synchronized (this) {
+            if (mTracks.containsKey(trackKey(sampleRate, usage))) return;
+        }
+
+        try {
+            recycleTrack(createTrack(sampleRate, usage), sampleRate, usage);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Track could not be prewarmed", e);
+        }
+    }
+
+    /**
+     * Creates an idle record for the source unless there is one. Needs RECORD_AUDIO and
+     * blocks, so call it off the main thread.
+     */
+    public void prewarmRecord(int audioSource, int sampleRate) {
+        synchronized (this) {
+            if (mRecords.containsKey(recordKey(audioSource, sampleRate))) return;
+        }
+
+        try {
+            recycleRecord(createRecord(audioSource, sampleRate), audioSource, sampleRate);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Record could not be prewarmed", e);
+        }
+    }
+
+    /**
+     * Releases every idle stream, e.g. when the app goes to the background.
+     */
+    public void clear() {
+        Map<String, AudioTrack> tracks;
+        Map<String, AudioRecord> records;
+        synchronized (this) {
+            tracks = new LinkedHashMap<>(mTracks);
+            records = new LinkedHashMap<>(mRecords);
+            mTracks.clear();
+            mRecords.clear();
+        }
+
+        for (AudioTrack track : tracks.values()) track.release();
+        for (AudioRecord record : records.values()) record.release();
+    }
+
+    public synchronized String summary() {
+        return mTracks.size() + " idle tracks, " + mRecords.size() + " idle records, "
+                + mHits + " reused, " + mMisses + " created";
+    }
+
+    // releases the oldest idle streams past MAX_IDLE, records first
+    private void trim() {
+        while (mTracks.size() + mRecords.size() > MAX_IDLE) {
+            Iterator<? extends Map.Entry<String, ?>> iterator = !mRecords.isEmpty()
+                    ? mRecords.entrySet().iterator() : mTracks.entrySet().iterator();
+            Object stream = iterator.next().getValue();
+            iterator.remove();
+
+            if (stream instanceof AudioTrack) ((AudioTrack) stream).release();
+            else ((AudioRecord) stream).release();
+        }
+    }
+
+    private static AudioTrack createTrack(int sampleRate, int usage) {
+        long start = System.nanoTime();
+
+        int minBufferSize = AudioTrack.getMinBufferSize(sampleRate,
+                AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_FLOAT);
+
+        AudioTrack track = new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(usage)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setSampleRate(sampleRate)
+                        .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
+                        .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                        .build())
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                .setBufferSizeInBytes(minBufferSize)
+                .build();
+
+        TRACK_CREATE.recordSince(start);
+        return track;
+    }
+
+    private static AudioRecord createRecord(int audioSource, int sampleRate) {
+        long start = System.nanoTime();
+
+        int minBufferSize = AudioRecord.getMinBufferSize(sampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferSize <= 0) {
+            throw new IllegalStateException("Unsupported capture format at " + sampleRate + " Hz");
+        }
+
+        AudioRecord record = new AudioRecord(audioSource, sampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, minBufferSize * 2);
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            record.release();
+            throw new IllegalStateException("AudioRecord could not be initialized on source " + audioSource);
+        }
+
+        RECORD_CREATE.recordSince(start);
+        return record;
+    }
+
+    private static String trackKey(int sampleRate, int usage) {
+        return sampleRate + "/" + usage;
+    }
+
+    private static String recordKey(int audioSource, int sampleRate) {
+        return audioSource + "/" + sampleRate;
+    }
+}
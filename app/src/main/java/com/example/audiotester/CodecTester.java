@@ -0,0 +1,372 @@
+package com.example.audiotester;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+
+import androidx.core.util.Consumer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Codec round-trip test for the encoders MediaRecorder can use.
+ *
+ * Encodes generated pink noise with every available encoder and bitrate through MediaCodec,
+ * muxes it into its usual container, then extracts and decodes it again. PCM is written into
+ * and read from the codec buffers directly and compressed frames go from the encoder to the
+ * muxer and from the extractor to the decoder without a copy, so the timings are those of the
+ * codecs. The real-time factors are processing time over audio duration, so anything below 1
+ * keeps up with a live recording. {@link CodecStats} compares the decoded signal with the
+ * original. Encoders the device does not have are skipped.
+ */
+public class CodecTester {
+
+    private static final String TAG = "CodecTester";
+
+    private static final double SIGNAL_SECONDS = 5;
+    private static final float AMPLITUDE = 0.25f;
+    private static final double MAX_DELAY_SECONDS = 0.25;
+    private static final long DEQUEUE_TIMEOUT_US = 10_000;
+    private static final long CODEC_TIMEOUT_MS = 30_000;
+
+    /**
+     * An encoder setting and the container MediaMuxer writes it to.
+     */
+    static final class Config {
+        final String name;
+        final String key;
+        final String mime;
+        final int profile;
+        final int sampleRate;
+        final int bitrate;
+        final int container;
+
+        Config(String name, String key, String mime, int profile, int sampleRate, int bitrate, int container) {
+            this.name = name;
+            this.key = key;
+            this.mime = mime;
+            this.profile = profile;
+            this.sampleRate = sampleRate;
+            this.bitrate = bitrate;
+            this.container = container;
+        }
+
+        MediaFormat format() {
+            MediaFormat format = MediaFormat.createAudioFormat(mime, sampleRate, 1);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
+            if (profile > 0) format.setInteger(MediaFormat.KEY_AAC_PROFILE, profile);
+            return format;
+        }
+    }
+
+    static final Config[] CONFIGS = {
+            new Config("AAC-LC 64 kbit/s", "aac_lc_64k", MediaFormat.MIMETYPE_AUDIO_AAC,
+                    MediaCodecInfo.CodecProfileLevel.AACObjectLC, 48000, 64_000, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4),
+            new Config("AAC-LC 128 kbit/s", "aac_lc_128k", MediaFormat.MIMETYPE_AUDIO_AAC,
+                    MediaCodecInfo.CodecProfileLevel.AACObjectLC, 48000, 128_000, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4),
+            new Config("HE-AAC 32 kbit/s", "he_aac_32k", MediaFormat.MIMETYPE_AUDIO_AAC,
+                    MediaCodecInfo.CodecProfileLevel.AACObjectHE, 48000, 32_000, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4),
+            new Config("HE-AAC 48 kbit/s", "he_aac_48k", MediaFormat.MIMETYPE_AUDIO_AAC,
+                    MediaCodecInfo.CodecProfileLevel.AACObjectHE, 48000, 48_000, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4),
+            new Config("AMR-NB 12.2 kbit/s", "amr_nb_12k", MediaFormat.MIMETYPE_AUDIO_AMR_NB,
+                    0, 8000, 12_200, MediaMuxer.OutputFormat.MUXER_OUTPUT_3GPP),
+            new Config("AMR-WB 23.85 kbit/s", "amr_wb_24k", MediaFormat.MIMETYPE_AUDIO_AMR_WB,
+                    0, 16000, 23_850, MediaMuxer.OutputFormat.MUXER_OUTPUT_3GPP),
+            new Config("Opus 32 kbit/s", "opus_32k", MediaFormat.MIMETYPE_AUDIO_OPUS,
+                    0, 48000, 32_000, MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM),
+            new Config("Opus 64 kbit/s", "opus_64k", MediaFormat.MIMETYPE_AUDIO_OPUS,
+                    0, 48000, 64_000, MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM),
+    };
+
+    private final File mOutputDirectory;
+    private final File mCacheDirectory;
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+    private volatile Map<String, Double> mLastMetrics;
+
+    public CodecTester(File outputDirectory, File cacheDirectory) {
+        mOutputDirectory = outputDirectory;
+        mCacheDirectory = cacheDirectory;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Metrics of the last finished test, or null if it failed or was cancelled.
+     */
+    public Map<String, Double> getLastMetrics() {
+        return mLastMetrics;
+    }
+
+    /**
+     * Starts the test on a worker thread. The listener is called on that thread with a summary,
+     * or null if the test failed or was cancelled.
+     */
+    public void start(Consumer<String> listener) {
+        if (mRunning) return;
+
+        mLastMetrics = null;
+        mRunning = true;
+        mThread = new Thread(() -> {
+            String summary = null;
+            try {
+                summary = measure();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            mRunning = false;
+            listener.accept(summary);
+        }, TAG);
+        mThread.start();
+    }
+
+    public void cancel() {
+        mRunning = false;
+
+        if (mThread != null) {
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mThread = null;
+        }
+    }
+
+    private String measure() throws IOException {
+        MediaCodecList codecs = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        StringBuilder summary = new StringBuilder();
+
+        File file = RecordingFiles.newFile(mOutputDirectory, "codec", "csv");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("codec,encoder,sample_rate,bitrate,kbps,encode_rtf,decode_rtf,delay_ms,snr_db,spectral_error_db,bandwidth_hz\n");
+
+            for (Config config : CONFIGS) {
+                if (!mRunning) return null;
+
+                String encoder = codecs.findEncoderForFormat(config.format());
+                if (encoder == null) {
+                    summary.append(config.name).append(": not supported\n");
+                    continue;
+                }
+
+                RoundTrip trip;
+                try {
+                    trip = roundTrip(config, encoder, codecs);
+                } catch (IOException | RuntimeException e) {
+                    Log.w("AudioTester", config.name + " round trip failed", e);
+                    summary.append(config.name).append(": failed, ").append(e.getMessage()).append('\n');
+                    continue;
+                }
+                if (trip == null) return null;
+
+                String suffix = "_" + config.key;
+                metrics.put("kbps" + suffix, trip.kbps);
+                metrics.put("encode_rtf" + suffix, trip.encodeRtf);
+                metrics.put("decode_rtf" + suffix, trip.decodeRtf);
+                metrics.putAll(trip.stats.toMetrics(suffix));
+
+                writer.write(String.format(Locale.US, "%s,%s,%d,%d,%.1f,%.4f,%.4f,%.2f,%.2f,%.2f,%.0f\n",
+                        config.name, encoder, config.sampleRate, config.bitrate, trip.kbps, trip.encodeRtf,
+                        trip.decodeRtf, trip.stats.delayMs, trip.stats.snrDb, trip.stats.spectralErrorDb,
+                        trip.stats.bandwidthHz));
+                summary.append(String.format(Locale.US, "%s: %.1f kbit/s, encode %.3f RTF, decode %.3f RTF, %s\n",
+                        config.name, trip.kbps, trip.encodeRtf, trip.decodeRtf, trip.stats));
+                Log.d("AudioTester", config.name + " with " + encoder + ": " + trip.stats);
+            }
+        }
+
+        mLastMetrics = metrics;
+        return summary.append(file.getName()).toString();
+    }
+
+    private static final class RoundTrip {
+        double kbps;
+        double encodeRtf;
+        double decodeRtf;
+        CodecStats stats;
+    }
+
+    // null if cancelled
+    private RoundTrip roundTrip(Config config, String encoder, MediaCodecList codecs) throws IOException {
+        float[] reference = new float[(int) (SIGNAL_SECONDS * config.sampleRate)];
+        SignalGenerator.pinkNoise(config.sampleRate, AMPLITUDE, 1).fill(reference, 0, reference.length);
+
+        File encoded = File.createTempFile(config.key, ".media", mCacheDirectory);
+        try {
+            long start = System.nanoTime();
+            if (!encode(config, encoder, reference, encoded)) return null;
+            long encodeNanos = System.nanoTime() - start;
+
+            // the decoded signal is longer by the codec delay
+            float[] decoded = new float[reference.length + (int) (2 * MAX_DELAY_SECONDS * config.sampleRate)];
+            start = System.nanoTime();
+            int length = decode(encoded, codecs, decoded, config.sampleRate);
+            if (length < 0) return null;
+            long decodeNanos = System.nanoTime() - start;
+
+            RoundTrip trip = new RoundTrip();
+            trip.kbps = encoded.length() * 8 / SIGNAL_SECONDS / 1000;
+            trip.encodeRtf = encodeNanos / 1e9 / SIGNAL_SECONDS;
+            trip.decodeRtf = decodeNanos / 1e9 / SIGNAL_SECONDS;
+            trip.stats = CodecStats.analyze(reference, decoded, length, config.sampleRate,
+                    (int) (MAX_DELAY_SECONDS * config.sampleRate));
+            return trip;
+        } finally {
+            encoded.delete();
+        }
+    }
+
+    // false if cancelled
+    private boolean encode(Config config, String encoderName, float[] reference, File output) throws IOException {
+        MediaCodec encoder = MediaCodec.createByCodecName(encoderName);
+        MediaMuxer muxer = new MediaMuxer(output.getAbsolutePath(), config.container);
+        int track = -1;
+        try {
+            encoder.configure(config.format(), null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            encoder.start();
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            int position = 0;
+            boolean inputDone = false;
+            long deadline = System.currentTimeMillis() + CODEC_TIMEOUT_MS;
+            while (true) {
+                if (!mRunning) return false;
+                if (System.currentTimeMillis() > deadline) throw new IllegalStateException("Encoder timed out");
+
+                if (!inputDone) {
+                    int index = encoder.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                    if (index >= 0) {
+                        // 16-bit PCM straight into the codec buffer
+                        ByteBuffer input = encoder.getInputBuffer(index);
+                        input.clear();
+                        ShortBuffer samples = input.order(ByteOrder.nativeOrder()).asShortBuffer();
+                        int frames = Math.min(samples.remaining(), reference.length - position);
+                        for (int i = 0; i < frames; i++) {
+                            samples.put(toShort(reference[position + i]));
+                        }
+
+                        long timeUs = position * 1_000_000L / config.sampleRate;
+                        position += frames;
+                        inputDone = position == reference.length;
+                        encoder.queueInputBuffer(index, 0, frames * 2, timeUs,
+                                inputDone ? MediaCodec.BUFFER_FLAG_END_OF_STREAM : 0);
+                    }
+                }
+
+                int index = encoder.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    track = muxer.addTrack(encoder.getOutputFormat());
+                    muxer.start();
+                } else if (index >= 0) {
+                    // the muxer takes the codec config from the output format
+                    if (info.size > 0 && track >= 0 && (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+                        muxer.writeSampleData(track, encoder.getOutputBuffer(index), info);
+                    }
+                    encoder.releaseOutputBuffer(index, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) break;
+                }
+            }
+        } finally {
+            encoder.release();
+            try {
+                if (track >= 0) muxer.stop();
+            } catch (IllegalStateException e) {
+                // nothing was written, the decoder reports the broken file
+                Log.w(TAG, "Muxer could not be stopped", e);
+            } finally {
+                muxer.release();
+            }
+        }
+        return true;
+    }
+
+    // decodes the first channel into decoded and returns its length, or -1 if cancelled
+    private int decode(File input, MediaCodecList codecs, float[] decoded, int sampleRate) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec decoder = null;
+        try {
+            extractor.setDataSource(input.getAbsolutePath());
+            if (extractor.getTrackCount() < 1) throw new IOException("No track in " + input);
+            MediaFormat format = extractor.getTrackFormat(0);
+            extractor.selectTrack(0);
+
+            String decoderName = codecs.findDecoderForFormat(format);
+            if (decoderName == null) throw new IOException("No decoder for " + format);
+            decoder = MediaCodec.createByCodecName(decoderName);
+            decoder.configure(format, null, null, 0);
+            decoder.start();
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            int length = 0;
+            boolean inputDone = false;
+            long deadline = System.currentTimeMillis() + CODEC_TIMEOUT_MS;
+            while (true) {
+                if (!mRunning) return -1;
+                if (System.currentTimeMillis() > deadline) throw new IllegalStateException("Decoder timed out");
+
+                if (!inputDone) {
+                    int index = decoder.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                    if (index >= 0) {
+                        int size = extractor.readSampleData(decoder.getInputBuffer(index), 0);
+                        inputDone = size < 0;
+                        decoder.queueInputBuffer(index, 0, Math.max(0, size), Math.max(0, extractor.getSampleTime()),
+                                inputDone ? MediaCodec.BUFFER_FLAG_END_OF_STREAM : 0);
+                        if (!inputDone) extractor.advance();
+                    }
+                }
+
+                int index = decoder.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat output = decoder.getOutputFormat();
+                    channels = output.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    if (output.getInteger(MediaFormat.KEY_SAMPLE_RATE) != sampleRate) {
+                        throw new IOException("Decoded at " + output.getInteger(MediaFormat.KEY_SAMPLE_RATE)
+                                + " Hz instead of " + sampleRate + " Hz");
+                    }
+                } else if (index >= 0) {
+                    // first channel straight from the codec buffer
+                    ByteBuffer buffer = decoder.getOutputBuffer(index);
+                    buffer.position(info.offset);
+                    buffer.limit(info.offset + info.size);
+                    ShortBuffer samples = buffer.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    int frames = Math.min(samples.remaining() / channels, decoded.length - length);
+                    for (int i = 0; i < frames; i++) {
+                        decoded[length + i] = samples.get(i * channels) / 32768f;
+                    }
+                    length += frames;
+
+                    decoder.releaseOutputBuffer(index, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) break;
+                }
+            }
+            return length;
+        } finally {
+            if (decoder != null) decoder.release();
+            extractor.release();
+        }
+    }
+
+    private static short toShort(float sample) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(sample * 32768f)));
+    }
+}
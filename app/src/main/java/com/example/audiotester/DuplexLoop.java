@@ -0,0 +1,104 @@
+package com.example.audiotester;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTrack;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Plays a stimulus while capturing it back.
+ *
+ * One output block is written for every input block read, so playback and capture share a
+ * clock and the capture always covers the whole stimulus plus a tail for latency and decay.
+ */
+public class DuplexLoop {
+
+    private DuplexLoop() {
+    }
+
+    /**
+     * Returns stimulus + tail frames of capture from audioSource, or null once running
+     * turns false.
+     */
+    public static float[] playAndCapture(int usage, int audioSource, int sampleRate, float[] stimulus,
+                                         int tailFrames, BooleanSupplier running) {
+        AudioFormat inFormat = new AudioFormat.Builder()
+                .setSampleRate(sampleRate)
+                .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
+                .setChannelMask(AudioFormat.CHANNEL_IN_MONO)
+                .build();
+        AudioFormat outFormat = new AudioFormat.Builder()
+                .setSampleRate(sampleRate)
+                .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
+                .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                .build();
+
+        int inBufferSize = AudioRecord.getMinBufferSize(sampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_FLOAT);
+        int outBufferSize = AudioTrack.getMinBufferSize(sampleRate,
+                AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_FLOAT);
+
+        int blockFrames = Math.max(64, inBufferSize / 4 / 2);
+        float[] inBlock = new float[blockFrames];
+        float[] outBlock = new float[blockFrames];
+        float[] captured = new float[stimulus.length + tailFrames];
+
+        AudioRecord record = new AudioRecord.Builder()
+                .setAudioSource(audioSource)
+                .setAudioFormat(inFormat)
+                .setBufferSizeInBytes(inBufferSize * 2)
+                .build();
+        // the record holds the input stream, so it must not outlive a track that fails to build
+        AudioTrack track;
+        try {
+            track = new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(usage)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                            .build())
+                    .setAudioFormat(outFormat)
+                    .setTransferMode(AudioTrack.MODE_STREAM)
+                    .setBufferSizeInBytes(outBufferSize * 2)
+                    .build();
+        } catch (RuntimeException e) {
+            record.release();
+            throw e;
+        }
+
+        try {
+            record.startRecording();
+
+            // prime the output with silence so the loop does not underrun
+            track.write(outBlock, 0, blockFrames, AudioTrack.WRITE_BLOCKING);
+            track.play();
+
+            int done = 0;
+            while (done < captured.length) {
+                if (!running.getAsBoolean()) return null;
+
+                int read = record.read(inBlock, 0, Math.min(blockFrames, captured.length - done), AudioRecord.READ_BLOCKING);
+                if (read <= 0) {
+                    throw new IllegalStateException("AudioRecord.read failed with " + read);
+                }
+
+                System.arraycopy(inBlock, 0, captured, done, read);
+
+                int playable = Math.max(0, Math.min(read, stimulus.length - done));
+                System.arraycopy(stimulus, Math.min(done, stimulus.length), outBlock, 0, playable);
+                for (int i = playable; i < read; i++) outBlock[i] = 0f;
+
+                track.write(outBlock, 0, read, AudioTrack.WRITE_BLOCKING);
+                done += read;
+            }
+
+            return captured;
+        } finally {
+            track.stop();
+            track.release();
+            record.stop();
+            record.release();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.audiotester;
+
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.core.util.Consumer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Speaker-to-microphone echo coupling test.
+ *
+ * Plays pink noise in the selected mode and captures it back, once from VOICE_COMMUNICATION
+ * (with the platform echo canceller) and once from MIC (without). {@link EchoStats} gives the
+ * echo return loss of each capture; the difference is what the platform AEC removes.
+ */
+public class EchoTester {
+
+    private static final String TAG = "EchoTester";
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final float AMPLITUDE = 0.3f;
+    private static final double REFERENCE_SECONDS = 6;
+    private static final int TAIL_FRAMES = SAMPLE_RATE / 2;
+    private static final int MAX_DELAY_FRAMES = SAMPLE_RATE / 2;
+
+    private static final int[] SOURCES = {
+            MediaRecorder.AudioSource.VOICE_COMMUNICATION,
+            MediaRecorder.AudioSource.MIC
+    };
+    private static final String[] SOURCE_NAMES = {"Voice communication", "Mic"};
+
+    private final AudioHelper mAudioHelper;
+    private final File mOutputDirectory;
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+    private volatile Map<String, Double> mLastMetrics;
+
+    public EchoTester(AudioHelper audioHelper, File outputDirectory) {
+        mAudioHelper = audioHelper;
+        mOutputDirectory = outputDirectory;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Metrics of the last finished test, or null if it failed or was cancelled.
+     */
+    public Map<String, Double> getLastMetrics() {
+        return mLastMetrics;
+    }
+
+    /**
+     * Starts the test on a worker thread. The listener is called on that thread with a summary,
+     * or null if the test failed or was cancelled.
+     */
+    public void start(int mode, boolean speakerphone, Consumer<String> listener) {
+        if (mRunning) return;
+
+        mAudioHelper.setDestination(mode, speakerphone);
+
+        mLastMetrics = null;
+        mRunning = true;
+        mThread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+            String summary = null;
+            try {
+                summary = measure(AudioHelper.usageForMode(mode), speakerphone);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            mRunning = false;
+            listener.accept(summary);
+        }, TAG);
+        mThread.start();
+    }
+
+    public void cancel() {
+        mRunning = false;
+
+        if (mThread != null) {
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mThread = null;
+        }
+    }
+
+    private String measure(int usage, boolean speakerphone) throws IOException {
+        float[] reference = new float[(int) (REFERENCE_SECONDS * SAMPLE_RATE)];
+        SignalGenerator.pinkNoise(SAMPLE_RATE, AMPLITUDE, 1).fill(reference, 0, reference.length);
+
+        EchoStats[] results = new EchoStats[SOURCES.length];
+        for (int i = 0; i < SOURCES.length; i++) {
+            float[] captured = DuplexLoop.playAndCapture(usage, SOURCES[i], SAMPLE_RATE,
+                    reference, TAIL_FRAMES, () -> mRunning);
+            if (captured == null) return null;
+
+            results[i] = EchoStats.analyze(reference, captured, captured.length, SAMPLE_RATE,
+                    EchoStats.DEFAULT_TAPS, MAX_DELAY_FRAMES);
+            Log.d("AudioTester", SOURCE_NAMES[i] + ": " + results[i]);
+        }
+
+        File file = RecordingFiles.newFile(mOutputDirectory, "echo", "csv");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("source,speakerphone,delay_ms,erl_db,erle_db\n");
+            for (int i = 0; i < SOURCES.length; i++) {
+                writer.write(String.format(Locale.US, "%s,%b,%.2f,%.2f,%.2f\n", SOURCE_NAMES[i], speakerphone,
+                        results[i].delayMs, results[i].erlDb, results[i].erleDb));
+            }
+        }
+
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.putAll(results[0].toMetrics("_vc"));
+        metrics.putAll(results[1].toMetrics("_mic"));
+        metrics.put("aec_suppression_db", results[0].erlDb - results[1].erlDb);
+        mLastMetrics = metrics;
+
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < SOURCES.length; i++) {
+            summary.append(SOURCE_NAMES[i]).append(": ").append(results[i]).append('\n');
+        }
+        summary.append(String.format(Locale.US, "Platform AEC: %.1f dB\n", results[0].erlDb - results[1].erlDb));
+        summary.append(file.getName());
+        return summary.toString();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.audiotester;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs test specs without the UI, for lab automation.
+ *
+ * Specs come from intent extras: "spec" with JSON, "spec_file" with the path of a JSON file
+ * relative to the app's external files dir, where adb can push, or the spec
+ * keys of {@link TestSpec} as separate string extras. Batches run one after the other
+ * through a {@link TestQueue} and {@link MediaTester}, and a cancel skips every batch queued
+ * before it; every result goes into the result store and each batch writes
+ * a headless_*.json report into the files dir, whose path is logged under this tag. The
+ * service is exported for adb only: starting it requires DUMP, which the shell holds.
+ *
+ * <pre>
+ * adb shell am start-foreground-service -n com.example.audiotester/.HeadlessTestService \
+ *     --es test latency --es route speaker --es mode "in communication"
+ * adb shell am start-foreground-service -n com.example.audiotester/.HeadlessTestService \
+ *     -a com.example.audiotester.action.CANCEL
+ * </pre>
+ */
+public class HeadlessTestService extends Service {
+
+    private static final String TAG = "HeadlessTestService";
+
+    public static final String ACTION_CANCEL = "com.example.audiotester.action.CANCEL";
+    public static final String EXTRA_SPEC = "spec";
+    public static final String EXTRA_SPEC_FILE = "spec_file";
+
+    private static final String CHANNEL_ID = "headless";
+    private static final int NOTIFICATION_ID = 1;
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor((runnable) -> new Thread(runnable, TAG));
+
+    private AudioHelper mAudioHelper;
+    private MediaTester mMediaTester;
+    private TestQueue mQueue;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        NotificationManager notificationManager = getSystemService(NotificationManager.class);
+        notificationManager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                getString(R.string.headless_channel), NotificationManager.IMPORTANCE_LOW));
+
+        mAudioHelper = new AudioHelper(this);
+        mMediaTester = new MediaTester(this, mAudioHelper);
+        mQueue = new TestQueue(mExecutor, mMediaTester::runSpec);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // started as a foreground service, so this has to come first whatever the intent
+        startForeground(NOTIFICATION_ID, new Notification.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.headless_running))
+                .build());
+
+        // stopping goes through the executor too, so it never cuts a queued batch short
+        if (intent == null) {
+            mExecutor.execute(() -> stopSelf(startId));
+            return START_NOT_STICKY;
+        }
+
+        if (ACTION_CANCEL.equals(intent.getAction())) {
+            mQueue.cancelAll();
+
+            Log.i(TAG, "Cancelling the queued batches");
+            mExecutor.execute(() -> stopSelf(startId));
+            return START_NOT_STICKY;
+        }
+
+        List<TestSpec> specs;
+        try {
+            specs = readSpecs(intent.getExtras());
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Invalid spec: " + e.getMessage());
+            mExecutor.execute(() -> stopSelf(startId));
+            return START_NOT_STICKY;
+        }
+
+        // the batch can be cancelled from here on, even before the executor gets to it
+        Log.i(TAG, "Queued " + TestScheduler.runCount(specs) + " runs");
+        mQueue.submit(specs,
+                (outcome, index, count) -> Log.i(TAG, (index + 1) + " / " + count + " " + outcome.spec.test
+                        + " run " + outcome.run + ": " + (outcome.isSuccess() ? outcome.metrics : outcome.error)),
+                (outcomes) -> {
+                    writeReport(outcomes);
+                    stopSelf(startId);
+                });
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        mQueue.cancelAll();
+        mExecutor.shutdownNow();
+        try {
+            mExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        mMediaTester.release();
+        mAudioHelper.release();
+
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /**
+     * Latency table of {@link Telemetry}, from adb shell dumpsys activity service
+     * com.example.audiotester/.HeadlessTestService.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        try {
+            Telemetry.getInstance().writeTable(writer);
+        } catch (IOException e) {
+            writer.println(e);
+        }
+    }
+
+    private List<TestSpec> readSpecs(Bundle extras) throws IOException {
+        if (extras == null) throw new IllegalArgumentException("No spec extras");
+
+        String json = extras.getString(EXTRA_SPEC);
+        if (json != null) return TestSpecParser.parse(json);
+
+        String path = extras.getString(EXTRA_SPEC_FILE);
+        if (path != null) {
+            File directory = getExternalFilesDir(null);
+            if (directory == null) throw new IOException("External files dir is not available");
+
+            // only files adb pushed for us, never an arbitrary path this app can read
+            File file = new File(directory, path).getCanonicalFile();
+            if (new File(path).isAbsolute() || !file.getPath().startsWith(directory.getCanonicalPath() + File.separator)) {
+                throw new IllegalArgumentException("Spec file must be relative to " + directory + ": " + path);
+            }
+
+            return TestSpecParser.parse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+
+        Map<String, String> values = new HashMap<>();
+        for (String key : extras.keySet()) {
+            Object value = extras.get(key);
+            if (value != null) values.put(key, value.toString());
+        }
+        return Collections.singletonList(TestSpec.fromMap(values));
+    }
+
+    private void writeReport(List<TestScheduler.Outcome> outcomes) {
+        File report = RecordingFiles.newFile(getFilesDir(), "headless", "json");
+        try (Writer writer = new FileWriter(report)) {
+            TestScheduler.writeJson(outcomes, writer);
+            Log.i(TAG, "Report: " + report.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(TAG, "Report could not be written", e);
+        }
+    }
+}
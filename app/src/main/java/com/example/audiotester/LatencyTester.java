@@ -0,0 +1,195 @@
+package com.example.audiotester;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTrack;
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.core.util.Consumer;
+
+import java.util.Arrays;
+
+/**
+ * Round-trip latency test.
+ *
+ * Runs a full-duplex loop that writes one output block for every input block read, injects
+ * a chirp into the output and counts input frames until the chirp is found in the capture.
+ */
+public class LatencyTester {
+
+    private static final String TAG = "LatencyTester";
+
+    public static final int DEFAULT_ITERATIONS = 10;
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int PROBE_LENGTH = 2048;
+    private static final int SETTLE_FRAMES = SAMPLE_RATE / 4;
+    private static final int MAX_LATENCY_FRAMES = SAMPLE_RATE;
+
+    private final LatencyAnalyzer mAnalyzer;
+    private final float[] mProbe;
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+
+    public LatencyTester() {
+        mProbe = LatencyAnalyzer.createChirp(SAMPLE_RATE, PROBE_LENGTH, 500, 8000, 0.5f);
+        mAnalyzer = new LatencyAnalyzer(mProbe);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Starts the measurement on a worker thread. The listener is called on that thread.
+     */
+    public void start(int mode, int iterations, Consumer<LatencyStats> listener) {
+        if (mRunning) return;
+
+        mRunning = true;
+        mThread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+            LatencyStats stats;
+            try {
+                stats = measure(AudioHelper.usageForMode(mode), iterations);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                stats = LatencyStats.of(new double[0], 0);
+            }
+
+            mRunning = false;
+            listener.accept(stats);
+        }, TAG);
+        mThread.start();
+    }
+
+    public void cancel() {
+        mRunning = false;
+
+        if (mThread != null) {
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mThread = null;
+        }
+    }
+
+    private LatencyStats measure(int usage, int iterations) {
+        AudioFormat inFormat = new AudioFormat.Builder()
+                .setSampleRate(SAMPLE_RATE)
+                .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
+                .setChannelMask(AudioFormat.CHANNEL_IN_MONO)
+                .build();
+        AudioFormat outFormat = new AudioFormat.Builder()
+                .setSampleRate(SAMPLE_RATE)
+                .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
+                .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                .build();
+
+        int inBufferSize = AudioRecord.getMinBufferSize(SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_FLOAT);
+        int outBufferSize = AudioTrack.getMinBufferSize(SAMPLE_RATE,
+                AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_FLOAT);
+
+        int blockFrames = Math.max(64, inBufferSize / 4 / 2);
+        float[] inBlock = new float[blockFrames];
+        float[] outBlock = new float[blockFrames];
+        float[] captured = new float[MAX_LATENCY_FRAMES + PROBE_LENGTH];
+        double[] results = new double[iterations];
+        int count = 0;
+
+        AudioRecord record = new AudioRecord.Builder()
+                .setAudioSource(MediaRecorder.AudioSource.MIC)
+                .setAudioFormat(inFormat)
+                .setBufferSizeInBytes(inBufferSize * 2)
+                .build();
+        // the record holds the input stream, so it must not outlive a track that fails to build
+        AudioTrack track;
+        try {
+            track = new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(usage)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                            .build())
+                    .setAudioFormat(outFormat)
+                    .setTransferMode(AudioTrack.MODE_STREAM)
+                    .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                    .setBufferSizeInBytes(outBufferSize)
+                    .build();
+        } catch (RuntimeException e) {
+            record.release();
+            throw e;
+        }
+
+        try {
+            record.startRecording();
+
+            // prime the output with silence so the loop does not underrun
+            track.write(outBlock, 0, blockFrames, AudioTrack.WRITE_BLOCKING);
+            track.write(outBlock, 0, blockFrames, AudioTrack.WRITE_BLOCKING);
+            track.play();
+
+            for (int iteration = 0; iteration < iterations && mRunning; iteration++) {
+                loop(record, track, inBlock, outBlock, SETTLE_FRAMES, null);
+
+                int capturedFrames = loop(record, track, inBlock, outBlock, captured.length, captured);
+                int lag = mAnalyzer.findDelay(captured, capturedFrames);
+
+                if (lag >= 0) {
+                    results[count++] = lag * 1000.0 / SAMPLE_RATE;
+                    Log.d("AudioTester", "Round-trip latency #" + iteration + ": " + results[count - 1] + " ms");
+                } else {
+                    Log.w(TAG, "Probe not detected, correlation = " + mAnalyzer.getLastCorrelation());
+                }
+            }
+        } finally {
+            track.stop();
+            track.release();
+            record.stop();
+            record.release();
+        }
+
+        return LatencyStats.of(results, count);
+    }
+
+    /**
+     * Echo loop: reads frames and writes the same number of frames back. When captured is
+     * not null, the probe is written to the output and the input is stored into captured.
+     */
+    private int loop(AudioRecord record, AudioTrack track, float[] inBlock, float[] outBlock,
+                     int frames, float[] captured) {
+        int done = 0;
+        int probePosition = 0;
+
+        while (done < frames && mRunning) {
+            int read = record.read(inBlock, 0, Math.min(inBlock.length, frames - done), AudioRecord.READ_BLOCKING);
+            if (read <= 0) {
+                Log.e(TAG, "AudioRecord.read failed with " + read);
+                break;
+            }
+
+            Arrays.fill(outBlock, 0, read, 0f);
+            if (captured != null) {
+                System.arraycopy(inBlock, 0, captured, done, read);
+
+                int probeFrames = Math.min(read, mProbe.length - probePosition);
+                if (probeFrames > 0) {
+                    System.arraycopy(mProbe, probePosition, outBlock, 0, probeFrames);
+                    probePosition += probeFrames;
+                }
+            }
+
+            track.write(outBlock, 0, read, AudioTrack.WRITE_BLOCKING);
+            done += read;
+        }
+
+        return done;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.audiotester;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.widget.AppCompatTextView;
+
+/**
+ * Shows the readings of a {@link LoudnessMeter} as text, refreshed a few times per second
+ * while attached and visible.
+ */
+public class LevelMeterView extends AppCompatTextView {
+
+    private static final long REFRESH_INTERVAL_MS = 200;
+
+    private final Runnable mRefresh = this::refresh;
+
+    private LoudnessMeter mMeter;
+    private long mLastBlock = -1;
+
+    public LevelMeterView(Context context) {
+        this(context, null);
+    }
+
+    public LevelMeterView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public void setLoudnessMeter(LoudnessMeter meter) {
+        mMeter = meter;
+        mLastBlock = -1;
+
+        removeCallbacks(mRefresh);
+        if (isAttachedToWindow()) {
+            post(mRefresh);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        post(mRefresh);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(mRefresh);
+        super.onDetachedFromWindow();
+    }
+
+    private void refresh() {
+        if (mMeter == null) return;
+
+        long block = mMeter.getBlockCount();
+        if (block != mLastBlock && getVisibility() == VISIBLE) {
+            mLastBlock = block;
+            setText(mMeter.toString());
+        }
+
+        postDelayed(mRefresh, REFRESH_INTERVAL_MS);
+    }
+}
@@ -6,13 +6,19 @@ import android.media.AudioManager;
 import android.media.MediaRecorder;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.Spinner;
+import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresApi;
@@ -20,16 +26,36 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SwitchCompat;
 import androidx.core.app.ActivityCompat;
 
+import java.io.File;
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_RECORD_AUDIO_PERMISSION = 200;
+    private static final long TELEMETRY_REFRESH_MS = 1000;
+
+    private static final LatencyHistogram COLD_START = Telemetry.getInstance().histogram("startup.cold_start");
+    private static final LatencyHistogram ACTIVITY_START = Telemetry.getInstance().histogram("startup.activity_start");
+    private static final LatencyHistogram ON_CREATE = Telemetry.getInstance().histogram("startup.on_create");
+
+    // only the first activity of a process was started cold
+    private static boolean sColdStart = true;
 
     private Spinner mModeSpinner;
     private Spinner mMainSpinner;
+    private Spinner mSignalSpinner;
     private Button mActionButton;
+    private TextView mResultText;
+    private TextView mTelemetryText;
+    private SpectrumView mSpectrumView;
+    private LevelMeterView mLevelMeterView;
+    private WaveformView mWaveformView;
     private SwitchCompat mSpeakerphoneSwitch;
+    private SwitchCompat mPcmSwitch;
 
     private MediaTester mMediaTester;
     private ArrayAdapter<CharSequence> mOutputAdapter;
@@ -39,6 +65,20 @@ public class MainActivity extends AppCompatActivity {
     private boolean permissionToRecordAccepted = false;
     private final String[] permissions = {Manifest.permission.RECORD_AUDIO};
 
+    private final Runnable mTelemetryRefresh = new Runnable() {
+        @Override
+        public void run() {
+            StringWriter table = new StringWriter();
+            try {
+                Telemetry.getInstance().writeTable(table);
+            } catch (IOException e) {
+                Log.e("AudioTester", "Telemetry could not be formatted", e);
+            }
+            mTelemetryText.setText(table.toString());
+            mTelemetryText.postDelayed(this, TELEMETRY_REFRESH_MS);
+        }
+    };
+
     @Override
     public void onBackPressed() {
         finishAffinity();
@@ -47,6 +87,9 @@ public class MainActivity extends AppCompatActivity {
     @RequiresApi(api = Build.VERSION_CODES.R)
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        Trace.beginSection("MainActivity.onCreate");
+        long start = System.nanoTime();
+
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
@@ -57,11 +100,11 @@ public class MainActivity extends AppCompatActivity {
         initializeActionButton();
         initializeSwitch();
 
-        try {
-            setAudioOutTestMode();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        setAudioOutTestMode();
+
+        ON_CREATE.recordSince(start);
+        Trace.endSection();
+        traceFirstFrame(start);
     }
 
     @Override
@@ -88,14 +131,86 @@ public class MainActivity extends AppCompatActivity {
                 return false;
             }
 
-            try {
-                setAudioOutTestMode();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            setAudioOutTestMode();
 
             mMediaTester.setTestMode(MediaTester.TEST_OUT);
 
+            return true;
+        } else if (item.getItemId() == R.id.latencyMenuItem) {
+            if (mMediaTester.getTestMode() == MediaTester.TEST_LATENCY) {
+                return false;
+            }
+
+            setLatencyTestMode();
+            mMediaTester.setTestMode(MediaTester.TEST_LATENCY);
+
+            return true;
+        } else if (item.getItemId() == R.id.sweepMenuItem) {
+            if (mMediaTester.getTestMode() == MediaTester.TEST_SWEEP) {
+                return false;
+            }
+
+            setSweepTestMode();
+            mMediaTester.setTestMode(MediaTester.TEST_SWEEP);
+
+            return true;
+        } else if (item.getItemId() == R.id.soakMenuItem) {
+            if (mMediaTester.getTestMode() == MediaTester.TEST_SOAK) {
+                return false;
+            }
+
+            setSoakTestMode();
+            mMediaTester.setTestMode(MediaTester.TEST_SOAK);
+
+            return true;
+        } else if (item.getItemId() == R.id.responseMenuItem) {
+            if (mMediaTester.getTestMode() == MediaTester.TEST_RESPONSE) {
+                return false;
+            }
+
+            setResponseTestMode();
+            mMediaTester.setTestMode(MediaTester.TEST_RESPONSE);
+
+            return true;
+        } else if (item.getItemId() == R.id.exportMenuItem) {
+            File[] files = mMediaTester.exportResults();
+
+            mResultText.setVisibility(View.VISIBLE);
+            mResultText.setText(files != null
+                    ? files[0].getAbsolutePath() + "\n" + files[1].getAbsolutePath()
+                    : getString(R.string.no_result));
+
+            return true;
+        } else if (item.getItemId() == R.id.routeMenuItem) {
+            if (mMediaTester.getTestMode() == MediaTester.TEST_ROUTE) {
+                return false;
+            }
+
+            setRouteTestMode();
+            mMediaTester.setTestMode(MediaTester.TEST_ROUTE);
+
+            return true;
+        } else if (item.getItemId() == R.id.codecMenuItem) {
+            if (mMediaTester.getTestMode() == MediaTester.TEST_CODEC) {
+                return false;
+            }
+
+            setCodecTestMode();
+            mMediaTester.setTestMode(MediaTester.TEST_CODEC);
+
+            return true;
+        } else if (item.getItemId() == R.id.telemetryMenuItem) {
+            setTelemetryVisible(mTelemetryText.getVisibility() != View.VISIBLE);
+
+            return true;
+        } else if (item.getItemId() == R.id.echoMenuItem) {
+            if (mMediaTester.getTestMode() == MediaTester.TEST_ECHO) {
+                return false;
+            }
+
+            setEchoTestMode();
+            mMediaTester.setTestMode(MediaTester.TEST_ECHO);
+
             return true;
         }
 
@@ -116,12 +231,76 @@ public class MainActivity extends AppCompatActivity {
     protected void onStop() {
         super.onStop();
 
+        mTelemetryText.removeCallbacks(mTelemetryRefresh);
         mMediaTester.release();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        if (mTelemetryText.getVisibility() == View.VISIBLE) mTelemetryText.post(mTelemetryRefresh);
+    }
+
+    /**
+     * Latency table of {@link Telemetry}, from adb shell dumpsys activity top.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+
+        writer.println(prefix + "Telemetry:");
+        try {
+            Telemetry.getInstance().writeTable(writer);
+        } catch (IOException e) {
+            writer.println(prefix + e);
+        }
+    }
+
+    /**
+     * Records the time to the first frame, from onCreate and on a cold start from the process
+     * start, and reports the activity as fully drawn.
+     */
+    private void traceFirstFrame(long createNanos) {
+        View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+
+                // runs once the frame being drawn now is done
+                decorView.post(() -> {
+                    ACTIVITY_START.recordSince(createNanos);
+                    String startup = "activity start " + (System.nanoTime() - createNanos) / 1_000_000 + " ms";
+                    if (sColdStart) {
+                        long coldStartMs = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+                        COLD_START.record(coldStartMs * 1_000_000);
+                        startup = "cold start " + coldStartMs + " ms, " + startup;
+                        sColdStart = false;
+                    }
+
+                    reportFullyDrawn();
+                    Log.i("AudioTester", "Startup: " + startup);
+                });
+                return true;
+            }
+        });
+    }
+
+    private void setTelemetryVisible(boolean visible) {
+        mTelemetryText.removeCallbacks(mTelemetryRefresh);
+        mTelemetryText.setVisibility(visible ? View.VISIBLE : View.GONE);
+        if (visible) mTelemetryText.post(mTelemetryRefresh);
+    }
+
     @RequiresApi(api = Build.VERSION_CODES.R)
     private int getSelectedMode() {
-        switch (mModeSpinner.getSelectedItem().toString()) {
+        return modeFor(mModeSpinner.getSelectedItem().toString());
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private static int modeFor(String name) {
+        switch (name) {
             case "In call mode":
                 return AudioManager.MODE_IN_CALL;
             case "In communication mode":
@@ -148,7 +327,12 @@ public class MainActivity extends AppCompatActivity {
 
     @RequiresApi(api = Build.VERSION_CODES.Q)
     private int getSelectedInputAudioSource() {
-        switch (mMainSpinner.getSelectedItem().toString()) {
+        return inputAudioSourceFor(mMainSpinner.getSelectedItem().toString());
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    private static int inputAudioSourceFor(String name) {
+        switch (name) {
             case "Camcorder":
                 return MediaRecorder.AudioSource.CAMCORDER;
             case "Mic":
@@ -174,14 +358,64 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Generator for the selected signal, or null for the bundled music clip.
+     */
+    private SignalGenerator createSelectedSignal() {
+        int sampleRate = SignalPlayer.DEFAULT_SAMPLE_RATE;
+
+        switch (mSignalSpinner.getSelectedItem().toString()) {
+            case "Sine 1 kHz":
+                return SignalGenerator.sine(sampleRate, 1000, 0.5f);
+            case "Multi-tone":
+                return SignalGenerator.multiTone(sampleRate, new double[]{100, 440, 1000, 3150, 8000}, 0.5f);
+            case "Log sweep":
+                return SignalGenerator.logSweep(sampleRate, 20, 20000, 10, 0.5f);
+            case "White noise":
+                return SignalGenerator.whiteNoise(sampleRate, 0.25f, System.nanoTime());
+            case "Pink noise":
+                return SignalGenerator.pinkNoise(sampleRate, 0.25f, System.nanoTime());
+            case "Silence":
+                return SignalGenerator.silence(sampleRate);
+            default:
+                return null;
+        }
+    }
+
     @RequiresApi(api = Build.VERSION_CODES.R)
-    private void setAudioOutTestMode() throws IOException {
+    private List<SweepCell> createSweepCells() {
+        String[] sourceNames = getResources().getStringArray(R.array.inputs_array);
+        String[] modeNames = getResources().getStringArray(R.array.modes_array);
+
+        int[] sources = new int[sourceNames.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = inputAudioSourceFor(sourceNames[i]);
+        }
+
+        int[] modes = new int[modeNames.length];
+        for (int i = 0; i < modes.length; i++) {
+            modes[i] = modeFor(modeNames[i]);
+        }
+
+        return SweepRunner.matrix(sources, sourceNames, modes, modeNames);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private void setAudioOutTestMode() {
         mMediaTester.switchToAudioOutTestMode(mActionButton);
 
         mSpeakerphoneSwitch.setVisibility(View.GONE);
+        mPcmSwitch.setVisibility(View.GONE);
+        mResultText.setVisibility(View.GONE);
+        mSpectrumView.setVisibility(View.GONE);
+        mLevelMeterView.setVisibility(View.GONE);
+        mWaveformView.setVisibility(View.GONE);
+        mSignalSpinner.setVisibility(View.VISIBLE);
         mActionButton.setText(R.string.play);
-        mActionButton.setOnClickListener((view) -> mMediaTester.playAudio(view, getSelectedOutputAudioSource(), getSelectedMode()));
+        mActionButton.setOnClickListener((view) -> mMediaTester.playAudio(view, getSelectedOutputAudioSource(), getSelectedMode(), createSelectedSignal()));
 
+        mMainSpinner.setVisibility(View.VISIBLE);
+        mModeSpinner.setVisibility(View.VISIBLE);
         mMainSpinner.setAdapter(mOutputAdapter);
     }
 
@@ -190,12 +424,158 @@ public class MainActivity extends AppCompatActivity {
         mMediaTester.switchToAudioInTestMode(mActionButton);
 
         mSpeakerphoneSwitch.setVisibility(View.VISIBLE);
+        mPcmSwitch.setVisibility(View.VISIBLE);
+        mResultText.setVisibility(View.GONE);
+        mSpectrumView.setVisibility(mPcmSwitch.isChecked() ? View.VISIBLE : View.GONE);
+        mLevelMeterView.setVisibility(mPcmSwitch.isChecked() ? View.VISIBLE : View.GONE);
+        mWaveformView.setVisibility(mPcmSwitch.isChecked() ? View.VISIBLE : View.GONE);
+        mSignalSpinner.setVisibility(View.GONE);
         mActionButton.setText(R.string.record);
-        mActionButton.setOnClickListener((view) -> mMediaTester.recordMic(mActionButton, getSelectedInputAudioSource(), getSelectedMode(), mSpeakerphoneSwitch.isChecked()));
+        mActionButton.setOnClickListener((view) -> {
+            if (mPcmSwitch.isChecked()) {
+                mMediaTester.recordPcm(mActionButton, getSelectedInputAudioSource(), getSelectedMode(), mSpeakerphoneSwitch.isChecked());
+                mWaveformView.setWaveform(mMediaTester.getWaveform(), mMediaTester.getWaveformRecording());
+            } else {
+                mMediaTester.recordMic(mActionButton, getSelectedInputAudioSource(), getSelectedMode(), mSpeakerphoneSwitch.isChecked());
+            }
+        });
 
+        mMainSpinner.setVisibility(View.VISIBLE);
+        mModeSpinner.setVisibility(View.VISIBLE);
         mMainSpinner.setAdapter(mInputAdapter);
     }
 
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private void setLatencyTestMode() {
+        mMediaTester.switchToLatencyTestMode();
+
+        mSpeakerphoneSwitch.setVisibility(View.GONE);
+        mPcmSwitch.setVisibility(View.GONE);
+        mSpectrumView.setVisibility(View.GONE);
+        mLevelMeterView.setVisibility(View.GONE);
+        mWaveformView.setVisibility(View.GONE);
+        mSignalSpinner.setVisibility(View.GONE);
+        mResultText.setVisibility(View.VISIBLE);
+        mResultText.setText("");
+        mActionButton.setText(R.string.measure);
+        mActionButton.setOnClickListener((view) -> mMediaTester.measureLatency(view, mResultText, getSelectedOutputAudioSource(), getSelectedMode()));
+
+        mMainSpinner.setVisibility(View.VISIBLE);
+        mModeSpinner.setVisibility(View.VISIBLE);
+        mMainSpinner.setAdapter(mOutputAdapter);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private void setSweepTestMode() {
+        mMediaTester.switchToSweepTestMode();
+
+        mSpeakerphoneSwitch.setVisibility(View.GONE);
+        mPcmSwitch.setVisibility(View.GONE);
+        mSpectrumView.setVisibility(View.GONE);
+        mLevelMeterView.setVisibility(View.GONE);
+        mWaveformView.setVisibility(View.GONE);
+        mSignalSpinner.setVisibility(View.GONE);
+        mMainSpinner.setVisibility(View.GONE);
+        mModeSpinner.setVisibility(View.GONE);
+        mResultText.setVisibility(View.VISIBLE);
+        mResultText.setText("");
+        mActionButton.setText(R.string.run_sweep);
+        mActionButton.setOnClickListener((view) -> mMediaTester.runSweep(view, mResultText, createSweepCells()));
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private void setSoakTestMode() {
+        mMediaTester.switchToSoakTestMode();
+
+        mSpeakerphoneSwitch.setVisibility(View.GONE);
+        mPcmSwitch.setVisibility(View.GONE);
+        mSpectrumView.setVisibility(View.GONE);
+        mLevelMeterView.setVisibility(View.GONE);
+        mWaveformView.setVisibility(View.GONE);
+        mSignalSpinner.setVisibility(View.GONE);
+        mResultText.setVisibility(View.VISIBLE);
+        mResultText.setText("");
+        mActionButton.setText(R.string.start_soak);
+        mActionButton.setOnClickListener((view) -> mMediaTester.runSoak(view, mResultText, getSelectedOutputAudioSource(), getSelectedMode()));
+
+        mMainSpinner.setVisibility(View.VISIBLE);
+        mModeSpinner.setVisibility(View.VISIBLE);
+        mMainSpinner.setAdapter(mOutputAdapter);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private void setResponseTestMode() {
+        mMediaTester.switchToResponseTestMode();
+
+        mSpeakerphoneSwitch.setVisibility(View.GONE);
+        mPcmSwitch.setVisibility(View.GONE);
+        mSpectrumView.setVisibility(View.GONE);
+        mLevelMeterView.setVisibility(View.GONE);
+        mWaveformView.setVisibility(View.GONE);
+        mSignalSpinner.setVisibility(View.GONE);
+        mResultText.setVisibility(View.VISIBLE);
+        mResultText.setText("");
+        mActionButton.setText(R.string.measure);
+        mActionButton.setOnClickListener((view) -> mMediaTester.measureResponse(view, mResultText, getSelectedOutputAudioSource(), getSelectedMode()));
+
+        mMainSpinner.setVisibility(View.VISIBLE);
+        mModeSpinner.setVisibility(View.VISIBLE);
+        mMainSpinner.setAdapter(mOutputAdapter);
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private void setEchoTestMode() {
+        mMediaTester.switchToEchoTestMode();
+
+        mPcmSwitch.setVisibility(View.GONE);
+        mSpectrumView.setVisibility(View.GONE);
+        mLevelMeterView.setVisibility(View.GONE);
+        mWaveformView.setVisibility(View.GONE);
+        mSignalSpinner.setVisibility(View.GONE);
+        mMainSpinner.setVisibility(View.GONE);
+        mResultText.setVisibility(View.VISIBLE);
+        mResultText.setText("");
+        mActionButton.setText(R.string.measure);
+        mActionButton.setOnClickListener((view) -> mMediaTester.measureEcho(view, mResultText, getSelectedMode(), mSpeakerphoneSwitch.isChecked()));
+
+        mSpeakerphoneSwitch.setVisibility(View.VISIBLE);
+        mModeSpinner.setVisibility(View.VISIBLE);
+    }
+
+    private void setRouteTestMode() {
+        mMediaTester.switchToRouteTestMode();
+
+        mSpeakerphoneSwitch.setVisibility(View.GONE);
+        mPcmSwitch.setVisibility(View.GONE);
+        mSpectrumView.setVisibility(View.GONE);
+        mLevelMeterView.setVisibility(View.GONE);
+        mWaveformView.setVisibility(View.GONE);
+        mSignalSpinner.setVisibility(View.GONE);
+        mMainSpinner.setVisibility(View.GONE);
+        mModeSpinner.setVisibility(View.GONE);
+        mResultText.setVisibility(View.VISIBLE);
+        mResultText.setText("");
+        mActionButton.setText(R.string.measure);
+        mActionButton.setOnClickListener((view) -> mMediaTester.measureRouteSwitch(view, mResultText));
+    }
+
+    private void setCodecTestMode() {
+        mMediaTester.switchToCodecTestMode();
+
+        mSpeakerphoneSwitch.setVisibility(View.GONE);
+        mPcmSwitch.setVisibility(View.GONE);
+        mSpectrumView.setVisibility(View.GONE);
+        mLevelMeterView.setVisibility(View.GONE);
+        mWaveformView.setVisibility(View.GONE);
+        mSignalSpinner.setVisibility(View.GONE);
+        mMainSpinner.setVisibility(View.GONE);
+        mModeSpinner.setVisibility(View.GONE);
+        mResultText.setVisibility(View.VISIBLE);
+        mResultText.setText("");
+        mActionButton.setText(R.string.measure);
+        mActionButton.setOnClickListener((view) -> mMediaTester.measureCodec(view, mResultText));
+    }
+
     private void initializeMediaTester() {
         mMediaTester = new MediaTester(this);
     }
@@ -217,13 +597,36 @@ public class MainActivity extends AppCompatActivity {
         modeAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
 
         mModeSpinner.setAdapter(modeAdapter);
+
+        mSignalSpinner = findViewById(R.id.signalSpinner);
+        ArrayAdapter<CharSequence> signalAdapter = ArrayAdapter.createFromResource(this,
+                R.array.signals_array, android.R.layout.simple_spinner_item);
+        signalAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+
+        mSignalSpinner.setAdapter(signalAdapter);
     }
 
     private void initializeSwitch() {
         mSpeakerphoneSwitch = findViewById(R.id.speakerphoneSwitch);
+        mPcmSwitch = findViewById(R.id.pcmSwitch);
+        mPcmSwitch.setOnCheckedChangeListener((view, checked) -> {
+            mSpectrumView.setVisibility(checked ? View.VISIBLE : View.GONE);
+            mLevelMeterView.setVisibility(checked ? View.VISIBLE : View.GONE);
+            mWaveformView.setVisibility(checked ? View.VISIBLE : View.GONE);
+        });
     }
 
     private void initializeActionButton() {
         mActionButton = findViewById(R.id.actionButton);
+        mResultText = findViewById(R.id.resultText);
+        mTelemetryText = findViewById(R.id.telemetryText);
+
+        mSpectrumView = findViewById(R.id.spectrumView);
+        mSpectrumView.setSpectrumAnalyzer(mMediaTester.getSpectrumAnalyzer());
+
+        mLevelMeterView = findViewById(R.id.levelMeterView);
+        mLevelMeterView.setLoudnessMeter(mMediaTester.getLoudnessMeter());
+
+        mWaveformView = findViewById(R.id.waveformView);
     }
 }
\ No newline at end of file
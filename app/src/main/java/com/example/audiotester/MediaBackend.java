@@ -0,0 +1,53 @@
+package com.example.audiotester;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Platform media operations driven by {@link MediaEngine}.
+ *
+ * Every method is called on the engine's audio executor thread. Callbacks may arrive on any
+ * thread; the engine hands them back to its executor.
+ */
+public interface MediaBackend {
+
+    interface Callback {
+        void onPrepared();
+
+        void onCompletion();
+
+        void onError(int what, int extra);
+    }
+
+    void setCallback(Callback callback);
+
+    /**
+     * Creates what the first playback needs ahead of time; optional for the backend.
+     */
+    void warmUp();
+
+    /**
+     * @param uri a file path or a content/resource URI
+     */
+    void setPlaybackSource(String uri) throws IOException;
+
+    void prepareAsync();
+
+    void startPlayback();
+
+    void stopPlayback();
+
+    /**
+     * Configures, prepares and starts a recording into outputFile.
+     */
+    void startRecording(int audioSource, File outputFile) throws IOException;
+
+    void stopRecording();
+
+    /**
+     * Returns both player and recorder to their idle state.
+     */
+    void reset();
+
+    void release();
+}
@@ -0,0 +1,232 @@
+package com.example.audiotester;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs player and recorder commands on a single audio thread.
+ *
+ * Callers only enqueue commands, so prepare, stop and release never block the UI thread.
+ * Commands and backend callbacks are serialized on the audio executor and move an explicit
+ * state machine; state changes and errors are delivered on the callback executor.
+ */
+public class MediaEngine {
+
+    private static final String TAG = "MediaEngine";
+
+    public enum State {
+        IDLE,
+        PREPARING,
+        PLAYING,
+        RECORDING,
+        RELEASING,
+        RELEASED
+    }
+
+    public interface Listener {
+        void onStateChanged(State state);
+
+        void onError(Exception e);
+    }
+
+    private final MediaBackend mBackend;
+    private final ExecutorService mAudioExecutor;
+    private final Executor mCallbackExecutor;
+
+    // written on the audio thread only
+    private volatile State mState = State.IDLE;
+    private volatile Listener mListener;
+
+    public MediaEngine(MediaBackend backend, ExecutorService audioExecutor, Executor callbackExecutor) {
+        mBackend = backend;
+        mAudioExecutor = audioExecutor;
+        mCallbackExecutor = callbackExecutor;
+
+        mBackend.setCallback(new MediaBackend.Callback() {
+            @Override
+            public void onPrepared() {
+                submit(MediaEngine.this::handlePrepared);
+            }
+
+            @Override
+            public void onCompletion() {
+                submit(MediaEngine.this::handleCompletion);
+            }
+
+            @Override
+            public void onError(int what, int extra) {
+                submit(() -> handleError(what, extra));
+            }
+        });
+    }
+
+    public static ExecutorService newAudioExecutor() {
+        return Executors.newSingleThreadExecutor((runnable) -> new Thread(runnable, TAG));
+    }
+
+    /**
+     * Last state reached on the audio thread; commands still queued are not reflected yet.
+     */
+    public State getState() {
+        return mState;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Lets the backend create its player on the audio thread before the first command.
+     */
+    public void warmUp() {
+        submit(() -> {
+            if (mState != State.IDLE) return;
+
+            try {
+                mBackend.warmUp();
+            } catch (RuntimeException e) {
+                notifyError(e);
+            }
+        });
+    }
+
+    /**
+     * Prepares uri asynchronously and starts playing it once prepared. Ignored unless idle.
+     */
+    public void play(String uri) {
+        submit(() -> {
+            if (mState != State.IDLE) return;
+
+            try {
+                mBackend.setPlaybackSource(uri);
+                mBackend.prepareAsync();
+                setState(State.PREPARING);
+            } catch (IOException | RuntimeException e) {
+                mBackend.reset();
+                notifyError(e);
+            }
+        });
+    }
+
+    /**
+     * Starts recording into outputFile. Ignored unless idle.
+     */
+    public void record(int audioSource, File outputFile) {
+        submit(() -> {
+            if (mState != State.IDLE) return;
+
+            try {
+                mBackend.startRecording(audioSource, outputFile);
+                setState(State.RECORDING);
+            } catch (IOException | RuntimeException e) {
+                mBackend.reset();
+                notifyError(e);
+            }
+        });
+    }
+
+    /**
+     * Cancels a pending prepare, or stops playback or recording, and returns to idle.
+     */
+    public void stop() {
+        submit(this::handleStop);
+    }
+
+    /**
+     * Stops whatever is running and releases the backend. The engine is unusable afterwards.
+     */
+    public void release() {
+        submit(() -> {
+            handleStop();
+            if (mState == State.RELEASED) return;
+
+            setState(State.RELEASING);
+            try {
+                mBackend.release();
+            } catch (RuntimeException e) {
+                notifyError(e);
+            }
+            setState(State.RELEASED);
+        });
+        mAudioExecutor.shutdown();
+    }
+
+    private void handleStop() {
+        try {
+            switch (mState) {
+                case PLAYING:
+                    mBackend.stopPlayback();
+                    break;
+                case RECORDING:
+                    // throws when nothing was recorded yet
+                    mBackend.stopRecording();
+                    break;
+                case PREPARING:
+                    break;
+                default:
+                    return;
+            }
+        } catch (RuntimeException e) {
+            notifyError(e);
+        }
+
+        mBackend.reset();
+        setState(State.IDLE);
+    }
+
+    private void handlePrepared() {
+        if (mState != State.PREPARING) return;
+
+        try {
+            mBackend.startPlayback();
+            setState(State.PLAYING);
+        } catch (RuntimeException e) {
+            mBackend.reset();
+            setState(State.IDLE);
+            notifyError(e);
+        }
+    }
+
+    private void handleCompletion() {
+        if (mState != State.PLAYING) return;
+
+        mBackend.reset();
+        setState(State.IDLE);
+    }
+
+    private void handleError(int what, int extra) {
+        if (mState != State.PREPARING && mState != State.PLAYING && mState != State.RECORDING) return;
+
+        mBackend.reset();
+        setState(State.IDLE);
+        notifyError(new IOException("Media error " + what + ", extra " + extra));
+    }
+
+    private void submit(Runnable command) {
+        try {
+            mAudioExecutor.execute(command);
+        } catch (RejectedExecutionException e) {
+            // released, drop the command
+        }
+    }
+
+    private void setState(State state) {
+        mState = state;
+
+        Listener listener = mListener;
+        if (listener != null) {
+            mCallbackExecutor.execute(() -> listener.onStateChanged(state));
+        }
+    }
+
+    private void notifyError(Exception e) {
+        Listener listener = mListener;
+        if (listener != null) {
+            mCallbackExecutor.execute(() -> listener.onError(e));
+        }
+    }
+}
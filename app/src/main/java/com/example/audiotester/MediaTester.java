@@ -1,39 +1,159 @@
 package com.example.audiotester;
 
-import android.media.MediaPlayer;
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.media.AudioAttributes;
+import android.media.AudioManager;
 import android.media.MediaRecorder;
-import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.TextView;
 
 import androidx.annotation.RequiresApi;
 import androidx.appcompat.app.AppCompatActivity;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class MediaTester {
 
     public static final int TEST_OUT = 1;
     public static final int TEST_IN = 2;
+    public static final int TEST_LATENCY = 3;
+    public static final int TEST_SWEEP = 4;
+    public static final int TEST_SOAK = 5;
+    public static final int TEST_RESPONSE = 6;
+    public static final int TEST_ECHO = 7;
+    public static final int TEST_ROUTE = 8;
+    public static final int TEST_CODEC = 9;
 
-    private final MediaPlayer mMediaPlayer;
-    private final MediaRecorder mMediaRecorder;
+    public static final long ROUTE_SWITCH_DURATION_MS = 60_000;
+
+    private static final int INTERRUPTION_CAPACITY = 100;
+
+    private static final LatencyHistogram CREATE = Telemetry.getInstance().histogram("startup.media_tester");
+    private static final LatencyHistogram WARM_UP = Telemetry.getInstance().histogram("startup.warm_up");
+    private static final LatencyHistogram STOP_TESTS = Telemetry.getInstance().histogram("media_tester.stop_background_tests");
+    private static final LatencyHistogram CLOSE_CAPTURE = Telemetry.getInstance().histogram("media_tester.close_capture");
+    private static final LatencyHistogram STORE_APPEND = Telemetry.getInstance().histogram("result_store.append");
+    private static final LatencyHistogram STORE_EXPORT = Telemetry.getInstance().histogram("result_store.export");
+
+    private final MediaEngine mMediaEngine;
+    private final PcmCapture mPcmCapture;
+    private final SignalPlayer mSignalPlayer;
+    private final LatencyTester mLatencyTester;
+    private final SweepTester mSweepTester;
+    private final SoakTester mSoakTester;
+    private final ResponseTester mResponseTester;
+    private final EchoTester mEchoTester;
+    private final RouteSwitchTester mRouteSwitchTester;
+    private final CodecTester mCodecTester;
+    private final SpectrumAnalyzer mSpectrumAnalyzer;
+    private final LoudnessMeter mLoudnessMeter;
+    private final AnalysisThread mAnalysisThread;
     private final AudioHelper mAudioHelper;
-    private final AppCompatActivity mActivityContext;
+    private final Context mContext;
+    private final Executor mMainExecutor;
+    // file writes started from the UI thread; its thread exits when idle
+    private final ThreadPoolExecutor mStorageExecutor;
+
+    // opened on the warm-up thread, so the constructor never touches the disk
+    private final Future<ResultStore> mResultStore;
+    private final InterruptionTimeline mInterruptions = new InterruptionTimeline(INTERRUPTION_CAPACITY);
+    private volatile long mRunStartMs;
+    private volatile boolean mReleased = false;
+
+    private WavWriter mWavWriter;
+    private AsyncPcmSink mCaptureSink;
+    private File mMicRecording;
+    // kept after the capture stops, so the waveform stays on screen during playback
+    private volatile WaveformPyramid mWaveform;
+    private volatile File mWaveformRecording;
+
+    private final String mMusicClipUri;
 
     private int mTestMode = TEST_OUT;
-    private boolean mRecording = false;
 
     public MediaTester(AppCompatActivity context) {
-        mActivityContext = context;
+        this(context, new AudioHelper(context));
+    }
+
+    /**
+     * Tester without an activity, for {@link HeadlessTestService}; UI callbacks run on the main
+     * looper.
+     */
+    public MediaTester(Context context, AudioHelper audioHelper) {
+        Trace.beginSection("MediaTester.<init>");
+        long start = System.nanoTime();
 
-        mAudioHelper = new AudioHelper(context);
-        mMediaPlayer = new MediaPlayer();
-        mMediaRecorder = new MediaRecorder();
+        mContext = context;
+        mMainExecutor = new Handler(Looper.getMainLooper())::post;
 
+        mAudioHelper = audioHelper;
+        mAudioHelper.getRouteCache().addListener((added, removed) ->
+                Log.d("AudioTester", "Audio routes changed, added " + added + ", removed " + removed));
+        mMediaEngine = new MediaEngine(new AndroidMediaBackend(context),
+                MediaEngine.newAudioExecutor(), mMainExecutor);
+        mMusicClipUri = "android.resource://com.example.audiotester/" + R.raw.rickroll;
+        mPcmCapture = new PcmCapture();
+        mSignalPlayer = new SignalPlayer();
+        mLatencyTester = new LatencyTester();
+        mSweepTester = new SweepTester(mAudioHelper, context.getFilesDir());
+        mSoakTester = new SoakTester(mAudioHelper, context.getFilesDir());
+        mResponseTester = new ResponseTester(mAudioHelper, context.getFilesDir());
+        mEchoTester = new EchoTester(mAudioHelper, context.getFilesDir());
+        mRouteSwitchTester = new RouteSwitchTester(mAudioHelper, context.getFilesDir());
+        mCodecTester = new CodecTester(context.getFilesDir(), context.getCacheDir());
+
+        File resultDirectory = new File(context.getFilesDir(), "results");
+        ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor((runnable) -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "MediaTesterWarmUp"));
+        mResultStore = warmUpExecutor.submit(() -> openResultStore(resultDirectory));
+        warmUpExecutor.execute(this::warmUp);
+        warmUpExecutor.shutdown();
+
+        mStorageExecutor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                (runnable) -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "MediaTesterStorage"));
+        mStorageExecutor.allowCoreThreadTimeOut(true);
+
+        mSpectrumAnalyzer = new SpectrumAnalyzer(mPcmCapture.getSampleRate(), 4096);
+        mAnalysisThread = new AnalysisThread(mPcmCapture.getRingBuffer(), 256);
+        mAnalysisThread.addProcessor(mSpectrumAnalyzer);
+        mLoudnessMeter = new LoudnessMeter(mPcmCapture.getSampleRate());
+        mAnalysisThread.addProcessor(mLoudnessMeter);
+
+        CREATE.recordSince(start);
+        Trace.endSection();
         Log.d("AudioTester", "MediaTester has been initialized");
     }
 
@@ -42,119 +162,893 @@ public class MediaTester {
         return mTestMode;
     }
 
-    public void playAudio(View view, int selectedOutputSource, int selectedMode) {
-        if (mMediaPlayer == null) return;
-
-        if (mMediaPlayer.isPlaying()) {
-            mMediaPlayer.stop();
+    /**
+     * Toggles playback of the generated signal, or of the bundled music clip when signal is null.
+     */
+    public void playAudio(View view, int selectedOutputSource, int selectedMode, SignalGenerator signal) {
+        if (mSignalPlayer.isPlaying() || mSignalPlayer.hasFailed()) {
+            mSignalPlayer.stop();
             ((Button) view).setText(R.string.play);
 
+            Log.d("AudioTester", "Stopped playing signal");
+            return;
+        }
+
+        if (mMediaEngine.getState() != MediaEngine.State.IDLE) {
+            mMediaEngine.stop();
+
             Log.d("AudioTester", "Stopped playing audio");
             return;
         }
 
         mAudioHelper.setDestination(selectedOutputSource, selectedMode);
-        try {
-            mMediaPlayer.prepare();
-            mMediaPlayer.start();
 
-            Log.d("AudioTester", "Started playing audio on "+ (selectedOutputSource == AudioHelper.TYPE_RECEIVER ? "handset" : "speaker"));
-        } catch (IOException | RuntimeException e) {
-            e.printStackTrace();
+        if (signal != null) {
+            try {
+                mSignalPlayer.start(signal, AudioHelper.usageForMode(selectedMode));
+                ((Button) view).setText(R.string.stop);
+
+                Log.d("AudioTester", "Started playing " + signal.getType() + " on " + (selectedOutputSource == AudioHelper.TYPE_RECEIVER ? "handset" : "speaker"));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            return;
         }
+
+        mMediaEngine.play(mMusicClipUri);
+        Log.d("AudioTester", "Started playing audio on "+ (selectedOutputSource == AudioHelper.TYPE_RECEIVER ? "handset" : "speaker"));
     }
 
     @RequiresApi(api = Build.VERSION_CODES.Q)
     public void recordMic(View view, int selectedInputSource, int selectedMode, boolean speakerphone) {
-        if (mMediaRecorder == null) return;
+        switch (mMediaEngine.getState()) {
+            case PREPARING:
+            case PLAYING:
+                mMediaEngine.stop();
+                Log.d("AudioTester", "Stopped playing mic record");
+                return;
+            case RECORDING:
+                mMediaEngine.stop();
+                mMediaEngine.play(mMicRecording.getAbsolutePath());
+                Log.d("AudioTester", "Stopped recording mic, playing it back");
+                return;
+            default:
+                break;
+        }
+
+        mAudioHelper.setDestination(selectedMode, speakerphone);
+        mMicRecording = RecordingFiles.newFile(mContext.getFilesDir(), "mic", "mp4");
+        mMediaEngine.record(selectedInputSource, mMicRecording);
+        Log.d("AudioTester", "Started mic recording on input source " + selectedInputSource);
+    }
+
+    /**
+     * Lossless counterpart of {@link #recordMic}: captures PCM into a new WAV file under
+     * getFilesDir() and plays it back once stopped. The file is written on its own thread;
+     * writer metrics are saved next to it as *_writer.csv. The same thread builds the waveform
+     * pyramid, which is saved next to it as *_waveform.bin. Stopping drains the writer on the
+     * storage executor, so a stalled disk never blocks the UI thread; the button stays
+     * disabled until playback starts.
+     */
+    public void recordPcm(View view, int selectedInputSource, int selectedMode, boolean speakerphone) {
+        if (mMediaEngine.getState() != MediaEngine.State.IDLE) {
+            mMediaEngine.stop();
+
+            Log.d("AudioTester", "Stopped playing PCM record");
+            return;
+        }
+
+        // an open writer means a capture that is running or whose reads failed
+        if (mPcmCapture.isRunning() || mWavWriter != null) {
+            mPcmCapture.stop();
+            mAnalysisThread.stop();
+
+            view.setEnabled(false);
+            closeWavWriter((file) -> {
+                view.setEnabled(true);
+                if (file == null) {
+                    ((Button) view).setText(R.string.record);
+                    return;
+                }
+
+                mMediaEngine.play(file.getAbsolutePath());
+                Log.d("AudioTester", "Started playing PCM record " + file.getName());
+            });
+            return;
+        }
+
+        mAudioHelper.setDestination(selectedMode, speakerphone);
+        try {
+            WavWriter wavWriter = new WavWriter(RecordingFiles.newFile(mContext.getFilesDir(), "capture", "wav"),
+                    mPcmCapture.getSampleRate(), 1, 16);
+            WaveformPyramid waveform = new WaveformPyramid(mPcmCapture.getSampleRate());
+            mWavWriter = wavWriter;
+            mWaveform = waveform;
+            mWaveformRecording = wavWriter.getFile();
+            // fed after the writer, so the waveform never runs ahead of the file
+            mCaptureSink = new AsyncPcmSink((samples, offset, length) -> {
+                wavWriter.write(samples, offset, length);
+                waveform.write(samples, offset, length);
+            });
+            mPcmCapture.setSink(mCaptureSink);
+
+            mSpectrumAnalyzer.reset();
+            mLoudnessMeter.reset();
+            mPcmCapture.start(selectedInputSource);
+            mAnalysisThread.start();
+
+            ((Button) view).setText(R.string.stop);
+            Log.d("AudioTester", "Recording PCM to " + mWavWriter.getFile().getName());
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            closeWavWriter(null);
+
+            Log.e("AudioTester", "PCM capture could not be started");
+        }
+    }
 
-        if (mMediaPlayer.isPlaying()) {
-            mMediaPlayer.stop();
-            mMediaPlayer.reset();
+    /**
+     * Detaches the capture writer and closes it on the storage executor. done, if any, gets the
+     * saved file, or null if it could not be saved, on the main thread.
+     */
+    private void closeWavWriter(Consumer<File> done) {
+        WavWriter wavWriter = mWavWriter;
+        AsyncPcmSink sink = mCaptureSink;
+        WaveformPyramid waveform = mWaveform;
+        long overrunFrames = mPcmCapture.getOverrunFrames();
+        mPcmCapture.setSink(null);
+        mWavWriter = null;
+        mCaptureSink = null;
 
-            ((Button) view).setText(R.string.record);
-            Log.d("AudioTester", "Stopped playing mic record");
+        if (wavWriter == null) {
+            if (done != null) done.accept(null);
             return;
         }
 
-        if (mRecording) {
-            mMediaRecorder.stop();
-            Log.d("AudioTester", "Stopped recording mic");
+        mStorageExecutor.execute(() -> {
+            File file = closeWavWriter(wavWriter, sink, waveform, overrunFrames);
+            if (done != null) mMainExecutor.execute(() -> done.accept(file));
+        });
+    }
 
+    private File closeWavWriter(WavWriter wavWriter, AsyncPcmSink sink, WaveformPyramid waveform, long overrunFrames) {
+        long start = System.nanoTime();
+        File file = wavWriter.getFile();
+        try {
             try {
-                mMediaPlayer.setDataSource(mActivityContext.getFilesDir() + "/mic_record.mp4");
-                mMediaPlayer.prepare();
-                mMediaPlayer.start();
-
-                mRecording = false;
-                ((Button) view).setText(R.string.playing);
-                Log.d("AudioTester", "Started playing mic record");
-            } catch (IOException | RuntimeException e) {
-                e.printStackTrace();
-                mMediaPlayer.reset();
+                if (sink != null) {
+                    // drains the queue and rethrows a failed write; the writer is closed below
+                    sink.close();
+                    writeCaptureMetrics(file, sink, overrunFrames);
+                }
+            } finally {
+                // the sink's target is not the writer, so it is closed here even after a
+                // failed write, and the pyramid is finished so the view stops waiting for it
+                try {
+                    wavWriter.close();
+                } finally {
+                    if (waveform != null) waveform.finish();
+                }
+            }
+            writeWaveform(file, waveform);
+            Log.d("AudioTester", "Saved " + wavWriter.getFrameCount() + " frames to " + file.getName());
+        } catch (IOException e) {
+            e.printStackTrace();
+            file = null;
+        }
+
+        CLOSE_CAPTURE.recordSince(start);
+        return file;
+    }
+
+    private void writeWaveform(File recording, WaveformPyramid waveform) {
+        if (waveform == null) return;
+
+        File file = new File(recording.getParentFile(), recording.getName().replace(".wav", "_waveform.bin"));
+        try {
+            waveform.write(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeCaptureMetrics(File recording, AsyncPcmSink sink, long overrunFrames) {
+        Map<String, Double> metrics = sink.toMetrics();
+        metrics.put("capture_overrun_frames", (double) overrunFrames);
 
-                Log.e("AudioTester", "MediaPlayer has been reset due to an exception");
+        File file = new File(recording.getParentFile(), recording.getName().replace(".wav", "_writer.csv"));
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("metric,value\n");
+            for (Map.Entry<String, Double> metric : metrics.entrySet()) {
+                writer.write(metric.getKey() + "," + metric.getValue() + "\n");
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        if (sink.getDroppedFrames() > 0) {
+            Log.w("AudioTester", "Storage could not keep up, dropped " + sink.getDroppedFrames() + " frames in "
+                    + sink.getBackpressureEvents() + " writes");
+        }
+        Log.d("AudioTester", "Capture writer: " + metrics);
+    }
+
+    public void measureLatency(View view, TextView resultView, int selectedOutputSource, int selectedMode) {
+        if (mLatencyTester.isRunning()) {
+            mLatencyTester.cancel();
+            endRun();
 
+            ((Button) view).setText(R.string.measure);
+            Log.d("AudioTester", "Cancelled latency measurement");
             return;
         }
 
-        mAudioHelper.setDestination(selectedMode, speakerphone);
-        mMediaRecorder.setAudioSource(selectedInputSource);
-        mMediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
-        mMediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
-        mMediaRecorder.setOutputFile(new File(mActivityContext.getFilesDir(), "mic_record.mp4"));
-        Log.d("AudioTester", "MediaRecorder has been set up on input source " + selectedInputSource);
+        mAudioHelper.setDestination(selectedOutputSource, selectedMode);
+        beginRun(selectedMode);
+        mLatencyTester.start(selectedMode, LatencyTester.DEFAULT_ITERATIONS, (stats) -> {
+            endRun();
+            if (stats.count > 0) {
+                recordResult("latency", AudioHelper.outputName(selectedOutputSource), AudioHelper.modeName(selectedMode),
+                        "mic", stats.toMetrics());
+            }
+
+            mMainExecutor.execute(() -> {
+                ((Button) view).setText(R.string.measure);
+                resultView.setText(stats.count > 0 ? stats.toString() : mContext.getString(R.string.no_result));
+            });
+        });
+
+        ((Button) view).setText(R.string.stop);
+        resultView.setText(R.string.measuring);
+        Log.d("AudioTester", "Started latency measurement on "+ (selectedOutputSource == AudioHelper.TYPE_RECEIVER ? "handset" : "speaker"));
+    }
+
+    public void runSweep(View view, TextView resultView, List<SweepCell> cells) {
+        if (mSweepTester.isRunning()) {
+            mSweepTester.cancel();
+            endRun();
+
+            ((Button) view).setText(R.string.run_sweep);
+            Log.d("AudioTester", "Cancelled sweep");
+            return;
+        }
+
+        // the cells switch modes themselves, focus is held for plain capture
+        beginRun(AudioManager.MODE_NORMAL);
+        mSweepTester.start(cells,
+                (cell, index) -> {
+                    if (cell.getStats() != null) {
+                        Map<String, Double> metrics = cell.getStats().toMetrics();
+                        metrics.put("capture_rate", (double) cell.getCaptureRate());
+                        recordResult("input_level", cell.speakerphone ? "speaker" : "handset", cell.modeName,
+                                cell.sourceName, metrics);
+                    }
+
+                    mMainExecutor.execute(() -> resultView.setText(
+                            mContext.getString(R.string.sweep_progress, index + 1, cells.size(), cell.toString())));
+                },
+                (file) -> {
+                    endRun();
+
+                    mMainExecutor.execute(() -> {
+                        ((Button) view).setText(R.string.run_sweep);
+                        resultView.setText(file != null ? file.getAbsolutePath() : mContext.getString(R.string.no_result));
+                    });
+                });
+
+        ((Button) view).setText(R.string.stop);
+        resultView.setText(R.string.measuring);
+        Log.d("AudioTester", "Started sweep over " + cells.size() + " cells");
+    }
+
+    public void runSoak(View view, TextView resultView, int selectedOutputSource, int selectedMode) {
+        if (mSoakTester.isRunning()) {
+            File file = mSoakTester.stop();
+            endRun();
+            // the store may be compacting, so the append waits off the UI thread
+            Map<String, Double> metrics = withInterruptions(mSoakTester.getLastMetrics());
+            mStorageExecutor.execute(() -> storeResult("soak", AudioHelper.outputName(selectedOutputSource),
+                    AudioHelper.modeName(selectedMode), "mic", metrics));
+
+            ((Button) view).setText(R.string.start_soak);
+            if (file != null) {
+                resultView.append("\n" + file.getAbsolutePath());
+            }
+            Log.d("AudioTester", "Stopped soak test");
+            return;
+        }
 
         try {
-            mMediaRecorder.prepare();
-            mMediaRecorder.start();
+            mSoakTester.start(selectedOutputSource, selectedMode,
+                    (summary) -> mMainExecutor.execute(() -> resultView.setText(summary)));
+            beginRun(selectedMode, new AudioHelper.InterruptionListener() {
+                @Override
+                public void onInterrupted(InterruptionTimeline.Type type) {
+                    mSoakTester.onInterrupted(type);
+                }
 
-            mRecording = true;
-            ((Button) view).setText(R.string.stop);
-            Log.d("AudioTester", "Started mic recording");
-        } catch (IOException | RuntimeException e) {
+                @Override
+                public void onFocusReturned() {
+                    mSoakTester.onFocusReturned();
+                }
+            });
+        } catch (RuntimeException e) {
             e.printStackTrace();
-            mMediaRecorder.reset();
+            resultView.setText(R.string.no_result);
+
+            Log.e("AudioTester", "Soak test could not be started");
+            return;
+        }
+
+        ((Button) view).setText(R.string.stop);
+        resultView.setText(R.string.measuring);
+    }
+
+    public void measureResponse(View view, TextView resultView, int selectedOutputSource, int selectedMode) {
+        if (mResponseTester.isRunning()) {
+            mResponseTester.cancel();
+            endRun();
+
+            ((Button) view).setText(R.string.measure);
+            Log.d("AudioTester", "Cancelled response measurement");
+            return;
+        }
+
+        beginRun(selectedMode);
+        mResponseTester.start(selectedOutputSource, selectedMode, (summary) -> {
+            endRun();
+            recordResult("response", AudioHelper.outputName(selectedOutputSource), AudioHelper.modeName(selectedMode),
+                    "mic", mResponseTester.getLastMetrics());
+
+            mMainExecutor.execute(() -> {
+                ((Button) view).setText(R.string.measure);
+                resultView.setText(summary != null ? summary : mContext.getString(R.string.no_result));
+            });
+        });
+
+        ((Button) view).setText(R.string.stop);
+        resultView.setText(R.string.measuring);
+        Log.d("AudioTester", "Started response measurement on " + (selectedOutputSource == AudioHelper.TYPE_RECEIVER ? "handset" : "speaker"));
+    }
+
+    public void measureEcho(View view, TextView resultView, int selectedMode, boolean speakerphone) {
+        if (mEchoTester.isRunning()) {
+            mEchoTester.cancel();
+            endRun();
+
+            ((Button) view).setText(R.string.measure);
+            Log.d("AudioTester", "Cancelled echo measurement");
+            return;
+        }
+
+        beginRun(selectedMode);
+        mEchoTester.start(selectedMode, speakerphone, (summary) -> {
+            endRun();
+            recordResult("echo", speakerphone ? "speaker" : "handset", AudioHelper.modeName(selectedMode),
+                    "", mEchoTester.getLastMetrics());
+
+            mMainExecutor.execute(() -> {
+                ((Button) view).setText(R.string.measure);
+                resultView.setText(summary != null ? summary : mContext.getString(R.string.no_result));
+            });
+        });
 
-            Log.e("AudioTester", "MediaRecorder has been reset due to an exception");
+        ((Button) view).setText(R.string.stop);
+        resultView.setText(R.string.measuring);
+        Log.d("AudioTester", "Started echo measurement, speakerphone = " + speakerphone);
+    }
+
+    /**
+     * Toggles the route-switch stress test, which goes through every mode and output itself.
+     */
+    public void measureRouteSwitch(View view, TextView resultView) {
+        if (mRouteSwitchTester.isRunning()) {
+            mRouteSwitchTester.cancel();
+            endRun();
+
+            ((Button) view).setText(R.string.measure);
+            Log.d("AudioTester", "Cancelled route switch test");
+            return;
         }
 
+        beginRun(AudioManager.MODE_IN_COMMUNICATION);
+        mRouteSwitchTester.start(ROUTE_SWITCH_DURATION_MS, (summary) -> {
+            endRun();
+            recordResult("route_switch", "", "", "mic", mRouteSwitchTester.getLastMetrics());
+
+            mMainExecutor.execute(() -> {
+                ((Button) view).setText(R.string.measure);
+                resultView.setText(summary != null ? summary : mContext.getString(R.string.no_result));
+            });
+        });
+
+        ((Button) view).setText(R.string.stop);
+        resultView.setText(R.string.measuring);
+        Log.d("AudioTester", "Started route switch test");
+    }
+
+    /**
+     * Toggles the codec round trip, which runs offline and needs no route or mode.
+     */
+    public void measureCodec(View view, TextView resultView) {
+        if (mCodecTester.isRunning()) {
+            mCodecTester.cancel();
+
+            ((Button) view).setText(R.string.measure);
+            Log.d("AudioTester", "Cancelled codec test");
+            return;
+        }
+
+        mInterruptions.clear();
+        mCodecTester.start((summary) -> {
+            recordResult("codec", "", "", "", mCodecTester.getLastMetrics());
+
+            mMainExecutor.execute(() -> {
+                ((Button) view).setText(R.string.measure);
+                resultView.setText(summary != null ? summary : mContext.getString(R.string.no_result));
+            });
+        });
+
+        ((Button) view).setText(R.string.stop);
+        resultView.setText(R.string.measuring);
+        Log.d("AudioTester", "Started codec test");
+    }
+
+    /**
+     * The result store, waiting for it to open if needed, or null if it could not be opened.
+     */
+    public ResultStore getResultStore() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return mResultStore.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    return null;
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes every stored result as CSV and JSON under getFilesDir() and returns the files, or
+     * null if there is no store or the export failed.
+     */
+    public File[] exportResults() {
+        ResultStore store = getResultStore();
+        if (store == null) return null;
+
+        File csvFile = RecordingFiles.newFile(mContext.getFilesDir(), "results", "csv");
+        File jsonFile = RecordingFiles.newFile(mContext.getFilesDir(), "results", "json");
+        long start = System.nanoTime();
+        try (Writer csv = new FileWriter(csvFile); Writer json = new FileWriter(jsonFile)) {
+            store.exportCsv(csv);
+            store.exportJson(json);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        STORE_EXPORT.recordSince(start);
+
+        Log.d("AudioTester", "Exported " + store.size() + " results");
+        return new File[]{csvFile, jsonFile};
+    }
+
+    /**
+     * Runs one headless test to completion on the calling thread, which must not be the main
+     * thread. The result is stored like a result from the UI and its metrics are returned as
+     * stored, with the interruption metrics, or null if the test gave no result. Interrupting
+     * the thread cancels the test.
+     */
+    public Map<String, Double> runSpec(TestSpec spec) throws InterruptedException {
+        int output = AudioHelper.outputForName(spec.route);
+        int mode = AudioHelper.modeForName(spec.mode);
+        int source = AudioHelper.sourceForName(spec.source);
+        String route = AudioHelper.outputName(output);
+        String modeName = AudioHelper.modeName(mode);
+
+        if (spec.test.equals("soak")) {
+            return runSoakSpec(spec, route, output, mode);
+        }
+
+        String test = spec.test;
+        Map<String, Double> metrics;
+        beginRun(mode);
+        try {
+            switch (spec.test) {
+                case "play":
+                    metrics = runPlaySpec(spec, output, mode);
+                    break;
+                case "latency":
+                    mAudioHelper.setDestination(output, mode);
+                    LatencyStats stats = await((done) -> mLatencyTester.start(mode, LatencyTester.DEFAULT_ITERATIONS, done::accept),
+                            mLatencyTester::cancel);
+                    metrics = stats.count > 0 ? stats.toMetrics() : null;
+                    break;
+                case "level":
+                    test = "input_level";
+                    SweepCell cell = new SweepCell(source, spec.source, mode, modeName, output == AudioHelper.TYPE_SPEAKER);
+                    await((done) -> mSweepTester.start(Collections.singletonList(cell), (c, index) -> { }, done::accept),
+                            mSweepTester::cancel);
+                    metrics = cell.getStats() != null ? cell.getStats().toMetrics() : null;
+                    if (metrics != null) metrics.put("capture_rate", (double) cell.getCaptureRate());
+                    break;
+                case "response":
+                    await((done) -> mResponseTester.start(output, mode, done::accept), mResponseTester::cancel);
+                    metrics = mResponseTester.getLastMetrics();
+                    break;
+                case "echo":
+                    await((done) -> mEchoTester.start(mode, output == AudioHelper.TYPE_SPEAKER, done::accept),
+                            mEchoTester::cancel);
+                    metrics = mEchoTester.getLastMetrics();
+                    break;
+                case "route_switch":
+                    // switches between every mode and output, so route and mode are not part of the key
+                    route = "";
+                    modeName = "";
+                    await((done) -> mRouteSwitchTester.start((long) (spec.durationSeconds * 1000), done::accept),
+                            mRouteSwitchTester::cancel);
+                    metrics = mRouteSwitchTester.getLastMetrics();
+                    break;
+                case "codec":
+                    route = "";
+                    modeName = "";
+                    await((done) -> mCodecTester.start(done::accept), mCodecTester::cancel);
+                    metrics = mCodecTester.getLastMetrics();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown test " + spec.test);
+            }
+        } finally {
+            endRun();
+        }
+
+        return recordResult(test, route, modeName, spec.source, metrics);
+    }
+
+    private Map<String, Double> runPlaySpec(TestSpec spec, int output, int mode) throws InterruptedException {
+        mAudioHelper.setDestination(output, mode);
+        mSignalPlayer.start(spec.createSignal(mSignalPlayer.getSampleRate()), AudioHelper.usageForMode(mode));
+        try {
+            Thread.sleep((long) (spec.durationSeconds * 1000));
+
+            Map<String, Double> metrics = new LinkedHashMap<>();
+            metrics.put("start_latency_ms", mSignalPlayer.getStartLatencyNanos() / 1e6);
+            metrics.put("underruns", (double) mSignalPlayer.getUnderrunCount());
+            metrics.put("written_frames", (double) mSignalPlayer.getWrittenFrames());
+            return metrics;
+        } finally {
+            mSignalPlayer.stop();
+        }
+    }
+
+    private Map<String, Double> runSoakSpec(TestSpec spec, String route, int output, int mode) throws InterruptedException {
+        mSoakTester.start(output, mode, (summary) -> { });
+        beginRun(mode, new AudioHelper.InterruptionListener() {
+            @Override
+            public void onInterrupted(InterruptionTimeline.Type type) {
+                mSoakTester.onInterrupted(type);
+            }
+
+            @Override
+            public void onFocusReturned() {
+                mSoakTester.onFocusReturned();
+            }
+        });
+
+        try {
+            Thread.sleep((long) (spec.durationSeconds * 1000));
+        } finally {
+            mSoakTester.stop();
+            endRun();
+        }
+
+        return recordResult("soak", route, AudioHelper.modeName(mode), "mic", mSoakTester.getLastMetrics());
+    }
+
+    // starts an asynchronous tester and waits for its completion callback
+    private static <T> T await(Consumer<Consumer<T>> start, Runnable cancel) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<T> result = new AtomicReference<>();
+
+        start.accept((value) -> {
+            result.set(value);
+            done.countDown();
+        });
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            cancel.run();
+            throw e;
+        }
+        return result.get();
+    }
+
+    public PcmCapture getPcmCapture() {
+        return mPcmCapture;
+    }
+
+    public SpectrumAnalyzer getSpectrumAnalyzer() {
+        return mSpectrumAnalyzer;
+    }
+
+    public LoudnessMeter getLoudnessMeter() {
+        return mLoudnessMeter;
+    }
+
+    /**
+     * Pyramid of the current or last PCM capture, null before the first one.
+     */
+    public WaveformPyramid getWaveform() {
+        return mWaveform;
+    }
+
+    /**
+     * WAV file of {@link #getWaveform()}, complete once the pyramid is finished.
+     */
+    public File getWaveformRecording() {
+        return mWaveformRecording;
     }
 
     public void release() {
-        mMediaPlayer.release();
-        mMediaRecorder.release();
+        stopBackgroundTests();
+        mMediaEngine.setListener(null);
+        mReleased = true;
+        mMediaEngine.release();
+        AudioStreamPool.getInstance().clear();
 
         Log.d("AudioTester", "MediaPlayer and MediaRecorder have been released");
     }
 
     public void setTestMode(int testMode) {
         mTestMode = testMode;
-        Log.d("AudioTester", "Changed test mode to " + (testMode == TEST_IN ? "TEST_IN" : "TEST_OUT"));
+        Log.d("AudioTester", "Changed test mode to " + testModeName(testMode));
     }
 
     public void switchToAudioInTestMode(Button button) {
-        mMediaPlayer.reset();
+        stopBackgroundTests();
 
-        mMediaPlayer.setOnCompletionListener((mediaPlayer) -> {
-            mMediaPlayer.reset();
-            button.setText(R.string.record);
+        mMediaEngine.setListener(new ButtonStateListener(button) {
+            @Override
+            public void onStateChanged(MediaEngine.State state) {
+                switch (state) {
+                    case PREPARING:
+                    case PLAYING:
+                        mButton.setText(R.string.playing);
+                        break;
+                    case RECORDING:
+                        mButton.setText(R.string.stop);
+                        break;
+                    default:
+                        mButton.setText(R.string.record);
+                        break;
+                }
+            }
         });
 
-        mMediaPlayer.setOnPreparedListener((mediaPlayer) -> button.setText(R.string.playing));
-
         Log.d("AudioTester", "Switched to input test mode");
     }
 
-    public void switchToAudioOutTestMode(Button button) throws IOException {
-        mMediaPlayer.reset();
-        mMediaPlayer.setDataSource(mActivityContext.getApplicationContext(), Uri.parse("android.resource://com.example.audiotester/" + R.raw.rickroll));
+    public void switchToAudioOutTestMode(Button button) {
+        stopBackgroundTests();
 
-        mMediaPlayer.setOnCompletionListener((mediaPlayer) -> button.setText(R.string.play));
-
-        mMediaPlayer.setOnPreparedListener((mediaPlayer) -> button.setText(R.string.stop));
+        mMediaEngine.setListener(new ButtonStateListener(button) {
+            @Override
+            public void onStateChanged(MediaEngine.State state) {
+                mButton.setText(state == MediaEngine.State.IDLE ? R.string.play : R.string.stop);
+            }
+        });
 
         Log.d("AudioTester", "Switched to output test mode");
     }
+
+    public void switchToLatencyTestMode() {
+        stopBackgroundTests();
+        mMediaEngine.setListener(null);
+
+        Log.d("AudioTester", "Switched to latency test mode");
+    }
+
+    public void switchToSweepTestMode() {
+        stopBackgroundTests();
+        mMediaEngine.setListener(null);
+
+        Log.d("AudioTester", "Switched to sweep test mode");
+    }
+
+    public void switchToSoakTestMode() {
+        stopBackgroundTests();
+        mMediaEngine.setListener(null);
+
+        Log.d("AudioTester", "Switched to soak test mode");
+    }
+
+    public void switchToResponseTestMode() {
+        stopBackgroundTests();
+        mMediaEngine.setListener(null);
+
+        Log.d("AudioTester", "Switched to response test mode");
+    }
+
+    public void switchToEchoTestMode() {
+        stopBackgroundTests();
+        mMediaEngine.setListener(null);
+
+        Log.d("AudioTester", "Switched to echo test mode");
+    }
+
+    public void switchToRouteTestMode() {
+        stopBackgroundTests();
+        mMediaEngine.setListener(null);
+
+        Log.d("AudioTester", "Switched to route switch test mode");
+    }
+
+    public void switchToCodecTestMode() {
+        stopBackgroundTests();
+        mMediaEngine.setListener(null);
+
+        Log.d("AudioTester", "Switched to codec test mode");
+    }
+
+    // creates what the first test needs while the UI comes up, at background priority
+    private void warmUp() {
+        if (mReleased) return;
+
+        Trace.beginSection("MediaTester.warmUp");
+        long start = System.nanoTime();
+
+        mMediaEngine.warmUp();
+        AudioStreamPool pool = AudioStreamPool.getInstance();
+        pool.prewarmTrack(SignalPlayer.DEFAULT_SAMPLE_RATE, AudioAttributes.USAGE_MEDIA);
+        if (mContext.checkSelfPermission(Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED) {
+            pool.prewarmRecord(MediaRecorder.AudioSource.MIC, PcmCapture.DEFAULT_SAMPLE_RATE);
+        }
+        // release() may have cleared the pool while the streams were created
+        if (mReleased) {
+            pool.clear();
+        }
+
+        WARM_UP.recordSince(start);
+        Trace.endSection();
+        Log.d("AudioTester", "Warmed up in " + (System.nanoTime() - start) / 1_000_000 + " ms: " + pool.summary());
+    }
+
+    private static ResultStore openResultStore(File directory) {
+        try {
+            return new ResultStore(directory);
+        } catch (IOException e) {
+            Log.e("AudioTester", "Result store could not be opened, results will not be kept", e);
+            return null;
+        }
+    }
+
+    /**
+     * Takes audio focus for a measurement. It is not paused by interruptions, so they have no
+     * recovery time; they are stored with its result so the result can be filtered out.
+     */
+    private void beginRun(int mode) {
+        beginRun(mode, new AudioHelper.InterruptionListener() {
+            @Override
+            public void onInterrupted(InterruptionTimeline.Type type) {
+                mInterruptions.begin(type, SystemClock.elapsedRealtime() - mRunStartMs);
+                Log.w("AudioTester", "Measurement interrupted by " + type);
+            }
+
+            @Override
+            public void onFocusReturned() {
+                mInterruptions.ended(SystemClock.elapsedRealtime() - mRunStartMs);
+            }
+        });
+    }
+
+    private void beginRun(int mode, AudioHelper.InterruptionListener listener) {
+        mInterruptions.clear();
+        mRunStartMs = SystemClock.elapsedRealtime();
+
+        if (!mAudioHelper.requestFocus(AudioHelper.usageForMode(mode), listener)) {
+            // most likely a call; without focus there will be no callback when it ends
+            mInterruptions.begin(InterruptionTimeline.Type.FOCUS_LOSS, 0);
+            Log.w("AudioTester", "Audio focus was not granted");
+        }
+    }
+
+    private void endRun() {
+        mAudioHelper.abandonFocus();
+    }
+
+    // returns the metrics as stored
+    private Map<String, Double> recordResult(String test, String route, String mode, String source,
+                                             Map<String, Double> metrics) {
+        metrics = withInterruptions(metrics);
+        storeResult(test, route, mode, source, metrics);
+        return metrics;
+    }
+
+    // results with interruptions > 0 were measured across a focus loss or route change
+    private Map<String, Double> withInterruptions(Map<String, Double> metrics) {
+        if (metrics == null) return null;
+
+        metrics = new LinkedHashMap<>(metrics);
+        mInterruptions.addMetrics(metrics, SystemClock.elapsedRealtime() - mRunStartMs);
+        return metrics;
+    }
+
+    private void storeResult(String test, String route, String mode, String source, Map<String, Double> metrics) {
+        ResultStore store = getResultStore();
+        if (store == null || metrics == null) return;
+
+        try {
+            long start = System.nanoTime();
+            TestResult result = store.append(new TestResult(System.currentTimeMillis(), test,
+                    new ResultKey(Build.MODEL, route, mode, source), metrics));
+            STORE_APPEND.recordSince(start);
+            Log.d("AudioTester", "Stored result " + result);
+        } catch (IOException e) {
+            Log.e("AudioTester", "Result could not be stored", e);
+        }
+    }
+
+    private void stopBackgroundTests() {
+        long start = System.nanoTime();
+        mMediaEngine.stop();
+        mSignalPlayer.stop();
+        mLatencyTester.cancel();
+        mSweepTester.cancel();
+        mSoakTester.stop();
+        mResponseTester.cancel();
+        mEchoTester.cancel();
+        mRouteSwitchTester.cancel();
+        mCodecTester.cancel();
+        endRun();
+        mPcmCapture.stop();
+        mAnalysisThread.stop();
+        closeWavWriter(null);
+        STOP_TESTS.recordSince(start);
+    }
+
+    /**
+     * Maps engine states to the action button text; errors are logged.
+     */
+    private abstract static class ButtonStateListener implements MediaEngine.Listener {
+
+        protected final Button mButton;
+
+        ButtonStateListener(Button button) {
+            mButton = button;
+        }
+
+        @Override
+        public void onError(Exception e) {
+            Log.e("AudioTester", "Media command failed", e);
+        }
+    }
+
+    private static String testModeName(int testMode) {
+        switch (testMode) {
+            case TEST_IN:
+                return "TEST_IN";
+            case TEST_LATENCY:
+                return "TEST_LATENCY";
+            case TEST_SWEEP:
+                return "TEST_SWEEP";
+            case TEST_SOAK:
+                return "TEST_SOAK";
+            case TEST_RESPONSE:
+                return "TEST_RESPONSE";
+            case TEST_ECHO:
+                return "TEST_ECHO";
+            case TEST_ROUTE:
+                return "TEST_ROUTE";
+            case TEST_CODEC:
+                return "TEST_CODEC";
+            default:
+                return "TEST_OUT";
+        }
+    }
 }
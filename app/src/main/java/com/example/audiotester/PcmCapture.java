@@ -0,0 +1,180 @@
+package com.example.audiotester;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * Raw PCM capture through AudioRecord.
+ *
+ * A dedicated reader thread pulls 16-bit mono blocks from AudioRecord and pushes them
+ * into a preallocated {@link PcmRingBuffer}, so consumers can analyze samples live.
+ * An optional {@link PcmSink} receives the same blocks, e.g. to record them to disk, and an
+ * optional {@link ClockTimeline} the capture timestamp after each block. Records come from the
+ * {@link AudioStreamPool} and go back to it when capture stops.
+ */
+public class PcmCapture {
+
+    private static final String TAG = "PcmCapture";
+
+    private static final LatencyHistogram START = Telemetry.getInstance().histogram("pcm_capture.start");
+    private static final LatencyHistogram STOP = Telemetry.getInstance().histogram("pcm_capture.stop");
+
+    public static final int DEFAULT_SAMPLE_RATE = 48000;
+
+    private final int mSampleRate;
+    private final PcmRingBuffer mRingBuffer;
+
+    private volatile PcmSink mSink;
+    private volatile ClockTimeline mTimeline;
+    private final AudioTimestamp mTimestamp = new AudioTimestamp();
+
+    private AudioRecord mAudioRecord;
+    private int mAudioSource;
+    private volatile boolean mRecordFailed = false;
+    private Thread mReaderThread;
+    private volatile boolean mRunning = false;
+
+    private volatile long mCapturedFrames = 0;
+    private volatile long mOverrunFrames = 0;
+
+    public PcmCapture(int sampleRate, int ringCapacityFrames) {
+        mSampleRate = sampleRate;
+        mRingBuffer = new PcmRingBuffer(ringCapacityFrames);
+    }
+
+    public PcmCapture() {
+        this(DEFAULT_SAMPLE_RATE, DEFAULT_SAMPLE_RATE * 2);
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public PcmRingBuffer getRingBuffer() {
+        return mRingBuffer;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Sets a sink that receives every captured block on the capture thread, or null for none.
+     */
+    public void setSink(PcmSink sink) {
+        mSink = sink;
+    }
+
+    /**
+     * Sets a timeline that receives the record's capture timestamp after every block, or null
+     * for none.
+     */
+    public void setTimeline(ClockTimeline timeline) {
+        mTimeline = timeline;
+    }
+
+    public long getCapturedFrames() {
+        return mCapturedFrames;
+    }
+
+    public long getOverrunFrames() {
+        return mOverrunFrames;
+    }
+
+    public void start(int audioSource) {
+        if (mRunning) return;
+        // releases a record whose reads failed
+        stop();
+
+        long startTime = System.nanoTime();
+        int minBufferSize = AudioRecord.getMinBufferSize(mSampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferSize <= 0) {
+            throw new IllegalStateException("Unsupported capture format at " + mSampleRate + " Hz");
+        }
+
+        mAudioRecord = AudioStreamPool.getInstance().acquireRecord(audioSource, mSampleRate);
+        mAudioSource = audioSource;
+        mRecordFailed = false;
+
+        mCapturedFrames = 0;
+        mOverrunFrames = 0;
+
+        // one read block is half of the platform buffer, in 16-bit samples
+        short[] block = new short[Math.max(minBufferSize / 4, 64)];
+
+        mRunning = true;
+        mAudioRecord.startRecording();
+
+        mReaderThread = new Thread(() -> readLoop(block), TAG);
+        mReaderThread.start();
+        START.recordSince(startTime);
+
+        Log.d("AudioTester", "Started PCM capture on input source " + audioSource + " at " + mSampleRate + " Hz");
+    }
+
+    public void stop() {
+        if (mReaderThread == null) return;
+
+        long startTime = System.nanoTime();
+        mRunning = false;
+        try {
+            mReaderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        mAudioRecord.stop();
+        if (mRecordFailed) {
+            mAudioRecord.release();
+        } else {
+            AudioStreamPool.getInstance().recycleRecord(mAudioRecord, mAudioSource, mSampleRate);
+        }
+        mAudioRecord = null;
+        mReaderThread = null;
+        STOP.recordSince(startTime);
+
+        Log.d("AudioTester", "Stopped PCM capture, frames = " + mCapturedFrames + ", overruns = " + mOverrunFrames);
+    }
+
+    private void readLoop(short[] block) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+        while (mRunning) {
+            int read = mAudioRecord.read(block, 0, block.length);
+            if (read < 0) {
+                Log.e(TAG, "AudioRecord.read failed with " + read);
+                mRecordFailed = true;
+                // stop() still joins this thread and releases the record
+                mRunning = false;
+                break;
+            }
+
+            PcmSink sink = mSink;
+            if (sink != null) {
+                try {
+                    sink.write(block, 0, read);
+                } catch (IOException e) {
+                    Log.e(TAG, "PCM sink failed, detaching it", e);
+                    mSink = null;
+                }
+            }
+
+            int written = mRingBuffer.write(block, 0, read);
+
+            mCapturedFrames += read;
+            mOverrunFrames += read - written;
+
+            ClockTimeline timeline = mTimeline;
+            if (timeline != null && mAudioRecord.getTimestamp(mTimestamp, AudioTimestamp.TIMEBASE_MONOTONIC)
+                    == AudioRecord.SUCCESS) {
+                timeline.add(mTimestamp.framePosition, mTimestamp.nanoTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.audiotester;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Naming of files written by the tests, so a new run never overwrites an older one.
+ */
+public final class RecordingFiles {
+
+    private RecordingFiles() {
+    }
+
+    /**
+     * A file named prefix_yyyyMMdd_HHmmss.extension in directory, with a counter appended
+     * if that name is already taken.
+     */
+    public static File newFile(File directory, String prefix, String extension) {
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        File file = new File(directory, prefix + "_" + stamp + "." + extension);
+
+        for (int i = 1; file.exists(); i++) {
+            file = new File(directory, prefix + "_" + stamp + "_" + i + "." + extension);
+        }
+
+        return file;
+    }
+}
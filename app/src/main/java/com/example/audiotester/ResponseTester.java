@@ -0,0 +1,175 @@
+package com.example.audiotester;
+
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.core.util.Consumer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Frequency response and distortion test for the selected output.
+ *
+ * Plays an exponential sine sweep through a {@link DuplexLoop} and deconvolves the capture with
+ * {@link SweepAnalyzer}, then plays stepped tones and reads THD+N from each with
+ * {@link DistortionStats}. Results are written as CSV next to the other recordings.
+ */
+public class ResponseTester {
+
+    private static final String TAG = "ResponseTester";
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final float AMPLITUDE = 0.5f;
+
+    private static final double SWEEP_START_HZ = 20;
+    private static final double SWEEP_END_HZ = 20000;
+    private static final double SWEEP_SECONDS = 10;
+    private static final int RESPONSE_WINDOW = 16384;
+    private static final int BANDS_PER_OCTAVE = 3;
+
+    private static final double[] TONE_FREQUENCIES = {100, 250, 500, 1000, 2000, 4000, 8000};
+    private static final int TONE_FRAMES = SAMPLE_RATE;
+    private static final int TONE_SETTLE_FRAMES = SAMPLE_RATE / 4;
+
+    // room for output latency and the decay of the device under test
+    private static final int TAIL_FRAMES = SAMPLE_RATE / 2;
+
+    private final AudioHelper mAudioHelper;
+    private final File mOutputDirectory;
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+    private volatile Map<String, Double> mLastMetrics;
+
+    public ResponseTester(AudioHelper audioHelper, File outputDirectory) {
+        mAudioHelper = audioHelper;
+        mOutputDirectory = outputDirectory;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Metrics of the last finished measurement, or null if it failed or was cancelled.
+     */
+    public Map<String, Double> getLastMetrics() {
+        return mLastMetrics;
+    }
+
+    /**
+     * Starts the measurement on a worker thread. The listener is called on that thread with a
+     * summary, or null if the measurement failed or was cancelled.
+     */
+    public void start(int outputType, int mode, Consumer<String> listener) {
+        if (mRunning) return;
+
+        mAudioHelper.setDestination(outputType, mode);
+
+        mLastMetrics = null;
+        mRunning = true;
+        mThread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+            String summary = null;
+            try {
+                summary = measure(AudioHelper.usageForMode(mode));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            mRunning = false;
+            listener.accept(summary);
+        }, TAG);
+        mThread.start();
+    }
+
+    public void cancel() {
+        mRunning = false;
+
+        if (mThread != null) {
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mThread = null;
+        }
+    }
+
+    private String measure(int usage) throws IOException {
+        SweepAnalyzer analyzer = new SweepAnalyzer(SAMPLE_RATE, SWEEP_START_HZ, SWEEP_END_HZ, SWEEP_SECONDS);
+
+        float[] sweep = analyzer.getSweep().clone();
+        for (int i = 0; i < sweep.length; i++) {
+            sweep[i] *= AMPLITUDE;
+        }
+
+        float[] captured = DuplexLoop.playAndCapture(usage, MediaRecorder.AudioSource.MIC, SAMPLE_RATE,
+                sweep, TAIL_FRAMES, () -> mRunning);
+        if (captured == null) return null;
+
+        long start = System.nanoTime();
+        float[] impulseResponse = analyzer.impulseResponse(captured, captured.length);
+        FrequencyResponse response = analyzer.frequencyResponse(impulseResponse,
+                SweepAnalyzer.findPeak(impulseResponse), RESPONSE_WINDOW, BANDS_PER_OCTAVE);
+        Log.d("AudioTester", "Deconvolved sweep in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        List<DistortionStats> distortion = new ArrayList<>();
+        for (double frequency : TONE_FREQUENCIES) {
+            float[] tone = new float[TONE_FRAMES];
+            for (int i = 0; i < tone.length; i++) {
+                tone[i] = (float) (AMPLITUDE * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+            }
+
+            captured = DuplexLoop.playAndCapture(usage, MediaRecorder.AudioSource.MIC, SAMPLE_RATE,
+                    tone, 0, () -> mRunning);
+            if (captured == null) return null;
+
+            DistortionStats stats = DistortionStats.analyze(captured, TONE_SETTLE_FRAMES,
+                    TONE_FRAMES - TONE_SETTLE_FRAMES, SAMPLE_RATE, frequency);
+            distortion.add(stats);
+            Log.d("AudioTester", stats.toString());
+        }
+
+        File responseFile = RecordingFiles.newFile(mOutputDirectory, "response", "csv");
+        try (Writer writer = new FileWriter(responseFile)) {
+            response.writeCsv(writer);
+        }
+
+        File distortionFile = RecordingFiles.newFile(mOutputDirectory, "thd", "csv");
+        try (Writer writer = new FileWriter(distortionFile)) {
+            writer.write("frequency_hz,fundamental_db,thd_db,thd_n_db\n");
+            for (DistortionStats stats : distortion) {
+                writer.write(String.format(Locale.US, "%.1f,%.2f,%.2f,%.2f\n",
+                        stats.frequency, stats.fundamentalDb, stats.thdDb, stats.thdPlusNDb));
+            }
+        }
+
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("ripple_db", response.deviation(100, 10000));
+        metrics.put("level_1k_db", response.levelAt(1000));
+        for (DistortionStats stats : distortion) {
+            metrics.put(String.format(Locale.US, "thd_n_db_%.0f", stats.frequency), stats.thdPlusNDb);
+        }
+        mLastMetrics = metrics;
+
+        StringBuilder summary = new StringBuilder(String.format(Locale.US,
+                "Response 100 Hz - 10 kHz: %.1f dB ripple, %.1f dB at 1 kHz",
+                response.deviation(100, 10000), response.levelAt(1000)));
+        for (DistortionStats stats : distortion) {
+            summary.append('\n').append(stats);
+        }
+        summary.append('\n').append(responseFile.getName()).append(", ").append(distortionFile.getName());
+        return summary.toString();
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.audiotester;
+
+import android.media.AudioAttributes;
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
+import android.media.MediaRecorder;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.util.Consumer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Route-switch stress test for {@link AudioHelper#setDestination(int, boolean)}.
+ *
+ * Plays a voice-communication tone and loops it back through the microphone into a
+ * {@link LevelTrace}. A calibration pass settles on each state (mode and handset / speaker)
+ * and notes the device the track is routed to and the captured level. The test then jumps
+ * between random states and times two moments from each request: the routing-changed event
+ * of the track reporting the device of the new state, and the captured level crossing halfway
+ * to the level of the new state. Switches that reach neither in time are failures. The
+ * acoustic latency includes the output and input latency of the loopback.
+ */
+public class RouteSwitchTester {
+
+    private static final String TAG = "RouteSwitchTester";
+
+    public static final int SAMPLE_RATE = 48000;
+    public static final double TONE_FREQUENCY = 1000;
+
+    public static final int[] MODES = {AudioManager.MODE_NORMAL, AudioManager.MODE_IN_COMMUNICATION};
+
+    private static final long SETTLE_MS = 1000;
+    private static final long CALIBRATION_MS = 500;
+    private static final long SWITCH_TIMEOUT_MS = 2000;
+    private static final long DWELL_MS = 300;
+    private static final long POLL_INTERVAL_MS = 5;
+    private static final double MIN_LEVEL_STEP_DB = 6;
+    private static final int HOLD_WINDOWS = 4;
+    private static final int MAX_SWITCHES = 10_000;
+
+    private final AudioHelper mAudioHelper;
+    private final File mOutputDirectory;
+
+    private final SignalPlayer mPlayer = new SignalPlayer(SAMPLE_RATE);
+    private final PcmCapture mCapture = new PcmCapture(SAMPLE_RATE, SAMPLE_RATE);
+    private final AnalysisThread mAnalysisThread = new AnalysisThread(mCapture.getRingBuffer(), 240);
+    private final LevelTrace mTrace = new LevelTrace(SAMPLE_RATE, LevelTrace.DEFAULT_WINDOW_SECONDS, 10);
+
+    private final int[] mModes = new int[MODES.length * 2];
+    private final boolean[] mSpeakers = new boolean[MODES.length * 2];
+    private final String[] mStateNames = new String[MODES.length * 2];
+    private final RouteSwitchStats mStats;
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+    private volatile Map<String, Double> mLastMetrics;
+
+    // last routing event of the track, from the routing thread
+    private volatile int mRoutedType = 0;
+    private volatile long mRoutedNanos = 0;
+
+    public RouteSwitchTester(AudioHelper audioHelper, File outputDirectory) {
+        mAudioHelper = audioHelper;
+        mOutputDirectory = outputDirectory;
+
+        for (int i = 0; i < mModes.length; i++) {
+            mModes[i] = MODES[i / 2];
+            mSpeakers[i] = i % 2 == 1;
+            mStateNames[i] = AudioHelper.modeName(mModes[i]) + " / " + (mSpeakers[i] ? "speaker" : "handset");
+        }
+        mStats = new RouteSwitchStats(mStateNames, MAX_SWITCHES);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    public RouteSwitchStats getStats() {
+        return mStats;
+    }
+
+    /**
+     * Metrics of the last finished test, or null if it failed or was cancelled.
+     */
+    public Map<String, Double> getLastMetrics() {
+        return mLastMetrics;
+    }
+
+    /**
+     * Calibrates, then switches routes for durationMs on a worker thread. The listener is
+     * called on that thread with a summary, or null if the test failed or was cancelled.
+     */
+    public void start(long durationMs, Consumer<String> listener) {
+        if (mRunning) return;
+
+        mLastMetrics = null;
+        mRunning = true;
+        mThread = new Thread(() -> {
+            String summary = null;
+            try {
+                summary = measure(durationMs);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            mRunning = false;
+            listener.accept(summary);
+        }, TAG);
+        mThread.start();
+    }
+
+    public void cancel() {
+        mRunning = false;
+
+        if (mThread != null) {
+            mThread.interrupt();
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mThread = null;
+        }
+    }
+
+    private String measure(long durationMs) throws IOException {
+        HandlerThread routingThread = new HandlerThread(TAG + "Routing");
+        routingThread.start();
+
+        mStats.clear();
+        mRoutedType = 0;
+        mTrace.reset();
+        mAnalysisThread.addProcessor(mTrace);
+        mPlayer.setRoutingListener((device) -> {
+            mRoutedNanos = System.nanoTime();
+            mRoutedType = device != null ? device.getType() : 0;
+        }, new Handler(routingThread.getLooper()));
+
+        mAudioHelper.setDestination(mModes[0], mSpeakers[0]);
+        try {
+            mPlayer.start(SignalGenerator.sine(SAMPLE_RATE, TONE_FREQUENCY, 0.5f), AudioAttributes.USAGE_VOICE_COMMUNICATION);
+            mCapture.start(MediaRecorder.AudioSource.MIC);
+            mAnalysisThread.start();
+
+            return run(durationMs);
+        } catch (InterruptedException e) {
+            return null;
+        } finally {
+            mAnalysisThread.stop();
+            mAnalysisThread.removeProcessor(mTrace);
+            mCapture.stop();
+            mPlayer.stop();
+            mPlayer.setRoutingListener(null, null);
+            routingThread.quitSafely();
+            mAudioHelper.setDestination(AudioManager.MODE_NORMAL, false);
+        }
+    }
+
+    private String run(long durationMs) throws InterruptedException, IOException {
+        int states = mModes.length;
+        int[] devices = new int[states];
+        double[] levels = new double[states];
+
+        for (int state = 0; state < states; state++) {
+            mAudioHelper.setDestination(mModes[state], mSpeakers[state]);
+            Thread.sleep(SETTLE_MS);
+            if (!mRunning) return null;
+
+            long end = mTrace.getPosition();
+            devices[state] = mPlayer.getRoutedDeviceType();
+            levels[state] = mTrace.median(end - CALIBRATION_MS * SAMPLE_RATE / 1000, end);
+            Log.d("AudioTester", String.format(Locale.US, "Route %s: device %d, %.1f dB",
+                    mStateNames[state], devices[state], levels[state]));
+        }
+
+        Random random = new Random(durationMs);
+        int current = states - 1;
+        long endMs = SystemClock.elapsedRealtime() + durationMs;
+        while (mRunning && SystemClock.elapsedRealtime() < endMs && mStats.getTotal() < MAX_SWITCHES) {
+            int next = random.nextInt(states - 1);
+            if (next >= current) next++;
+
+            switchRoute(current, next, devices, levels);
+            current = next;
+            Thread.sleep(DWELL_MS);
+        }
+        if (!mRunning) return null;
+
+        File file = RecordingFiles.newFile(mOutputDirectory, "route_switch", "csv");
+        try (Writer writer = new FileWriter(file)) {
+            mStats.writeCsv(writer);
+        }
+
+        StringBuilder calibration = new StringBuilder();
+        for (int state = 0; state < states; state++) {
+            calibration.append(String.format(Locale.US, "\n%s: %s, %.1f dB", mStateNames[state],
+                    deviceName(devices[state]), levels[state]));
+        }
+
+        mLastMetrics = mStats.toMetrics();
+        String summary = mStats.summary() + calibration;
+        Log.d("AudioTester", "Route switch test finished: " + summary);
+        return summary;
+    }
+
+    private void switchRoute(int from, int to, int[] devices, double[] levels) throws InterruptedException {
+        boolean expectRoute = devices[to] != devices[from] && devices[to] != 0;
+        boolean expectAcoustic = Math.abs(levels[to] - levels[from]) >= MIN_LEVEL_STEP_DB;
+        double threshold = (levels[from] + levels[to]) / 2;
+        boolean rising = levels[to] > levels[from];
+
+        // frames read so far stand for now; the analysis thread catches up while we wait
+        long commandFrame = mCapture.getCapturedFrames();
+        long commandNanos = System.nanoTime();
+        mAudioHelper.setDestination(mModes[to], mSpeakers[to]);
+
+        double routeMs = Double.NaN;
+        double acousticMs = Double.NaN;
+        boolean rerouted = false;
+        long deadline = commandNanos + SWITCH_TIMEOUT_MS * 1_000_000;
+        while (System.nanoTime() < deadline) {
+            long routedNanos = mRoutedNanos;
+            if (routedNanos >= commandNanos) {
+                rerouted = true;
+                if (Double.isNaN(routeMs) && mRoutedType == devices[to]) routeMs = (routedNanos - commandNanos) / 1e6;
+            }
+
+            if (expectAcoustic && Double.isNaN(acousticMs)) {
+                long frame = mTrace.findCrossing(commandFrame, threshold, rising, HOLD_WINDOWS);
+                if (frame >= 0) acousticMs = (frame - commandFrame) * 1000.0 / SAMPLE_RATE;
+            }
+
+            if ((!expectRoute || !Double.isNaN(routeMs)) && (!expectAcoustic || !Double.isNaN(acousticMs))) break;
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+
+        RouteSwitchStats.Outcome outcome;
+        if (!expectRoute && !expectAcoustic) {
+            outcome = RouteSwitchStats.Outcome.UNCHANGED;
+        } else if (expectRoute && Double.isNaN(routeMs)) {
+            outcome = rerouted ? RouteSwitchStats.Outcome.WRONG_ROUTE : RouteSwitchStats.Outcome.ROUTE_TIMEOUT;
+        } else if (expectAcoustic && Double.isNaN(acousticMs)) {
+            outcome = RouteSwitchStats.Outcome.ACOUSTIC_TIMEOUT;
+        } else {
+            outcome = RouteSwitchStats.Outcome.SWITCHED;
+        }
+        mStats.add(from, to, outcome, routeMs, acousticMs);
+
+        if (outcome != RouteSwitchStats.Outcome.SWITCHED && outcome != RouteSwitchStats.Outcome.UNCHANGED) {
+            Log.w("AudioTester", "Route switch " + mStateNames[from] + " -> " + mStateNames[to] + ": " + outcome
+                    + ", routed to " + deviceName(mRoutedType));
+        }
+    }
+
+    private static String deviceName(int type) {
+        switch (type) {
+            case 0:
+                return "none";
+            case AudioDeviceInfo.TYPE_BUILTIN_EARPIECE:
+                return "earpiece";
+            case AudioDeviceInfo.TYPE_BUILTIN_SPEAKER:
+                return "speaker";
+            case AudioDeviceInfo.TYPE_WIRED_HEADSET:
+            case AudioDeviceInfo.TYPE_WIRED_HEADPHONES:
+                return "wired";
+            case AudioDeviceInfo.TYPE_BLUETOOTH_SCO:
+            case AudioDeviceInfo.TYPE_BLUETOOTH_A2DP:
+                return "bluetooth";
+            default:
+                return "device type " + type;
+        }
+    }
+}
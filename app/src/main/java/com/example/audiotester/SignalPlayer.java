@@ -0,0 +1,255 @@
+package com.example.audiotester;
+
+import android.media.AudioDeviceInfo;
+import android.media.AudioRouting;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.os.Handler;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Plays a {@link SignalGenerator} through a streaming AudioTrack.
+ *
+ * A writer thread synthesizes one burst at a time into a reused buffer, so playback starts
+ * as soon as the track is created and runs for as long as needed. After every burst the
+ * track's timestamp can be recorded into a {@link ClockTimeline}. Tracks come from the
+ * {@link AudioStreamPool} and go back to it when playback stops.
+ */
+public class SignalPlayer {
+
+    private static final String TAG = "SignalPlayer";
+
+    private static final LatencyHistogram START = Telemetry.getInstance().histogram("signal_player.start");
+    private static final LatencyHistogram FIRST_FRAME = Telemetry.getInstance().histogram("signal_player.first_frame");
+
+    public static final int DEFAULT_SAMPLE_RATE = 48000;
+
+    private final int mSampleRate;
+
+    private AudioTrack mAudioTrack;
+    private int mUsage;
+    private AudioRouting.OnRoutingChangedListener mTrackRoutingListener;
+    private Thread mWriterThread;
+    private volatile boolean mPlaying = false;
+    private volatile boolean mPaused = false;
+
+    private volatile long mStartLatencyNanos = 0;
+    private volatile long mWrittenFrames = 0;
+    private volatile boolean mTrackFailed = false;
+
+    // counters of a reused track do not start at 0
+    private int mUnderrunBase = 0;
+    private long mHeadPositionBase = 0;
+
+    private volatile ClockTimeline mTimeline;
+    private RoutingListener mRoutingListener;
+    private Handler mRoutingHandler;
+    private final AudioTimestamp mTimestamp = new AudioTimestamp();
+
+    public interface RoutingListener {
+        /**
+         * The track moved to device, or to no device when null.
+         */
+        void onRoutingChanged(AudioDeviceInfo device);
+    }
+
+    public SignalPlayer(int sampleRate) {
+        mSampleRate = sampleRate;
+    }
+
+    public SignalPlayer() {
+        this(DEFAULT_SAMPLE_RATE);
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public boolean isPlaying() {
+        return mPlaying;
+    }
+
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * True when playback ended because the track failed, until {@link #stop()} releases it.
+     */
+    public boolean hasFailed() {
+        return mTrackFailed;
+    }
+
+    /**
+     * Time from {@link #start} until the first burst was handed to the track.
+     */
+    public long getStartLatencyNanos() {
+        return mStartLatencyNanos;
+    }
+
+    public long getWrittenFrames() {
+        return mWrittenFrames;
+    }
+
+    /**
+     * Underruns reported by the track since playback started, 0 when stopped.
+     */
+    public int getUnderrunCount() {
+        AudioTrack track = mAudioTrack;
+        return track != null ? track.getUnderrunCount() - mUnderrunBase : 0;
+    }
+
+    /**
+     * Frames played so far, 0 when stopped.
+     */
+    public long getPlaybackHeadPosition() {
+        AudioTrack track = mAudioTrack;
+        return track != null ? (track.getPlaybackHeadPosition() & 0xFFFFFFFFL) - mHeadPositionBase : 0;
+    }
+
+    /**
+     * Sets a timeline that receives the track's presentation timestamp after every burst, or
+     * null for none.
+     */
+    public void setTimeline(ClockTimeline timeline) {
+        mTimeline = timeline;
+    }
+
+    /**
+     * Type of the device the track plays on, 0 when stopped or not routed yet.
+     */
+    public int getRoutedDeviceType() {
+        AudioTrack track = mAudioTrack;
+        AudioDeviceInfo device = track != null ? track.getRoutedDevice() : null;
+        return device != null ? device.getType() : 0;
+    }
+
+    /**
+     * Sets a listener for routing changes of the tracks started from now on, called on the
+     * looper of handler, or null for none.
+     */
+    public void setRoutingListener(RoutingListener listener, Handler handler) {
+        mRoutingListener = listener;
+        mRoutingHandler = handler;
+    }
+
+    public void start(SignalGenerator generator, int usage) {
+        if (mPlaying) return;
+        // releases a track whose writes failed
+        stop();
+
+        long startTime = System.nanoTime();
+
+        mAudioTrack = AudioStreamPool.getInstance().acquireTrack(mSampleRate, usage);
+        mUsage = usage;
+        mUnderrunBase = mAudioTrack.getUnderrunCount();
+        mHeadPositionBase = mAudioTrack.getPlaybackHeadPosition() & 0xFFFFFFFFL;
+
+        RoutingListener routingListener = mRoutingListener;
+        if (routingListener != null) {
+            mTrackRoutingListener = (router) -> routingListener.onRoutingChanged(router.getRoutedDevice());
+            mAudioTrack.addOnRoutingChangedListener(mTrackRoutingListener, mRoutingHandler);
+        }
+
+        // write in bursts of half the track buffer, at least 2 ms
+        int burstFrames = Math.max(mSampleRate / 500, mAudioTrack.getBufferSizeInFrames() / 2);
+        float[] burst = new float[burstFrames];
+
+        generator.reset();
+        mPaused = false;
+        mWrittenFrames = 0;
+        mStartLatencyNanos = 0;
+        mTrackFailed = false;
+        mPlaying = true;
+
+        mWriterThread = new Thread(() -> writeLoop(generator, burst, startTime), TAG);
+        mWriterThread.start();
+        START.recordSince(startTime);
+
+        Log.d("AudioTester", "Started " + generator.getType() + " at " + mSampleRate + " Hz, burst = " + burstFrames);
+    }
+
+    /**
+     * Pauses the track, keeping what has been written. The writer blocks once the track is full.
+     */
+    public void pause() {
+        if (!mPlaying || mPaused) return;
+
+        mPaused = true;
+        mAudioTrack.pause();
+    }
+
+    public void resume() {
+        if (!mPlaying || !mPaused) return;
+
+        mPaused = false;
+        mAudioTrack.play();
+    }
+
+    public void stop() {
+        if (mWriterThread == null) return;
+
+        mPlaying = false;
+        if (mPaused) {
+            // releases a write blocked on the paused track
+            mAudioTrack.stop();
+            mPaused = false;
+        }
+        try {
+            mWriterThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        mAudioTrack.pause();
+        mAudioTrack.flush();
+        if (mTrackRoutingListener != null) {
+            mAudioTrack.removeOnRoutingChangedListener(mTrackRoutingListener);
+            mTrackRoutingListener = null;
+        }
+        if (mTrackFailed) {
+            mAudioTrack.release();
+            mTrackFailed = false;
+        } else {
+            AudioStreamPool.getInstance().recycleTrack(mAudioTrack, mSampleRate, mUsage);
+        }
+        mAudioTrack = null;
+        mWriterThread = null;
+
+        Log.d("AudioTester", "Stopped signal playback after " + mWrittenFrames + " frames");
+    }
+
+    private void writeLoop(SignalGenerator generator, float[] burst, long startTime) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+        // prime one burst so the track does not start on an empty buffer
+        generator.fill(burst, 0, burst.length);
+        mAudioTrack.write(burst, 0, burst.length, AudioTrack.WRITE_BLOCKING);
+        mAudioTrack.play();
+
+        mStartLatencyNanos = System.nanoTime() - startTime;
+        FIRST_FRAME.record(mStartLatencyNanos);
+        mWrittenFrames = burst.length;
+        Log.d("AudioTester", "Signal start latency: " + mStartLatencyNanos / 1_000_000.0 + " ms");
+
+        while (mPlaying) {
+            generator.fill(burst, 0, burst.length);
+
+            int written = mAudioTrack.write(burst, 0, burst.length, AudioTrack.WRITE_BLOCKING);
+            if (written < 0) {
+                Log.e(TAG, "AudioTrack.write failed with " + written);
+                mTrackFailed = true;
+                // stop() still joins this thread and releases the track
+                mPlaying = false;
+                break;
+            }
+            mWrittenFrames += written;
+
+            ClockTimeline timeline = mTimeline;
+            if (timeline != null && mAudioTrack.getTimestamp(mTimestamp)) {
+                timeline.add(mTimestamp.framePosition, mTimestamp.nanoTime);
+            }
+        }
+    }
+}
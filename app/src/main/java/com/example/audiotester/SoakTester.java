@@ -0,0 +1,311 @@
+package com.example.audiotester;
+
+import android.media.MediaRecorder;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.util.Consumer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Long-running playback soak test.
+ *
+ * Plays a generated tone on the selected route and loops it back through the microphone into
+ * a {@link GlitchDetector}. A poll thread adds the AudioTrack underrun count, playback head
+ * stalls and capture overruns to the same {@link GlitchTimeline}. Both streams also record
+ * their timestamps into a {@link ClockTimeline}, which gives the drift between the output and
+ * input clocks over the run.
+ *
+ * An interruption pauses playback and glitch detection until focus returns; the pause is
+ * recorded in an {@link InterruptionTimeline} together with the time playback took to resume.
+ */
+public class SoakTester {
+
+    private static final String TAG = "SoakTester";
+
+    public static final int SAMPLE_RATE = 48000;
+    public static final double TONE_FREQUENCY = 1000;
+
+    private static final long POLL_INTERVAL_MS = 1000;
+    private static final long RESUME_POLL_INTERVAL_MS = 5;
+    private static final int INTERRUPTION_CAPACITY = 1000;
+    private static final long SETTLE_MS = 1000;
+    private static final int TIMELINE_CAPACITY = 100_000;
+    private static final long CLOCK_STORE_INTERVAL_NANOS = 100_000_000;
+
+    private final AudioHelper mAudioHelper;
+    private final File mOutputDirectory;
+
+    private final SignalPlayer mPlayer = new SignalPlayer(SAMPLE_RATE);
+    private final PcmCapture mCapture = new PcmCapture(SAMPLE_RATE, SAMPLE_RATE);
+    private final AnalysisThread mAnalysisThread = new AnalysisThread(mCapture.getRingBuffer(), 480);
+    private final GlitchTimeline mTimeline = new GlitchTimeline(TIMELINE_CAPACITY);
+    private final ClockTimeline mOutputClock = new ClockTimeline(SAMPLE_RATE, TIMELINE_CAPACITY, CLOCK_STORE_INTERVAL_NANOS);
+    private final ClockTimeline mInputClock = new ClockTimeline(SAMPLE_RATE, TIMELINE_CAPACITY, CLOCK_STORE_INTERVAL_NANOS);
+    private final GlitchDetector mDetector = new GlitchDetector(SAMPLE_RATE, TONE_FREQUENCY, mTimeline);
+    private final InterruptionTimeline mInterruptions = new InterruptionTimeline(INTERRUPTION_CAPACITY);
+
+    private Thread mPollThread;
+    private volatile boolean mRunning = false;
+    private volatile boolean mResuming = false;
+    private volatile Map<String, Double> mLastMetrics;
+    private volatile long mStartMs;
+
+    public SoakTester(AudioHelper audioHelper, File outputDirectory) {
+        mAudioHelper = audioHelper;
+        mOutputDirectory = outputDirectory;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    public GlitchTimeline getTimeline() {
+        return mTimeline;
+    }
+
+    public InterruptionTimeline getInterruptions() {
+        return mInterruptions;
+    }
+
+    /**
+     * Metrics of the last stopped soak, or null before the first one.
+     */
+    public Map<String, Double> getLastMetrics() {
+        return mLastMetrics;
+    }
+
+    public ClockTimeline getOutputClock() {
+        return mOutputClock;
+    }
+
+    public ClockTimeline getInputClock() {
+        return mInputClock;
+    }
+
+    /**
+     * Starts the soak. progress is called on the poll thread with a summary once per second.
+     */
+    public void start(int outputType, int mode, Consumer<String> progress) {
+        if (mRunning) return;
+
+        mTimeline.clear();
+        mInterruptions.clear();
+        mResuming = false;
+        mOutputClock.clear();
+        mInputClock.clear();
+        mAnalysisThread.removeProcessor(mDetector);
+        mPlayer.setTimeline(mOutputClock);
+        mCapture.setTimeline(mInputClock);
+
+        mAudioHelper.setDestination(outputType, mode);
+        mPlayer.start(SignalGenerator.sine(SAMPLE_RATE, TONE_FREQUENCY, 0.5f), AudioHelper.usageForMode(mode));
+        try {
+            mCapture.start(MediaRecorder.AudioSource.MIC);
+        } catch (RuntimeException e) {
+            mPlayer.stop();
+            throw e;
+        }
+        mAnalysisThread.start();
+
+        mStartMs = SystemClock.elapsedRealtime();
+        mRunning = true;
+
+        mPollThread = new Thread(() -> pollLoop(progress), TAG);
+        mPollThread.start();
+
+        Log.d("AudioTester", "Started soak test on " + (outputType == AudioHelper.TYPE_RECEIVER ? "handset" : "speaker"));
+    }
+
+    /**
+     * Pauses playback and glitch detection; stalls and overruns are not counted until playback
+     * has resumed.
+     */
+    public void onInterrupted(InterruptionTimeline.Type type) {
+        if (!mRunning) return;
+
+        mInterruptions.begin(type, SystemClock.elapsedRealtime() - mStartMs);
+        mResuming = false;
+        mAnalysisThread.removeProcessor(mDetector);
+        mPlayer.pause();
+
+        Log.d("AudioTester", "Soak test interrupted by " + type);
+    }
+
+    /**
+     * Resumes playback; the poll thread then watches the playback head to measure how long it
+     * takes to move again.
+     */
+    public void onFocusReturned() {
+        if (!mRunning || !mInterruptions.isInterrupted()) return;
+
+        mInterruptions.focusReturned(SystemClock.elapsedRealtime() - mStartMs);
+        mResuming = true;
+        mPlayer.resume();
+
+        Thread pollThread = mPollThread;
+        if (pollThread != null) pollThread.interrupt();
+    }
+
+    /**
+     * Stops the soak and writes the glitch timeline as CSV, and the clock timelines next to it.
+     * Returns the glitch file, or null if it could not be written.
+     */
+    public File stop() {
+        if (!mRunning) return null;
+
+        mRunning = false;
+        mPollThread.interrupt();
+        try {
+            mPollThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mPollThread = null;
+
+        mAnalysisThread.stop();
+        mCapture.stop();
+        mPlayer.stop();
+
+        long durationMs = SystemClock.elapsedRealtime() - mStartMs;
+        Log.d("AudioTester", "Soak test finished: " + mTimeline.summary(durationMs) + "\n" + clockSummary());
+        mLastMetrics = metrics(durationMs);
+
+        File clockFile = RecordingFiles.newFile(mOutputDirectory, "clock", "csv");
+        try (Writer writer = new FileWriter(clockFile)) {
+            writer.write(ClockTimeline.CSV_HEADER);
+            mOutputClock.writeCsv(writer, "output");
+            mInputClock.writeCsv(writer, "input");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        if (mInterruptions.getTotal() > 0) {
+            File interruptionFile = RecordingFiles.newFile(mOutputDirectory, "interruptions", "csv");
+            try (Writer writer = new FileWriter(interruptionFile)) {
+                mInterruptions.writeCsv(writer);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        File file = RecordingFiles.newFile(mOutputDirectory, "soak", "csv");
+        try (Writer writer = new FileWriter(file)) {
+            mTimeline.writeCsv(writer);
+            return file;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void pollLoop(Consumer<String> progress) {
+        int lastUnderruns = 0;
+        long lastHeadPosition = 0;
+        long lastOverruns = 0;
+        long settledMs = SETTLE_MS;
+        long resumeHeadPosition = -1;
+        boolean detecting = false;
+
+        while (mRunning) {
+            try {
+                Thread.sleep(mResuming ? RESUME_POLL_INTERVAL_MS : POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                // woken up by onFocusReturned or stop
+                if (!mRunning) return;
+            }
+
+            long elapsedMs = SystemClock.elapsedRealtime() - mStartMs;
+
+            if (mResuming) {
+                long headPosition = mPlayer.getPlaybackHeadPosition();
+                if (resumeHeadPosition < 0) {
+                    resumeHeadPosition = headPosition;
+                    continue;
+                }
+                if (headPosition == resumeHeadPosition) continue;
+
+                mInterruptions.resumed(elapsedMs);
+                mResuming = false;
+                resumeHeadPosition = -1;
+
+                // the paused span is not a glitch; settle again before detecting
+                lastUnderruns = mPlayer.getUnderrunCount();
+                lastHeadPosition = headPosition;
+                lastOverruns = mCapture.getOverrunFrames();
+                settledMs = elapsedMs + SETTLE_MS;
+                detecting = false;
+                Log.d("AudioTester", "Soak test resumed: " + mInterruptions.summary());
+                continue;
+            }
+
+            if (mInterruptions.isInterrupted()) {
+                resumeHeadPosition = -1;
+                progress.accept(mTimeline.summary(elapsedMs) + "\npaused: " + mInterruptions.summary());
+                continue;
+            }
+
+            // start detecting once the tone has made it through the loopback
+            if (!detecting && elapsedMs >= settledMs) {
+                mDetector.reset(elapsedMs);
+                mAnalysisThread.addProcessor(mDetector);
+                detecting = true;
+            }
+
+            int underruns = mPlayer.getUnderrunCount();
+            mTimeline.add(GlitchTimeline.Type.UNDERRUN, elapsedMs, underruns - lastUnderruns);
+            lastUnderruns = underruns;
+
+            long headPosition = mPlayer.getPlaybackHeadPosition();
+            if (headPosition == lastHeadPosition) {
+                mTimeline.add(GlitchTimeline.Type.STALL, elapsedMs, 1);
+            }
+            lastHeadPosition = headPosition;
+
+            long overruns = mCapture.getOverrunFrames();
+            if (overruns > lastOverruns) {
+                mTimeline.add(GlitchTimeline.Type.CAPTURE_OVERRUN, elapsedMs, 1);
+            }
+            lastOverruns = overruns;
+
+            int[] minutes = mTimeline.countsPerMinute(elapsedMs);
+            progress.accept(mTimeline.summary(elapsedMs) + "\nthis minute: " + minutes[minutes.length - 1]
+                    + "\n" + clockSummary() + "\n" + mInterruptions.summary());
+        }
+    }
+
+    private Map<String, Double> metrics(long durationMs) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("duration_min", durationMs / 60_000.0);
+        metrics.put("glitches", (double) mTimeline.getTotal());
+        for (GlitchTimeline.Type type : GlitchTimeline.Type.values()) {
+            metrics.put(type.name().toLowerCase(Locale.US), (double) mTimeline.getTotal(type));
+        }
+        mInterruptions.addMetrics(metrics, durationMs);
+
+        ClockDrift output = mOutputClock.fit();
+        ClockDrift input = mInputClock.fit();
+        if (output != null && input != null) {
+            metrics.put("output_ppm", output.ppm());
+            metrics.put("input_ppm", input.ppm());
+            metrics.put("drift_ppm", ClockDrift.relativePpm(output, input));
+        }
+        return metrics;
+    }
+
+    private String clockSummary() {
+        ClockDrift output = mOutputClock.fit();
+        ClockDrift input = mInputClock.fit();
+        if (output == null || input == null) return "clock drift: waiting for timestamps";
+
+        return String.format(Locale.US, "output %+.1f ppm, input %+.1f ppm, drift %+.1f ppm",
+                output.ppm(), input.ppm(), ClockDrift.relativePpm(output, input));
+    }
+}
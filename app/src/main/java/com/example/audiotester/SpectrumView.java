@@ -0,0 +1,90 @@
+package com.example.audiotester;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Draws the latest spectrum of a {@link SpectrumAnalyzer} on a log-frequency axis.
+ */
+public class SpectrumView extends View {
+
+    private static final float MIN_FREQUENCY = 20f;
+    private static final float TOP_DB = 0f;
+    private static final float BOTTOM_DB = -120f;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path mPath = new Path();
+
+    private SpectrumAnalyzer mAnalyzer;
+    private float[] mSpectrum;
+    private long mLastFrame = -1;
+
+    public SpectrumView(Context context) {
+        this(context, null);
+    }
+
+    public SpectrumView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeWidth(2f);
+        mPaint.setColor(Color.rgb(0x62, 0x00, 0xEE));
+    }
+
+    public void setSpectrumAnalyzer(SpectrumAnalyzer analyzer) {
+        mAnalyzer = analyzer;
+        mSpectrum = analyzer != null ? new float[analyzer.getBinCount()] : null;
+        mLastFrame = -1;
+
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        if (mAnalyzer == null) return;
+
+        long frame = mAnalyzer.copySpectrum(mSpectrum);
+        if (frame != mLastFrame) {
+            mLastFrame = frame;
+            buildPath();
+        }
+
+        canvas.drawPath(mPath, mPaint);
+
+        // keep polling the analyzer while visible
+        postInvalidateOnAnimation();
+    }
+
+    private void buildPath() {
+        int width = getWidth();
+        int height = getHeight();
+
+        double maxFrequency = mAnalyzer.getSampleRate() / 2.0;
+        double logRange = Math.log(maxFrequency / MIN_FREQUENCY);
+
+        mPath.rewind();
+        for (int bin = 1; bin < mSpectrum.length; bin++) {
+            float frequency = mAnalyzer.getBinFrequency(bin);
+            if (frequency < MIN_FREQUENCY) continue;
+
+            float x = (float) (width * Math.log(frequency / MIN_FREQUENCY) / logRange);
+            float db = Math.max(BOTTOM_DB, Math.min(TOP_DB, mSpectrum[bin]));
+            float y = height * (TOP_DB - db) / (TOP_DB - BOTTOM_DB);
+
+            if (mPath.isEmpty()) {
+                mPath.moveTo(x, y);
+            } else {
+                mPath.lineTo(x, y);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.audiotester;
+
+/**
+ * One (input source, audio mode, speakerphone) combination of a sweep and its result.
+ */
+public class SweepCell {
+
+    public final int source;
+    public final String sourceName;
+    public final int mode;
+    public final String modeName;
+    public final boolean speakerphone;
+
+    volatile int frames;
+    volatile int captureRate;
+    volatile LevelStats stats;
+    volatile String error;
+
+    public SweepCell(int source, String sourceName, int mode, String modeName, boolean speakerphone) {
+        this.source = source;
+        this.sourceName = sourceName;
+        this.mode = mode;
+        this.modeName = modeName;
+        this.speakerphone = speakerphone;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * Rate the source was captured at before conversion to the analysis rate, 0 if unknown.
+     */
+    public int getCaptureRate() {
+        return captureRate;
+    }
+
+    public LevelStats getStats() {
+        return stats;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return sourceName + " / " + modeName + (speakerphone ? " / speaker" : "") + ": "
+                + (error != null ? error : String.valueOf(stats));
+    }
+}
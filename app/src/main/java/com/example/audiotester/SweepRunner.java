@@ -0,0 +1,140 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs a capture over every cell of a sweep matrix.
+ *
+ * Capture happens on the calling thread and analysis on a separate thread, with two capture
+ * buffers in flight: while cell n is analyzed, cell n + 1 is already being captured.
+ */
+public class SweepRunner {
+
+    /**
+     * Captures one cell into buffer and returns the number of frames captured.
+     */
+    public interface CellCapture {
+        int capture(SweepCell cell, float[] buffer) throws Exception;
+    }
+
+    private final CellCapture mCapture;
+    private final int mSampleRate;
+    private final float[][] mBuffers;
+
+    private volatile boolean mCancelled = false;
+
+    public SweepRunner(CellCapture capture, int sampleRate, int framesPerCell) {
+        mCapture = capture;
+        mSampleRate = sampleRate;
+        mBuffers = new float[][]{new float[framesPerCell], new float[framesPerCell]};
+    }
+
+    /**
+     * Every source x mode x speakerphone combination, in that nesting order.
+     */
+    public static List<SweepCell> matrix(int[] sources, String[] sourceNames, int[] modes, String[] modeNames) {
+        List<SweepCell> cells = new ArrayList<>();
+
+        for (int s = 0; s < sources.length; s++) {
+            for (int m = 0; m < modes.length; m++) {
+                cells.add(new SweepCell(sources[s], sourceNames[s], modes[m], modeNames[m], false));
+                cells.add(new SweepCell(sources[s], sourceNames[s], modes[m], modeNames[m], true));
+            }
+        }
+
+        return cells;
+    }
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Clears a previous cancel. Call it before handing run() to another thread, so a cancel
+     * that comes before that thread reaches run() is not lost.
+     */
+    public void reset() {
+        mCancelled = false;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Captures and analyzes every cell. The listener is called on the analysis thread with
+     * each finished cell and its index, including cells whose capture failed.
+     */
+    public void run(List<SweepCell> cells, BiConsumer<SweepCell, Integer> listener) throws InterruptedException {
+        ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+        Future<?>[] pending = new Future<?>[mBuffers.length];
+
+        try {
+            for (int i = 0; i < cells.size() && !mCancelled; i++) {
+                int slot = i % mBuffers.length;
+                awaitAnalysis(pending[slot]);
+
+                SweepCell cell = cells.get(i);
+                float[] buffer = mBuffers[slot];
+                int index = i;
+
+                try {
+                    cell.frames = mCapture.capture(cell, buffer);
+                } catch (Exception e) {
+                    cell.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                    pending[slot] = analysisExecutor.submit(() -> listener.accept(cell, index));
+                    continue;
+                }
+
+                pending[slot] = analysisExecutor.submit(() -> {
+                    cell.stats = LevelStats.analyze(buffer, cell.frames, mSampleRate);
+                    listener.accept(cell, index);
+                });
+            }
+
+            for (Future<?> future : pending) {
+                awaitAnalysis(future);
+            }
+        } finally {
+            analysisExecutor.shutdownNow();
+        }
+    }
+
+    public static void writeCsv(List<SweepCell> cells, Writer writer) throws IOException {
+        writer.write("source,mode,speakerphone,frames,capture_rate,rms_db,peak_db,noise_floor_db,snr_db,true_peak_db,loudness_lufs,error\n");
+
+        for (SweepCell cell : cells) {
+            LevelStats stats = cell.stats;
+
+            writer.write(cell.sourceName + "," + cell.modeName + "," + cell.speakerphone + "," + cell.frames + ","
+                    + (cell.captureRate > 0 ? String.valueOf(cell.captureRate) : "") + ",");
+            if (stats != null) {
+                writer.write(String.format(Locale.US, "%.2f,%.2f,%.2f,%.2f,%.2f,%.2f,",
+                        stats.rmsDb, stats.peakDb, stats.noiseFloorDb, stats.snrDb, stats.truePeakDb, stats.loudnessLufs));
+            } else {
+                writer.write(",,,,,,");
+            }
+            writer.write(cell.error != null ? "\"" + cell.error.replace("\"", "\"\"") + "\"" : "");
+            writer.write("\n");
+        }
+    }
+
+    private static void awaitAnalysis(Future<?> future) throws InterruptedException {
+        if (future == null) return;
+
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Sweep analysis failed", e.getCause());
+        }
+    }
+}
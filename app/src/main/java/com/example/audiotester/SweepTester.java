@@ -0,0 +1,167 @@
+package com.example.audiotester;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioRecord;
+import android.util.Log;
+
+import androidx.core.util.Consumer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Batch input test over a sweep matrix of input sources, audio modes and speakerphone states.
+ *
+ * Each cell sets the route through {@link AudioHelper}, captures a fixed-length sample and is
+ * analyzed by {@link SweepRunner} while the next cell is captured. Sources are captured at
+ * their native rate, e.g. 16 kHz for voice call paths, and converted by a {@link Resampler}
+ * to a common analysis rate so every cell is measured the same way. The result table is
+ * written as CSV into the output directory.
+ */
+public class SweepTester {
+
+    private static final String TAG = "SweepTester";
+
+    /** Analysis rate that every capture is converted to. */
+    public static final int SAMPLE_RATE = 48000;
+    public static final int CELL_FRAMES = SAMPLE_RATE * 2;
+
+    // seconds discarded at the start of each cell while the route settles
+    private static final double SETTLE_SECONDS = 0.2;
+
+    private final AudioHelper mAudioHelper;
+    private final File mOutputDirectory;
+    private final SweepRunner mRunner;
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+
+    public SweepTester(AudioHelper audioHelper, File outputDirectory) {
+        mAudioHelper = audioHelper;
+        mOutputDirectory = outputDirectory;
+        mRunner = new SweepRunner(this::captureCell, SAMPLE_RATE, CELL_FRAMES);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Runs the sweep on a worker thread. progress is called for every finished cell and done
+     * with the CSV file, or null if the sweep failed or was cancelled.
+     */
+    public void start(List<SweepCell> cells, BiConsumer<SweepCell, Integer> progress, Consumer<File> done) {
+        if (mRunning) return;
+
+        mRunning = true;
+        mRunner.reset();
+        mThread = new Thread(() -> {
+            File result = null;
+            long start = System.nanoTime();
+
+            try {
+                mRunner.run(cells, progress);
+
+                if (!mRunner.isCancelled()) {
+                    result = writeResults(cells);
+                    Log.d("AudioTester", "Sweep of " + cells.size() + " cells finished in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms");
+                }
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Sweep interrupted");
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                mAudioHelper.setDestination(AudioManager.MODE_NORMAL, false);
+                mRunning = false;
+            }
+
+            done.accept(result);
+        }, TAG);
+        mThread.start();
+    }
+
+    public void cancel() {
+        mRunner.cancel();
+
+        if (mThread != null) {
+            try {
+                mThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mThread = null;
+        }
+    }
+
+    private int captureCell(SweepCell cell, float[] buffer) {
+        mAudioHelper.setDestination(cell.mode, cell.speakerphone);
+
+        // no sample rate, so the source runs at its native rate
+        AudioRecord record = new AudioRecord.Builder()
+                .setAudioSource(cell.source)
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
+                        .setChannelMask(AudioFormat.CHANNEL_IN_MONO)
+                        .build())
+                .build();
+
+        try {
+            if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+                throw new IllegalStateException("AudioRecord not initialized");
+            }
+
+            int captureRate = record.getSampleRate();
+            cell.captureRate = captureRate;
+            Resampler resampler = captureRate != SAMPLE_RATE ? new Resampler(captureRate, SAMPLE_RATE) : null;
+
+            float[] block = new float[captureRate / 10];
+            float[] resampled = resampler != null ? new float[resampler.maxOutputLength(block.length)] : block;
+
+            record.startRecording();
+
+            // the settle period also fills the resampler's filter history
+            int settleFrames = (int) (captureRate * SETTLE_SECONDS);
+            int settled = 0;
+            while (settled < settleFrames) {
+                int read = record.read(block, 0, Math.min(block.length, settleFrames - settled), AudioRecord.READ_BLOCKING);
+                if (read <= 0) throw new IllegalStateException("AudioRecord.read failed with " + read);
+                if (resampler != null) resampler.process(block, 0, read, resampled, 0);
+                settled += read;
+            }
+
+            int frames = 0;
+            while (frames < buffer.length && !mRunner.isCancelled()) {
+                int read = record.read(block, 0, block.length, AudioRecord.READ_BLOCKING);
+                if (read <= 0) throw new IllegalStateException("AudioRecord.read failed with " + read);
+
+                int count = resampler != null ? resampler.process(block, 0, read, resampled, 0) : read;
+                count = Math.min(count, buffer.length - frames);
+                System.arraycopy(resampled, 0, buffer, frames, count);
+                frames += count;
+            }
+
+            return frames;
+        } finally {
+            if (record.getState() == AudioRecord.STATE_INITIALIZED) {
+                record.stop();
+            }
+            record.release();
+        }
+    }
+
+    private File writeResults(List<SweepCell> cells) throws IOException {
+        File file = RecordingFiles.newFile(mOutputDirectory, "sweep", "csv");
+
+        try (Writer writer = new FileWriter(file)) {
+            SweepRunner.writeCsv(cells, writer);
+        }
+
+        return file;
+    }
+}
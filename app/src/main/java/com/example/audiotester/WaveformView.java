@@ -0,0 +1,299 @@
+package com.example.audiotester;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Draws the waveform of a capture from its {@link WaveformPyramid}, one min/max line per pixel.
+ *
+ * Drag pans and pinch zooms; a double tap fits the whole capture again, which is also what the
+ * view follows while the capture grows. Every frame queries only a screen of buckets, so the
+ * cost does not depend on the duration. Zoomed below one bucket per pixel, the samples are
+ * drawn from the finished WAV file instead. They are read on a worker thread, a screen to
+ * either side of the view so a pan does not need a new read, and the level 0 buckets are
+ * drawn until they arrive.
+ */
+public class WaveformView extends View {
+
+    private static final float MIN_FRAMES_PER_PIXEL = 1f;
+
+    // shared by every view, only reads files
+    private static final ExecutorService READER = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "WaveformReader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Paint mPaint = new Paint();
+    private final GestureDetector mGestureDetector;
+    private final ScaleGestureDetector mScaleDetector;
+
+    private WaveformPyramid mWaveform;
+    private File mRecording;
+    // bumped whenever mRecording changes, so reads of an older one are dropped
+    private int mGeneration = 0;
+
+    // samples of [mCacheFrom, mCacheTo), of which mCacheFrames are in the file
+    private float[] mCache;
+    private long mCacheFrom;
+    private long mCacheTo;
+    private int mCacheFrames;
+    // range of the read in flight, mLoadingFrom < 0 when there is none
+    private long mLoadingFrom = -1;
+    private long mLoadingTo;
+
+    // only used on the READER thread
+    private WavReader mReader;
+    private File mReaderFile;
+
+    private float[] mMin = new float[0];
+    private float[] mMax = new float[0];
+    private float[] mLines = new float[0];
+
+    private double mFromFrame = 0;
+    private double mFramesPerPixel = 1;
+    private boolean mFollow = true;
+
+    public WaveformView(Context context) {
+        this(context, null);
+    }
+
+    public WaveformView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeWidth(1f);
+        mPaint.setColor(Color.rgb(0x62, 0x00, 0xEE));
+
+        mGestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return mWaveform != null;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                mFollow = false;
+                mFromFrame += distanceX * mFramesPerPixel;
+                clampView();
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                mFollow = true;
+                invalidate();
+                return true;
+            }
+        });
+
+        mScaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                mFollow = false;
+                // keep the frame under the fingers in place
+                double focus = mFromFrame + detector.getFocusX() * mFramesPerPixel;
+                mFramesPerPixel /= detector.getScaleFactor();
+                clampView();
+                mFromFrame = focus - detector.getFocusX() * mFramesPerPixel;
+                clampView();
+                invalidate();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @param recording WAV file of waveform, read for the deepest zooms once the pyramid is
+     *                  finished; may be null
+     */
+    public void setWaveform(WaveformPyramid waveform, @Nullable File recording) {
+        dropSamples();
+        mWaveform = waveform;
+        mRecording = recording;
+        mFollow = true;
+
+        invalidate();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mWaveform == null) return super.onTouchEvent(event);
+
+        mScaleDetector.onTouchEvent(event);
+        if (!mScaleDetector.isInProgress()) {
+            mGestureDetector.onTouchEvent(event);
+        }
+        return true;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+
+        mMin = new float[w];
+        mMax = new float[w];
+        mLines = new float[4 * w];
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        dropSamples();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        WaveformPyramid waveform = mWaveform;
+        int columns = getWidth();
+        if (waveform == null || columns == 0) return;
+
+        boolean finished = waveform.isFinished();
+        if (mFollow) {
+            mFromFrame = 0;
+            mFramesPerPixel = Math.max(MIN_FRAMES_PER_PIXEL, (double) waveform.getFrameCount() / columns);
+        }
+        long from = (long) mFromFrame;
+        long to = from + (long) Math.ceil(mFramesPerPixel * columns);
+
+        if (mFramesPerPixel >= waveform.getBucketFrames() || !finished || !sampleEnvelope(from, to, columns)) {
+            waveform.query(from, to, columns, mMin, mMax);
+        }
+
+        float middle = getHeight() / 2f;
+        int points = 0;
+        for (int column = 0; column < columns; column++) {
+            if (Float.isNaN(mMin[column])) continue;
+
+            float top = middle - mMax[column] * middle;
+            float bottom = Math.max(top + 1, middle - mMin[column] * middle);
+            mLines[points++] = column + 0.5f;
+            mLines[points++] = top;
+            mLines[points++] = column + 0.5f;
+            mLines[points++] = bottom;
+        }
+        canvas.drawLines(mLines, 0, points, mPaint);
+
+        // keep following the capture until it is finished
+        if (!finished) {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    // envelope of the cached raw samples from the view start, false until they are read
+    private boolean sampleEnvelope(long from, long to, int columns) {
+        if (mRecording == null) return false;
+        if (mCache == null || from < mCacheFrom || to > mCacheTo) {
+            loadSamples(from, to);
+            return false;
+        }
+
+        // columns past the end of the file stay empty
+        int frames = (int) Math.max(0, Math.min(to, mCacheFrom + mCacheFrames) - from);
+        int filled = (int) Math.min(columns, Math.round(frames / mFramesPerPixel));
+        WaveformPyramid.envelope(mCache, (int) (from - mCacheFrom), frames, filled, mMin, mMax);
+        for (int column = filled; column < columns; column++) {
+            mMin[column] = Float.NaN;
+            mMax[column] = Float.NaN;
+        }
+        return true;
+    }
+
+    private void clampView() {
+        WaveformPyramid waveform = mWaveform;
+        int columns = Math.max(1, getWidth());
+        double frames = waveform != null ? waveform.getFrameCount() : 0;
+
+        double maxFramesPerPixel = Math.max(MIN_FRAMES_PER_PIXEL, frames / columns);
+        mFramesPerPixel = Math.max(MIN_FRAMES_PER_PIXEL, Math.min(maxFramesPerPixel, mFramesPerPixel));
+        mFromFrame = Math.max(0, Math.min(frames - mFramesPerPixel * columns, mFromFrame));
+    }
+
+    // reads [from, to) with a screen to either side on the READER thread, then redraws
+    private void loadSamples(long from, long to) {
+        if (mLoadingFrom >= 0 && from >= mLoadingFrom && to <= mLoadingTo) return;
+
+        long span = to - from;
+        long loadFrom = Math.max(0, from - span);
+        long loadTo = to + span;
+        mLoadingFrom = loadFrom;
+        mLoadingTo = loadTo;
+
+        int generation = mGeneration;
+        File recording = mRecording;
+        READER.execute(() -> {
+            float[] samples;
+            int frames;
+            try {
+                if (mReader == null || !recording.equals(mReaderFile)) {
+                    closeReader();
+                    mReader = new WavReader(recording);
+                    mReaderFile = recording;
+                }
+
+                frames = (int) Math.max(0, Math.min(loadTo, mReader.getFrameCount()) - loadFrom);
+                samples = new float[frames];
+                mReader.seek(loadFrom);
+                frames = mReader.read(samples, 0, frames);
+            } catch (IOException e) {
+                e.printStackTrace();
+                closeReader();
+                post(() -> {
+                    if (generation != mGeneration) return;
+                    // stay on the pyramid for this recording
+                    mRecording = null;
+                    mLoadingFrom = -1;
+                });
+                return;
+            }
+
+            int loaded = frames;
+            post(() -> {
+                if (generation != mGeneration) return;
+                mCache = samples;
+                mCacheFrom = loadFrom;
+                mCacheTo = loadTo;
+                mCacheFrames = loaded;
+                mLoadingFrom = -1;
+                invalidate();
+            });
+        });
+    }
+
+    private void dropSamples() {
+        mGeneration++;
+        mCache = null;
+        mLoadingFrom = -1;
+        READER.execute(this::closeReader);
+    }
+
+    // on the READER thread
+    private void closeReader() {
+        if (mReader == null) return;
+
+        try {
+            mReader.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mReader = null;
+        mReaderFile = null;
+    }
+}
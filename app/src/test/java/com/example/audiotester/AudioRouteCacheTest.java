@@ -0,0 +1,123 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AudioRouteCacheTest {
+
+    // AudioDeviceInfo type values
+    private static final int TYPE_BUILTIN_SPEAKER = 2;
+    private static final int TYPE_WIRED_HEADSET = 3;
+    private static final int TYPE_BLUETOOTH_SCO = 7;
+    private static final int TYPE_BUILTIN_MIC = 15;
+    private static final int TYPE_USB_HEADSET = 22;
+
+    private static final AudioRoute SPEAKER = new AudioRoute(1, TYPE_BUILTIN_SPEAKER, true, "speaker");
+    private static final AudioRoute MIC = new AudioRoute(2, TYPE_BUILTIN_MIC, false, "mic");
+    private static final AudioRoute HEADSET_OUT = new AudioRoute(10, TYPE_WIRED_HEADSET, true, "headset");
+    private static final AudioRoute HEADSET_IN = new AudioRoute(11, TYPE_WIRED_HEADSET, false, "headset");
+    private static final AudioRoute SCO = new AudioRoute(20, TYPE_BLUETOOTH_SCO, true, "car kit");
+
+    private final List<List<AudioRoute>> mAdded = new ArrayList<>();
+    private final List<List<AudioRoute>> mRemoved = new ArrayList<>();
+
+    private AudioRouteCache newCache() {
+        AudioRouteCache cache = new AudioRouteCache();
+        cache.addListener((added, removed) -> {
+            mAdded.add(added);
+            mRemoved.add(removed);
+        });
+        return cache;
+    }
+
+    @Test
+    public void addAndRemove_trackPresenceByTypeAndDirection() {
+        AudioRouteCache cache = newCache();
+        cache.onDevicesAdded(new AudioRoute[]{SPEAKER, MIC, HEADSET_OUT, HEADSET_IN});
+
+        assertTrue(cache.hasOutput(TYPE_WIRED_HEADSET));
+        assertTrue(cache.hasInput(TYPE_WIRED_HEADSET));
+        assertTrue(cache.hasInput(TYPE_BUILTIN_MIC));
+        assertFalse(cache.hasOutput(TYPE_BUILTIN_MIC));
+        assertFalse(cache.hasOutput(TYPE_USB_HEADSET));
+        assertEquals(4, cache.size());
+
+        cache.onDevicesRemoved(new AudioRoute[]{HEADSET_OUT});
+
+        assertFalse(cache.hasOutput(TYPE_WIRED_HEADSET));
+        assertTrue(cache.hasInput(TYPE_WIRED_HEADSET));
+        assertEquals(Collections.singletonList(HEADSET_OUT), mRemoved.get(1));
+    }
+
+    @Test
+    public void duplicateEvents_areNotReported() {
+        AudioRouteCache cache = newCache();
+        cache.onDevicesAdded(new AudioRoute[]{SPEAKER, MIC});
+        cache.onDevicesAdded(new AudioRoute[]{SPEAKER});
+        cache.onDevicesRemoved(new AudioRoute[]{SCO});
+
+        assertEquals(1, mAdded.size());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void sameTypeTwice_staysPresentUntilBothRemoved() {
+        AudioRouteCache cache = newCache();
+        AudioRoute secondSco = new AudioRoute(21, TYPE_BLUETOOTH_SCO, true, "earbuds");
+        cache.onDevicesAdded(new AudioRoute[]{SCO, secondSco});
+
+        cache.onDevicesRemoved(new AudioRoute[]{SCO});
+        assertTrue(cache.hasOutput(TYPE_BLUETOOTH_SCO));
+
+        cache.onDevicesRemoved(new AudioRoute[]{secondSco});
+        assertFalse(cache.hasOutput(TYPE_BLUETOOTH_SCO));
+    }
+
+    @Test
+    public void setDevices_reportsDifference() {
+        AudioRouteCache cache = newCache();
+        cache.setDevices(new AudioRoute[]{SPEAKER, MIC, HEADSET_OUT});
+        cache.setDevices(new AudioRoute[]{SPEAKER, MIC, SCO});
+
+        assertEquals(2, mAdded.size());
+        assertEquals(Collections.singletonList(SCO), mAdded.get(1));
+        assertEquals(Collections.singletonList(HEADSET_OUT), mRemoved.get(1));
+        assertFalse(cache.hasOutput(TYPE_WIRED_HEADSET));
+        assertTrue(cache.hasOutput(TYPE_BLUETOOTH_SCO));
+
+        // identical set, nothing to report
+        cache.setDevices(new AudioRoute[]{SCO, MIC, SPEAKER});
+        assertEquals(2, mAdded.size());
+    }
+
+    @Test
+    public void setDevices_replacesReusedIdWithNewType() {
+        AudioRouteCache cache = newCache();
+        cache.setDevices(new AudioRoute[]{HEADSET_OUT});
+
+        AudioRoute usb = new AudioRoute(HEADSET_OUT.id, TYPE_USB_HEADSET, true, "usb");
+        cache.setDevices(new AudioRoute[]{usb});
+
+        assertFalse(cache.hasOutput(TYPE_WIRED_HEADSET));
+        assertTrue(cache.hasOutput(TYPE_USB_HEADSET));
+        assertEquals(Arrays.asList(usb), mAdded.get(1));
+        assertEquals(Arrays.asList(HEADSET_OUT), mRemoved.get(1));
+    }
+
+    @Test
+    public void largeTypeValues_growCounts() {
+        AudioRouteCache cache = newCache();
+        AudioRoute future = new AudioRoute(99, 100, true, "future");
+        cache.onDevicesAdded(new AudioRoute[]{future});
+
+        assertTrue(cache.hasOutput(100));
+        assertFalse(cache.hasInput(100));
+        assertFalse(cache.hasOutput(-1));
+    }
+}
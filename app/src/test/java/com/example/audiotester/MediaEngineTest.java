@@ -0,0 +1,243 @@
+package com.example.audiotester;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MediaEngineTest {
+
+    private FakeBackend mBackend;
+    private ExecutorService mExecutor;
+    private MediaEngine mEngine;
+
+    private final List<MediaEngine.State> mStates = Collections.synchronizedList(new ArrayList<>());
+    private final List<Exception> mErrors = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        mBackend = new FakeBackend();
+        mExecutor = MediaEngine.newAudioExecutor();
+        mEngine = new MediaEngine(mBackend, mExecutor, Runnable::run);
+        mEngine.setListener(new MediaEngine.Listener() {
+            @Override
+            public void onStateChanged(MediaEngine.State state) {
+                mStates.add(state);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                mErrors.add(e);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void play_preparesAsynchronouslyThenStarts() throws Exception {
+        mEngine.play("clip.mp3");
+        flush();
+
+        assertEquals(MediaEngine.State.PREPARING, mEngine.getState());
+        assertEquals(Arrays.asList("source clip.mp3", "prepareAsync"), mBackend.calls);
+
+        mBackend.callback.onPrepared();
+        flush();
+
+        assertEquals(MediaEngine.State.PLAYING, mEngine.getState());
+        assertEquals(Arrays.asList(MediaEngine.State.PREPARING, MediaEngine.State.PLAYING), mStates);
+
+        mBackend.callback.onCompletion();
+        flush();
+
+        assertEquals(MediaEngine.State.IDLE, mEngine.getState());
+        assertTrue(mErrors.isEmpty());
+    }
+
+    @Test
+    public void commands_runOnAudioThread() throws Exception {
+        mEngine.play("clip.mp3");
+        flush();
+
+        assertNotEquals(Thread.currentThread(), mBackend.thread);
+        assertEquals("MediaEngine", mBackend.thread.getName());
+    }
+
+    @Test
+    public void warmUp_runsOnAudioThreadOnlyWhenIdle() throws Exception {
+        mEngine.warmUp();
+        flush();
+
+        assertEquals(Collections.singletonList("warmUp"), mBackend.calls);
+        assertEquals("MediaEngine", mBackend.thread.getName());
+        assertTrue(mStates.isEmpty());
+
+        mEngine.play("clip.mp3");
+        mEngine.warmUp();
+        flush();
+
+        assertEquals(Arrays.asList("warmUp", "source clip.mp3", "prepareAsync"), mBackend.calls);
+    }
+
+    @Test
+    public void stop_whilePreparing_ignoresLatePrepared() throws Exception {
+        mEngine.play("clip.mp3");
+        mEngine.stop();
+        flush();
+
+        assertEquals(MediaEngine.State.IDLE, mEngine.getState());
+
+        mBackend.callback.onPrepared();
+        flush();
+
+        assertEquals(MediaEngine.State.IDLE, mEngine.getState());
+        assertFalse(mBackend.calls.contains("startPlayback"));
+    }
+
+    @Test
+    public void record_thenStopAndPlayBack() throws Exception {
+        File file = new File("mic_record.mp4");
+
+        mEngine.record(1, file);
+        flush();
+        assertEquals(MediaEngine.State.RECORDING, mEngine.getState());
+
+        // a second command while busy is ignored
+        mEngine.play("other.mp3");
+        flush();
+        assertEquals(MediaEngine.State.RECORDING, mEngine.getState());
+
+        mEngine.stop();
+        mEngine.play(file.getPath());
+        mBackend.callback.onPrepared();
+        flush();
+
+        assertEquals(MediaEngine.State.PLAYING, mEngine.getState());
+        assertEquals(Arrays.asList("record 1 mic_record.mp4", "stopRecording", "reset",
+                "source mic_record.mp4", "prepareAsync", "startPlayback"), mBackend.calls);
+    }
+
+    @Test
+    public void failedRecordingStart_resetsAndReportsError() throws Exception {
+        mBackend.failRecording = true;
+
+        mEngine.record(1, new File("mic_record.mp4"));
+        flush();
+
+        assertEquals(MediaEngine.State.IDLE, mEngine.getState());
+        assertEquals(1, mErrors.size());
+        assertTrue(mBackend.calls.contains("reset"));
+    }
+
+    @Test
+    public void backendError_returnsToIdle() throws Exception {
+        mEngine.play("clip.mp3");
+        mBackend.callback.onPrepared();
+        mBackend.callback.onError(1, -1004);
+        flush();
+
+        assertEquals(MediaEngine.State.IDLE, mEngine.getState());
+        assertEquals(1, mErrors.size());
+    }
+
+    @Test
+    public void release_stopsThenReleasesOnce() throws Exception {
+        mEngine.play("clip.mp3");
+        mBackend.callback.onPrepared();
+        mEngine.release();
+        mEngine.play("clip.mp3");
+        assertTrue(mExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(MediaEngine.State.RELEASED, mEngine.getState());
+        assertEquals(Arrays.asList(MediaEngine.State.PREPARING, MediaEngine.State.PLAYING, MediaEngine.State.IDLE,
+                MediaEngine.State.RELEASING, MediaEngine.State.RELEASED), mStates);
+        assertEquals(1, Collections.frequency(mBackend.calls, "release"));
+    }
+
+    /**
+     * Waits until every command queued so far has run.
+     */
+    private void flush() throws Exception {
+        mExecutor.submit(() -> { }).get();
+    }
+
+    private static class FakeBackend implements MediaBackend {
+
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        volatile Callback callback;
+        volatile Thread thread;
+        volatile boolean failRecording = false;
+
+        private void call(String name) {
+            thread = Thread.currentThread();
+            calls.add(name);
+        }
+
+        @Override
+        public void setCallback(Callback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void warmUp() {
+            call("warmUp");
+        }
+
+        @Override
+        public void setPlaybackSource(String uri) {
+            call("source " + uri);
+        }
+
+        @Override
+        public void prepareAsync() {
+            call("prepareAsync");
+        }
+
+        @Override
+        public void startPlayback() {
+            call("startPlayback");
+        }
+
+        @Override
+        public void stopPlayback() {
+            call("stopPlayback");
+        }
+
+        @Override
+        public void startRecording(int audioSource, File outputFile) throws IOException {
+            if (failRecording) {
+                throw new IOException("prepare failed");
+            }
+            call("record " + audioSource + " " + outputFile.getPath());
+        }
+
+        @Override
+        public void stopRecording() {
+            call("stopRecording");
+        }
+
+        @Override
+        public void reset() {
+            call("reset");
+        }
+
+        @Override
+        public void release() {
+            call("release");
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SweepRunnerTest {
+
+    private static final int SAMPLE_RATE = 8000;
+
+    @Test
+    public void matrix_coversEveryCombination() {
+        List<SweepCell> cells = SweepRunner.matrix(
+                new int[]{1, 6, 9}, new String[]{"Mic", "Voice recognition", "Unprocessed"},
+                new int[]{0, 3}, new String[]{"Normal mode", "In communication mode"});
+
+        assertEquals(3 * 2 * 2, cells.size());
+        assertEquals("Mic", cells.get(0).sourceName);
+        assertFalse(cells.get(0).speakerphone);
+        assertTrue(cells.get(1).speakerphone);
+        assertEquals(3, cells.get(cells.size() - 1).mode);
+    }
+
+    @Test
+    public void levelStats_readsSineLevels() {
+        float[] signal = new float[SAMPLE_RATE];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = (float) (0.5 * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE));
+        }
+
+        LevelStats stats = LevelStats.analyze(signal, signal.length, SAMPLE_RATE);
+
+        assertEquals(-9.03, stats.rmsDb, 0.05);
+        assertEquals(-6.02, stats.peakDb, 0.05);
+        assertEquals(0, stats.snrDb, 0.5);
+        assertTrue(stats.truePeakDb >= stats.peakDb);
+    }
+
+    @Test
+    public void levelStats_separatesNoiseFloorFromSignal() {
+        Random random = new Random(5);
+        float[] signal = new float[SAMPLE_RATE];
+        for (int i = 0; i < signal.length; i++) {
+            float noise = (float) (random.nextGaussian() * 0.001);
+            float tone = i >= SAMPLE_RATE / 2 ? (float) (0.1 * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE)) : 0;
+            signal[i] = noise + tone;
+        }
+
+        LevelStats stats = LevelStats.analyze(signal, signal.length, SAMPLE_RATE);
+
+        assertEquals(-60, stats.noiseFloorDb, 1.5);
+        assertEquals(-23, stats.snrDb + stats.noiseFloorDb, 1.0);
+        assertEquals(37, stats.snrDb, 2.0);
+    }
+
+    @Test
+    public void levelStats_handlesSilence() {
+        LevelStats stats = LevelStats.analyze(new float[100], 100, SAMPLE_RATE);
+
+        assertEquals(LevelStats.MIN_DB, stats.rmsDb, 0);
+        assertEquals(LevelStats.MIN_DB, stats.peakDb, 0);
+    }
+
+    @Test
+    public void run_analyzesEachCellFromItsOwnCapture() throws InterruptedException {
+        List<SweepCell> cells = SweepRunner.matrix(
+                new int[]{1, 2, 3}, new String[]{"a", "b", "c"}, new int[]{0, 1}, new String[]{"x", "y"});
+        List<Integer> finished = Collections.synchronizedList(new ArrayList<>());
+
+        SweepRunner runner = new SweepRunner((cell, buffer) -> {
+            // amplitude encodes the cell, so mixed-up buffers show in the result
+            float amplitude = 0.01f * (cells.indexOf(cell) + 1);
+            Arrays.fill(buffer, amplitude);
+            return buffer.length;
+        }, SAMPLE_RATE, SAMPLE_RATE / 10);
+
+        runner.run(cells, (cell, index) -> finished.add(index));
+
+        assertEquals(cells.size(), finished.size());
+        for (int i = 0; i < cells.size(); i++) {
+            assertEquals(LevelStats.amplitudeToDb(0.01 * (i + 1)), cells.get(i).getStats().rmsDb, 1e-3);
+            assertEquals((Integer) i, finished.get(i));
+        }
+    }
+
+    @Test
+    public void run_keepsCancelFromBeforeItStarted() throws Exception {
+        List<SweepCell> cells = SweepRunner.matrix(new int[]{1}, new String[]{"a"}, new int[]{0}, new String[]{"x"});
+        List<Integer> finished = new ArrayList<>();
+
+        SweepRunner runner = new SweepRunner((cell, buffer) -> buffer.length, SAMPLE_RATE, 100);
+        runner.cancel();
+        runner.run(cells, (cell, index) -> finished.add(index));
+        assertTrue(runner.isCancelled());
+        assertTrue(finished.isEmpty());
+
+        runner.reset();
+        runner.run(cells, (cell, index) -> finished.add(index));
+        assertEquals(2, finished.size());
+    }
+
+    @Test
+    public void run_reportsFailedCaptures() throws Exception {
+        List<SweepCell> cells = SweepRunner.matrix(new int[]{1}, new String[]{"a"}, new int[]{0}, new String[]{"x"});
+
+        SweepRunner runner = new SweepRunner((cell, buffer) -> {
+            if (cell.speakerphone) throw new IllegalStateException("AudioRecord not initialized");
+            cell.captureRate = 16000;
+            return buffer.length;
+        }, SAMPLE_RATE, 100);
+        runner.run(cells, (cell, index) -> { });
+
+        assertNotNull(cells.get(0).getStats());
+        assertNull(cells.get(1).getStats());
+        assertEquals("IllegalStateException: AudioRecord not initialized", cells.get(1).getError());
+
+        StringWriter csv = new StringWriter();
+        SweepRunner.writeCsv(cells, csv);
+        String[] lines = csv.toString().split("\n");
+
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].startsWith("a,x,false,100,16000,"));
+        assertEquals("a,x,true,0,,,,,,,,\"IllegalStateException: AudioRecord not initialized\"", lines[2]);
+    }
+
+    @Test
+    public void run_overlapsAnalysisWithNextCapture() throws InterruptedException {
+        List<SweepCell> cells = SweepRunner.matrix(
+                new int[]{1, 2, 3}, new String[]{"a", "b", "c"}, new int[]{0}, new String[]{"x"});
+        long delayMs = 60;
+
+        SweepRunner runner = new SweepRunner((cell, buffer) -> {
+            Thread.sleep(delayMs);
+            return buffer.length;
+        }, SAMPLE_RATE, 100);
+
+        long start = System.nanoTime();
+        runner.run(cells, (cell, index) -> {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // sequential would take 2 * 6 * delay, pipelined about 7 * delay
+        assertTrue("elapsed " + elapsedMs + " ms", elapsedMs < 10 * delayMs);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.audiotester;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline analysis of a generated corpus: 64 captures of 5 s at 48 kHz, 16-bit, from four
+ * devices, with a latency chirp every 500 ms. Compare the threads to see how the batch scales;
+ * the corpus stays in the page cache, so this is the CPU bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchAnalyzerBenchmark {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int DEVICES = 4;
+    private static final int FILES_PER_DEVICE = 16;
+    private static final int FRAMES = 5 * SAMPLE_RATE;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private File mRoot;
+    private List<File> mFiles;
+    private BatchAnalyzer mAnalyzer;
+
+    @Setup
+    public void setUp() throws IOException {
+        mRoot = Files.createTempDirectory("bench_batch").toFile();
+
+        float[] probe = BatchAnalyzer.latencyProbe();
+        float[] samples = new float[FRAMES];
+        for (int device = 0; device < DEVICES; device++) {
+            File directory = new File(mRoot, "device" + device);
+            if (!directory.mkdirs()) throw new IOException("Cannot create " + directory);
+
+            for (int i = 0; i < FILES_PER_DEVICE; i++) {
+                SignalGenerator.pinkNoise(SAMPLE_RATE, 0.01f, device * FILES_PER_DEVICE + i).fill(samples, 0, FRAMES);
+                int offset = 100 * device + i;
+                for (int start = offset; start + probe.length <= FRAMES; start += SAMPLE_RATE / 2) {
+                    for (int j = 0; j < probe.length; j++) {
+                        samples[start + j] += probe[j];
+                    }
+                }
+
+                try (WavWriter writer = new WavWriter(new File(directory, "capture_" + i + ".wav"), SAMPLE_RATE, 1, 16)) {
+                    writer.write(samples, 0, FRAMES);
+                }
+            }
+        }
+
+        mFiles = BatchAnalyzer.findCaptures(mRoot);
+        mAnalyzer = new BatchAnalyzer(threads, CaptureAnalyzer.DEFAULT_BLOCK_FRAMES);
+        mAnalyzer.setMarkerProbe(BatchAnalyzer.latencyProbe(), BatchAnalyzer.PROBE_SAMPLE_RATE,
+                LatencyAnalyzer.DEFAULT_MIN_CORRELATION);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : mFiles) {
+            file.delete();
+        }
+        for (int device = 0; device < DEVICES; device++) {
+            new File(mRoot, "device" + device).delete();
+        }
+        mRoot.delete();
+    }
+
+    @Benchmark
+    public BatchReport analyze() {
+        return mAnalyzer.analyze(mRoot, mFiles);
+    }
+}
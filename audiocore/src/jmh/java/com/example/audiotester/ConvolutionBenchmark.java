@@ -0,0 +1,88 @@
+package com.example.audiotester;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overlap-add convolution per 10 ms block at 48 kHz, and the offline work of the response test:
+ * a 10 s by 10 s convolution and the deconvolution of a 10 s sweep, each expected well under 1 s.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConvolutionBenchmark {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK = 480;
+    private static final int OFFLINE_FRAMES = 10 * SAMPLE_RATE;
+
+    @State(Scope.Thread)
+    public static class Streaming {
+
+        @Param({"64", "1024", "16384"})
+        public int kernelLength;
+
+        private FftConvolver mConvolver;
+        private float[] mIn;
+        private float[] mOut;
+
+        @Setup
+        public void setUp() {
+            float[] kernel = new float[kernelLength];
+            SignalGenerator.whiteNoise(SAMPLE_RATE, 0.1f, 1).fill(kernel, 0, kernelLength);
+            mConvolver = new FftConvolver(kernel, kernelLength, BLOCK);
+
+            mIn = new float[BLOCK];
+            mOut = new float[BLOCK];
+            SignalGenerator.pinkNoise(SAMPLE_RATE, 0.5f, 2).fill(mIn, 0, BLOCK);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Offline {
+
+        private float[] mSignal;
+        private float[] mKernel;
+        private SweepAnalyzer mSweepAnalyzer;
+        private float[] mCaptured;
+
+        @Setup
+        public void setUp() {
+            mSignal = new float[OFFLINE_FRAMES];
+            mKernel = new float[OFFLINE_FRAMES];
+            SignalGenerator.whiteNoise(SAMPLE_RATE, 0.5f, 5).fill(mSignal, 0, OFFLINE_FRAMES);
+            SignalGenerator.whiteNoise(SAMPLE_RATE, 0.5f, 6).fill(mKernel, 0, OFFLINE_FRAMES);
+
+            // the sweep 50 ms late with a 0.5 s tail, as the response test captures it
+            mSweepAnalyzer = new SweepAnalyzer(SAMPLE_RATE, 20, 20000, 10);
+            float[] sweep = mSweepAnalyzer.getSweep();
+            mCaptured = new float[sweep.length + SAMPLE_RATE / 20 + SAMPLE_RATE / 2];
+            System.arraycopy(sweep, 0, mCaptured, SAMPLE_RATE / 20, sweep.length);
+        }
+    }
+
+    @Benchmark
+    public float[] block(Streaming state) {
+        state.mConvolver.process(state.mIn, 0, BLOCK, state.mOut, 0);
+        return state.mOut;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public float[] tenSeconds(Offline state) {
+        return FftConvolver.convolve(state.mSignal, OFFLINE_FRAMES, state.mKernel, OFFLINE_FRAMES);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public float[] sweepDeconvolution(Offline state) {
+        return state.mSweepAnalyzer.impulseResponse(state.mCaptured, state.mCaptured.length);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.audiotester;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Real FFT and the spectrum analyzer built on it, per transform. A spectrum frame has to take
+ * well under 1 / {@link SpectrumAnalyzer#TARGET_FRAME_RATE} s for the live view to keep up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FftBenchmark {
+
+    @Param({"256", "1024", "4096", "16384"})
+    public int size;
+
+    private RealFft mFft;
+    private SpectrumAnalyzer mAnalyzer;
+    private float[] mSignal;
+    private float[] mData;
+
+    @Setup
+    public void setUp() {
+        mFft = new RealFft(size);
+        mAnalyzer = new SpectrumAnalyzer(48000, size, WindowFunction.HANN, size);
+        mSignal = new float[size];
+        SignalGenerator.pinkNoise(48000, 0.5f, 1).fill(mSignal, 0, size);
+        mData = new float[size];
+    }
+
+    @Benchmark
+    public float[] forward() {
+        System.arraycopy(mSignal, 0, mData, 0, size);
+        mFft.forward(mData);
+        return mData;
+    }
+
+    @Benchmark
+    public float[] forwardInverse() {
+        System.arraycopy(mSignal, 0, mData, 0, size);
+        mFft.forward(mData);
+        mFft.inverse(mData);
+        return mData;
+    }
+
+    @Benchmark
+    public long spectrumFrame() {
+        mAnalyzer.process(mSignal, 0, size);
+        return mAnalyzer.getFrameCount();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.audiotester;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metering cost per block at 48 kHz; 480 frames is the 10 ms block the analysis thread uses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MeterBenchmark {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    @Param({"480", "4800"})
+    public int block;
+
+    private LoudnessMeter mLoudnessMeter;
+    private GlitchDetector mGlitchDetector;
+    private float[] mSignal;
+
+    @Setup
+    public void setUp() {
+        mLoudnessMeter = new LoudnessMeter(SAMPLE_RATE);
+        mGlitchDetector = new GlitchDetector(SAMPLE_RATE, 1000, new GlitchTimeline(1000));
+        mSignal = new float[block];
+        SignalGenerator.sine(SAMPLE_RATE, 1000, 0.5f).fill(mSignal, 0, block);
+    }
+
+    @Benchmark
+    public double loudness() {
+        mLoudnessMeter.process(mSignal, 0, block);
+        return mLoudnessMeter.getMomentaryLufs();
+    }
+
+    @Benchmark
+    public GlitchDetector glitchDetector() {
+        mGlitchDetector.process(mSignal, 0, block);
+        return mGlitchDetector;
+    }
+
+    @Benchmark
+    public LevelStats levelStats() {
+        return LevelStats.analyze(mSignal, block, SAMPLE_RATE);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.audiotester;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Resampler} per 10 ms input block, for the conversions the input sweep needs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResamplerBenchmark {
+
+    @Param({"8000:48000", "16000:48000", "44100:48000", "48000:16000"})
+    public String conversion;
+
+    private Resampler mResampler;
+    private float[] mInput;
+    private float[] mOutput;
+
+    @Setup
+    public void setUp() {
+        String[] rates = conversion.split(":");
+        int inputRate = Integer.parseInt(rates[0]);
+        mResampler = new Resampler(inputRate, Integer.parseInt(rates[1]));
+
+        mInput = new float[inputRate / 100];
+        SignalGenerator.pinkNoise(inputRate, 0.5f, 1).fill(mInput, 0, mInput.length);
+        mOutput = new float[mResampler.maxOutputLength(mInput.length)];
+    }
+
+    @Benchmark
+    public int block() {
+        return mResampler.process(mInput, 0, mInput.length, mOutput, 0);
+    }
+}
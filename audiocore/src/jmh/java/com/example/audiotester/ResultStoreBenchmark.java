@@ -0,0 +1,73 @@
+package com.example.audiotester;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening a compacted store of 5000 results over 20 keys and querying the history of each key,
+ * what the app pays at startup after months of sessions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResultStoreBenchmark {
+
+    private static final int RESULTS = 5000;
+
+    private final ResultKey[] mKeys = new ResultKey[20];
+    private File mDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        for (int i = 0; i < mKeys.length; i++) {
+            mKeys[i] = new ResultKey("device " + i % 4, "route " + i % 5, "normal", "");
+        }
+
+        mDirectory = Files.createTempDirectory("bench_results").toFile();
+        try (ResultStore store = new ResultStore(mDirectory, Runnable::run, 0)) {
+            for (int i = 0; i < RESULTS; i++) {
+                Map<String, Double> metrics = new LinkedHashMap<>();
+                metrics.put("median_ms", (double) i);
+                metrics.put("count", 10.0);
+                store.append(new TestResult(i * 1000L, "latency", mKeys[i % mKeys.length], metrics));
+            }
+            store.compact();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public int openAndQuery() throws IOException {
+        int count = 0;
+        try (ResultStore store = new ResultStore(mDirectory, Runnable::run, 0)) {
+            for (ResultKey key : mKeys) {
+                count += store.history(key).size();
+                count += store.history(key, 1_000_000, 1_200_000).size();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.audiotester;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PcmRingBuffer} throughput, on one thread and between a producer and a consumer
+ * thread as in capture. Scores are blocks per microsecond; the SPSC group's write and read
+ * scores are attempts, of which the ones that found the buffer full or empty move nothing.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RingBufferBenchmark {
+
+    @Param({"64", "480", "4096"})
+    public int block;
+
+    private PcmRingBuffer mRingBuffer;
+    private float[] mFloats;
+    private short[] mShorts;
+    private float[] mOut;
+
+    @Setup
+    public void setUp() {
+        mRingBuffer = new PcmRingBuffer(48000);
+        mFloats = new float[block];
+        mShorts = new short[block];
+        mOut = new float[block];
+        SignalGenerator.whiteNoise(48000, 0.5f, 1).fill(mFloats, 0, block);
+        for (int i = 0; i < block; i++) {
+            mShorts[i] = (short) (mFloats[i] * 32767);
+        }
+    }
+
+    @Benchmark
+    @Group("floats")
+    public int writeReadFloats() {
+        mRingBuffer.write(mFloats, 0, block);
+        return mRingBuffer.read(mOut, 0, block);
+    }
+
+    @Benchmark
+    @Group("shorts")
+    public int writeReadShorts() {
+        mRingBuffer.write(mShorts, 0, block);
+        return mRingBuffer.read(mOut, 0, block);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public int producer() {
+        return mRingBuffer.write(mShorts, 0, block);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public int consumer() {
+        return mRingBuffer.read(mOut, 0, block);
+    }
+}
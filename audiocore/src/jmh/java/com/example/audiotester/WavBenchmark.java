@@ -0,0 +1,76 @@
+package com.example.audiotester;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading ten seconds of 48 kHz mono WAV in 10 ms blocks, through the page cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WavBenchmark {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK = 480;
+    private static final int BLOCKS = 1000;
+
+    @Param({"16", "32"})
+    public int bitsPerSample;
+
+    private File mWriteFile;
+    private File mReadFile;
+    private float[] mBlock;
+
+    @Setup
+    public void setUp() throws IOException {
+        mBlock = new float[BLOCK];
+        SignalGenerator.pinkNoise(SAMPLE_RATE, 0.5f, 1).fill(mBlock, 0, BLOCK);
+
+        mWriteFile = File.createTempFile("bench_write", ".wav");
+        mReadFile = File.createTempFile("bench_read", ".wav");
+        write(mReadFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mWriteFile.delete();
+        mReadFile.delete();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        return write(mWriteFile);
+    }
+
+    @Benchmark
+    public float read() throws IOException {
+        float sum = 0;
+        try (WavReader reader = new WavReader(mReadFile)) {
+            while (reader.read(mBlock, 0, BLOCK) > 0) {
+                sum += mBlock[0];
+            }
+        }
+        return sum;
+    }
+
+    private long write(File file) throws IOException {
+        try (WavWriter writer = new WavWriter(file, SAMPLE_RATE, 1, bitsPerSample)) {
+            for (int i = 0; i < BLOCKS; i++) {
+                writer.write(mBlock, 0, BLOCK);
+            }
+            return writer.getFrameCount();
+        }
+    }
+}
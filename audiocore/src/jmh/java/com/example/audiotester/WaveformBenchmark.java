@@ -0,0 +1,80 @@
+package com.example.audiotester;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waveform pyramid cost: building it per captured sample from 10 ms blocks of 16-bit PCM at
+ * 48 kHz, and querying a 1080 pixel wide screen of an hour-long capture at full and 1 s zoom.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WaveformBenchmark {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK = 480;
+    private static final int COLUMNS = 1080;
+    private static final long HOUR_FRAMES = 3600L * SAMPLE_RATE;
+
+    @Param({"128", "512"})
+    public int bucketFrames;
+
+    private short[] mBlock;
+    private WaveformPyramid mBuilding;
+    private WaveformPyramid mHour;
+    private final float[] mMin = new float[COLUMNS];
+    private final float[] mMax = new float[COLUMNS];
+
+    @Setup
+    public void setUp() {
+        float[] signal = new float[SAMPLE_RATE];
+        SignalGenerator.pinkNoise(SAMPLE_RATE, 0.3f, 1).fill(signal, 0, SAMPLE_RATE);
+        short[] second = new short[SAMPLE_RATE];
+        for (int i = 0; i < SAMPLE_RATE; i++) {
+            second[i] = (short) Math.round(Math.max(-1, Math.min(1, signal[i])) * Short.MAX_VALUE);
+        }
+        mBlock = new short[BLOCK];
+        System.arraycopy(second, 0, mBlock, 0, BLOCK);
+
+        mHour = new WaveformPyramid(SAMPLE_RATE, bucketFrames, WaveformPyramid.DEFAULT_FACTOR);
+        for (long frame = 0; frame < HOUR_FRAMES; frame += SAMPLE_RATE) {
+            mHour.write(second, 0, SAMPLE_RATE);
+        }
+        mHour.finish();
+    }
+
+    // a fresh pyramid per iteration keeps a long run from growing it without bound
+    @Setup(Level.Iteration)
+    public void newPyramid() {
+        mBuilding = new WaveformPyramid(SAMPLE_RATE, bucketFrames, WaveformPyramid.DEFAULT_FACTOR);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public WaveformPyramid buildPerSample() {
+        mBuilding.write(mBlock, 0, BLOCK);
+        return mBuilding;
+    }
+
+    @Benchmark
+    public int queryHour() {
+        return mHour.query(0, HOUR_FRAMES, COLUMNS, mMin, mMax);
+    }
+
+    @Benchmark
+    public int querySecond() {
+        long from = HOUR_FRAMES / 2;
+        return mHour.query(from, from + SAMPLE_RATE, COLUMNS, mMin, mMax);
+    }
+}
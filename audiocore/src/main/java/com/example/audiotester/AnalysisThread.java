@@ -0,0 +1,102 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+
+/**
+ * Single consumer of a {@link PcmRingBuffer}: drains it in fixed blocks and hands each
+ * block to every registered {@link BlockProcessor}.
+ */
+public class AnalysisThread {
+
+    private static final long IDLE_SLEEP_MS = 5;
+
+    private final PcmRingBuffer mRingBuffer;
+    private final float[] mBlock;
+
+    // replaced on change so the drain loop iterates without allocating
+    private volatile BlockProcessor[] mProcessors = new BlockProcessor[0];
+
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+
+    public AnalysisThread(PcmRingBuffer ringBuffer, int blockSize) {
+        mRingBuffer = ringBuffer;
+        mBlock = new float[blockSize];
+    }
+
+    public synchronized void addProcessor(BlockProcessor processor) {
+        if (Arrays.asList(mProcessors).contains(processor)) return;
+
+        BlockProcessor[] processors = Arrays.copyOf(mProcessors, mProcessors.length + 1);
+        processors[processors.length - 1] = processor;
+        mProcessors = processors;
+    }
+
+    public synchronized void removeProcessor(BlockProcessor processor) {
+        BlockProcessor[] processors = new BlockProcessor[mProcessors.length];
+        int count = 0;
+
+        for (BlockProcessor p : mProcessors) {
+            if (p != processor) processors[count++] = p;
+        }
+        mProcessors = Arrays.copyOf(processors, count);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    public void start() {
+        if (mRunning) return;
+
+        // drop whatever is left from a previous run
+        mRingBuffer.skip(mRingBuffer.availableToRead());
+
+        mRunning = true;
+        mThread = new Thread(this::run, "AnalysisThread");
+        mThread.start();
+    }
+
+    public void stop() {
+        if (!mRunning) return;
+
+        mRunning = false;
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mThread = null;
+    }
+
+    /**
+     * Processes every complete block currently in the ring buffer and returns how many were processed.
+     */
+    public int drain() {
+        int blocks = 0;
+
+        while (mRingBuffer.availableToRead() >= mBlock.length) {
+            mRingBuffer.read(mBlock, 0, mBlock.length);
+
+            BlockProcessor[] processors = mProcessors;
+            for (int i = 0; i < processors.length; i++) {
+                processors[i].process(mBlock, 0, mBlock.length);
+            }
+            blocks++;
+        }
+
+        return blocks;
+    }
+
+    private void run() {
+        while (mRunning) {
+            if (drain() == 0) {
+                try {
+                    Thread.sleep(IDLE_SLEEP_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.audiotester;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link PcmSink} that moves the writes of another sink off the capture thread.
+ *
+ * The capture thread copies samples into a buffer from a fixed pool and hands full buffers to
+ * an I/O thread through a bounded queue; the I/O thread writes them to the target and returns
+ * them to the pool. When storage stalls long enough to drain the pool, the capture thread
+ * never waits: the samples that do not fit are dropped and counted, so a slow disk costs
+ * frames in the recording instead of overruns in the capture.
+ */
+public class AsyncPcmSink implements PcmSink, Closeable {
+
+    public static final int DEFAULT_BUFFER_FRAMES = 4800;
+    public static final int DEFAULT_BUFFER_COUNT = 8;
+
+    private static final String TAG = "AsyncPcmSink";
+
+    private static final class Buffer {
+        final short[] samples;
+        int length;
+
+        Buffer(int frames) {
+            samples = new short[frames];
+        }
+    }
+
+    // queued after the last buffer to stop the I/O thread
+    private static final Buffer END = new Buffer(0);
+
+    private final PcmSink mTarget;
+    private final int mBufferCount;
+    private final BlockingQueue<Buffer> mFree;
+    private final BlockingQueue<Buffer> mFilled;
+    private final Thread mThread;
+
+    // guarded by this, so close() can flush while the capture thread still writes
+    private Buffer mCurrent;
+    private boolean mClosed = false;
+
+    private volatile IOException mError;
+    private volatile long mWrittenFrames = 0;
+    private volatile long mDroppedFrames = 0;
+    private volatile int mBackpressureEvents = 0;
+    private volatile int mMaxQueueDepth = 0;
+    private volatile long mMaxWriteNanos = 0;
+
+    public AsyncPcmSink(PcmSink target, int bufferFrames, int bufferCount) {
+        if (bufferFrames <= 0 || bufferCount < 2) {
+            throw new IllegalArgumentException("Invalid pool of " + bufferCount + " x " + bufferFrames);
+        }
+
+        mTarget = target;
+        mBufferCount = bufferCount;
+        mFree = new ArrayBlockingQueue<>(bufferCount);
+        mFilled = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++) {
+            mFree.add(new Buffer(bufferFrames));
+        }
+        mCurrent = mFree.poll();
+
+        mThread = new Thread(this::writeLoop, TAG);
+        mThread.start();
+    }
+
+    public AsyncPcmSink(PcmSink target) {
+        this(target, DEFAULT_BUFFER_FRAMES, DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * Copies the samples into the pool and returns without waiting for storage. Throws the
+     * error of an earlier failed write to the target.
+     */
+    @Override
+    public synchronized void write(short[] samples, int offset, int length) throws IOException {
+        if (mError != null) throw mError;
+        if (mClosed) throw new IOException("Sink is closed");
+
+        while (length > 0) {
+            if (mCurrent == null) {
+                mCurrent = mFree.poll();
+                if (mCurrent == null) {
+                    // the pool is drained: drop rather than stall the capture thread
+                    mDroppedFrames += length;
+                    mBackpressureEvents++;
+                    return;
+                }
+            }
+
+            int count = Math.min(length, mCurrent.samples.length - mCurrent.length);
+            System.arraycopy(samples, offset, mCurrent.samples, mCurrent.length, count);
+            mCurrent.length += count;
+            offset += count;
+            length -= count;
+
+            if (mCurrent.length == mCurrent.samples.length) {
+                submit(mCurrent);
+                mCurrent = null;
+            }
+        }
+    }
+
+    /**
+     * Writes what is still queued, stops the I/O thread and closes the target if it is
+     * Closeable. Throws the first error the target reported.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (mClosed) return;
+            mClosed = true;
+
+            if (mCurrent != null && mCurrent.length > 0) submit(mCurrent);
+            mCurrent = null;
+            mFilled.add(END);
+        }
+
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mThread.interrupt();
+        }
+
+        if (mTarget instanceof Closeable) {
+            ((Closeable) mTarget).close();
+        }
+        if (mError != null) throw mError;
+    }
+
+    public long getWrittenFrames() {
+        return mWrittenFrames;
+    }
+
+    /**
+     * Frames that did not reach the target because every buffer was waiting for storage.
+     */
+    public long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    /**
+     * Number of writes that found the pool empty.
+     */
+    public int getBackpressureEvents() {
+        return mBackpressureEvents;
+    }
+
+    /**
+     * Most buffers that were waiting for the I/O thread at once.
+     */
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth;
+    }
+
+    public int getBufferCount() {
+        return mBufferCount;
+    }
+
+    public double getMaxWriteMs() {
+        return mMaxWriteNanos / 1e6;
+    }
+
+    public Map<String, Double> toMetrics() {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("written_frames", (double) mWrittenFrames);
+        metrics.put("dropped_frames", (double) mDroppedFrames);
+        metrics.put("backpressure_events", (double) mBackpressureEvents);
+        metrics.put("max_queue_depth", (double) mMaxQueueDepth);
+        metrics.put("buffers", (double) mBufferCount);
+        metrics.put("max_write_ms", getMaxWriteMs());
+        return metrics;
+    }
+
+    private void submit(Buffer buffer) {
+        // cannot fail: the queue holds every buffer of the pool plus END
+        mFilled.add(buffer);
+
+        int depth = mFilled.size();
+        if (depth > mMaxQueueDepth) mMaxQueueDepth = depth;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Buffer buffer;
+            try {
+                buffer = mFilled.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (buffer == END) return;
+
+            // after an error, keep recycling so the capture thread sees it instead of drops
+            int written = 0;
+            if (mError == null) {
+                long start = System.nanoTime();
+                try {
+                    mTarget.write(buffer.samples, 0, buffer.length);
+                    written = buffer.length;
+                } catch (IOException e) {
+                    mError = e;
+                }
+
+                long nanos = System.nanoTime() - start;
+                if (nanos > mMaxWriteNanos) mMaxWriteNanos = nanos;
+            }
+
+            // back in the pool before it is counted, so a written frame means a free buffer
+            buffer.length = 0;
+            mFree.add(buffer);
+            mWrittenFrames += written;
+        }
+    }
+}
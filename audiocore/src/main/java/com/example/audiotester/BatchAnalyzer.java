@@ -0,0 +1,236 @@
+package com.example.audiotester;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Re-analyzes a directory tree of stored WAV captures, e.g. one directory per device, with
+ * a {@link CaptureAnalyzer} per worker of a fork-join pool.
+ *
+ * Files are split into one task each, largest first, so a long capture does not finish last
+ * on an otherwise idle pool. Nothing is shared between workers but the result slots, so the
+ * throughput grows with the cores until the disk or page cache runs out. Files that cannot be
+ * read are reported as failures and do not stop the batch. Also runs from the command line:
+ *
+ * <pre>BatchAnalyzer captures_dir [output_dir] [threads]</pre>
+ */
+public class BatchAnalyzer {
+
+    // the chirp LatencyTester injects
+    public static final int PROBE_SAMPLE_RATE = 48000;
+    public static final int PROBE_LENGTH = 2048;
+
+    private final int mParallelism;
+    private final int mBlockFrames;
+
+    private float[] mProbe;
+    private int mProbeRate;
+    private float mMinCorrelation;
+
+    public BatchAnalyzer(int parallelism, int blockFrames) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+
+        mParallelism = parallelism;
+        mBlockFrames = blockFrames;
+    }
+
+    public BatchAnalyzer() {
+        this(Runtime.getRuntime().availableProcessors(), CaptureAnalyzer.DEFAULT_BLOCK_FRAMES);
+    }
+
+    public int getParallelism() {
+        return mParallelism;
+    }
+
+    /**
+     * Finds probe in every capture at sampleRate, null to skip marker detection.
+     */
+    public void setMarkerProbe(float[] probe, int sampleRate, float minCorrelation) {
+        mProbe = probe != null ? probe.clone() : null;
+        mProbeRate = sampleRate;
+        mMinCorrelation = minCorrelation;
+    }
+
+    /**
+     * The chirp of the latency test, as it shows up in its loopback captures.
+     */
+    public static float[] latencyProbe() {
+        return LatencyAnalyzer.createChirp(PROBE_SAMPLE_RATE, PROBE_LENGTH, 500, 8000, 0.5f);
+    }
+
+    /**
+     * Every .wav file under root, in path order.
+     */
+    public static List<File> findCaptures(File root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase(Locale.US).endsWith(".wav"))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public BatchReport analyze(File root) throws IOException {
+        if (!root.isDirectory()) {
+            throw new IOException("Not a directory: " + root);
+        }
+        return analyze(root, findCaptures(root));
+    }
+
+    /**
+     * Analyzes files, labelled with their path relative to root and grouped by their directory.
+     */
+    public BatchReport analyze(File root, List<File> files) {
+        long start = System.nanoTime();
+
+        int count = files.size();
+        long[] sizes = new long[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = files.get(i).length();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> sizes[i]).reversed());
+
+        Batch batch = new Batch(root, files, order);
+        ForkJoinPool pool = new ForkJoinPool(mParallelism);
+        try {
+            pool.invoke(new AnalyzeTask(batch, 0, count));
+        } finally {
+            pool.shutdown();
+        }
+
+        List<CaptureAnalysis> analyses = new ArrayList<>(count);
+        Map<String, String> failures = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            if (batch.results[i] != null) {
+                analyses.add(batch.results[i]);
+            } else {
+                failures.put(relativePath(root, files.get(i)), batch.errors[i]);
+            }
+        }
+        return new BatchReport(analyses, failures, System.nanoTime() - start);
+    }
+
+    private CaptureAnalyzer newAnalyzer() {
+        return mProbe != null
+                ? new CaptureAnalyzer(mBlockFrames, mProbe, mProbeRate, mMinCorrelation)
+                : new CaptureAnalyzer(mBlockFrames);
+    }
+
+    static String relativePath(File root, File file) {
+        return root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    // directory of a relative path, "." for the root
+    static String groupOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash > 0 ? path.substring(0, slash) : ".";
+    }
+
+    // state of one analyze() call; each slot is written by exactly one task
+    private final class Batch {
+        final File root;
+        final List<File> files;
+        final Integer[] order;
+        final CaptureAnalysis[] results;
+        final String[] errors;
+        final ThreadLocal<CaptureAnalyzer> analyzers = ThreadLocal.withInitial(BatchAnalyzer.this::newAnalyzer);
+
+        Batch(File root, List<File> files, Integer[] order) {
+            this.root = root;
+            this.files = files;
+            this.order = order;
+            results = new CaptureAnalysis[files.size()];
+            errors = new String[files.size()];
+        }
+    }
+
+    private static final class AnalyzeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Batch mBatch;
+        private final int mFrom;
+        private final int mTo;
+
+        AnalyzeTask(Batch batch, int from, int to) {
+            mBatch = batch;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom > 1) {
+                int middle = (mFrom + mTo) >>> 1;
+                invokeAll(new AnalyzeTask(mBatch, mFrom, middle), new AnalyzeTask(mBatch, middle, mTo));
+                return;
+            }
+            if (mTo == mFrom) return;
+
+            int index = mBatch.order[mFrom];
+            File file = mBatch.files.get(index);
+            String path = relativePath(mBatch.root, file);
+            try {
+                mBatch.results[index] = mBatch.analyzers.get().analyze(file, path, groupOf(path));
+            } catch (IOException | RuntimeException e) {
+                mBatch.errors[index] = e.toString();
+            }
+        }
+    }
+
+    /**
+     * Writes files.csv, groups.csv and report.json for a directory of captures and prints
+     * the summary.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: BatchAnalyzer captures_dir [output_dir] [threads]");
+            System.exit(2);
+        }
+
+        File root = new File(args[0]);
+        File output = new File(args.length > 1 ? args[1] : ".");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("Cannot create " + output);
+        }
+
+        BatchAnalyzer analyzer = new BatchAnalyzer(threads, CaptureAnalyzer.DEFAULT_BLOCK_FRAMES);
+        analyzer.setMarkerProbe(latencyProbe(), PROBE_SAMPLE_RATE, LatencyAnalyzer.DEFAULT_MIN_CORRELATION);
+        BatchReport report = analyzer.analyze(root);
+
+        try (Writer writer = new FileWriter(new File(output, "files.csv"))) {
+            report.writeCsv(writer);
+        }
+        try (Writer writer = new FileWriter(new File(output, "groups.csv"))) {
+            report.writeGroupCsv(writer);
+        }
+        try (Writer writer = new FileWriter(new File(output, "report.json"))) {
+            report.writeJson(writer);
+        }
+
+        System.out.println(report.summary());
+        for (Map.Entry<String, String> failure : report.getFailures().entrySet()) {
+            System.err.println(failure.getKey() + ": " + failure.getValue());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Results of a {@link BatchAnalyzer} run: one {@link CaptureAnalysis} per file that could be
+ * read, the files that could not, and aggregates per group, e.g. per device directory.
+ */
+public class BatchReport {
+
+    // aggregated per group, the marker metrics only over files that have them
+    private static final String[] AGGREGATED = {
+            "rms_db", "noise_floor_db", "snr_db", "loudness_lufs", "dominant_hz", "first_marker_ms", "marker_interval_ms"
+    };
+
+    private final List<CaptureAnalysis> mAnalyses;
+    private final Map<String, String> mFailures;
+    private final long mElapsedNanos;
+
+    public BatchReport(List<CaptureAnalysis> analyses, Map<String, String> failures, long elapsedNanos) {
+        mAnalyses = Collections.unmodifiableList(new ArrayList<>(analyses));
+        mFailures = Collections.unmodifiableMap(new TreeMap<>(failures));
+        mElapsedNanos = elapsedNanos;
+    }
+
+    public List<CaptureAnalysis> getAnalyses() {
+        return mAnalyses;
+    }
+
+    /**
+     * Message of every file that could not be analyzed, by path.
+     */
+    public Map<String, String> getFailures() {
+        return mFailures;
+    }
+
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    public double getTotalSeconds() {
+        double seconds = 0;
+        for (CaptureAnalysis analysis : mAnalyses) {
+            seconds += analysis.durationSeconds;
+        }
+        return seconds;
+    }
+
+    /**
+     * Aggregates of every group in name order: file count, total duration and min, median,
+     * p99 and max of each aggregated metric, e.g. "snr_db_median".
+     */
+    public Map<String, Map<String, Double>> groupMetrics() {
+        Map<String, List<CaptureAnalysis>> groups = new TreeMap<>();
+        for (CaptureAnalysis analysis : mAnalyses) {
+            List<CaptureAnalysis> group = groups.get(analysis.group);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(analysis.group, group);
+            }
+            group.add(analysis);
+        }
+
+        Map<String, Map<String, Double>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<CaptureAnalysis>> group : groups.entrySet()) {
+            result.put(group.getKey(), aggregate(group.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * One row per file with every metric of {@link CaptureAnalysis#toMetrics()}.
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("path,group,sample_rate,channels");
+        if (!mAnalyses.isEmpty()) {
+            for (String metric : mAnalyses.get(0).toMetrics().keySet()) {
+                writer.write(',');
+                writer.write(metric);
+            }
+        }
+        writer.write('\n');
+
+        for (CaptureAnalysis analysis : mAnalyses) {
+            writer.write(ResultExporter.csv(analysis.path) + "," + ResultExporter.csv(analysis.group) + ","
+                    + analysis.sampleRate + "," + analysis.channels);
+            for (double value : analysis.toMetrics().values()) {
+                writer.write(',');
+                writer.write(ResultExporter.number(value, ""));
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * One row per group and aggregate, like {@link ResultExporter#writeCsv}.
+     */
+    public void writeGroupCsv(Writer writer) throws IOException {
+        writer.write("group,metric,value\n");
+        for (Map.Entry<String, Map<String, Double>> group : groupMetrics().entrySet()) {
+            for (Map.Entry<String, Double> metric : group.getValue().entrySet()) {
+                writer.write(ResultExporter.csv(group.getKey()) + "," + metric.getKey() + ","
+                        + ResultExporter.number(metric.getValue(), "") + "\n");
+            }
+        }
+        writer.flush();
+    }
+
+    public void writeJson(Writer writer) throws IOException {
+        writer.write("{\"files\":" + mAnalyses.size() + ",\"failures\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> failure : mFailures.entrySet()) {
+            if (!first) writer.write(',');
+            first = false;
+            writer.write(ResultExporter.json(failure.getKey()) + ":" + ResultExporter.json(failure.getValue()));
+        }
+
+        writer.write("},\"groups\":{");
+        first = true;
+        for (Map.Entry<String, Map<String, Double>> group : groupMetrics().entrySet()) {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+
+            writer.write(ResultExporter.json(group.getKey()) + ":{");
+            boolean firstMetric = true;
+            for (Map.Entry<String, Double> metric : group.getValue().entrySet()) {
+                if (!firstMetric) writer.write(',');
+                firstMetric = false;
+                writer.write(ResultExporter.json(metric.getKey()) + ":" + ResultExporter.number(metric.getValue(), "null"));
+            }
+            writer.write('}');
+        }
+        writer.write(first ? "}}\n" : "\n}}\n");
+        writer.flush();
+    }
+
+    public String summary() {
+        double seconds = mElapsedNanos / 1e9;
+        StringBuilder summary = new StringBuilder(String.format(Locale.US,
+                "%d files, %d failed, %.2f h of audio in %.1f s (%.0fx real time)",
+                mAnalyses.size(), mFailures.size(), getTotalSeconds() / 3600, seconds,
+                seconds > 0 ? getTotalSeconds() / seconds : 0));
+
+        for (Map.Entry<String, Map<String, Double>> group : groupMetrics().entrySet()) {
+            Map<String, Double> metrics = group.getValue();
+            summary.append(String.format(Locale.US, "\n%s: %.0f files, rms = %.1f dB, snr = %.1f dB (p99 %.1f dB)",
+                    group.getKey(), metrics.get("files"), metrics.get("rms_db_median"),
+                    metrics.get("snr_db_median"), metrics.get("snr_db_p99")));
+            if (metrics.containsKey("first_marker_ms_median")) {
+                summary.append(String.format(Locale.US, ", first marker = %.1f ms",
+                        metrics.get("first_marker_ms_median")));
+            }
+        }
+        return summary.toString();
+    }
+
+    private static Map<String, Double> aggregate(List<CaptureAnalysis> group) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("files", (double) group.size());
+
+        double seconds = 0;
+        List<Map<String, Double>> fileMetrics = new ArrayList<>(group.size());
+        for (CaptureAnalysis analysis : group) {
+            seconds += analysis.durationSeconds;
+            fileMetrics.add(analysis.toMetrics());
+        }
+        metrics.put("duration_s", seconds);
+
+        double[] values = new double[group.size()];
+        for (String name : AGGREGATED) {
+            int count = 0;
+            for (Map<String, Double> file : fileMetrics) {
+                double value = file.get(name);
+                if (!Double.isNaN(value)) values[count++] = value;
+            }
+
+            LatencyStats stats = LatencyStats.of(values, count);
+            if (stats.count == 0) continue;
+            metrics.put(name + "_min", stats.min);
+            metrics.put(name + "_median", stats.median);
+            metrics.put(name + "_p99", stats.p99);
+            metrics.put(name + "_max", stats.max);
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.audiotester;
+
+/**
+ * Consumer of captured sample blocks. Implementations must not keep a reference to samples.
+ */
+public interface BlockProcessor {
+
+    void process(float[] samples, int offset, int length);
+}
@@ -0,0 +1,79 @@
+package com.example.audiotester;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Offline analysis of one stored capture, see {@link CaptureAnalyzer}.
+ *
+ * Levels are in dBFS of the channel mix. Marker values are NaN when no marker probe was set,
+ * the capture has another sample rate than the probe, or fewer markers were found than the
+ * value needs.
+ */
+public class CaptureAnalysis {
+
+    public final String path;
+    public final String group;
+    public final int sampleRate;
+    public final int channels;
+    public final double durationSeconds;
+
+    public final double rmsDb;
+    public final double peakDb;
+    public final double noiseFloorDb;
+    public final double snrDb;
+    public final double truePeakDb;
+    public final double loudnessLufs;
+
+    public final double dominantHz;
+    public final double dominantDb;
+
+    public final int markerCount;
+    public final double firstMarkerMs;
+    public final double markerIntervalMs;
+
+    public CaptureAnalysis(String path, String group, int sampleRate, int channels, double durationSeconds,
+                           LevelStats levels, double dominantHz, double dominantDb,
+                           int markerCount, double firstMarkerMs, double markerIntervalMs) {
+        this.path = path;
+        this.group = group;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.durationSeconds = durationSeconds;
+        this.rmsDb = levels.rmsDb;
+        this.peakDb = levels.peakDb;
+        this.noiseFloorDb = levels.noiseFloorDb;
+        this.snrDb = levels.snrDb;
+        this.truePeakDb = levels.truePeakDb;
+        this.loudnessLufs = levels.loudnessLufs;
+        this.dominantHz = dominantHz;
+        this.dominantDb = dominantDb;
+        this.markerCount = markerCount;
+        this.firstMarkerMs = firstMarkerMs;
+        this.markerIntervalMs = markerIntervalMs;
+    }
+
+    public Map<String, Double> toMetrics() {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("duration_s", durationSeconds);
+        metrics.put("rms_db", rmsDb);
+        metrics.put("peak_db", peakDb);
+        metrics.put("noise_floor_db", noiseFloorDb);
+        metrics.put("snr_db", snrDb);
+        metrics.put("true_peak_db", truePeakDb);
+        metrics.put("loudness_lufs", loudnessLufs);
+        metrics.put("dominant_hz", dominantHz);
+        metrics.put("dominant_db", dominantDb);
+        metrics.put("markers", (double) markerCount);
+        metrics.put("first_marker_ms", firstMarkerMs);
+        metrics.put("marker_interval_ms", markerIntervalMs);
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s: %.1f s, rms = %.1f dB, snr = %.1f dB, dominant = %.0f Hz, %d markers",
+                path, durationSeconds, rmsDb, snrDb, dominantHz, markerCount);
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.audiotester;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Levels, spectrum and latency markers of stored WAV captures, one file at a time.
+ *
+ * A file is read from its mapping in fixed blocks of the channel mix and every measurement
+ * is updated per block, so memory use does not grow with the length of the capture. The
+ * levels follow {@link LevelStats}, with the 10 ms window powers kept in a 0.1 dB histogram
+ * instead of an array. The spectrum is the average power of half-overlapping Hann frames.
+ * Markers are occurrences of a probe such as the chirp of the latency test, found with a
+ * matched filter normalized like {@link LatencyAnalyzer}. An analyzer is not thread-safe,
+ * but can be reused for any number of files.
+ */
+public class CaptureAnalyzer {
+
+    public static final int DEFAULT_BLOCK_FRAMES = 4096;
+    public static final int SPECTRUM_SIZE = 4096;
+    public static final int MAX_MARKERS = 4096;
+
+    private static final double HISTOGRAM_STEP_DB = 0.1;
+    private static final int HISTOGRAM_BINS = (int) Math.round((20 - LevelStats.MIN_DB) / HISTOGRAM_STEP_DB);
+
+    private final int mBlockFrames;
+    private final int mProbeRate;
+    private final float mMinCorrelation;
+    private final double mProbeEnergy;
+
+    private float[] mInterleaved;
+    private final float[] mMono;
+    private final Map<Integer, LoudnessMeter> mMeters = new HashMap<>();
+
+    // levels
+    private final long[] mWindowHistogram = new long[HISTOGRAM_BINS];
+    private int mWindowFrames;
+    private int mWindowFill;
+    private double mWindowSum;
+    private long mWindows;
+    private double mSquareSum;
+    private float mPeak;
+    private long mFrames;
+
+    // spectrum
+    private final RealFft mFft = new RealFft(SPECTRUM_SIZE);
+    private final float[] mWindow = WindowFunction.HANN.coefficients(SPECTRUM_SIZE);
+    private final float mAmplitudeScale = 2f / (SPECTRUM_SIZE * WindowFunction.coherentGain(mWindow));
+    private final float[] mFrame = new float[SPECTRUM_SIZE];
+    private final float[] mWork = new float[SPECTRUM_SIZE];
+    private final float[] mMagnitudes = new float[SPECTRUM_SIZE / 2 + 1];
+    private final double[] mPowerSum = new double[SPECTRUM_SIZE / 2 + 1];
+    private int mFrameFill;
+    private long mSpectrumFrames;
+
+    // markers
+    private final FftConvolver mMatchedFilter;
+    private final float[] mCorrelation;
+    private final float[] mSquares;
+    private final long[] mMarkers = new long[MAX_MARKERS];
+    private double mMarkerEnergy;
+    private long mCandidateLag;
+    private double mCandidateScore;
+    private int mMarkerCount;
+
+    /**
+     * Analyzer without marker detection.
+     */
+    public CaptureAnalyzer(int blockFrames) {
+        this(blockFrames, null, 0, LatencyAnalyzer.DEFAULT_MIN_CORRELATION);
+    }
+
+    /**
+     * Analyzer that also finds probe in captures at probeRate, wherever it correlates at
+     * minCorrelation or more.
+     */
+    public CaptureAnalyzer(int blockFrames, float[] probe, int probeRate, float minCorrelation) {
+        if (blockFrames <= 0) {
+            throw new IllegalArgumentException("Invalid block size: " + blockFrames);
+        }
+
+        mBlockFrames = blockFrames;
+        mMono = new float[blockFrames];
+        mInterleaved = new float[blockFrames * 2];
+        mMinCorrelation = minCorrelation;
+
+        if (probe != null && probe.length > 0) {
+            mProbeRate = probeRate;
+
+            double energy = 0;
+            float[] reversed = new float[probe.length];
+            for (int i = 0; i < probe.length; i++) {
+                energy += probe[i] * probe[i];
+                reversed[i] = probe[probe.length - 1 - i];
+            }
+            mProbeEnergy = energy;
+            mMatchedFilter = new FftConvolver(reversed, reversed.length, blockFrames);
+            mCorrelation = new float[blockFrames];
+            mSquares = new float[probe.length];
+        } else {
+            mProbeRate = 0;
+            mProbeEnergy = 0;
+            mMatchedFilter = null;
+            mCorrelation = null;
+            mSquares = null;
+        }
+    }
+
+    public int getBlockFrames() {
+        return mBlockFrames;
+    }
+
+    /**
+     * Analyzes file, labelling the result with path and group.
+     */
+    public CaptureAnalysis analyze(File file, String path, String group) throws IOException {
+        try (WavReader reader = new WavReader(file)) {
+            int sampleRate = reader.getSampleRate();
+            int channels = reader.getChannels();
+            if (sampleRate <= 0) {
+                throw new IOException("Invalid sample rate: " + sampleRate);
+            }
+
+            if (mInterleaved.length < mBlockFrames * channels) {
+                mInterleaved = new float[mBlockFrames * channels];
+            }
+            LoudnessMeter meter = mMeters.get(sampleRate);
+            if (meter == null) {
+                meter = new LoudnessMeter(sampleRate);
+                mMeters.put(sampleRate, meter);
+            }
+            meter.reset();
+
+            boolean markers = mMatchedFilter != null && sampleRate == mProbeRate;
+            begin(sampleRate);
+
+            int frames;
+            while ((frames = read(reader, channels)) > 0) {
+                meter.process(mMono, 0, frames);
+                updateLevels(frames);
+                updateSpectrum(frames);
+                if (markers) updateMarkers(frames);
+                mFrames += frames;
+            }
+
+            return finish(path, group, sampleRate, channels, meter, markers);
+        }
+    }
+
+    // reads the next block and mixes it down into mMono
+    private int read(WavReader reader, int channels) throws IOException {
+        if (channels == 1) return reader.read(mMono, 0, mBlockFrames);
+
+        int frames = reader.read(mInterleaved, 0, mBlockFrames);
+        float scale = 1f / channels;
+        for (int i = 0; i < frames; i++) {
+            float sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += mInterleaved[i * channels + c];
+            }
+            mMono[i] = sum * scale;
+        }
+        return frames;
+    }
+
+    private void begin(int sampleRate) {
+        Arrays.fill(mWindowHistogram, 0);
+        mWindowFrames = Math.max(1, (int) (sampleRate * LevelStats.WINDOW_SECONDS));
+        mWindowFill = 0;
+        mWindowSum = 0;
+        mWindows = 0;
+        mSquareSum = 0;
+        mPeak = 0;
+        mFrames = 0;
+
+        Arrays.fill(mPowerSum, 0);
+        mFrameFill = 0;
+        mSpectrumFrames = 0;
+
+        if (mMatchedFilter != null) {
+            mMatchedFilter.reset();
+            Arrays.fill(mSquares, 0f);
+            mMarkerEnergy = 0;
+            mCandidateLag = -1;
+            mCandidateScore = 0;
+            mMarkerCount = 0;
+        }
+    }
+
+    private void updateLevels(int frames) {
+        for (int i = 0; i < frames; i++) {
+            float sample = mMono[i];
+            double square = sample * sample;
+
+            mSquareSum += square;
+            mPeak = Math.max(mPeak, Math.abs(sample));
+
+            mWindowSum += square;
+            if (++mWindowFill == mWindowFrames) {
+                addWindow(mWindowSum / mWindowFrames);
+                mWindowSum = 0;
+                mWindowFill = 0;
+            }
+        }
+    }
+
+    private void addWindow(double power) {
+        int bin = (int) ((LevelStats.powerToDb(power) - LevelStats.MIN_DB) / HISTOGRAM_STEP_DB);
+        mWindowHistogram[Math.max(0, Math.min(HISTOGRAM_BINS - 1, bin))]++;
+        mWindows++;
+    }
+
+    // nearest-rank percentile of the window levels, at the center of its bin
+    private double windowPercentileDb(double percent) {
+        long rank = Math.max(1, (long) Math.ceil(percent / 100.0 * mWindows));
+        long seen = 0;
+        for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+            seen += mWindowHistogram[bin];
+            if (seen >= rank) {
+                return bin == 0 ? LevelStats.MIN_DB : LevelStats.MIN_DB + (bin + 0.5) * HISTOGRAM_STEP_DB;
+            }
+        }
+        return LevelStats.MIN_DB;
+    }
+
+    private void updateSpectrum(int frames) {
+        int offset = 0;
+        while (offset < frames) {
+            int count = Math.min(frames - offset, SPECTRUM_SIZE - mFrameFill);
+            System.arraycopy(mMono, offset, mFrame, mFrameFill, count);
+            mFrameFill += count;
+            offset += count;
+
+            if (mFrameFill == SPECTRUM_SIZE) {
+                addSpectrumFrame();
+                System.arraycopy(mFrame, SPECTRUM_SIZE / 2, mFrame, 0, SPECTRUM_SIZE / 2);
+                mFrameFill = SPECTRUM_SIZE / 2;
+            }
+        }
+    }
+
+    private void addSpectrumFrame() {
+        for (int i = 0; i < SPECTRUM_SIZE; i++) {
+            mWork[i] = mFrame[i] * mWindow[i];
+        }
+        mFft.forward(mWork);
+        mFft.magnitudes(mWork, mMagnitudes);
+
+        for (int k = 0; k < mMagnitudes.length; k++) {
+            double amplitude = mMagnitudes[k] * mAmplitudeScale;
+            mPowerSum[k] += amplitude * amplitude;
+        }
+        mSpectrumFrames++;
+    }
+
+    private void updateMarkers(int frames) {
+        mMatchedFilter.process(mMono, 0, frames, mCorrelation, 0);
+
+        int length = mSquares.length;
+        for (int i = 0; i < frames; i++) {
+            long n = mFrames + i;
+            int slot = (int) (n % length);
+            float square = mMono[i] * mMono[i];
+            mMarkerEnergy = Math.max(0, mMarkerEnergy + square - mSquares[slot]);
+            mSquares[slot] = square;
+            if (n < length - 1) continue;
+
+            // the output at n correlates the probe with the length samples ending at n
+            long lag = n - length + 1;
+            if (mCandidateLag >= 0 && lag >= mCandidateLag + length) {
+                addMarker(mCandidateLag);
+                mCandidateLag = -1;
+            }
+            if (mMarkerEnergy <= mProbeEnergy * 1e-9) continue;
+
+            double score = mCorrelation[i] / Math.sqrt(mProbeEnergy * mMarkerEnergy);
+            if (score >= mMinCorrelation && (mCandidateLag < 0 || score > mCandidateScore)) {
+                mCandidateLag = lag;
+                mCandidateScore = score;
+            }
+        }
+    }
+
+    private void addMarker(long lag) {
+        if (mMarkerCount < MAX_MARKERS) mMarkers[mMarkerCount] = lag;
+        mMarkerCount++;
+    }
+
+    private CaptureAnalysis finish(String path, String group, int sampleRate, int channels,
+                                   LoudnessMeter meter, boolean markers) {
+        // a capture shorter than one window is a window of its own, as in LevelStats
+        if (mWindows == 0 && mWindowFill > 0) addWindow(mWindowSum / mWindowFill);
+
+        double noiseDb = windowPercentileDb(LevelStats.NOISE_PERCENTILE);
+        double peakDb = LevelStats.amplitudeToDb(mPeak);
+        LevelStats levels = new LevelStats(
+                LevelStats.powerToDb(mFrames > 0 ? mSquareSum / mFrames : 0),
+                peakDb,
+                noiseDb,
+                windowPercentileDb(LevelStats.SIGNAL_PERCENTILE) - noiseDb,
+                Math.max(peakDb, meter.getMaxTruePeakDb()),
+                meter.getIntegratedLufs());
+
+        // zero-pad a capture shorter than one spectrum frame
+        if (mSpectrumFrames == 0 && mFrameFill > 0) {
+            Arrays.fill(mFrame, mFrameFill, SPECTRUM_SIZE, 0f);
+            addSpectrumFrame();
+        }
+        double dominantHz = Double.NaN;
+        double dominantDb = Double.NaN;
+        if (mSpectrumFrames > 0) {
+            int best = 1;
+            for (int k = 2; k < mPowerSum.length; k++) {
+                if (mPowerSum[k] > mPowerSum[best]) best = k;
+            }
+            dominantHz = (double) best * sampleRate / SPECTRUM_SIZE;
+            dominantDb = LevelStats.powerToDb(mPowerSum[best] / mSpectrumFrames);
+        }
+
+        int markerCount = 0;
+        double firstMarkerMs = Double.NaN;
+        double markerIntervalMs = Double.NaN;
+        if (markers) {
+            if (mCandidateLag >= 0) addMarker(mCandidateLag);
+            markerCount = mMarkerCount;
+
+            int stored = Math.min(mMarkerCount, MAX_MARKERS);
+            if (stored > 0) firstMarkerMs = mMarkers[0] * 1000.0 / sampleRate;
+            if (stored > 1) {
+                double[] intervals = new double[stored - 1];
+                for (int i = 1; i < stored; i++) {
+                    intervals[i - 1] = (mMarkers[i] - mMarkers[i - 1]) * 1000.0 / sampleRate;
+                }
+                markerIntervalMs = LatencyStats.of(intervals, intervals.length).median;
+            }
+        }
+
+        return new CaptureAnalysis(path, group, sampleRate, channels, (double) mFrames / sampleRate,
+                levels, dominantHz, dominantDb, markerCount, firstMarkerMs, markerIntervalMs);
+    }
+}
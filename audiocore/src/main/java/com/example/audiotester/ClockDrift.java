@@ -0,0 +1,71 @@
+package com.example.audiotester;
+
+import java.util.Locale;
+
+/**
+ * Straight-line fit of one stream's frame position against System.nanoTime.
+ *
+ * The slope gives the rate the stream actually runs at, so its skew from the nominal rate,
+ * and the line maps frames to the shared clock and back, which is how played and captured
+ * frames are aligned. Fits come from {@link ClockTimeline#fit}.
+ */
+public class ClockDrift {
+
+    public final int nominalRate;
+    public final int count;
+
+    /** Measured frames per second on the nanoTime clock. */
+    public final double sampleRate;
+    /** RMS distance of the timestamps from the fitted line. */
+    public final double jitterNanos;
+
+    private final long mOriginFrame;
+    private final long mOriginNanos;
+    private final double mNanosAtOrigin;
+
+    ClockDrift(int nominalRate, int count, double sampleRate, double jitterNanos,
+               long originFrame, long originNanos, double nanosAtOrigin) {
+        this.nominalRate = nominalRate;
+        this.count = count;
+        this.sampleRate = sampleRate;
+        this.jitterNanos = jitterNanos;
+        mOriginFrame = originFrame;
+        mOriginNanos = originNanos;
+        mNanosAtOrigin = nanosAtOrigin;
+    }
+
+    /**
+     * Skew from the nominal rate in parts per million; positive means the stream runs fast.
+     */
+    public double ppm() {
+        return (sampleRate / nominalRate - 1) * 1e6;
+    }
+
+    /**
+     * nanoTime at which the given frame was presented or captured.
+     */
+    public long nanoTimeAt(long frame) {
+        return mOriginNanos + Math.round(mNanosAtOrigin + (frame - mOriginFrame) * 1e9 / sampleRate);
+    }
+
+    /**
+     * Frame position, possibly fractional, at the given nanoTime.
+     */
+    public double frameAt(long nanoTime) {
+        return mOriginFrame + (nanoTime - mOriginNanos - mNanosAtOrigin) * sampleRate / 1e9;
+    }
+
+    /**
+     * Drift of one stream against another in parts per million, e.g. output against input.
+     * Unlike {@link #ppm} this does not depend on the accuracy of the nanoTime clock.
+     */
+    public static double relativePpm(ClockDrift stream, ClockDrift reference) {
+        return (stream.sampleRate / stream.nominalRate / (reference.sampleRate / reference.nominalRate) - 1) * 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%.3f Hz (%+.1f ppm), jitter %.0f us over %d timestamps",
+                sampleRate, ppm(), jitterNanos / 1000, count);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Frame position / nanoTime pairs reported by one AudioTrack or AudioRecord.
+ *
+ * Every timestamp feeds a running least-squares fit, so drift can be estimated over runs of
+ * any length in constant memory. For export, at most one pair per store interval is kept in
+ * preallocated arrays; pairs past the capacity are still fitted but not stored. Repeated
+ * timestamps, which the platform returns until it has a new one, are ignored. Pairs may be
+ * added from the audio thread while another thread reads the fit.
+ */
+public class ClockTimeline {
+
+    public static final String CSV_HEADER = "stream,frame,nano_time\n";
+
+    private final int mNominalRate;
+    private final double mNominalNanosPerFrame;
+    private final long mStoreIntervalNanos;
+
+    private final long[] mFrames;
+    private final long[] mNanos;
+    private int mSize = 0;
+
+    private int mCount = 0;
+    private long mLastFrame;
+    private long mLastNanos;
+
+    // running means and co-moments relative to the first pair (Welford); time is taken
+    // relative to the nominal rate so the residuals do not drown in the run length
+    private long mOriginFrame;
+    private long mOriginNanos;
+    private double mMeanX;
+    private double mMeanY;
+    private double mVarianceX;
+    private double mVarianceY;
+    private double mCovariance;
+
+    public ClockTimeline(int nominalRate, int capacity, long storeIntervalNanos) {
+        mNominalRate = nominalRate;
+        mNominalNanosPerFrame = 1e9 / nominalRate;
+        mStoreIntervalNanos = storeIntervalNanos;
+        mFrames = new long[capacity];
+        mNanos = new long[capacity];
+    }
+
+    public int getNominalRate() {
+        return mNominalRate;
+    }
+
+    public synchronized void add(long framePosition, long nanoTime) {
+        if (mCount > 0 && framePosition == mLastFrame && nanoTime == mLastNanos) return;
+
+        if (mCount == 0) {
+            mOriginFrame = framePosition;
+            mOriginNanos = nanoTime;
+        }
+
+        if (mSize < mFrames.length && (mSize == 0 || nanoTime - mNanos[mSize - 1] >= mStoreIntervalNanos)) {
+            mFrames[mSize] = framePosition;
+            mNanos[mSize] = nanoTime;
+            mSize++;
+        }
+
+        double x = framePosition - mOriginFrame;
+        double y = nanoTime - mOriginNanos - x * mNominalNanosPerFrame;
+        mCount++;
+        double dx = x - mMeanX;
+        double dy = y - mMeanY;
+        mMeanX += dx / mCount;
+        mMeanY += dy / mCount;
+        mVarianceX += dx * (x - mMeanX);
+        mVarianceY += dy * (y - mMeanY);
+        mCovariance += dx * (y - mMeanY);
+
+        mLastFrame = framePosition;
+        mLastNanos = nanoTime;
+    }
+
+    public synchronized void clear() {
+        mSize = 0;
+        mCount = 0;
+        mMeanX = 0;
+        mMeanY = 0;
+        mVarianceX = 0;
+        mVarianceY = 0;
+        mCovariance = 0;
+    }
+
+    /**
+     * Number of distinct timestamps seen, stored or not.
+     */
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized long getFrame(int index) {
+        return mFrames[index];
+    }
+
+    public synchronized long getNanoTime(int index) {
+        return mNanos[index];
+    }
+
+    /**
+     * Least-squares fit over all timestamps so far, or null until the frame position has moved.
+     */
+    public synchronized ClockDrift fit() {
+        if (mCount < 2 || mVarianceX <= 0) return null;
+
+        double slope = mCovariance / mVarianceX;
+        double nanosPerFrame = mNominalNanosPerFrame + slope;
+        if (nanosPerFrame <= 0) return null;
+
+        double residual = Math.max(0, mVarianceY - mCovariance * slope) / mCount;
+
+        return new ClockDrift(mNominalRate, mCount, 1e9 / nanosPerFrame, Math.sqrt(residual),
+                mOriginFrame, mOriginNanos, mMeanY - slope * mMeanX);
+    }
+
+    /**
+     * Writes the stored pairs as rows under {@link #CSV_HEADER}, so several streams can share
+     * one file.
+     */
+    public synchronized void writeCsv(Writer writer, String stream) throws IOException {
+        for (int i = 0; i < mSize; i++) {
+            writer.write(stream + "," + mFrames[i] + "," + mNanos[i] + "\n");
+        }
+    }
+}
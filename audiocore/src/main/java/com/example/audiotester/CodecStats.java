@@ -0,0 +1,145 @@
+package com.example.audiotester;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * What a lossy codec did to a known signal.
+ *
+ * The decoded signal is aligned to the reference by FFT cross-correlation, which also absorbs
+ * the encoder priming, then compared sample by sample for the SNR and by its averaged Hann
+ * spectrum. The bandwidth is the highest frequency at which the decoded spectrum is still
+ * within {@link #BANDWIDTH_TOLERANCE_DB} of the reference, i.e. where the encoder low-pass sits;
+ * the spectral error is the mean absolute level difference of the bins below it.
+ */
+public class CodecStats {
+
+    public static final int SPECTRUM_SIZE = 2048;
+    public static final double BANDWIDTH_TOLERANCE_DB = 10;
+
+    // bins this far below the loudest reference bin carry no signal worth comparing
+    private static final double SPECTRAL_RANGE_DB = 60;
+    private static final double LOW_CUT_HZ = 50;
+    // codecs fade in over their first frames
+    private static final double SKIP_SECONDS = 0.1;
+
+    public final int delayFrames;
+    public final double delayMs;
+    public final double snrDb;
+    public final double spectralErrorDb;
+    public final double bandwidthHz;
+
+    public CodecStats(int delayFrames, double delayMs, double snrDb, double spectralErrorDb, double bandwidthHz) {
+        this.delayFrames = delayFrames;
+        this.delayMs = delayMs;
+        this.snrDb = snrDb;
+        this.spectralErrorDb = spectralErrorDb;
+        this.bandwidthHz = bandwidthHz;
+    }
+
+    /**
+     * @param maxDelayFrames longest codec delay to search for
+     */
+    public static CodecStats analyze(float[] reference, float[] decoded, int length, int sampleRate, int maxDelayFrames) {
+        int delay = EchoStats.findDelay(reference, decoded, length, maxDelayFrames);
+        int from = Math.min((int) (SKIP_SECONDS * sampleRate), reference.length);
+        int to = Math.max(from, Math.min(reference.length, length - delay));
+
+        double signalPower = 0;
+        double errorPower = 0;
+        for (int i = from; i < to; i++) {
+            double error = reference[i] - decoded[i + delay];
+            signalPower += (double) reference[i] * reference[i];
+            errorPower += error * error;
+        }
+
+        double[] referencePower = new double[SPECTRUM_SIZE / 2 + 1];
+        double[] decodedPower = new double[SPECTRUM_SIZE / 2 + 1];
+        double spectralError = Double.NaN;
+        double bandwidth = Double.NaN;
+        if (averageSpectra(reference, decoded, delay, from, to, referencePower, decodedPower)) {
+            int lowest = Math.max(1, (int) Math.ceil(LOW_CUT_HZ * SPECTRUM_SIZE / sampleRate));
+            double loudest = LevelStats.MIN_DB;
+            for (int k = lowest; k < referencePower.length; k++) {
+                loudest = Math.max(loudest, LevelStats.powerToDb(referencePower[k]));
+            }
+
+            int highest = -1;
+            for (int k = referencePower.length - 1; k >= lowest && highest < 0; k--) {
+                double referenceDb = LevelStats.powerToDb(referencePower[k]);
+                if (referenceDb >= loudest - SPECTRAL_RANGE_DB
+                        && LevelStats.powerToDb(decodedPower[k]) >= referenceDb - BANDWIDTH_TOLERANCE_DB) {
+                    highest = k;
+                }
+            }
+
+            if (highest >= 0) {
+                double sum = 0;
+                int bins = 0;
+                for (int k = lowest; k <= highest; k++) {
+                    double referenceDb = LevelStats.powerToDb(referencePower[k]);
+                    if (referenceDb < loudest - SPECTRAL_RANGE_DB) continue;
+
+                    sum += Math.abs(LevelStats.powerToDb(decodedPower[k]) - referenceDb);
+                    bins++;
+                }
+                spectralError = sum / bins;
+                bandwidth = (double) highest * sampleRate / SPECTRUM_SIZE;
+            }
+        }
+
+        return new CodecStats(delay, delay * 1000.0 / sampleRate, EchoStats.ratioDb(signalPower, errorPower),
+                spectralError, bandwidth);
+    }
+
+    // sums the power spectra of half-overlapping frames in [from, to), false if none fits
+    private static boolean averageSpectra(float[] reference, float[] decoded, int delay, int from, int to,
+                                          double[] referencePower, double[] decodedPower) {
+        RealFft fft = new RealFft(SPECTRUM_SIZE);
+        float[] window = WindowFunction.HANN.coefficients(SPECTRUM_SIZE);
+        float[] work = new float[SPECTRUM_SIZE];
+        float[] magnitudes = new float[SPECTRUM_SIZE / 2 + 1];
+
+        int frames = 0;
+        for (int start = from; start + SPECTRUM_SIZE <= to; start += SPECTRUM_SIZE / 2) {
+            for (int i = 0; i < SPECTRUM_SIZE; i++) {
+                work[i] = reference[start + i] * window[i];
+            }
+            fft.forward(work);
+            fft.magnitudes(work, magnitudes);
+            for (int k = 0; k < magnitudes.length; k++) {
+                referencePower[k] += (double) magnitudes[k] * magnitudes[k];
+            }
+
+            for (int i = 0; i < SPECTRUM_SIZE; i++) {
+                work[i] = decoded[start + delay + i] * window[i];
+            }
+            fft.forward(work);
+            fft.magnitudes(work, magnitudes);
+            for (int k = 0; k < magnitudes.length; k++) {
+                decodedPower[k] += (double) magnitudes[k] * magnitudes[k];
+            }
+            frames++;
+        }
+        return frames > 0;
+    }
+
+    /**
+     * Named values for a {@link TestResult}, each name followed by suffix.
+     */
+    public Map<String, Double> toMetrics(String suffix) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("delay_ms" + suffix, delayMs);
+        metrics.put("snr_db" + suffix, snrDb);
+        metrics.put("spectral_error_db" + suffix, spectralErrorDb);
+        metrics.put("bandwidth_hz" + suffix, bandwidthHz);
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "delay %.1f ms, SNR %.1f dB, spectral error %.1f dB, bandwidth %.0f Hz",
+                delayMs, snrDb, spectralErrorDb, bandwidthHz);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.audiotester;
+
+import java.util.Locale;
+
+/**
+ * Distortion of a captured steady tone.
+ *
+ * The capture is windowed with Blackman-Harris and transformed once. The fundamental is the
+ * main lobe around the strongest bin near the expected frequency; THD sums the lobes of
+ * harmonics 2..10, and THD+N is everything in the 20 Hz - 20 kHz band except the fundamental,
+ * both relative to the fundamental.
+ */
+public class DistortionStats {
+
+    public static final int MAX_FFT_SIZE = 1 << 16;
+    public static final int MAX_HARMONIC = 10;
+
+    private static final double BAND_LOW_HZ = 20;
+    private static final double BAND_HIGH_HZ = 20000;
+
+    // Blackman-Harris main lobe is 4 bins either side
+    private static final int LOBE_BINS = 5;
+
+    // search window for the fundamental, to tolerate clock offsets between output and input
+    private static final double FREQUENCY_TOLERANCE = 0.02;
+
+    public final double frequency;
+    public final double fundamentalDb;
+    public final double thdDb;
+    public final double thdPlusNDb;
+
+    public DistortionStats(double frequency, double fundamentalDb, double thdDb, double thdPlusNDb) {
+        this.frequency = frequency;
+        this.fundamentalDb = fundamentalDb;
+        this.thdDb = thdDb;
+        this.thdPlusNDb = thdPlusNDb;
+    }
+
+    public double thdPlusNPercent() {
+        return 100 * Math.pow(10, thdPlusNDb / 20);
+    }
+
+    public static DistortionStats analyze(float[] samples, int offset, int length, int sampleRate, double frequency) {
+        int fftSize = Math.min(MAX_FFT_SIZE, Integer.highestOneBit(Math.max(4, length)));
+        if (fftSize > length) {
+            throw new IllegalArgumentException("Need at least 4 samples, got " + length);
+        }
+
+        float[] window = WindowFunction.BLACKMAN_HARRIS.coefficients(fftSize);
+        float[] data = new float[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            data[i] = samples[offset + i] * window[i];
+        }
+
+        RealFft fft = new RealFft(fftSize);
+        fft.forward(data);
+
+        double[] power = new double[fftSize / 2 + 1];
+        power[0] = data[0] * data[0];
+        power[fftSize / 2] = data[1] * data[1];
+        for (int k = 1; k < fftSize / 2; k++) {
+            power[k] = data[2 * k] * data[2 * k] + data[2 * k + 1] * data[2 * k + 1];
+        }
+
+        double binWidth = (double) sampleRate / fftSize;
+        int first = Math.max(1, (int) Math.ceil(BAND_LOW_HZ / binWidth));
+        int last = Math.min(power.length - 1, (int) Math.floor(Math.min(BAND_HIGH_HZ, sampleRate / 2.0) / binWidth));
+
+        int low = Math.max(first, (int) Math.floor(frequency * (1 - FREQUENCY_TOLERANCE) / binWidth));
+        int high = Math.min(last, (int) Math.ceil(frequency * (1 + FREQUENCY_TOLERANCE) / binWidth));
+        int peak = low;
+        for (int k = low; k <= high; k++) {
+            if (power[k] > power[peak]) peak = k;
+        }
+
+        double fundamental = lobePower(power, peak);
+        double total = 0;
+        for (int k = first; k <= last; k++) {
+            total += power[k];
+        }
+
+        double harmonics = 0;
+        for (int order = 2; order <= MAX_HARMONIC; order++) {
+            int bin = (int) Math.round((double) peak * order);
+            if (bin + LOBE_BINS > last) break;
+            harmonics += lobePower(power, bin);
+        }
+
+        // amplitude of a full-scale sine reads 0 dB
+        double gain = WindowFunction.coherentGain(window) * fftSize / 2.0;
+        return new DistortionStats(
+                peak * binWidth,
+                LevelStats.powerToDb(fundamental / (gain * gain) / lobeEnergy(window)),
+                ratioDb(harmonics, fundamental),
+                ratioDb(Math.max(0, total - fundamental), fundamental));
+    }
+
+    private static double lobePower(double[] power, int center) {
+        double sum = 0;
+        for (int k = Math.max(0, center - LOBE_BINS); k <= Math.min(power.length - 1, center + LOBE_BINS); k++) {
+            sum += power[k];
+        }
+        return sum;
+    }
+
+    // sum of the squared window spectrum over the main lobe, relative to its peak
+    private static double lobeEnergy(float[] window) {
+        double sum = 0;
+        double squares = 0;
+        for (float c : window) {
+            sum += c;
+            squares += c * c;
+        }
+        return squares * window.length / (sum * sum);
+    }
+
+    private static double ratioDb(double power, double reference) {
+        return reference > 0 ? LevelStats.powerToDb(power / reference) : LevelStats.MIN_DB;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%.0f Hz: THD %.1f dB, THD+N %.1f dB (%.3f %%)",
+                frequency, thdDb, thdPlusNDb, thdPlusNPercent());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.audiotester;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Echo coupling between a played reference and a capture of it.
+ *
+ * The bulk delay is found by FFT cross-correlation, then an {@link NlmsFilter} aligned to that
+ * delay models the remaining echo path. ERL is how far the captured echo sits below the
+ * reference; ERLE is how much further the adaptive filter can remove it, measured over the
+ * second half of the capture once the filter has converged.
+ */
+public class EchoStats {
+
+    public static final int DEFAULT_TAPS = 512;
+
+    // taps placed before the detected delay, for paths that spread slightly ahead of their peak
+    private static final int PRE_DELAY_TAPS = 32;
+
+    public final int delayFrames;
+    public final double delayMs;
+    public final double erlDb;
+    public final double erleDb;
+
+    public EchoStats(int delayFrames, double delayMs, double erlDb, double erleDb) {
+        this.delayFrames = delayFrames;
+        this.delayMs = delayMs;
+        this.erlDb = erlDb;
+        this.erleDb = erleDb;
+    }
+
+    /**
+     * @param maxDelayFrames longest echo delay to search for
+     */
+    public static EchoStats analyze(float[] reference, float[] captured, int length, int sampleRate,
+                                    int taps, int maxDelayFrames) {
+        int delay = findDelay(reference, captured, length, maxDelayFrames);
+        int shift = Math.max(0, delay - PRE_DELAY_TAPS);
+
+        NlmsFilter filter = new NlmsFilter(taps);
+        double referencePower = 0;
+        double capturePower = 0;
+        double residualPower = 0;
+        int measureFrom = length / 2;
+
+        for (int i = 0; i < length; i++) {
+            float x = i - shift >= 0 && i - shift < reference.length ? reference[i - shift] : 0f;
+            float d = captured[i];
+            float e = filter.process(x, d);
+
+            if (i >= measureFrom) {
+                referencePower += (double) x * x;
+                capturePower += (double) d * d;
+                residualPower += (double) e * e;
+            }
+        }
+
+        return new EchoStats(delay, delay * 1000.0 / sampleRate,
+                ratioDb(referencePower, capturePower),
+                ratioDb(capturePower, residualPower));
+    }
+
+    /**
+     * Named values for a {@link TestResult}, each name followed by suffix.
+     */
+    public Map<String, Double> toMetrics(String suffix) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("delay_ms" + suffix, delayMs);
+        metrics.put("erl_db" + suffix, erlDb);
+        metrics.put("erle_db" + suffix, erleDb);
+        return metrics;
+    }
+
+    /**
+     * Lag in [0, maxDelayFrames] at which the capture best matches the reference.
+     */
+    static int findDelay(float[] reference, float[] captured, int length, int maxDelayFrames) {
+        int referenceLength = Math.min(reference.length, length);
+
+        // correlation is convolution with the time-reversed reference
+        float[] reversed = new float[referenceLength];
+        for (int i = 0; i < referenceLength; i++) {
+            reversed[i] = reference[referenceLength - 1 - i];
+        }
+        float[] correlation = FftConvolver.convolve(captured, length, reversed, referenceLength);
+
+        int best = 0;
+        float bestValue = -1;
+        for (int lag = 0; lag <= maxDelayFrames; lag++) {
+            int index = referenceLength - 1 + lag;
+            if (index >= correlation.length) break;
+
+            float value = Math.abs(correlation[index]);
+            if (value > bestValue) {
+                bestValue = value;
+                best = lag;
+            }
+        }
+        return best;
+    }
+
+    static double ratioDb(double numerator, double denominator) {
+        if (numerator <= 0) return LevelStats.MIN_DB;
+        if (denominator <= 0) return -LevelStats.MIN_DB;
+        return 10 * Math.log10(numerator / denominator);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "delay %.1f ms, ERL %.1f dB, ERLE %.1f dB", delayMs, erlDb, erleDb);
+    }
+}
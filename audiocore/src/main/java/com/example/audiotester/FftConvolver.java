@@ -0,0 +1,127 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+
+/**
+ * Overlap-add fast convolution with a fixed kernel.
+ *
+ * The kernel spectrum is computed once; every block of input then costs one forward and one
+ * inverse {@link RealFft} of size nextPow2(blockSize + kernelLength - 1) instead of
+ * blockSize * kernelLength multiplies. Blocks are processed without allocating.
+ */
+public class FftConvolver {
+
+    private final int mKernelLength;
+    private final int mBlockSize;
+    private final int mFftSize;
+
+    private final RealFft mFft;
+    private final float[] mKernelSpectrum;
+    private final float[] mBuffer;
+    private final float[] mOverlap;
+
+    public FftConvolver(float[] kernel, int kernelLength, int blockSize) {
+        if (kernelLength <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("Empty kernel or block");
+        }
+
+        mKernelLength = kernelLength;
+        mBlockSize = blockSize;
+        mFftSize = Math.max(4, nextPowerOfTwo(blockSize + kernelLength - 1));
+
+        mFft = new RealFft(mFftSize);
+        mKernelSpectrum = new float[mFftSize];
+        System.arraycopy(kernel, 0, mKernelSpectrum, 0, kernelLength);
+        mFft.forward(mKernelSpectrum);
+
+        mBuffer = new float[mFftSize];
+        mOverlap = new float[mFftSize];
+    }
+
+    public int getBlockSize() {
+        return mBlockSize;
+    }
+
+    public int getKernelLength() {
+        return mKernelLength;
+    }
+
+    public int getFftSize() {
+        return mFftSize;
+    }
+
+    public void reset() {
+        Arrays.fill(mOverlap, 0f);
+    }
+
+    /**
+     * Convolves the next length <= blockSize input samples and writes the same number of
+     * output samples. The tail carries over to the next call; feed zeros to flush it.
+     */
+    public void process(float[] input, int inputOffset, int length, float[] output, int outputOffset) {
+        if (length > mBlockSize) {
+            throw new IllegalArgumentException("Block too long: " + length + " > " + mBlockSize);
+        }
+
+        System.arraycopy(input, inputOffset, mBuffer, 0, length);
+        Arrays.fill(mBuffer, length, mFftSize, 0f);
+
+        mFft.forward(mBuffer);
+        multiply(mBuffer, mKernelSpectrum);
+        mFft.inverse(mBuffer);
+
+        // add this block's response to the pending tail, emit the first length samples
+        for (int i = 0; i < mFftSize; i++) {
+            mOverlap[i] += mBuffer[i];
+        }
+        System.arraycopy(mOverlap, 0, output, outputOffset, length);
+        System.arraycopy(mOverlap, length, mOverlap, 0, mFftSize - length);
+        Arrays.fill(mOverlap, mFftSize - length, mFftSize, 0f);
+    }
+
+    /**
+     * Full linear convolution, signalLength + kernelLength - 1 samples long.
+     */
+    public static float[] convolve(float[] signal, int signalLength, float[] kernel, int kernelLength) {
+        // one large transform is cheapest when everything fits
+        int blockSize = nextPowerOfTwo(signalLength + kernelLength - 1) - kernelLength + 1;
+        FftConvolver convolver = new FftConvolver(kernel, kernelLength, Math.max(1, blockSize));
+
+        float[] output = new float[signalLength + kernelLength - 1];
+        float[] zeros = new float[convolver.mBlockSize];
+
+        for (int offset = 0; offset < output.length; offset += convolver.mBlockSize) {
+            int length = Math.min(convolver.mBlockSize, output.length - offset);
+            if (offset < signalLength) {
+                int available = Math.min(length, signalLength - offset);
+                if (available == length) {
+                    convolver.process(signal, offset, length, output, offset);
+                } else {
+                    float[] padded = Arrays.copyOfRange(signal, offset, offset + length);
+                    Arrays.fill(padded, available, length, 0f);
+                    convolver.process(padded, 0, length, output, offset);
+                }
+            } else {
+                convolver.process(zeros, 0, length, output, offset);
+            }
+        }
+
+        return output;
+    }
+
+    static int nextPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static void multiply(float[] data, float[] kernel) {
+        data[0] *= kernel[0];
+        data[1] *= kernel[1];
+
+        for (int k = 2; k < data.length; k += 2) {
+            float re = data[k];
+            float im = data[k + 1];
+            data[k] = re * kernel[k] - im * kernel[k + 1];
+            data[k + 1] = re * kernel[k + 1] + im * kernel[k];
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Magnitude response sampled at band centers, in dB.
+ */
+public class FrequencyResponse {
+
+    public final double[] frequencies;
+    public final double[] magnitudeDb;
+
+    public FrequencyResponse(double[] frequencies, double[] magnitudeDb) {
+        this.frequencies = frequencies;
+        this.magnitudeDb = magnitudeDb;
+    }
+
+    public int size() {
+        return frequencies.length;
+    }
+
+    /**
+     * Level of the band closest to frequency.
+     */
+    public double levelAt(double frequency) {
+        int best = 0;
+        for (int i = 1; i < frequencies.length; i++) {
+            if (Math.abs(Math.log(frequencies[i] / frequency)) < Math.abs(Math.log(frequencies[best] / frequency))) {
+                best = i;
+            }
+        }
+        return magnitudeDb[best];
+    }
+
+    /**
+     * Peak-to-peak ripple in dB of the bands between lowHz and highHz.
+     */
+    public double deviation(double lowHz, double highHz) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < frequencies.length; i++) {
+            if (frequencies[i] < lowHz || frequencies[i] > highHz) continue;
+            min = Math.min(min, magnitudeDb[i]);
+            max = Math.max(max, magnitudeDb[i]);
+        }
+        return max >= min ? max - min : 0;
+    }
+
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("frequency_hz,magnitude_db\n");
+        for (int i = 0; i < frequencies.length; i++) {
+            writer.write(String.format(Locale.US, "%.1f,%.2f\n", frequencies[i], magnitudeDb[i]));
+        }
+    }
+}
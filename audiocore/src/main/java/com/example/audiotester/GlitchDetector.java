@@ -0,0 +1,129 @@
+package com.example.audiotester;
+
+/**
+ * Finds glitches in a captured sine of known frequency, sample by sample.
+ *
+ * A pure sine satisfies x[n] = 2 cos(w) x[n - 1] - x[n - 2], so any sample that departs from
+ * that prediction by more than a fraction of the signal amplitude is a discontinuity. Loss of
+ * signal is tracked separately by comparing a fast level estimate against a slow one.
+ * Processing is O(1) per sample and does not allocate.
+ */
+public class GlitchDetector implements BlockProcessor {
+
+    public static final float DEFAULT_THRESHOLD = 0.3f;
+
+    // signal must be above this mean square (-50 dBFS) before anything is reported
+    private static final double MIN_LEVEL = 1e-5;
+
+    // dropouts start 20 dB and end 10 dB below the long-term level, in power
+    private static final double DROPOUT_START = 0.01;
+    private static final double DROPOUT_END = 0.1;
+
+    private static final double WARMUP_SECONDS = 0.1;
+    private static final double REFRACTORY_SECONDS = 0.02;
+    private static final double SLOW_SECONDS = 0.5;
+    private static final double FAST_SECONDS = 0.002;
+
+    private final int mSampleRate;
+    private final double mCoefficient;
+    private final float mThreshold;
+    private final GlitchTimeline mTimeline;
+
+    private final double mSlowAlpha;
+    private final double mFastAlpha;
+    private final long mWarmupFrames;
+    private final long mRefractoryFrames;
+
+    private float mPrevious1;
+    private float mPrevious2;
+    private double mSlowLevel;
+    private double mFastLevel;
+    private boolean mInDropout;
+    private long mPosition;
+    private long mQuietUntil;
+    private long mTimeOffsetMs;
+
+    public GlitchDetector(int sampleRate, double frequency, float threshold, GlitchTimeline timeline) {
+        mSampleRate = sampleRate;
+        mCoefficient = 2 * Math.cos(2 * Math.PI * frequency / sampleRate);
+        mThreshold = threshold;
+        mTimeline = timeline;
+
+        mSlowAlpha = 1.0 / (SLOW_SECONDS * sampleRate);
+        mFastAlpha = 1.0 / (FAST_SECONDS * sampleRate);
+        mWarmupFrames = (long) (WARMUP_SECONDS * sampleRate);
+        mRefractoryFrames = (long) (REFRACTORY_SECONDS * sampleRate);
+
+        reset();
+    }
+
+    public GlitchDetector(int sampleRate, double frequency, GlitchTimeline timeline) {
+        this(sampleRate, frequency, DEFAULT_THRESHOLD, timeline);
+    }
+
+    public void reset() {
+        reset(0);
+    }
+
+    /**
+     * Restarts detection; events are stamped relative to timeOffsetMs.
+     */
+    public void reset(long timeOffsetMs) {
+        mTimeOffsetMs = timeOffsetMs;
+        mPrevious1 = 0;
+        mPrevious2 = 0;
+        mSlowLevel = 0;
+        mFastLevel = 0;
+        mInDropout = false;
+        mPosition = 0;
+        mQuietUntil = mWarmupFrames;
+    }
+
+    public long getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public void process(float[] samples, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float sample = samples[i];
+            double square = (double) sample * sample;
+
+            mFastLevel += mFastAlpha * (square - mFastLevel);
+
+            boolean armed = mPosition >= mQuietUntil && mSlowLevel > MIN_LEVEL;
+
+            if (mInDropout) {
+                if (mFastLevel > DROPOUT_END * mSlowLevel) {
+                    mInDropout = false;
+                    // the predictor needs two clean samples again
+                    mQuietUntil = mPosition + mRefractoryFrames;
+                }
+            } else {
+                // the long-term level is frozen during dropouts and converges fast during warm-up
+                mSlowLevel += (mPosition < mWarmupFrames ? mFastAlpha : mSlowAlpha) * (square - mSlowLevel);
+
+                if (armed && mFastLevel < DROPOUT_START * mSlowLevel) {
+                    mInDropout = true;
+                    report(GlitchTimeline.Type.DROPOUT);
+                } else if (armed) {
+                    double residual = sample - (mCoefficient * mPrevious1 - mPrevious2);
+                    double amplitude = Math.sqrt(2 * mSlowLevel);
+
+                    if (Math.abs(residual) > mThreshold * amplitude) {
+                        report(GlitchTimeline.Type.DISCONTINUITY);
+                    }
+                }
+            }
+
+            mPrevious2 = mPrevious1;
+            mPrevious1 = sample;
+            mPosition++;
+        }
+    }
+
+    private void report(GlitchTimeline.Type type) {
+        mTimeline.add(type, mTimeOffsetMs + mPosition * 1000 / mSampleRate, 1);
+        mQuietUntil = mPosition + mRefractoryFrames;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Time-stamped glitch events of a soak test.
+ *
+ * Storage is preallocated; events past the capacity are counted but not stored. The totals
+ * and per-minute counts cover every event. Events may be added from several threads.
+ */
+public class GlitchTimeline {
+
+    public enum Type {
+        /** Discontinuity found in the captured loopback signal. */
+        DISCONTINUITY,
+        /** Captured loopback signal dropped out. */
+        DROPOUT,
+        /** AudioTrack reported new underruns. */
+        UNDERRUN,
+        /** AudioTrack playback head did not advance. */
+        STALL,
+        /** Capture could not keep up, so the loopback signal is incomplete. */
+        CAPTURE_OVERRUN
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final long[] mTimesMs;
+    private final int[] mTypes;
+    private final int[] mCounts;
+    private final int[] mTypeTotals = new int[TYPES.length];
+    // grows by doubling, so a soak test of any length only reallocates a few times
+    private int[] mMinuteCounts = new int[64];
+    private int mSize = 0;
+    private long mTotal = 0;
+
+    public GlitchTimeline(int capacity) {
+        mTimesMs = new long[capacity];
+        mTypes = new int[capacity];
+        mCounts = new int[capacity];
+    }
+
+    public synchronized void add(Type type, long timeMs, int count) {
+        if (count <= 0) return;
+
+        if (mSize < mTimesMs.length) {
+            mTimesMs[mSize] = timeMs;
+            mTypes[mSize] = type.ordinal();
+            mCounts[mSize] = count;
+            mSize++;
+        }
+
+        int minute = (int) Math.max(0, timeMs / 60_000);
+        if (minute >= mMinuteCounts.length) {
+            mMinuteCounts = Arrays.copyOf(mMinuteCounts, Math.max(minute + 1, mMinuteCounts.length * 2));
+        }
+        mMinuteCounts[minute] += count;
+
+        mTypeTotals[type.ordinal()] += count;
+        mTotal += count;
+    }
+
+    public synchronized void clear() {
+        mSize = 0;
+        mTotal = 0;
+        Arrays.fill(mTypeTotals, 0);
+        Arrays.fill(mMinuteCounts, 0);
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized long getTotal() {
+        return mTotal;
+    }
+
+    public synchronized int getTotal(Type type) {
+        return mTypeTotals[type.ordinal()];
+    }
+
+    public synchronized long getTimeMs(int index) {
+        return mTimesMs[index];
+    }
+
+    public synchronized Type getType(int index) {
+        return TYPES[mTypes[index]];
+    }
+
+    public synchronized int getCount(int index) {
+        return mCounts[index];
+    }
+
+    /**
+     * Number of glitches of any type in each started minute up to durationMs, later ones
+     * counted in the last minute.
+     */
+    public synchronized int[] countsPerMinute(long durationMs) {
+        int[] minutes = new int[(int) Math.max(1, (durationMs + 59_999) / 60_000)];
+
+        for (int i = 0; i < mMinuteCounts.length; i++) {
+            minutes[Math.min(minutes.length - 1, i)] += mMinuteCounts[i];
+        }
+
+        return minutes;
+    }
+
+    public synchronized void writeCsv(Writer writer) throws IOException {
+        writer.write("time_ms,type,count\n");
+        for (int i = 0; i < mSize; i++) {
+            writer.write(mTimesMs[i] + "," + TYPES[mTypes[i]] + "," + mCounts[i] + "\n");
+        }
+    }
+
+    public synchronized String summary(long durationMs) {
+        StringBuilder builder = new StringBuilder(String.format(Locale.US, "%.1f min, %d glitches",
+                durationMs / 60_000.0, mTotal));
+
+        for (Type type : TYPES) {
+            int total = mTypeTotals[type.ordinal()];
+            if (total > 0) builder.append(", ").append(type).append(" = ").append(total);
+        }
+
+        return builder.toString();
+    }
+}
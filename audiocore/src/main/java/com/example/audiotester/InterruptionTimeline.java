@@ -0,0 +1,225 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Interruptions of a test run, such as audio focus loss or a route change.
+ *
+ * Each interruption is a segment from the moment it started, through the moment focus came
+ * back, to the moment audio was flowing again. Measurements that overlap a segment are not
+ * valid. Runs that are not paused by an interruption end it with {@link #ended} instead of
+ * {@link #resumed}, and have no recovery time. Storage is preallocated like
+ * {@link GlitchTimeline}; interruptions past the capacity are counted but not stored. Times
+ * are in ms from the start of the run.
+ */
+public class InterruptionTimeline {
+
+    public enum Type {
+        /** Another app took audio focus for an unknown time. */
+        FOCUS_LOSS,
+        /** Another app took audio focus for a short time, e.g. a notification or a call. */
+        FOCUS_LOSS_TRANSIENT,
+        /** Another app asked us to lower the volume. */
+        FOCUS_LOSS_DUCK,
+        /** Output is about to move to the speaker, e.g. headphones were pulled. */
+        BECOMING_NOISY,
+        /** A wired headset was plugged in or out. */
+        HEADSET_PLUG
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final int[] mTypes;
+    private final long[] mStartMs;
+    private final long[] mReturnMs;
+    private final long[] mResumeMs;
+    private final boolean[] mRecoveryMeasured;
+    private int mSize = 0;
+    private int mTotal = 0;
+
+    // index of the interruption that has not resumed yet, or -1
+    private int mOpen = -1;
+    private boolean mOpenDropped = false;
+
+    public InterruptionTimeline(int capacity) {
+        mTypes = new int[capacity];
+        mStartMs = new long[capacity];
+        mReturnMs = new long[capacity];
+        mResumeMs = new long[capacity];
+        mRecoveryMeasured = new boolean[capacity];
+    }
+
+    /**
+     * Starts an interruption. While one is already open it only extends that one.
+     */
+    public synchronized void begin(Type type, long timeMs) {
+        if (isInterrupted()) return;
+
+        mTotal++;
+        if (mSize == mTypes.length) {
+            mOpenDropped = true;
+            return;
+        }
+
+        mTypes[mSize] = type.ordinal();
+        mStartMs[mSize] = timeMs;
+        mReturnMs[mSize] = -1;
+        mResumeMs[mSize] = -1;
+        mOpen = mSize++;
+    }
+
+    /**
+     * Focus is back; the open interruption lasts until {@link #resumed}.
+     */
+    public synchronized void focusReturned(long timeMs) {
+        if (mOpen >= 0 && mReturnMs[mOpen] < 0) {
+            mReturnMs[mOpen] = timeMs;
+        }
+    }
+
+    /**
+     * Audio is flowing again, which ends the open interruption.
+     */
+    public synchronized void resumed(long timeMs) {
+        close(timeMs, true);
+    }
+
+    /**
+     * Focus is back for a run that kept going through the interruption, which ends it without
+     * a recovery time.
+     */
+    public synchronized void ended(long timeMs) {
+        close(timeMs, false);
+    }
+
+    private void close(long timeMs, boolean recoveryMeasured) {
+        if (mOpen >= 0) {
+            if (mReturnMs[mOpen] < 0) mReturnMs[mOpen] = timeMs;
+            mResumeMs[mOpen] = timeMs;
+            mRecoveryMeasured[mOpen] = recoveryMeasured;
+            mOpen = -1;
+        }
+        mOpenDropped = false;
+    }
+
+    public synchronized boolean isInterrupted() {
+        return mOpen >= 0 || mOpenDropped;
+    }
+
+    public synchronized void clear() {
+        mSize = 0;
+        mTotal = 0;
+        mOpen = -1;
+        mOpenDropped = false;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized int getTotal() {
+        return mTotal;
+    }
+
+    public synchronized Type getType(int index) {
+        return TYPES[mTypes[index]];
+    }
+
+    public synchronized long getStartMs(int index) {
+        return mStartMs[index];
+    }
+
+    /**
+     * Time focus came back, or -1 while it has not.
+     */
+    public synchronized long getReturnMs(int index) {
+        return mReturnMs[index];
+    }
+
+    /**
+     * Time audio was flowing again, or -1 while it is not.
+     */
+    public synchronized long getResumeMs(int index) {
+        return mResumeMs[index];
+    }
+
+    /**
+     * Time from focus returning to audio flowing again, or -1 if it has not resumed or was
+     * {@link #ended} without pausing.
+     */
+    public synchronized long getRecoveryMs(int index) {
+        return mResumeMs[index] < 0 || !mRecoveryMeasured[index] ? -1 : mResumeMs[index] - mReturnMs[index];
+    }
+
+    /**
+     * Longest recovery of all resumed interruptions, or -1 if none resumed.
+     */
+    public synchronized long maxRecoveryMs() {
+        long max = -1;
+        for (int i = 0; i < mSize; i++) {
+            max = Math.max(max, getRecoveryMs(i));
+        }
+        return max;
+    }
+
+    /**
+     * Whether any interruption overlaps [fromMs, toMs]. An interruption that has not resumed
+     * lasts forever.
+     */
+    public synchronized boolean overlaps(long fromMs, long toMs) {
+        if (mOpenDropped) return true;
+
+        for (int i = 0; i < mSize; i++) {
+            long end = mResumeMs[i] < 0 ? Long.MAX_VALUE : mResumeMs[i];
+            if (mStartMs[i] <= toMs && end >= fromMs) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds interruptions, interrupted_ms, first_interruption_ms and max_resume_ms to metrics, so
+     * stored results can be filtered by them. Values another timeline already put there are
+     * combined with these. Open interruptions last until nowMs.
+     */
+    public synchronized void addMetrics(Map<String, Double> metrics, long nowMs) {
+        long interruptedMs = 0;
+        for (int i = 0; i < mSize; i++) {
+            long end = mResumeMs[i] < 0 ? Math.max(nowMs, mStartMs[i]) : mResumeMs[i];
+            interruptedMs += end - mStartMs[i];
+        }
+
+        metrics.merge("interruptions", (double) mTotal, Double::sum);
+        metrics.merge("interrupted_ms", (double) interruptedMs, Double::sum);
+        if (mSize > 0) {
+            metrics.merge("first_interruption_ms", (double) mStartMs[0], Math::min);
+        }
+        if (maxRecoveryMs() >= 0) {
+            metrics.merge("max_resume_ms", (double) maxRecoveryMs(), Math::max);
+        }
+    }
+
+    public synchronized void writeCsv(Writer writer) throws IOException {
+        writer.write("start_ms,type,return_ms,resume_ms,recovery_ms\n");
+        for (int i = 0; i < mSize; i++) {
+            writer.write(mStartMs[i] + "," + TYPES[mTypes[i]] + "," + csvTime(mReturnMs[i]) + ","
+                    + csvTime(mResumeMs[i]) + "," + csvTime(getRecoveryMs(i)) + "\n");
+        }
+    }
+
+    public synchronized String summary() {
+        if (mTotal == 0) return "no interruptions";
+
+        String summary = String.format(Locale.US, "%d interruptions", mTotal);
+        long maxRecovery = maxRecoveryMs();
+        if (maxRecovery >= 0) summary += ", resumed within " + maxRecovery + " ms";
+        if (isInterrupted()) summary += ", interrupted now";
+        return summary;
+    }
+
+    private static String csvTime(long ms) {
+        return ms < 0 ? "" : Long.toString(ms);
+    }
+}
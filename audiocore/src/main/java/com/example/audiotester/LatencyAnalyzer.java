@@ -0,0 +1,122 @@
+package com.example.audiotester;
+
+/**
+ * Finds where a known probe signal shows up in a captured signal.
+ *
+ * The delay is the lag with the highest normalized cross-correlation between the
+ * probe and the capture, so it is insensitive to the gain of the acoustic path. The
+ * correlation is an {@link FftConvolver} pass with the time-reversed probe.
+ */
+public class LatencyAnalyzer {
+
+    public static final float DEFAULT_MIN_CORRELATION = 0.3f;
+
+    private final float[] mProbe;
+    private final float[] mReversedProbe;
+    private final double mProbeEnergy;
+    private final float mMinCorrelation;
+
+    private float mLastCorrelation = 0f;
+
+    public LatencyAnalyzer(float[] probe, float minCorrelation) {
+        mProbe = probe.clone();
+        mMinCorrelation = minCorrelation;
+
+        double energy = 0;
+        for (float sample : mProbe) {
+            energy += sample * sample;
+        }
+        mProbeEnergy = energy;
+
+        mReversedProbe = new float[mProbe.length];
+        for (int i = 0; i < mProbe.length; i++) {
+            mReversedProbe[i] = mProbe[mProbe.length - 1 - i];
+        }
+    }
+
+    public LatencyAnalyzer(float[] probe) {
+        this(probe, DEFAULT_MIN_CORRELATION);
+    }
+
+    /**
+     * Linear chirp from startHz to endHz with a raised-cosine fade at both ends.
+     */
+    public static float[] createChirp(int sampleRate, int length, double startHz, double endHz, float amplitude) {
+        float[] chirp = new float[length];
+
+        double duration = (double) length / sampleRate;
+        double sweepRate = (endHz - startHz) / duration;
+        int fade = Math.max(1, length / 16);
+
+        for (int i = 0; i < length; i++) {
+            double t = (double) i / sampleRate;
+            double phase = 2 * Math.PI * (startHz * t + 0.5 * sweepRate * t * t);
+
+            double gain = 1;
+            if (i < fade) {
+                gain = 0.5 - 0.5 * Math.cos(Math.PI * i / fade);
+            } else if (i >= length - fade) {
+                gain = 0.5 - 0.5 * Math.cos(Math.PI * (length - 1 - i) / fade);
+            }
+
+            chirp[i] = (float) (amplitude * gain * Math.sin(phase));
+        }
+
+        return chirp;
+    }
+
+    public int getProbeLength() {
+        return mProbe.length;
+    }
+
+    /**
+     * Normalized correlation (0..1) of the best match found by the last call to {@link #findDelay}.
+     */
+    public float getLastCorrelation() {
+        return mLastCorrelation;
+    }
+
+    /**
+     * Returns the offset of the probe inside captured[0, length), or -1 if no lag
+     * correlates above the minimum correlation.
+     */
+    public int findDelay(float[] captured, int length) {
+        int probeLength = mProbe.length;
+        mLastCorrelation = 0f;
+
+        if (length < probeLength || mProbeEnergy == 0) return -1;
+
+        // energy of the capture window under the probe, updated incrementally
+        double windowEnergy = 0;
+        for (int i = 0; i < probeLength; i++) {
+            windowEnergy += captured[i] * captured[i];
+        }
+
+        // correlation is convolution with the time-reversed probe, the dot product at lag
+        // ends up at lag + probeLength - 1
+        float[] correlation = FftConvolver.convolve(captured, length, mReversedProbe, probeLength);
+
+        int bestLag = -1;
+        double bestScore = 0;
+
+        for (int lag = 0; lag + probeLength <= length; lag++) {
+            if (lag > 0) {
+                float out = captured[lag - 1];
+                float in = captured[lag + probeLength - 1];
+                windowEnergy += in * in - out * out;
+            }
+
+            // skip silent windows, incremental updates can leave a tiny residue
+            if (windowEnergy <= mProbeEnergy * 1e-9) continue;
+
+            double score = correlation[lag + probeLength - 1] / Math.sqrt(mProbeEnergy * windowEnergy);
+            if (score > bestScore) {
+                bestScore = score;
+                bestLag = lag;
+            }
+        }
+
+        mLastCorrelation = (float) bestScore;
+        return bestScore >= mMinCorrelation ? bestLag : -1;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.audiotester;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with a bounded relative error, in the style
+ * of HdrHistogram.
+ *
+ * Values below 2^subBucketBits are counted exactly; above that every power of two is split
+ * into 2^(subBucketBits - 1) linear buckets, so a value is off by less than
+ * 2^(1 - subBucketBits) of itself. Counts live in one preallocated AtomicLongArray, so
+ * {@link #record} neither locks nor allocates and may be called from any thread. Reads are not
+ * a consistent snapshot while other threads record.
+ */
+public class LatencyHistogram {
+
+    public static final long DEFAULT_HIGHEST_NANOS = 3_600_000_000_000L;
+    public static final int DEFAULT_SUB_BUCKET_BITS = 7;
+
+    private final int mSubBucketBits;
+    private final int mSubBucketCount;
+    private final int mHalfCount;
+    private final long mHighestValue;
+
+    private final AtomicLongArray mCounts;
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong mMax = new AtomicLong(0);
+
+    /**
+     * Values above highestValue are counted in the last bucket; min and max stay exact.
+     */
+    public LatencyHistogram(long highestValue, int subBucketBits) {
+        if (subBucketBits < 2 || subBucketBits > 16 || highestValue < (1L << subBucketBits)) {
+            throw new IllegalArgumentException("Invalid histogram " + highestValue + " / " + subBucketBits);
+        }
+
+        mSubBucketBits = subBucketBits;
+        mSubBucketCount = 1 << subBucketBits;
+        mHalfCount = mSubBucketCount / 2;
+        mHighestValue = highestValue;
+        mCounts = new AtomicLongArray(indexOf(highestValue) + 1);
+    }
+
+    public LatencyHistogram() {
+        this(DEFAULT_HIGHEST_NANOS, DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+
+        mCounts.incrementAndGet(indexOf(Math.min(value, mHighestValue)));
+        mTotalCount.incrementAndGet();
+        mSum.addAndGet(value);
+
+        long min;
+        while (value < (min = mMin.get()) && !mMin.compareAndSet(min, value)) {
+            // retry
+        }
+        long max;
+        while (value > (max = mMax.get()) && !mMax.compareAndSet(max, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Records the time since startNanos, a System.nanoTime() value.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return mTotalCount.get();
+    }
+
+    public long getMin() {
+        return getCount() > 0 ? mMin.get() : 0;
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count > 0 ? (double) mSum.get() / count : 0;
+    }
+
+    /**
+     * Smallest value that percentile percent of the recorded values are at or below, to the
+     * precision of the buckets; 0 and 100 give the exact min and max. 0 when empty.
+     */
+    public long valueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) return 0;
+        if (percentile <= 0) return getMin();
+
+        long rank = (long) Math.ceil(Math.min(100, percentile) / 100 * count);
+        if (rank >= count) return getMax();
+
+        long seen = 0;
+        for (int i = 0; i < mCounts.length(); i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.max(getMin(), Math.min(highestEquivalentValue(i), getMax()));
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mSum.set(0);
+        mMin.set(Long.MAX_VALUE);
+        mMax.set(0);
+    }
+
+    /**
+     * "count, p50, p99, max" with durations in ms.
+     */
+    public String summary() {
+        return String.format(Locale.US, "n = %d, p50 = %.3f ms, p99 = %.3f ms, max = %.3f ms",
+                getCount(), valueAtPercentile(50) / 1e6, valueAtPercentile(99) / 1e6, getMax() / 1e6);
+    }
+
+    int indexOf(long value) {
+        if (value < mSubBucketCount) return (int) value;
+
+        // shift so that the top subBucketBits bits remain, which puts them in [half, count)
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (mSubBucketBits - 1);
+        return mSubBucketCount + (shift - 1) * mHalfCount + (int) ((value >>> shift) - mHalfCount);
+    }
+
+    long lowestEquivalentValue(int index) {
+        if (index < mSubBucketCount) return index;
+
+        int offset = index - mSubBucketCount;
+        int shift = offset / mHalfCount + 1;
+        long subBucket = offset % mHalfCount + mHalfCount;
+        return subBucket << shift;
+    }
+
+    long highestEquivalentValue(int index) {
+        if (index < mSubBucketCount) return index;
+
+        int shift = (index - mSubBucketCount) / mHalfCount + 1;
+        return lowestEquivalentValue(index) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Summary of repeated latency measurements, in milliseconds.
+ */
+public class LatencyStats {
+
+    public final int count;
+    public final double min;
+    public final double median;
+    public final double p99;
+    public final double max;
+
+    private LatencyStats(int count, double min, double median, double p99, double max) {
+        this.count = count;
+        this.min = min;
+        this.median = median;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public static LatencyStats of(double[] values, int count) {
+        if (count <= 0) {
+            return new LatencyStats(0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+
+        double[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+
+        return new LatencyStats(count, sorted[0], percentile(sorted, 50), percentile(sorted, 99), sorted[count - 1]);
+    }
+
+    /**
+     * Named values for a {@link TestResult}.
+     */
+    public Map<String, Double> toMetrics() {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("count", (double) count);
+        metrics.put("min_ms", min);
+        metrics.put("median_ms", median);
+        metrics.put("p99_ms", p99);
+        metrics.put("max_ms", max);
+        return metrics;
+    }
+
+    /**
+     * Nearest-rank percentile of an already sorted array.
+     */
+    public static double percentile(double[] sorted, double percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "n = %d, min = %.1f ms, median = %.1f ms, p99 = %.1f ms, max = %.1f ms",
+                count, min, median, p99, max);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Level summary of a captured sample, in dBFS.
+ *
+ * The capture is split into short windows; the noise floor is the level of the quietest
+ * windows and the signal level that of the loudest ones, so SNR can be read from a single
+ * capture without a separate silence recording. True peak and integrated loudness come
+ * from a {@link LoudnessMeter} run over the same samples.
+ */
+public class LevelStats {
+
+    public static final double MIN_DB = -140;
+
+    public static final double WINDOW_SECONDS = 0.01;
+    public static final double NOISE_PERCENTILE = 10;
+    public static final double SIGNAL_PERCENTILE = 90;
+
+    public final double rmsDb;
+    public final double peakDb;
+    public final double noiseFloorDb;
+    public final double snrDb;
+    public final double truePeakDb;
+    public final double loudnessLufs;
+
+    public LevelStats(double rmsDb, double peakDb, double noiseFloorDb, double snrDb,
+                      double truePeakDb, double loudnessLufs) {
+        this.rmsDb = rmsDb;
+        this.peakDb = peakDb;
+        this.noiseFloorDb = noiseFloorDb;
+        this.snrDb = snrDb;
+        this.truePeakDb = truePeakDb;
+        this.loudnessLufs = loudnessLufs;
+    }
+
+    /**
+     * Named values for a {@link TestResult}.
+     */
+    public Map<String, Double> toMetrics() {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("rms_db", rmsDb);
+        metrics.put("peak_db", peakDb);
+        metrics.put("noise_floor_db", noiseFloorDb);
+        metrics.put("snr_db", snrDb);
+        metrics.put("true_peak_db", truePeakDb);
+        metrics.put("loudness_lufs", loudnessLufs);
+        return metrics;
+    }
+
+    public static LevelStats analyze(float[] samples, int length, int sampleRate) {
+        int windowSize = Math.max(1, (int) (sampleRate * WINDOW_SECONDS));
+        int windows = Math.max(1, length / windowSize);
+        double[] windowPower = new double[windows];
+
+        double sum = 0;
+        float peak = 0;
+
+        for (int i = 0; i < length; i++) {
+            float sample = samples[i];
+            double square = sample * sample;
+
+            sum += square;
+            peak = Math.max(peak, Math.abs(sample));
+
+            int window = Math.min(i / windowSize, windows - 1);
+            windowPower[window] += square;
+        }
+
+        for (int w = 0; w < windows; w++) {
+            int size = w == windows - 1 ? length - w * windowSize : windowSize;
+            windowPower[w] = size > 0 ? windowPower[w] / size : 0;
+        }
+        Arrays.sort(windowPower);
+
+        double noise = LatencyStats.percentile(windowPower, NOISE_PERCENTILE);
+        double signal = LatencyStats.percentile(windowPower, SIGNAL_PERCENTILE);
+
+        LoudnessMeter meter = new LoudnessMeter(sampleRate);
+        meter.process(samples, 0, length);
+
+        double noiseDb = powerToDb(noise);
+        return new LevelStats(
+                powerToDb(length > 0 ? sum / length : 0),
+                amplitudeToDb(peak),
+                noiseDb,
+                powerToDb(signal) - noiseDb,
+                Math.max(amplitudeToDb(peak), meter.getMaxTruePeakDb()),
+                meter.getIntegratedLufs());
+    }
+
+    public static double powerToDb(double power) {
+        return power > 0 ? Math.max(MIN_DB, 10 * Math.log10(power)) : MIN_DB;
+    }
+
+    public static double amplitudeToDb(double amplitude) {
+        return amplitude > 0 ? Math.max(MIN_DB, 20 * Math.log10(amplitude)) : MIN_DB;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "rms = %.1f dB, peak = %.1f dB, noise = %.1f dB, snr = %.1f dB, "
+                        + "true peak = %.1f dBTP, loudness = %.1f LUFS",
+                rmsDb, peakDb, noiseFloorDb, snrDb, truePeakDb, loudnessLufs);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+
+/**
+ * Recent capture level in short windows, for finding when a signal changed level.
+ *
+ * Every window of {@link #getWindowFrames} frames gives one RMS level in dB, kept in a ring
+ * of preallocated storage. Positions are in frames since the last {@link #reset}, counted by
+ * the processed samples, so they follow the capture clock rather than the analysis thread.
+ * Levels are written on the analysis thread and searched from any thread.
+ */
+public class LevelTrace implements BlockProcessor {
+
+    public static final double DEFAULT_WINDOW_SECONDS = 0.005;
+
+    private final int mWindowFrames;
+    private final float[] mLevels;
+
+    private double mSquareSum = 0;
+    private int mWindowPosition = 0;
+
+    // finished windows since reset, guarded by this like mLevels
+    private long mWindows = 0;
+
+    public LevelTrace(int sampleRate, double windowSeconds, double capacitySeconds) {
+        mWindowFrames = Math.max(1, (int) Math.round(sampleRate * windowSeconds));
+        mLevels = new float[Math.max(1, (int) Math.ceil(capacitySeconds / windowSeconds))];
+    }
+
+    public int getWindowFrames() {
+        return mWindowFrames;
+    }
+
+    /**
+     * Frames in finished windows since the last reset.
+     */
+    public synchronized long getPosition() {
+        return mWindows * mWindowFrames;
+    }
+
+    public synchronized void reset() {
+        mSquareSum = 0;
+        mWindowPosition = 0;
+        mWindows = 0;
+    }
+
+    @Override
+    public void process(float[] samples, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            mSquareSum += samples[i] * samples[i];
+
+            if (++mWindowPosition == mWindowFrames) {
+                float level = (float) LevelStats.powerToDb(mSquareSum / mWindowFrames);
+                synchronized (this) {
+                    mLevels[(int) (mWindows % mLevels.length)] = level;
+                    mWindows++;
+                }
+                mSquareSum = 0;
+                mWindowPosition = 0;
+            }
+        }
+    }
+
+    /**
+     * Median level of the windows that start in [fromFrame, toFrame) and are still stored, or
+     * NaN if there are none.
+     */
+    public synchronized double median(long fromFrame, long toFrame) {
+        long first = Math.max(firstWindow(fromFrame), mWindows - mLevels.length);
+        long end = Math.min(firstWindow(toFrame), mWindows);
+        if (end <= first) return Double.NaN;
+
+        float[] levels = new float[(int) (end - first)];
+        for (long window = first; window < end; window++) {
+            levels[(int) (window - first)] = mLevels[(int) (window % mLevels.length)];
+        }
+        Arrays.sort(levels);
+        return levels[levels.length / 2];
+    }
+
+    /**
+     * Frame of the first window at or after fromFrame from which the level stays above
+     * thresholdDb (rising) or below it (falling) for holdWindows windows. -1 if that has not
+     * happened yet, or if fromFrame has already left the ring.
+     */
+    public synchronized long findCrossing(long fromFrame, double thresholdDb, boolean rising, int holdWindows) {
+        long first = firstWindow(fromFrame);
+        if (first < mWindows - mLevels.length) return -1;
+
+        long start = -1;
+        for (long window = first; window < mWindows; window++) {
+            float level = mLevels[(int) (window % mLevels.length)];
+            boolean beyond = rising ? level > thresholdDb : level < thresholdDb;
+            if (!beyond) {
+                start = -1;
+                continue;
+            }
+
+            if (start < 0) start = window;
+            if (window - start + 1 >= holdWindows) return start * mWindowFrames;
+        }
+        return -1;
+    }
+
+    private long firstWindow(long frame) {
+        return Math.max(0, (frame + mWindowFrames - 1) / mWindowFrames);
+    }
+}
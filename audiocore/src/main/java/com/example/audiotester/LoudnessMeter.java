@@ -0,0 +1,313 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Level and loudness meter for mono capture blocks.
+ *
+ * Samples are K-weighted as in ITU-R BS.1770 and summed into 100 ms blocks. Momentary (400 ms)
+ * and short-term (3 s) loudness, RMS, sample and true peak are published once per block, and
+ * every full momentary window feeds a gated histogram for integrated loudness. True peak uses
+ * 4x polyphase interpolation. Work per sample is constant and nothing is allocated after
+ * construction; results are read from any thread.
+ */
+public class LoudnessMeter implements BlockProcessor {
+
+    public static final double MIN_LUFS = -70;
+
+    public static final double BLOCK_SECONDS = 0.1;
+    public static final int MOMENTARY_BLOCKS = 4;
+    public static final int SHORT_TERM_BLOCKS = 30;
+
+    private static final int OVERSAMPLING = 4;
+    private static final int TAPS_PER_PHASE = 12;
+
+    private static final double LOUDNESS_OFFSET = -0.691;
+    private static final double RELATIVE_GATE_DB = -10;
+
+    // integrated loudness histogram, 0.1 LU bins from MIN_LUFS up to +10 LUFS
+    private static final double HISTOGRAM_STEP = 0.1;
+    private static final int HISTOGRAM_BINS = (int) ((10 - MIN_LUFS) / HISTOGRAM_STEP);
+
+    private final int mSampleRate;
+    private final int mBlockFrames;
+
+    // K-weighting: shelving stage then high-pass stage, transposed direct form II
+    private final double mShelfB0, mShelfB1, mShelfB2, mShelfA1, mShelfA2;
+    private final double mHighPassB0, mHighPassB1, mHighPassB2, mHighPassA1, mHighPassA2;
+    private double mShelfZ1, mShelfZ2, mHighPassZ1, mHighPassZ2;
+
+    // true-peak interpolator, history is stored twice so a window never wraps
+    private final float[][] mPhases = new float[OVERSAMPLING][TAPS_PER_PHASE];
+    private final float[] mHistory = new float[TAPS_PER_PHASE * 2];
+    private int mHistoryIndex;
+
+    // per-block accumulators
+    private double mWeightedSum;
+    private double mSquareSum;
+    private float mSamplePeak;
+    private float mTruePeak;
+    private int mBlockPosition;
+
+    // rings of finished blocks
+    private final double[] mBlockWeighted = new double[SHORT_TERM_BLOCKS];
+    private final double[] mBlockSquares = new double[MOMENTARY_BLOCKS];
+    private final float[] mBlockSamplePeaks = new float[MOMENTARY_BLOCKS];
+    private final float[] mBlockTruePeaks = new float[MOMENTARY_BLOCKS];
+    private long mBlocks;
+
+    private final long[] mHistogramCounts = new long[HISTOGRAM_BINS];
+    private final double[] mHistogramPowers = new double[HISTOGRAM_BINS];
+
+    private volatile double mMomentaryLufs = MIN_LUFS;
+    private volatile double mShortTermLufs = MIN_LUFS;
+    private volatile double mRmsDb = LevelStats.MIN_DB;
+    private volatile double mPeakDb = LevelStats.MIN_DB;
+    private volatile double mTruePeakDb = LevelStats.MIN_DB;
+    private volatile double mMaxTruePeakDb = LevelStats.MIN_DB;
+    private volatile long mPublishedBlocks;
+
+    public LoudnessMeter(int sampleRate) {
+        mSampleRate = sampleRate;
+        mBlockFrames = (int) Math.round(sampleRate * BLOCK_SECONDS);
+
+        // BS.1770 pre-filter re-derived for the sample rate
+        double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10, 3.999843853973347 / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        mShelfB0 = (vh + vb * k / q + k * k) / a0;
+        mShelfB1 = 2 * (k * k - vh) / a0;
+        mShelfB2 = (vh - vb * k / q + k * k) / a0;
+        mShelfA1 = 2 * (k * k - 1) / a0;
+        mShelfA2 = (1 - k / q + k * k) / a0;
+
+        // RLB high-pass
+        k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        q = 0.5003270373238773;
+        a0 = 1 + k / q + k * k;
+        mHighPassB0 = 1;
+        mHighPassB1 = -2;
+        mHighPassB2 = 1;
+        mHighPassA1 = 2 * (k * k - 1) / a0;
+        mHighPassA2 = (1 - k / q + k * k) / a0;
+
+        // Hann-windowed sinc split into phases, each normalized to unity gain at DC
+        int length = OVERSAMPLING * TAPS_PER_PHASE;
+        double center = (length - 1) / 2.0;
+        for (int phase = 0; phase < OVERSAMPLING; phase++) {
+            double sum = 0;
+            for (int tap = 0; tap < TAPS_PER_PHASE; tap++) {
+                int m = tap * OVERSAMPLING + phase;
+                double x = (m - center) / OVERSAMPLING;
+                double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+                double window = 0.5 - 0.5 * Math.cos(2 * Math.PI * (m + 0.5) / length);
+                mPhases[phase][tap] = (float) (sinc * window);
+                sum += sinc * window;
+            }
+            for (int tap = 0; tap < TAPS_PER_PHASE; tap++) {
+                mPhases[phase][tap] /= sum;
+            }
+        }
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public void reset() {
+        mShelfZ1 = mShelfZ2 = mHighPassZ1 = mHighPassZ2 = 0;
+        Arrays.fill(mHistory, 0f);
+        mHistoryIndex = 0;
+
+        mWeightedSum = mSquareSum = 0;
+        mSamplePeak = mTruePeak = 0;
+        mBlockPosition = 0;
+        mBlocks = 0;
+        Arrays.fill(mHistogramCounts, 0);
+        Arrays.fill(mHistogramPowers, 0);
+
+        mMomentaryLufs = mShortTermLufs = MIN_LUFS;
+        mRmsDb = mPeakDb = mTruePeakDb = mMaxTruePeakDb = LevelStats.MIN_DB;
+        mPublishedBlocks = 0;
+    }
+
+    @Override
+    public void process(float[] samples, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float sample = samples[i];
+
+            double shelf = mShelfB0 * sample + mShelfZ1;
+            mShelfZ1 = mShelfB1 * sample - mShelfA1 * shelf + mShelfZ2;
+            mShelfZ2 = mShelfB2 * sample - mShelfA2 * shelf;
+
+            double weighted = mHighPassB0 * shelf + mHighPassZ1;
+            mHighPassZ1 = mHighPassB1 * shelf - mHighPassA1 * weighted + mHighPassZ2;
+            mHighPassZ2 = mHighPassB2 * shelf - mHighPassA2 * weighted;
+
+            mWeightedSum += weighted * weighted;
+            mSquareSum += (double) sample * sample;
+
+            float magnitude = Math.abs(sample);
+            if (magnitude > mSamplePeak) mSamplePeak = magnitude;
+
+            float interpolated = interpolatePeak(sample);
+            if (interpolated > mTruePeak) mTruePeak = interpolated;
+
+            if (++mBlockPosition == mBlockFrames) {
+                finishBlock();
+            }
+        }
+    }
+
+    private float interpolatePeak(float sample) {
+        mHistoryIndex = mHistoryIndex == 0 ? TAPS_PER_PHASE - 1 : mHistoryIndex - 1;
+        mHistory[mHistoryIndex] = sample;
+        mHistory[mHistoryIndex + TAPS_PER_PHASE] = sample;
+
+        float peak = Math.abs(sample);
+        for (int phase = 0; phase < OVERSAMPLING; phase++) {
+            float[] coefficients = mPhases[phase];
+            float sum = 0;
+            for (int tap = 0; tap < TAPS_PER_PHASE; tap++) {
+                sum += coefficients[tap] * mHistory[mHistoryIndex + tap];
+            }
+            peak = Math.max(peak, Math.abs(sum));
+        }
+        return peak;
+    }
+
+    private void finishBlock() {
+        mBlockWeighted[(int) (mBlocks % SHORT_TERM_BLOCKS)] = mWeightedSum;
+
+        int slot = (int) (mBlocks % MOMENTARY_BLOCKS);
+        mBlockSquares[slot] = mSquareSum;
+        mBlockSamplePeaks[slot] = mSamplePeak;
+        mBlockTruePeaks[slot] = mTruePeak;
+        mBlocks++;
+
+        mWeightedSum = mSquareSum = 0;
+        mSamplePeak = mTruePeak = 0;
+        mBlockPosition = 0;
+
+        int momentaryBlocks = (int) Math.min(mBlocks, MOMENTARY_BLOCKS);
+        int shortTermBlocks = (int) Math.min(mBlocks, SHORT_TERM_BLOCKS);
+
+        double momentaryPower = sumRecent(mBlockWeighted, SHORT_TERM_BLOCKS, momentaryBlocks) / (momentaryBlocks * (double) mBlockFrames);
+        double shortTermPower = sumRecent(mBlockWeighted, SHORT_TERM_BLOCKS, shortTermBlocks) / (shortTermBlocks * (double) mBlockFrames);
+
+        double squares = 0;
+        float samplePeak = 0;
+        float truePeak = 0;
+        for (int b = 0; b < momentaryBlocks; b++) {
+            squares += mBlockSquares[b];
+            samplePeak = Math.max(samplePeak, mBlockSamplePeaks[b]);
+            truePeak = Math.max(truePeak, mBlockTruePeaks[b]);
+        }
+
+        if (mBlocks >= MOMENTARY_BLOCKS) {
+            addToHistogram(momentaryPower);
+        }
+
+        mMomentaryLufs = powerToLufs(momentaryPower);
+        mShortTermLufs = powerToLufs(shortTermPower);
+        mRmsDb = LevelStats.powerToDb(squares / (momentaryBlocks * (double) mBlockFrames));
+        mPeakDb = LevelStats.amplitudeToDb(samplePeak);
+        mTruePeakDb = LevelStats.amplitudeToDb(truePeak);
+        mMaxTruePeakDb = Math.max(mMaxTruePeakDb, mTruePeakDb);
+        mPublishedBlocks = mBlocks;
+    }
+
+    private double sumRecent(double[] ring, int size, int count) {
+        double sum = 0;
+        for (int b = 1; b <= count; b++) {
+            sum += ring[(int) ((mBlocks - b) % size)];
+        }
+        return sum;
+    }
+
+    private void addToHistogram(double power) {
+        double lufs = powerToLufs(power);
+        if (lufs <= MIN_LUFS) return;
+
+        int bin = Math.min(HISTOGRAM_BINS - 1, (int) ((lufs - MIN_LUFS) / HISTOGRAM_STEP));
+        mHistogramCounts[bin]++;
+        mHistogramPowers[bin] += power;
+    }
+
+    private static double powerToLufs(double power) {
+        return power > 0 ? Math.max(MIN_LUFS, LOUDNESS_OFFSET + 10 * Math.log10(power)) : MIN_LUFS;
+    }
+
+    /**
+     * Gated integrated loudness since the last reset, with the absolute gate at MIN_LUFS and
+     * the relative gate 10 LU below the absolute-gated mean. Resolution is 0.1 LU at the gate.
+     * Call on the processing thread or once it has stopped.
+     */
+    public double getIntegratedLufs() {
+        long count = 0;
+        double power = 0;
+        for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+            count += mHistogramCounts[bin];
+            power += mHistogramPowers[bin];
+        }
+        if (count == 0) return MIN_LUFS;
+
+        double relativeGate = powerToLufs(power / count) + RELATIVE_GATE_DB;
+        int firstBin = (int) Math.max(0, Math.ceil((relativeGate - MIN_LUFS) / HISTOGRAM_STEP));
+
+        count = 0;
+        power = 0;
+        for (int bin = firstBin; bin < HISTOGRAM_BINS; bin++) {
+            count += mHistogramCounts[bin];
+            power += mHistogramPowers[bin];
+        }
+        return count > 0 ? powerToLufs(power / count) : MIN_LUFS;
+    }
+
+    public double getMomentaryLufs() {
+        return mMomentaryLufs;
+    }
+
+    public double getShortTermLufs() {
+        return mShortTermLufs;
+    }
+
+    public double getRmsDb() {
+        return mRmsDb;
+    }
+
+    public double getPeakDb() {
+        return mPeakDb;
+    }
+
+    public double getTruePeakDb() {
+        return mTruePeakDb;
+    }
+
+    public double getMaxTruePeakDb() {
+        return mMaxTruePeakDb;
+    }
+
+    /**
+     * Peak to RMS ratio over the momentary window, in dB.
+     */
+    public double getCrestFactorDb() {
+        return mPeakDb - mRmsDb;
+    }
+
+    /**
+     * Number of 100 ms blocks published so far; readers can skip redraws when unchanged.
+     */
+    public long getBlockCount() {
+        return mPublishedBlocks;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "M %.1f LUFS, S %.1f LUFS\nrms %.1f dB, peak %.1f dB, true peak %.1f dBTP, crest %.1f dB",
+                mMomentaryLufs, mShortTermLufs, mRmsDb, mPeakDb, mTruePeakDb, getCrestFactorDb());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+
+/**
+ * Normalized least-mean-squares adaptive FIR filter.
+ *
+ * Models the path from a reference signal (what the speaker played) to a microphone signal
+ * and subtracts the prediction, leaving the part of the capture that is not linear echo.
+ * State lives in primitive arrays sized at construction; the reference history is stored
+ * twice so the tap window never wraps, and its energy is updated incrementally, so each
+ * sample costs two passes over the taps and nothing is allocated.
+ */
+public class NlmsFilter {
+
+    public static final float DEFAULT_STEP_SIZE = 0.5f;
+
+    private static final double REGULARIZATION = 1e-6;
+
+    private final int mTaps;
+    private final float mStepSize;
+
+    private final float[] mWeights;
+    private final float[] mHistory;
+    private int mIndex;
+    private double mEnergy;
+
+    public NlmsFilter(int taps, float stepSize) {
+        if (taps <= 0) {
+            throw new IllegalArgumentException("Need at least one tap: " + taps);
+        }
+
+        mTaps = taps;
+        mStepSize = stepSize;
+        mWeights = new float[taps];
+        mHistory = new float[taps * 2];
+    }
+
+    public NlmsFilter(int taps) {
+        this(taps, DEFAULT_STEP_SIZE);
+    }
+
+    public int getTaps() {
+        return mTaps;
+    }
+
+    public float[] getWeights() {
+        return mWeights;
+    }
+
+    public void reset() {
+        Arrays.fill(mWeights, 0f);
+        Arrays.fill(mHistory, 0f);
+        mIndex = 0;
+        mEnergy = 0;
+    }
+
+    /**
+     * Feeds one reference and microphone sample and returns the residual after echo removal.
+     */
+    public float process(float reference, float microphone) {
+        // newest sample at mIndex, oldest at mIndex + taps - 1
+        float oldest = mHistory[mIndex + mTaps - 1];
+        mIndex = mIndex == 0 ? mTaps - 1 : mIndex - 1;
+        mHistory[mIndex] = reference;
+        mHistory[mIndex + mTaps] = reference;
+
+        mEnergy += (double) reference * reference - (double) oldest * oldest;
+        if (mEnergy < 0) mEnergy = 0;
+
+        float[] weights = mWeights;
+        float[] history = mHistory;
+        int start = mIndex;
+
+        float estimate = 0;
+        for (int k = 0; k < mTaps; k++) {
+            estimate += weights[k] * history[start + k];
+        }
+
+        float error = microphone - estimate;
+        float gain = (float) (mStepSize * error / (mEnergy + REGULARIZATION));
+        for (int k = 0; k < mTaps; k++) {
+            weights[k] += gain * history[start + k];
+        }
+
+        return error;
+    }
+
+    /**
+     * Block version of {@link #process(float, float)}; residual may alias microphone.
+     */
+    public void process(float[] reference, float[] microphone, float[] residual, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            residual[i] = process(reference[i], microphone[i]);
+        }
+    }
+}
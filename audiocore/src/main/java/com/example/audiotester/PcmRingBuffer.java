@@ -0,0 +1,133 @@
+package com.example.audiotester;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer/single-consumer lock-free ring buffer of PCM samples.
+ *
+ * The storage is allocated once; one thread may write and one other thread may read
+ * concurrently without locking. Samples are stored as floats in the [-1, 1] range.
+ */
+public class PcmRingBuffer {
+
+    private final float[] mBuffer;
+    private final int mMask;
+
+    // total samples ever written / read, published with lazySet
+    private final AtomicLong mWritePosition = new AtomicLong();
+    private final AtomicLong mReadPosition = new AtomicLong();
+
+    // producer-side and consumer-side caches of the other thread's position
+    private long mCachedReadPosition;
+    private long mCachedWritePosition;
+
+    public PcmRingBuffer(int minCapacity) {
+        if (minCapacity <= 0 || minCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + minCapacity);
+        }
+
+        int capacity = Integer.highestOneBit(minCapacity);
+        if (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+
+        mBuffer = new float[capacity];
+        mMask = capacity - 1;
+    }
+
+    public int capacity() {
+        return mBuffer.length;
+    }
+
+    public int availableToRead() {
+        return (int) (mWritePosition.get() - mReadPosition.get());
+    }
+
+    public int availableToWrite() {
+        return mBuffer.length - availableToRead();
+    }
+
+    /**
+     * Producer side. Writes as many samples as fit and returns how many were written.
+     */
+    public int write(float[] src, int offset, int length) {
+        long writePosition = mWritePosition.get();
+        int count = writableCount(writePosition, length);
+        if (count == 0) return 0;
+
+        int index = (int) (writePosition & mMask);
+        int first = Math.min(count, mBuffer.length - index);
+
+        System.arraycopy(src, offset, mBuffer, index, first);
+        System.arraycopy(src, offset + first, mBuffer, 0, count - first);
+
+        mWritePosition.lazySet(writePosition + count);
+        return count;
+    }
+
+    /**
+     * Producer side. Converts 16-bit samples to floats on the way in.
+     */
+    public int write(short[] src, int offset, int length) {
+        long writePosition = mWritePosition.get();
+        int count = writableCount(writePosition, length);
+        if (count == 0) return 0;
+
+        int index = (int) (writePosition & mMask);
+        for (int i = 0; i < count; i++) {
+            mBuffer[(index + i) & mMask] = src[offset + i] * (1f / 32768f);
+        }
+
+        mWritePosition.lazySet(writePosition + count);
+        return count;
+    }
+
+    /**
+     * Consumer side. Reads up to length samples and returns how many were read.
+     */
+    public int read(float[] dst, int offset, int length) {
+        long readPosition = mReadPosition.get();
+        int count = readableCount(readPosition, length);
+        if (count == 0) return 0;
+
+        int index = (int) (readPosition & mMask);
+        int first = Math.min(count, mBuffer.length - index);
+
+        System.arraycopy(mBuffer, index, dst, offset, first);
+        System.arraycopy(mBuffer, 0, dst, offset + first, count - first);
+
+        mReadPosition.lazySet(readPosition + count);
+        return count;
+    }
+
+    /**
+     * Consumer side. Drops up to length samples without copying them.
+     */
+    public int skip(int length) {
+        long readPosition = mReadPosition.get();
+        int count = readableCount(readPosition, length);
+
+        mReadPosition.lazySet(readPosition + count);
+        return count;
+    }
+
+    private int writableCount(long writePosition, int length) {
+        int free = mBuffer.length - (int) (writePosition - mCachedReadPosition);
+        if (free < length) {
+            mCachedReadPosition = mReadPosition.get();
+            free = mBuffer.length - (int) (writePosition - mCachedReadPosition);
+        }
+
+        return Math.min(free, length);
+    }
+
+    private int readableCount(long readPosition, int length) {
+        int available = (int) (mCachedWritePosition - readPosition);
+        if (available < length) {
+            mCachedWritePosition = mWritePosition.get();
+            available = (int) (mCachedWritePosition - readPosition);
+        }
+
+        return Math.min(available, length);
+    }
+}
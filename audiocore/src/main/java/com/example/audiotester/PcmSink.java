@@ -0,0 +1,11 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+
+/**
+ * Destination for captured 16-bit PCM, called from the capture thread.
+ */
+public interface PcmSink {
+
+    void write(short[] samples, int offset, int length) throws IOException;
+}
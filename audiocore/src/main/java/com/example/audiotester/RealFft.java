@@ -0,0 +1,197 @@
+package com.example.audiotester;
+
+/**
+ * In-place radix-2 FFT of real input.
+ *
+ * The real signal of size n is transformed as a complex signal of size n/2 followed by a
+ * split step. Twiddle factors and the bit-reversal permutation are computed once, so
+ * {@link #forward} and {@link #inverse} do not allocate.
+ *
+ * Spectra use the packed layout: data[0] = Re X[0], data[1] = Re X[n/2] and
+ * data[2k], data[2k + 1] = Re X[k], Im X[k] for 0 < k < n/2.
+ */
+public class RealFft {
+
+    private final int mSize;
+    private final int mHalf;
+
+    // e^(-2 pi i k / mHalf) for the complex transform, k < mHalf / 2
+    private final float[] mCos;
+    private final float[] mSin;
+
+    // e^(-2 pi i k / mSize) for the split step, k <= mHalf / 2
+    private final float[] mSplitCos;
+    private final float[] mSplitSin;
+
+    private final int[] mBitReverse;
+
+    public RealFft(int size) {
+        if (size < 4 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 4: " + size);
+        }
+
+        mSize = size;
+        mHalf = size / 2;
+
+        mCos = new float[Math.max(1, mHalf / 2)];
+        mSin = new float[mCos.length];
+        for (int k = 0; k < mCos.length; k++) {
+            double angle = 2 * Math.PI * k / mHalf;
+            mCos[k] = (float) Math.cos(angle);
+            mSin[k] = (float) -Math.sin(angle);
+        }
+
+        mSplitCos = new float[mHalf / 2 + 1];
+        mSplitSin = new float[mSplitCos.length];
+        for (int k = 0; k < mSplitCos.length; k++) {
+            double angle = 2 * Math.PI * k / mSize;
+            mSplitCos[k] = (float) Math.cos(angle);
+            mSplitSin[k] = (float) -Math.sin(angle);
+        }
+
+        int bits = Integer.numberOfTrailingZeros(mHalf);
+        mBitReverse = new int[mHalf];
+        for (int i = 0; i < mHalf; i++) {
+            mBitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Transforms size real samples into the packed spectrum, in place.
+     */
+    public void forward(float[] data) {
+        complexTransform(data, false);
+
+        float z0 = data[0];
+        float zn = data[1];
+        data[0] = z0 + zn;
+        data[1] = z0 - zn;
+
+        for (int k = 1; k <= mHalf / 2; k++) {
+            int a = 2 * k;
+            int b = 2 * (mHalf - k);
+
+            float ar = data[a];
+            float ai = data[a + 1];
+            float br = data[b];
+            float bi = data[b + 1];
+
+            // even and odd parts: (a + conj(b)) / 2 and (a - conj(b)) / 2i
+            float er = 0.5f * (ar + br);
+            float ei = 0.5f * (ai - bi);
+            float or = 0.5f * (ai + bi);
+            float oi = -0.5f * (ar - br);
+
+            float wr = mSplitCos[k];
+            float wi = mSplitSin[k];
+            float tr = wr * or - wi * oi;
+            float ti = wr * oi + wi * or;
+
+            data[a] = er + tr;
+            data[a + 1] = ei + ti;
+            data[b] = er - tr;
+            data[b + 1] = -(ei - ti);
+        }
+    }
+
+    /**
+     * Transforms a packed spectrum back into size real samples, in place, including the 1/size scale.
+     */
+    public void inverse(float[] data) {
+        float x0 = data[0];
+        float xn = data[1];
+        data[0] = 0.5f * (x0 + xn);
+        data[1] = 0.5f * (x0 - xn);
+
+        for (int k = 1; k <= mHalf / 2; k++) {
+            int a = 2 * k;
+            int b = 2 * (mHalf - k);
+
+            float xr = data[a];
+            float xi = data[a + 1];
+            float yr = data[b];
+            float yi = -data[b + 1];
+
+            // undo the split: even = (X[k] + conj(X[m - k])) / 2, odd = (X[k] - conj(X[m - k])) / 2 / W^k
+            float er = 0.5f * (xr + yr);
+            float ei = 0.5f * (xi + yi);
+            float dr = 0.5f * (xr - yr);
+            float di = 0.5f * (xi - yi);
+
+            float wr = mSplitCos[k];
+            float wi = -mSplitSin[k];
+            float or = dr * wr - di * wi;
+            float oi = dr * wi + di * wr;
+
+            // a = even + i * odd, b = conj(even - i * odd)
+            data[a] = er - oi;
+            data[a + 1] = ei + or;
+            data[b] = er + oi;
+            data[b + 1] = -(ei - or);
+        }
+
+        complexTransform(data, true);
+
+        float scale = 2f / mSize;
+        for (int i = 0; i < mSize; i++) {
+            data[i] *= scale;
+        }
+    }
+
+    /**
+     * Magnitudes |X[k]| for k = 0..size/2 of a packed spectrum.
+     */
+    public void magnitudes(float[] spectrum, float[] out) {
+        out[0] = Math.abs(spectrum[0]);
+        out[mHalf] = Math.abs(spectrum[1]);
+
+        for (int k = 1; k < mHalf; k++) {
+            float re = spectrum[2 * k];
+            float im = spectrum[2 * k + 1];
+            out[k] = (float) Math.sqrt(re * re + im * im);
+        }
+    }
+
+    private void complexTransform(float[] data, boolean inverse) {
+        for (int i = 0; i < mHalf; i++) {
+            int j = mBitReverse[i];
+            if (j > i) {
+                float re = data[2 * i];
+                float im = data[2 * i + 1];
+                data[2 * i] = data[2 * j];
+                data[2 * i + 1] = data[2 * j + 1];
+                data[2 * j] = re;
+                data[2 * j + 1] = im;
+            }
+        }
+
+        float sign = inverse ? -1f : 1f;
+
+        for (int length = 2; length <= mHalf; length <<= 1) {
+            int halfLength = length >> 1;
+            int step = mHalf / length;
+
+            for (int start = 0; start < mHalf; start += length) {
+                for (int j = 0; j < halfLength; j++) {
+                    float wr = mCos[j * step];
+                    float wi = sign * mSin[j * step];
+
+                    int p = 2 * (start + j);
+                    int q = p + length;
+
+                    float qr = data[q] * wr - data[q + 1] * wi;
+                    float qi = data[q] * wi + data[q + 1] * wr;
+
+                    data[q] = data[p] - qr;
+                    data[q + 1] = data[p + 1] - qi;
+                    data[p] += qr;
+                    data[p + 1] += qi;
+                }
+            }
+        }
+    }
+}
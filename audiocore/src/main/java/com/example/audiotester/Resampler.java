@@ -0,0 +1,174 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+
+/**
+ * Streaming rational sample-rate converter with a polyphase windowed-sinc filter.
+ *
+ * The ratio is reduced to up / down; the Kaiser-windowed sinc prototype at up times the input
+ * rate is split into up phases, computed once. Each output sample is one dot product of a
+ * phase with the input history, which is stored twice so the tap window never wraps. The
+ * passband reaches {@link #PASSBAND} of the lower Nyquist frequency and everything above that
+ * Nyquist frequency is attenuated by at least {@link #STOPBAND_DB}.
+ */
+public class Resampler {
+
+    public static final double PASSBAND = 0.8;
+    public static final double STOPBAND_DB = 90;
+
+    // bounds the filter bank to MAX_PHASES x taps floats
+    public static final int MAX_PHASES = 4096;
+
+    // Kaiser design for the transition from PASSBAND to 1 of the lower Nyquist frequency
+    private static final double KAISER_BETA = 0.1102 * (STOPBAND_DB - 8.7);
+    private static final int BASE_TAPS = 64;
+
+    private final int mInputRate;
+    private final int mOutputRate;
+    private final int mUp;
+    private final int mDown;
+    private final int mTaps;
+
+    private final float[] mBank;
+    private final float[] mHistory;
+    private int mIndex;
+    private int mNextPhase;
+
+    public Resampler(int inputRate, int outputRate) {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException("Invalid rates " + inputRate + " -> " + outputRate);
+        }
+
+        int gcd = gcd(inputRate, outputRate);
+        mInputRate = inputRate;
+        mOutputRate = outputRate;
+        mUp = outputRate / gcd;
+        mDown = inputRate / gcd;
+        if (mUp > MAX_PHASES) {
+            throw new IllegalArgumentException("Ratio " + inputRate + " -> " + outputRate + " needs "
+                    + mUp + " phases, more than " + MAX_PHASES);
+        }
+
+        // a narrower band relative to the input needs proportionally longer phases
+        double ratio = Math.max(1, (double) inputRate / outputRate);
+        mTaps = 2 * (int) Math.ceil(BASE_TAPS * ratio / 2);
+
+        // cutoff halfway through the transition, in cycles per input sample
+        double cutoff = (PASSBAND + 1) / 4 / ratio;
+
+        int length = mUp * mTaps;
+        double center = (length - 1) / 2.0;
+        double windowNorm = besselI0(KAISER_BETA);
+
+        mBank = new float[length];
+        for (int phase = 0; phase < mUp; phase++) {
+            double sum = 0;
+            for (int tap = 0; tap < mTaps; tap++) {
+                int m = tap * mUp + phase;
+                double x = (m - center) / mUp;
+                double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+                double r = (m - center) / (center + 0.5);
+                double window = besselI0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - r * r))) / windowNorm;
+
+                mBank[phase * mTaps + tap] = (float) (sinc * window);
+                sum += sinc * window;
+            }
+
+            // each phase passes DC at unity, so there is no ripple between phases
+            for (int tap = 0; tap < mTaps; tap++) {
+                mBank[phase * mTaps + tap] /= sum;
+            }
+        }
+
+        mHistory = new float[mTaps * 2];
+        reset();
+    }
+
+    public int getInputRate() {
+        return mInputRate;
+    }
+
+    public int getOutputRate() {
+        return mOutputRate;
+    }
+
+    public int getTaps() {
+        return mTaps;
+    }
+
+    /**
+     * Group delay of the filter in output frames.
+     */
+    public double getDelayFrames() {
+        return (mUp * mTaps - 1) / 2.0 / mDown;
+    }
+
+    /**
+     * Largest number of frames {@link #process} can produce from inputLength input frames.
+     */
+    public int maxOutputLength(int inputLength) {
+        return (int) (((long) inputLength * mUp + mDown - 1) / mDown) + 1;
+    }
+
+    public void reset() {
+        Arrays.fill(mHistory, 0f);
+        mIndex = 0;
+        mNextPhase = mUp;
+    }
+
+    /**
+     * Consumes all input frames and returns the number of output frames written, at most
+     * {@link #maxOutputLength}(length).
+     */
+    public int process(float[] input, int inputOffset, int length, float[] output, int outputOffset) {
+        float[] bank = mBank;
+        float[] history = mHistory;
+        int taps = mTaps;
+        int written = 0;
+
+        for (int i = inputOffset; i < inputOffset + length; i++) {
+            // newest sample at mIndex, oldest at mIndex + taps - 1
+            mIndex = mIndex == 0 ? taps - 1 : mIndex - 1;
+            history[mIndex] = input[i];
+            history[mIndex + taps] = input[i];
+
+            // outputs that fall between this input and the next, in 1 / up input frames
+            mNextPhase -= mUp;
+            while (mNextPhase < mUp) {
+                int coefficients = mNextPhase * taps;
+                int start = mIndex;
+
+                float sum = 0;
+                for (int k = 0; k < taps; k++) {
+                    sum += bank[coefficients + k] * history[start + k];
+                }
+                output[outputOffset + written++] = sum;
+
+                mNextPhase += mDown;
+            }
+        }
+
+        return written;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    // zeroth-order modified Bessel function of the first kind, by its power series
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 50; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+            if (term < sum * 1e-12) break;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams results as CSV or JSON for dashboards, one result at a time.
+ *
+ * CSV has one row per metric so the columns stay the same whatever the tests measure; JSON
+ * has one object per result with its metrics nested. Metrics that are NaN or infinite are
+ * left empty in CSV and null in JSON.
+ */
+public final class ResultExporter {
+
+    public static final String CSV_HEADER = "id,timestamp_ms,test,device,route,mode,source,metric,value\n";
+
+    private ResultExporter() {
+    }
+
+    public static void writeCsv(Iterable<TestResult> results, Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+
+        for (TestResult result : results) {
+            String prefix = result.id + "," + result.timestampMs + "," + csv(result.test) + ","
+                    + csv(result.key.device) + "," + csv(result.key.route) + ","
+                    + csv(result.key.mode) + "," + csv(result.key.source) + ",";
+
+            for (Map.Entry<String, Double> metric : result.getMetrics().entrySet()) {
+                writer.write(prefix);
+                writer.write(csv(metric.getKey()));
+                writer.write(',');
+                writer.write(number(metric.getValue(), ""));
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    public static void writeJson(Iterable<TestResult> results, Writer writer) throws IOException {
+        writer.write('[');
+
+        boolean first = true;
+        for (TestResult result : results) {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+
+            writer.write("{\"id\":" + result.id + ",\"timestamp_ms\":" + result.timestampMs
+                    + ",\"test\":" + json(result.test) + ",\"device\":" + json(result.key.device)
+                    + ",\"route\":" + json(result.key.route) + ",\"mode\":" + json(result.key.mode)
+                    + ",\"source\":" + json(result.key.source) + ",\"metrics\":{");
+
+            boolean firstMetric = true;
+            for (Map.Entry<String, Double> metric : result.getMetrics().entrySet()) {
+                if (!firstMetric) writer.write(',');
+                firstMetric = false;
+                writer.write(json(metric.getKey()) + ":" + number(metric.getValue(), "null"));
+            }
+            writer.write("}}");
+        }
+
+        writer.write(first ? "]\n" : "\n]\n");
+        writer.flush();
+    }
+
+    static String number(double value, String notFinite) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return notFinite;
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return String.valueOf((long) value);
+        return Double.toString(value);
+    }
+
+    static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    static String json(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format(Locale.US, "\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.audiotester;
+
+import java.util.Objects;
+
+/**
+ * What a result was measured on: device model, route, audio mode and input source. Results
+ * with the same key are comparable over time.
+ */
+public final class ResultKey {
+
+    public final String device;
+    public final String route;
+    public final String mode;
+    public final String source;
+
+    public ResultKey(String device, String route, String mode, String source) {
+        this.device = device != null ? device : "";
+        this.route = route != null ? route : "";
+        this.mode = mode != null ? mode : "";
+        this.source = source != null ? source : "";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ResultKey)) return false;
+
+        ResultKey other = (ResultKey) o;
+        return device.equals(other.device) && route.equals(other.route)
+                && mode.equals(other.mode) && source.equals(other.source);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(device, route, mode, source);
+    }
+
+    @Override
+    public String toString() {
+        return device + " / " + route + " / " + mode + (source.isEmpty() ? "" : " / " + source);
+    }
+}
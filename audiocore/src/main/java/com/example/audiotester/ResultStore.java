@@ -0,0 +1,489 @@
+package com.example.audiotester;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent history of {@link TestResult}s in one directory.
+ *
+ * Appends and deletes go to a write-ahead log, one CRC-checked record each, synced before the
+ * call returns. Once the log holds enough records it is folded into a snapshot on the
+ * compaction executor: the results are copied under the lock, the snapshot is written from the
+ * copy to a temporary file and renamed into place without it, so appends and queries go on
+ * meanwhile, and then the log is replaced by the records appended since the copy. Replaying a
+ * log over a snapshot that already contains it is harmless, and a torn record at the end of
+ * the log is dropped on open.
+ *
+ * All results are kept in memory, indexed by id and by {@link ResultKey} in timestamp order,
+ * so history queries are a binary search on one key's list.
+ */
+public class ResultStore implements Closeable {
+
+    public static final int DEFAULT_COMPACT_THRESHOLD = 256;
+
+    static final String SNAPSHOT_FILE = "results.dat";
+    static final String LOG_FILE = "results.wal";
+
+    private static final int SNAPSHOT_MAGIC = 0x52455331;
+    private static final byte RECORD_APPEND = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private static final Comparator<TestResult> BY_TIME = (a, b) -> a.timestampMs != b.timestampMs
+            ? Long.compare(a.timestampMs, b.timestampMs) : Long.compare(a.id, b.id);
+
+    private final File mSnapshotFile;
+    private final File mLogFile;
+    private final Executor mCompactionExecutor;
+    private final ExecutorService mOwnedExecutor;
+    private final int mCompactThreshold;
+
+    private final Map<Long, TestResult> mById = new TreeMap<>();
+    private final Map<ResultKey, ArrayList<TestResult>> mByKey = new HashMap<>();
+    private long mNextId = 1;
+
+    private final ByteArrayOutputStream mRecordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream mRecordOut = new DataOutputStream(mRecordBytes);
+    private final CRC32 mCrc = new CRC32();
+
+    // held by the one compaction that may run at a time, taken before the store's own lock
+    private final Object mCompactionLock = new Object();
+
+    private FileOutputStream mLog;
+    private int mLogRecords;
+    private boolean mCompactionScheduled = false;
+    private boolean mClosed = false;
+    // log records written while a compaction writes its snapshot, null when none runs
+    private List<byte[]> mRecordsSinceCopy;
+
+    /**
+     * @param compactThreshold log records that trigger a background compaction, 0 for never
+     */
+    public ResultStore(File directory, Executor compactionExecutor, int compactThreshold) throws IOException {
+        this(directory, compactionExecutor, null, compactThreshold);
+    }
+
+    /**
+     * Store that compacts on its own background thread, shut down by {@link #close}.
+     */
+    public ResultStore(File directory) throws IOException {
+        this(directory, null, newCompactionExecutor(), DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    private ResultStore(File directory, Executor compactionExecutor, ExecutorService ownedExecutor,
+                        int compactThreshold) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create result directory " + directory);
+        }
+
+        mSnapshotFile = new File(directory, SNAPSHOT_FILE);
+        mLogFile = new File(directory, LOG_FILE);
+        mOwnedExecutor = ownedExecutor;
+        mCompactionExecutor = ownedExecutor != null ? ownedExecutor : compactionExecutor;
+        mCompactThreshold = compactThreshold;
+
+        readSnapshot();
+        mLogRecords = replayLog();
+        mLog = new FileOutputStream(mLogFile, true);
+    }
+
+    private static ExecutorService newCompactionExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ResultStore");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stores a result under a new id and returns it with that id.
+     */
+    public synchronized TestResult append(TestResult result) throws IOException {
+        checkOpen();
+
+        TestResult stored = result.withId(mNextId);
+        writeLogRecord(RECORD_APPEND, stored.id, stored);
+        apply(stored);
+
+        scheduleCompactionIfNeeded();
+        return stored;
+    }
+
+    /**
+     * Removes a result; returns false if there was none with that id.
+     */
+    public synchronized boolean delete(long id) throws IOException {
+        checkOpen();
+        if (!mById.containsKey(id)) return false;
+
+        writeLogRecord(RECORD_DELETE, id, null);
+        remove(id);
+
+        scheduleCompactionIfNeeded();
+        return true;
+    }
+
+    public synchronized int size() {
+        return mById.size();
+    }
+
+    public synchronized TestResult get(long id) {
+        return mById.get(id);
+    }
+
+    public synchronized Set<ResultKey> keys() {
+        return new HashSet<>(mByKey.keySet());
+    }
+
+    /**
+     * Results for one key with fromMs <= timestamp < toMs, oldest first.
+     */
+    public synchronized List<TestResult> history(ResultKey key, long fromMs, long toMs) {
+        List<TestResult> results = mByKey.get(key);
+        if (results == null || fromMs >= toMs) return new ArrayList<>();
+
+        int from = lowerBound(results, fromMs);
+        int to = lowerBound(results, toMs);
+        return new ArrayList<>(results.subList(from, to));
+    }
+
+    public synchronized List<TestResult> history(ResultKey key) {
+        return history(key, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Every result in id order, which is the order they were stored in.
+     */
+    public synchronized List<TestResult> all() {
+        return new ArrayList<>(mById.values());
+    }
+
+    /**
+     * Number of records in the log since the last compaction.
+     */
+    public synchronized int getLogRecordCount() {
+        return mLogRecords;
+    }
+
+    public synchronized void exportCsv(Writer writer) throws IOException {
+        ResultExporter.writeCsv(mById.values(), writer);
+    }
+
+    public synchronized void exportJson(Writer writer) throws IOException {
+        ResultExporter.writeJson(mById.values(), writer);
+    }
+
+    /**
+     * Folds the log into a new snapshot now, on the calling thread.
+     */
+    public void compact() throws IOException {
+        compact(null);
+    }
+
+    // afterSnapshot runs once the snapshot is in place, before the log is replaced
+    void compact(Runnable afterSnapshot) throws IOException {
+        synchronized (mCompactionLock) {
+            List<TestResult> results;
+            long nextId;
+            synchronized (this) {
+                checkOpen();
+                results = new ArrayList<>(mById.values());
+                nextId = mNextId;
+                mRecordsSinceCopy = new ArrayList<>();
+            }
+
+            try {
+                writeSnapshot(results, nextId);
+                if (afterSnapshot != null) afterSnapshot.run();
+
+                synchronized (this) {
+                    // a closed store keeps its whole log, which is harmless over the snapshot
+                    if (!mClosed) replaceLog(mRecordsSinceCopy);
+                }
+            } finally {
+                synchronized (this) {
+                    mRecordsSinceCopy = null;
+                }
+            }
+        }
+    }
+
+    private void writeSnapshot(List<TestResult> results, long nextId) throws IOException {
+        File temporary = new File(mSnapshotFile.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(nextId);
+            out.writeInt(results.size());
+            for (TestResult result : results) {
+                writeRecord(out, RECORD_APPEND, result.id, result);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+
+        if (!temporary.renameTo(mSnapshotFile)) {
+            throw new IOException("Cannot replace " + mSnapshotFile);
+        }
+    }
+
+    // the snapshot holds everything but records, so the log starts over with just those
+    private void replaceLog(List<byte[]> records) throws IOException {
+        File temporary = new File(mLogFile.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary)) {
+            for (byte[] record : records) {
+                file.write(record);
+            }
+            file.getFD().sync();
+        }
+
+        mLog.close();
+        if (!temporary.renameTo(mLogFile)) {
+            mLog = new FileOutputStream(mLogFile, true);
+            throw new IOException("Cannot replace " + mLogFile);
+        }
+        mLog = new FileOutputStream(mLogFile, true);
+        mLogRecords = records.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (mClosed) return;
+
+        mClosed = true;
+        mLog.close();
+        if (mOwnedExecutor != null) {
+            mOwnedExecutor.shutdown();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (mClosed) throw new IOException("Result store is closed");
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (mCompactThreshold <= 0 || mLogRecords < mCompactThreshold || mCompactionScheduled) return;
+
+        mCompactionScheduled = true;
+        mCompactionExecutor.execute(() -> {
+            synchronized (this) {
+                mCompactionScheduled = false;
+                if (mClosed) return;
+            }
+
+            try {
+                compact();
+            } catch (IOException e) {
+                // the log still has everything; the next append tries again
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void writeLogRecord(byte type, long id, TestResult result) throws IOException {
+        mRecordBytes.reset();
+        writeRecord(mRecordOut, type, id, result);
+        mRecordOut.flush();
+
+        byte[] record = mRecordBytes.toByteArray();
+        mLog.write(record);
+        mLog.getFD().sync();
+        mLogRecords++;
+
+        if (mRecordsSinceCopy != null) {
+            mRecordsSinceCopy.add(record);
+        }
+    }
+
+    // length, CRC32 of the payload, payload; result is only written for appends
+    private static void writeRecord(DataOutputStream out, byte type, long id, TestResult result) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+
+        payload.writeByte(type);
+        payload.writeLong(id);
+        if (type == RECORD_APPEND) {
+            payload.writeLong(result.timestampMs);
+            payload.writeUTF(result.test);
+            payload.writeUTF(result.key.device);
+            payload.writeUTF(result.key.route);
+            payload.writeUTF(result.key.mode);
+            payload.writeUTF(result.key.source);
+            payload.writeInt(result.getMetrics().size());
+            for (Map.Entry<String, Double> metric : result.getMetrics().entrySet()) {
+                payload.writeUTF(metric.getKey());
+                payload.writeDouble(metric.getValue());
+            }
+        }
+        payload.flush();
+
+        // own checksum, the snapshot is written outside the store's lock
+        byte[] bytes = payloadBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+    }
+
+    /**
+     * Reads one record and applies it. Returns its size in bytes, or -1 at a clean end of input.
+     */
+    private int readRecord(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return -1;
+        }
+        if (length <= 0 || length > MAX_RECORD_BYTES) {
+            throw new IOException("Bad record length " + length);
+        }
+
+        int crc = in.readInt();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        mCrc.reset();
+        mCrc.update(bytes, 0, length);
+        if ((int) mCrc.getValue() != crc) {
+            throw new IOException("Record checksum mismatch");
+        }
+
+        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte type = payload.readByte();
+        long id = payload.readLong();
+
+        if (type == RECORD_DELETE) {
+            remove(id);
+        } else if (type == RECORD_APPEND) {
+            long timestampMs = payload.readLong();
+            String test = payload.readUTF();
+            ResultKey key = new ResultKey(payload.readUTF(), payload.readUTF(), payload.readUTF(), payload.readUTF());
+
+            int count = payload.readInt();
+            Map<String, Double> metrics = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                metrics.put(payload.readUTF(), payload.readDouble());
+            }
+            apply(new TestResult(id, timestampMs, test, key, metrics));
+        } else {
+            throw new IOException("Unknown record type " + type);
+        }
+        return 8 + length;
+    }
+
+    private void readSnapshot() throws IOException {
+        if (!mSnapshotFile.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mSnapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a result snapshot: " + mSnapshotFile);
+            }
+            mNextId = Math.max(mNextId, in.readLong());
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                if (readRecord(in) < 0) throw new EOFException("Snapshot ends after " + i + " of " + count + " results");
+            }
+        }
+    }
+
+    // returns the number of intact records; a torn or corrupt tail is cut off
+    private int replayLog() throws IOException {
+        if (!mLogFile.exists()) return 0;
+
+        int records = 0;
+        long validBytes = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mLogFile)))) {
+            while (true) {
+                int size;
+                try {
+                    size = readRecord(in);
+                } catch (IOException e) {
+                    break;
+                }
+                if (size < 0) break;
+
+                records++;
+                validBytes += size;
+            }
+        }
+
+        if (validBytes < mLogFile.length()) {
+            try (RandomAccessFile file = new RandomAccessFile(mLogFile, "rw")) {
+                file.setLength(validBytes);
+            }
+        }
+        return records;
+    }
+
+    private void apply(TestResult result) {
+        // replaying a record the snapshot already has just replaces it
+        remove(result.id);
+
+        mById.put(result.id, result);
+        mNextId = Math.max(mNextId, result.id + 1);
+
+        ArrayList<TestResult> results = mByKey.get(result.key);
+        if (results == null) {
+            results = new ArrayList<>();
+            mByKey.put(result.key, results);
+        }
+
+        int index = Collections.binarySearch(results, result, BY_TIME);
+        results.add(index < 0 ? -index - 1 : index, result);
+    }
+
+    private void remove(long id) {
+        TestResult result = mById.remove(id);
+        if (result == null) return;
+
+        ArrayList<TestResult> results = mByKey.get(result.key);
+        int index = Collections.binarySearch(results, result, BY_TIME);
+        if (index >= 0) results.remove(index);
+        if (results.isEmpty()) mByKey.remove(result.key);
+    }
+
+    // first index with timestamp >= timeMs
+    private static int lowerBound(List<TestResult> results, long timeMs) {
+        int low = 0;
+        int high = results.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (results.get(middle).timestampMs < timeMs) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcomes and latencies of repeated route switches between a fixed set of states, e.g.
+ * "normal / handset" and "in communication / speaker".
+ *
+ * Each switch has two latencies from the moment it was requested, in ms: until the platform
+ * reported the track on the expected device, and until the captured level settled at the
+ * level of the new route. Either is NaN when it was not observed. Storage is preallocated like
+ * {@link InterruptionTimeline}; switches past the capacity are counted but not stored.
+ */
+public class RouteSwitchStats {
+
+    public enum Outcome {
+        /** The route changed as expected. */
+        SWITCHED,
+        /** Both states play on the same device at the same level, nothing to observe. */
+        UNCHANGED,
+        /** No routing change was reported in time. */
+        ROUTE_TIMEOUT,
+        /** The track was routed, but to another device than this state uses. */
+        WRONG_ROUTE,
+        /** The platform reported the new route, but the sound did not move in time. */
+        ACOUSTIC_TIMEOUT
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final String[] mStates;
+    private final int[] mFrom;
+    private final int[] mTo;
+    private final int[] mOutcomes;
+    private final double[] mRouteMs;
+    private final double[] mAcousticMs;
+    private final int[] mTotals = new int[OUTCOMES.length];
+    private int mSize = 0;
+    private int mTotal = 0;
+
+    public RouteSwitchStats(String[] states, int capacity) {
+        mStates = states.clone();
+        mFrom = new int[capacity];
+        mTo = new int[capacity];
+        mOutcomes = new int[capacity];
+        mRouteMs = new double[capacity];
+        mAcousticMs = new double[capacity];
+    }
+
+    public synchronized void add(int from, int to, Outcome outcome, double routeMs, double acousticMs) {
+        mTotal++;
+        mTotals[outcome.ordinal()]++;
+        if (mSize == mFrom.length) return;
+
+        mFrom[mSize] = from;
+        mTo[mSize] = to;
+        mOutcomes[mSize] = outcome.ordinal();
+        mRouteMs[mSize] = routeMs;
+        mAcousticMs[mSize] = acousticMs;
+        mSize++;
+    }
+
+    public synchronized void clear() {
+        mSize = 0;
+        mTotal = 0;
+        Arrays.fill(mTotals, 0);
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public synchronized int getTotal() {
+        return mTotal;
+    }
+
+    public synchronized int getTotal(Outcome outcome) {
+        return mTotals[outcome.ordinal()];
+    }
+
+    /**
+     * Switches that did not end on the expected route in time.
+     */
+    public synchronized int getFailures() {
+        return mTotal - getTotal(Outcome.SWITCHED) - getTotal(Outcome.UNCHANGED);
+    }
+
+    public synchronized LatencyStats routeLatency() {
+        return latency(mRouteMs, -1, -1);
+    }
+
+    public synchronized LatencyStats acousticLatency() {
+        return latency(mAcousticMs, -1, -1);
+    }
+
+    /**
+     * Acoustic latency of the switches from one state to another.
+     */
+    public synchronized LatencyStats acousticLatency(int from, int to) {
+        return latency(mAcousticMs, from, to);
+    }
+
+    public synchronized void writeCsv(Writer writer) throws IOException {
+        writer.write("index,from,to,outcome,route_ms,acoustic_ms\n");
+        for (int i = 0; i < mSize; i++) {
+            writer.write(i + ",\"" + mStates[mFrom[i]] + "\",\"" + mStates[mTo[i]] + "\"," + OUTCOMES[mOutcomes[i]]
+                    + "," + csvMs(mRouteMs[i]) + "," + csvMs(mAcousticMs[i]) + "\n");
+        }
+    }
+
+    public synchronized Map<String, Double> toMetrics() {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("switches", (double) mTotal);
+        metrics.put("failures", (double) getFailures());
+        for (Outcome outcome : OUTCOMES) {
+            if (outcome != Outcome.SWITCHED) {
+                metrics.put(outcome.name().toLowerCase(Locale.US), (double) getTotal(outcome));
+            }
+        }
+
+        LatencyStats route = routeLatency();
+        LatencyStats acoustic = acousticLatency();
+        if (route.count > 0) {
+            metrics.put("route_median_ms", route.median);
+            metrics.put("route_p99_ms", route.p99);
+            metrics.put("route_max_ms", route.max);
+        }
+        if (acoustic.count > 0) {
+            metrics.put("acoustic_median_ms", acoustic.median);
+            metrics.put("acoustic_p99_ms", acoustic.p99);
+            metrics.put("acoustic_max_ms", acoustic.max);
+        }
+        return metrics;
+    }
+
+    /**
+     * Totals and the latency of every transition that was observed, one per line.
+     */
+    public synchronized String summary() {
+        StringBuilder summary = new StringBuilder(String.format(Locale.US, "%d switches, %d failed", mTotal, getFailures()));
+        for (Outcome outcome : OUTCOMES) {
+            if (outcome != Outcome.SWITCHED && getTotal(outcome) > 0) {
+                summary.append(", ").append(getTotal(outcome)).append(' ').append(outcome.name().toLowerCase(Locale.US));
+            }
+        }
+
+        LatencyStats route = routeLatency();
+        if (route.count > 0) summary.append("\nroute: ").append(route);
+
+        for (int from = 0; from < mStates.length; from++) {
+            for (int to = 0; to < mStates.length; to++) {
+                LatencyStats acoustic = acousticLatency(from, to);
+                if (acoustic.count == 0) continue;
+
+                summary.append('\n').append(mStates[from]).append(" -> ").append(mStates[to]).append(": ").append(acoustic);
+            }
+        }
+        return summary.toString();
+    }
+
+    // latencies that were observed, of every switch or of one transition
+    private LatencyStats latency(double[] values, int from, int to) {
+        double[] observed = new double[mSize];
+        int count = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (Double.isNaN(values[i]) || (from >= 0 && (mFrom[i] != from || mTo[i] != to))) continue;
+            observed[count++] = values[i];
+        }
+        return LatencyStats.of(observed, count);
+    }
+
+    private static String csvMs(double ms) {
+        return Double.isNaN(ms) ? "" : String.format(Locale.US, "%.1f", ms);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+
+/**
+ * Streaming test signal synthesis.
+ *
+ * A generator keeps its phase and noise state between calls, so consecutive calls to
+ * {@link #fill} produce one continuous signal. Filling a buffer does not allocate.
+ */
+public class SignalGenerator {
+
+    public enum Type {
+        SINE,
+        MULTI_TONE,
+        LOG_SWEEP,
+        WHITE_NOISE,
+        PINK_NOISE,
+        SILENCE
+    }
+
+    private final Type mType;
+    private final int mSampleRate;
+    private final float mAmplitude;
+
+    // tones
+    private final double[] mFrequencies;
+    private final double[] mPhases;
+
+    // sweep
+    private final double mStartFrequency;
+    private final double mSweepRatio;
+    private final long mSweepLength;
+    private double mSweepFrequency;
+    private double mSweepPhase;
+    private long mSweepPosition;
+
+    // noise
+    private final long mSeed;
+    private long mNoiseState;
+    private double mPink0, mPink1, mPink2, mPink3, mPink4, mPink5, mPink6;
+
+    private SignalGenerator(Type type, int sampleRate, float amplitude, double[] frequencies,
+                            double startFrequency, double endFrequency, double sweepSeconds, long seed) {
+        mType = type;
+        mSampleRate = sampleRate;
+        mAmplitude = amplitude;
+
+        mFrequencies = frequencies;
+        mPhases = new double[frequencies.length];
+
+        mStartFrequency = startFrequency;
+        mSweepLength = Math.max(1, (long) (sweepSeconds * sampleRate));
+        mSweepRatio = startFrequency > 0
+                ? Math.exp(Math.log(endFrequency / startFrequency) / mSweepLength)
+                : 1;
+
+        mSeed = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+
+        reset();
+    }
+
+    public static SignalGenerator sine(int sampleRate, double frequency, float amplitude) {
+        return new SignalGenerator(Type.SINE, sampleRate, amplitude, new double[]{frequency}, 0, 0, 0, 0);
+    }
+
+    /**
+     * Sum of equal-level tones whose peak cannot exceed amplitude.
+     */
+    public static SignalGenerator multiTone(int sampleRate, double[] frequencies, float amplitude) {
+        return new SignalGenerator(Type.MULTI_TONE, sampleRate, amplitude, frequencies.clone(), 0, 0, 0, 0);
+    }
+
+    /**
+     * Exponential sweep from startHz to endHz over seconds, restarting at startHz.
+     */
+    public static SignalGenerator logSweep(int sampleRate, double startHz, double endHz, double seconds, float amplitude) {
+        return new SignalGenerator(Type.LOG_SWEEP, sampleRate, amplitude, new double[0], startHz, endHz, seconds, 0);
+    }
+
+    public static SignalGenerator whiteNoise(int sampleRate, float amplitude, long seed) {
+        return new SignalGenerator(Type.WHITE_NOISE, sampleRate, amplitude, new double[0], 0, 0, 0, seed);
+    }
+
+    public static SignalGenerator pinkNoise(int sampleRate, float amplitude, long seed) {
+        return new SignalGenerator(Type.PINK_NOISE, sampleRate, amplitude, new double[0], 0, 0, 0, seed);
+    }
+
+    public static SignalGenerator silence(int sampleRate) {
+        return new SignalGenerator(Type.SILENCE, sampleRate, 0f, new double[0], 0, 0, 0, 0);
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public float getAmplitude() {
+        return mAmplitude;
+    }
+
+    public void reset() {
+        Arrays.fill(mPhases, 0);
+
+        mSweepFrequency = mStartFrequency;
+        mSweepPhase = 0;
+        mSweepPosition = 0;
+
+        mNoiseState = mSeed;
+        mPink0 = mPink1 = mPink2 = mPink3 = mPink4 = mPink5 = mPink6 = 0;
+    }
+
+    public void fill(float[] buffer, int offset, int length) {
+        switch (mType) {
+            case SINE:
+            case MULTI_TONE:
+                fillTones(buffer, offset, length);
+                break;
+            case LOG_SWEEP:
+                fillSweep(buffer, offset, length);
+                break;
+            case WHITE_NOISE:
+                for (int i = offset; i < offset + length; i++) {
+                    buffer[i] = mAmplitude * nextWhite();
+                }
+                break;
+            case PINK_NOISE:
+                fillPink(buffer, offset, length);
+                break;
+            default:
+                Arrays.fill(buffer, offset, offset + length, 0f);
+                break;
+        }
+    }
+
+    private void fillTones(float[] buffer, int offset, int length) {
+        double toneAmplitude = mAmplitude / mFrequencies.length;
+
+        Arrays.fill(buffer, offset, offset + length, 0f);
+
+        for (int t = 0; t < mFrequencies.length; t++) {
+            double increment = 2 * Math.PI * mFrequencies[t] / mSampleRate;
+            double phase = mPhases[t];
+
+            for (int i = offset; i < offset + length; i++) {
+                buffer[i] += (float) (toneAmplitude * Math.sin(phase));
+
+                phase += increment;
+                if (phase >= 2 * Math.PI) phase -= 2 * Math.PI;
+            }
+
+            mPhases[t] = phase;
+        }
+    }
+
+    private void fillSweep(float[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            buffer[i] = (float) (mAmplitude * Math.sin(mSweepPhase));
+
+            mSweepPhase += 2 * Math.PI * mSweepFrequency / mSampleRate;
+            if (mSweepPhase >= 2 * Math.PI) mSweepPhase -= 2 * Math.PI;
+
+            mSweepFrequency *= mSweepRatio;
+            if (++mSweepPosition >= mSweepLength) {
+                mSweepPosition = 0;
+                mSweepFrequency = mStartFrequency;
+                mSweepPhase = 0;
+            }
+        }
+    }
+
+    private void fillPink(float[] buffer, int offset, int length) {
+        // Paul Kellet's refined pink noise filter, scaled to keep peaks near the white noise range
+        for (int i = offset; i < offset + length; i++) {
+            double white = nextWhite();
+
+            mPink0 = 0.99886 * mPink0 + white * 0.0555179;
+            mPink1 = 0.99332 * mPink1 + white * 0.0750759;
+            mPink2 = 0.96900 * mPink2 + white * 0.1538520;
+            mPink3 = 0.86650 * mPink3 + white * 0.3104856;
+            mPink4 = 0.55000 * mPink4 + white * 0.5329522;
+            mPink5 = -0.7616 * mPink5 - white * 0.0168980;
+
+            double pink = mPink0 + mPink1 + mPink2 + mPink3 + mPink4 + mPink5 + mPink6 + white * 0.5362;
+            mPink6 = white * 0.115926;
+
+            buffer[i] = (float) (mAmplitude * 0.2 * pink);
+        }
+    }
+
+    /**
+     * Uniform noise in [-1, 1) from a xorshift64* generator.
+     */
+    private float nextWhite() {
+        long x = mNoiseState;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        mNoiseState = x;
+
+        long bits = (x * 0x2545F4914F6CDD1DL) >>> 40;
+        return bits * (2f / (1 << 24)) - 1f;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+
+/**
+ * Live magnitude spectrum of captured blocks.
+ *
+ * Incoming samples are collected into overlapping frames, windowed and transformed with
+ * {@link RealFft}. Each frame is converted to dBFS (a full-scale sine reads 0 dB) and published
+ * through a double buffer, so readers such as a view can copy the latest spectrum at any time.
+ * Nothing is allocated after construction.
+ */
+public class SpectrumAnalyzer implements BlockProcessor {
+
+    public static final float MIN_DB = -140f;
+    public static final int TARGET_FRAME_RATE = 60;
+
+    private final int mSampleRate;
+    private final int mSize;
+    private final int mHop;
+
+    private final RealFft mFft;
+    private final float[] mWindow;
+    private final float mAmplitudeScale;
+
+    private final float[] mInput;
+    private int mInputFill = 0;
+
+    private final float[] mWork;
+    private final float[] mMagnitudes;
+
+    private final Object mSpectrumLock = new Object();
+    private float[] mBackSpectrum;
+    private float[] mFrontSpectrum;
+    private volatile long mFrameCount = 0;
+
+    public SpectrumAnalyzer(int sampleRate, int fftSize, WindowFunction window, int hop) {
+        if (hop <= 0 || hop > fftSize) {
+            throw new IllegalArgumentException("Invalid hop size: " + hop);
+        }
+
+        mSampleRate = sampleRate;
+        mSize = fftSize;
+        mHop = hop;
+
+        mFft = new RealFft(fftSize);
+        mWindow = window.coefficients(fftSize);
+        mAmplitudeScale = 2f / (fftSize * WindowFunction.coherentGain(mWindow));
+
+        mInput = new float[fftSize];
+        mWork = new float[fftSize];
+        mMagnitudes = new float[fftSize / 2 + 1];
+        mBackSpectrum = new float[fftSize / 2 + 1];
+        mFrontSpectrum = new float[fftSize / 2 + 1];
+        Arrays.fill(mFrontSpectrum, MIN_DB);
+    }
+
+    /**
+     * Hann-windowed analyzer whose hop keeps the frame rate at or above {@link #TARGET_FRAME_RATE}.
+     */
+    public SpectrumAnalyzer(int sampleRate, int fftSize) {
+        this(sampleRate, fftSize, WindowFunction.HANN, Math.min(fftSize / 2, sampleRate / TARGET_FRAME_RATE));
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getFftSize() {
+        return mSize;
+    }
+
+    public int getBinCount() {
+        return mSize / 2 + 1;
+    }
+
+    public float getBinFrequency(int bin) {
+        return (float) bin * mSampleRate / mSize;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    @Override
+    public void process(float[] samples, int offset, int length) {
+        while (length > 0) {
+            int count = Math.min(length, mSize - mInputFill);
+            System.arraycopy(samples, offset, mInput, mInputFill, count);
+
+            mInputFill += count;
+            offset += count;
+            length -= count;
+
+            if (mInputFill == mSize) {
+                computeFrame();
+
+                System.arraycopy(mInput, mHop, mInput, 0, mSize - mHop);
+                mInputFill = mSize - mHop;
+            }
+        }
+    }
+
+    /**
+     * Copies the latest spectrum in dBFS into dst (at least {@link #getBinCount()} long)
+     * and returns the number of the frame it belongs to.
+     */
+    public long copySpectrum(float[] dst) {
+        synchronized (mSpectrumLock) {
+            System.arraycopy(mFrontSpectrum, 0, dst, 0, mFrontSpectrum.length);
+            return mFrameCount;
+        }
+    }
+
+    public void reset() {
+        mInputFill = 0;
+    }
+
+    private void computeFrame() {
+        for (int i = 0; i < mSize; i++) {
+            mWork[i] = mInput[i] * mWindow[i];
+        }
+
+        mFft.forward(mWork);
+        mFft.magnitudes(mWork, mMagnitudes);
+
+        for (int k = 0; k < mMagnitudes.length; k++) {
+            float amplitude = mMagnitudes[k] * mAmplitudeScale;
+            mBackSpectrum[k] = amplitude > 0
+                    ? Math.max(MIN_DB, (float) (20 * Math.log10(amplitude)))
+                    : MIN_DB;
+        }
+
+        synchronized (mSpectrumLock) {
+            float[] front = mFrontSpectrum;
+            mFrontSpectrum = mBackSpectrum;
+            mBackSpectrum = front;
+            mFrameCount++;
+        }
+    }
+}
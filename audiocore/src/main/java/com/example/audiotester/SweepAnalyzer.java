@@ -0,0 +1,180 @@
+package com.example.audiotester;
+
+/**
+ * Impulse and frequency response from an exponential sine sweep (Farina's method).
+ *
+ * The capture is convolved with the time-reversed sweep, whose amplitude falls 6 dB per
+ * octave to undo the sweep's pink spectrum. The linear impulse response then appears as a
+ * single peak, and each harmonic distortion product as its own impulse response
+ * L ln(k) seconds earlier, so distortion never pollutes the linear response.
+ */
+public class SweepAnalyzer {
+
+    private static final double FADE_SECONDS = 0.01;
+
+    private final int mSampleRate;
+    private final double mStartHz;
+    private final double mEndHz;
+    private final double mRate;
+
+    private final float[] mSweep;
+    private final float[] mInverse;
+
+    public SweepAnalyzer(int sampleRate, double startHz, double endHz, double seconds) {
+        if (startHz <= 0 || endHz <= startHz || endHz > sampleRate / 2.0) {
+            throw new IllegalArgumentException("Invalid sweep range " + startHz + " - " + endHz + " Hz");
+        }
+
+        mSampleRate = sampleRate;
+        mStartHz = startHz;
+        mEndHz = endHz;
+        mRate = seconds / Math.log(endHz / startHz);
+
+        int length = (int) Math.round(seconds * sampleRate);
+        int fade = (int) (FADE_SECONDS * sampleRate);
+
+        mSweep = new float[length];
+        for (int i = 0; i < length; i++) {
+            double t = (double) i / sampleRate;
+            double gain = Math.min(1, Math.min(i, length - 1 - i) / (double) fade);
+            mSweep[i] = (float) (gain * Math.sin(2 * Math.PI * startHz * mRate * (Math.exp(t / mRate) - 1)));
+        }
+
+        mInverse = new float[length];
+        for (int i = 0; i < length; i++) {
+            double t = (double) i / sampleRate;
+            mInverse[i] = (float) (mSweep[length - 1 - i] * Math.exp(-t / mRate));
+        }
+
+        // scale so that a pass-through system reads 0 dB at the center of the sweep
+        double center = Math.sqrt(startHz * endHz);
+        double gain = dftMagnitude(mSweep, center) * dftMagnitude(mInverse, center);
+        for (int i = 0; i < length; i++) {
+            mInverse[i] /= gain;
+        }
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public double getStartHz() {
+        return mStartHz;
+    }
+
+    public double getEndHz() {
+        return mEndHz;
+    }
+
+    /**
+     * Stimulus to play, with short fades at both ends.
+     */
+    public float[] getSweep() {
+        return mSweep;
+    }
+
+    public float[] getInverseFilter() {
+        return mInverse;
+    }
+
+    /**
+     * Deconvolved response of length + sweep length - 1 samples. For a capture that starts
+     * with the sweep, the linear impulse response begins at index sweep length - 1.
+     */
+    public float[] impulseResponse(float[] captured, int length) {
+        return FftConvolver.convolve(captured, length, mInverse, mInverse.length);
+    }
+
+    /**
+     * Index of the strongest sample of the deconvolved response, i.e. the linear peak.
+     */
+    public static int findPeak(float[] response) {
+        int peak = 0;
+        for (int i = 1; i < response.length; i++) {
+            if (Math.abs(response[i]) > Math.abs(response[peak])) peak = i;
+        }
+        return peak;
+    }
+
+    /**
+     * How far before the linear peak the impulse response of harmonic order k appears.
+     */
+    public int harmonicOffset(int order) {
+        return (int) Math.round(mRate * Math.log(order) * mSampleRate);
+    }
+
+    /**
+     * Frequency response of the linear part, read from windowLength samples starting a little
+     * before the peak and averaged into bandsPerOctave bands over the sweep range.
+     */
+    public FrequencyResponse frequencyResponse(float[] response, int peak, int windowLength, int bandsPerOctave) {
+        // the pre-roll must stay clear of the second harmonic response just before the peak
+        int preRoll = Math.min(harmonicOffset(2) / 2, Math.max(1, windowLength / 16));
+        int fftSize = Math.max(4, FftConvolver.nextPowerOfTwo(windowLength + preRoll));
+
+        float[] data = new float[fftSize];
+        for (int i = 0; i < preRoll + windowLength; i++) {
+            int index = peak - preRoll + i;
+            if (index < 0 || index >= response.length) continue;
+
+            // half-Hann fade in over the pre-roll and out over the last quarter
+            double gain = 1;
+            if (i < preRoll) {
+                gain = 0.5 - 0.5 * Math.cos(Math.PI * i / preRoll);
+            } else {
+                int fadeOut = windowLength / 4;
+                int fromEnd = preRoll + windowLength - 1 - i;
+                if (fromEnd < fadeOut) gain = 0.5 - 0.5 * Math.cos(Math.PI * fromEnd / fadeOut);
+            }
+            data[i] = (float) (response[index] * gain);
+        }
+
+        RealFft fft = new RealFft(fftSize);
+        fft.forward(data);
+        float[] magnitudes = new float[fftSize / 2 + 1];
+        fft.magnitudes(data, magnitudes);
+
+        int bands = (int) Math.floor(Math.log(mEndHz / mStartHz) / Math.log(2) * bandsPerOctave);
+        double[] frequencies = new double[bands];
+        double[] levels = new double[bands];
+        double binWidth = (double) mSampleRate / fftSize;
+
+        for (int band = 0; band < bands; band++) {
+            double low = mStartHz * Math.pow(2, (double) band / bandsPerOctave);
+            double high = low * Math.pow(2, 1.0 / bandsPerOctave);
+            frequencies[band] = Math.sqrt(low * high);
+
+            int first = (int) Math.ceil(low / binWidth);
+            int last = Math.max(first, (int) Math.floor(high / binWidth));
+            double power = 0;
+            int count = 0;
+            for (int bin = first; bin <= last && bin < magnitudes.length; bin++) {
+                power += magnitudes[bin] * magnitudes[bin];
+                count++;
+            }
+            levels[band] = LevelStats.powerToDb(count > 0 ? power / count : 0);
+        }
+
+        return new FrequencyResponse(frequencies, levels);
+    }
+
+    private double dftMagnitude(float[] samples, double frequency) {
+        // rotating phasor instead of a sin/cos pair per sample
+        double step = 2 * Math.PI * frequency / mSampleRate;
+        double stepCos = Math.cos(step);
+        double stepSin = -Math.sin(step);
+        double cos = 1;
+        double sin = 0;
+        double re = 0;
+        double im = 0;
+        for (float sample : samples) {
+            re += sample * cos;
+            im += sample * sin;
+
+            double nextCos = cos * stepCos - sin * stepSin;
+            sin = cos * stepSin + sin * stepCos;
+            cos = nextCos;
+        }
+        return Math.hypot(re, im);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Named {@link LatencyHistogram}s for the operations of the app, e.g. "media_player.prepare".
+ *
+ * Call sites look their histogram up once and keep it, so timing an operation costs two
+ * System.nanoTime() calls and a lock-free record. There is one process-wide instance so the
+ * overlay and dump see every operation.
+ */
+public final class Telemetry {
+
+    private static final Telemetry INSTANCE = new Telemetry();
+
+    private final Map<String, LatencyHistogram> mHistograms = new ConcurrentSkipListMap<>();
+
+    public static Telemetry getInstance() {
+        return INSTANCE;
+    }
+
+    public LatencyHistogram histogram(String operation) {
+        return mHistograms.computeIfAbsent(operation, (name) -> new LatencyHistogram());
+    }
+
+    /**
+     * Operations in name order; the map is live.
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return mHistograms;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * One row per operation that has been recorded: count, p50, p99 and max in ms.
+     */
+    public void writeTable(Writer writer) throws IOException {
+        writer.write(String.format(Locale.US, "%-36s %7s %10s %10s %10s\n", "operation", "count", "p50_ms", "p99_ms", "max_ms"));
+
+        for (Map.Entry<String, LatencyHistogram> entry : mHistograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) continue;
+
+            writer.write(String.format(Locale.US, "%-36s %7d %10.3f %10.3f %10.3f\n", entry.getKey(),
+                    histogram.getCount(), histogram.valueAtPercentile(50) / 1e6,
+                    histogram.valueAtPercentile(99) / 1e6, histogram.getMax() / 1e6));
+        }
+        writer.flush();
+    }
+}
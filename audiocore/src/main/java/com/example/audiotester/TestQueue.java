@@ -0,0 +1,76 @@
+package com.example.audiotester;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Batches of test specs, each run by its own {@link TestScheduler} on a single-threaded
+ * executor, one after the other.
+ *
+ * The scheduler of a batch is created when the batch is submitted, so {@link #cancelAll}
+ * skips every batch submitted before it, including those still waiting for the executor, and
+ * interrupts the run in progress. Batches submitted later run as usual.
+ */
+public class TestQueue {
+
+    private final Executor mExecutor;
+    private final TestScheduler.Runner mRunner;
+
+    // batches submitted and not finished yet, and the thread of the running one
+    private final List<TestScheduler> mBatches = new ArrayList<>();
+    private TestScheduler mRunning;
+    private Thread mRunningThread;
+
+    public TestQueue(Executor executor, TestScheduler.Runner runner) {
+        mExecutor = executor;
+        mRunner = runner;
+    }
+
+    /**
+     * Queues specs; done receives the outcome of every run on the executor once the batch
+     * is over.
+     */
+    public void submit(List<TestSpec> specs, TestScheduler.Listener listener, Consumer<List<TestScheduler.Outcome>> done) {
+        TestScheduler scheduler = new TestScheduler(mRunner);
+        synchronized (this) {
+            mBatches.add(scheduler);
+        }
+
+        mExecutor.execute(() -> {
+            synchronized (this) {
+                mRunning = scheduler;
+                mRunningThread = Thread.currentThread();
+            }
+
+            List<TestScheduler.Outcome> outcomes;
+            try {
+                outcomes = scheduler.run(specs, listener);
+            } finally {
+                synchronized (this) {
+                    mBatches.remove(scheduler);
+                    mRunning = null;
+                    mRunningThread = null;
+                    // an interrupt meant for this batch must not reach the next one
+                    Thread.interrupted();
+                }
+            }
+            done.accept(outcomes);
+        });
+    }
+
+    public synchronized void cancelAll() {
+        for (TestScheduler scheduler : mBatches) {
+            scheduler.cancel();
+        }
+        if (mRunning != null) mRunningThread.interrupt();
+    }
+
+    /**
+     * Batches submitted and not finished yet, including the running one.
+     */
+    public synchronized int size() {
+        return mBatches.size();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.audiotester;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One finished test run: which test, where it ran, when, and its named metrics.
+ */
+public class TestResult {
+
+    /** Assigned by {@link ResultStore#append}; 0 until stored. */
+    public final long id;
+    public final long timestampMs;
+    public final String test;
+    public final ResultKey key;
+
+    private final Map<String, Double> mMetrics;
+
+    /**
+     * @param metrics copied, in iteration order
+     */
+    public TestResult(long id, long timestampMs, String test, ResultKey key, Map<String, Double> metrics) {
+        this.id = id;
+        this.timestampMs = timestampMs;
+        this.test = test;
+        this.key = key;
+        mMetrics = Collections.unmodifiableMap(new LinkedHashMap<>(metrics));
+    }
+
+    public TestResult(long timestampMs, String test, ResultKey key, Map<String, Double> metrics) {
+        this(0, timestampMs, test, key, metrics);
+    }
+
+    public Map<String, Double> getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * The named metric, or NaN if this result does not have it.
+     */
+    public double getMetric(String name) {
+        Double value = mMetrics.get(name);
+        return value != null ? value : Double.NaN;
+    }
+
+    TestResult withId(long id) {
+        return new TestResult(id, timestampMs, test, key, mMetrics);
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + test + " @" + timestampMs + " on " + key + ": " + mMetrics;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.audiotester;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a list of test specs one after the other, each as often as its repeat count.
+ *
+ * The audio device can only run one test at a time, so specs run in order on the calling
+ * thread. A failing spec does not stop the run; its outcome carries the error instead. After
+ * {@link #cancel} the remaining runs are reported as cancelled without being started.
+ */
+public class TestScheduler {
+
+    /**
+     * Runs one spec to completion and returns its metrics, or null if it gave no result.
+     */
+    public interface Runner {
+        Map<String, Double> run(TestSpec spec) throws Exception;
+    }
+
+    public interface Listener {
+        void onOutcome(Outcome outcome, int index, int count);
+    }
+
+    public static final class Outcome {
+
+        public final TestSpec spec;
+        /** 1 for the first run of the spec. */
+        public final int run;
+        public final long startMs;
+        public final long durationMs;
+        /** Metrics, or null if the run failed or was cancelled. */
+        public final Map<String, Double> metrics;
+        /** Reason the run failed or "cancelled", or null if it succeeded. */
+        public final String error;
+
+        Outcome(TestSpec spec, int run, long startMs, long durationMs, Map<String, Double> metrics, String error) {
+            this.spec = spec;
+            this.run = run;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+            this.metrics = metrics;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private final Runner mRunner;
+    private volatile boolean mCancelled = false;
+
+    public TestScheduler(Runner runner) {
+        mRunner = runner;
+    }
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Clears a previous cancel. run() does not, so a cancel from another thread that lands
+     * before run() starts still skips the batch.
+     */
+    public void reset() {
+        mCancelled = false;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Number of runs the specs expand to.
+     */
+    public static int runCount(List<TestSpec> specs) {
+        int count = 0;
+        for (TestSpec spec : specs) {
+            count += spec.repeat;
+        }
+        return count;
+    }
+
+    /**
+     * Runs every spec and returns the outcome of every run in order. The listener, if any, is
+     * called on this thread after each run.
+     */
+    public List<Outcome> run(List<TestSpec> specs, Listener listener) {
+        int count = runCount(specs);
+        List<Outcome> outcomes = new ArrayList<>(count);
+
+        for (TestSpec spec : specs) {
+            for (int run = 1; run <= spec.repeat; run++) {
+                Outcome outcome = mCancelled
+                        ? new Outcome(spec, run, System.currentTimeMillis(), 0, null, "cancelled")
+                        : runOnce(spec, run);
+
+                outcomes.add(outcome);
+                if (listener != null) listener.onOutcome(outcome, outcomes.size() - 1, count);
+            }
+        }
+
+        return outcomes;
+    }
+
+    private Outcome runOnce(TestSpec spec, int run) {
+        long startMs = System.currentTimeMillis();
+        long start = System.nanoTime();
+
+        Map<String, Double> metrics = null;
+        String error;
+        try {
+            metrics = mRunner.run(spec);
+            error = metrics == null ? "no result" : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mCancelled = true;
+            error = "cancelled";
+        } catch (Exception e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        return new Outcome(spec, run, startMs, durationMs,
+                metrics != null ? Collections.unmodifiableMap(metrics) : null, error);
+    }
+
+    /**
+     * Writes outcomes as a JSON array, one object per run with its spec and metrics, so a host
+     * script can pick up the report of a headless run.
+     */
+    public static void writeJson(List<Outcome> outcomes, Writer writer) throws IOException {
+        writer.write('[');
+
+        for (int i = 0; i < outcomes.size(); i++) {
+            Outcome outcome = outcomes.get(i);
+            TestSpec spec = outcome.spec;
+            writer.write(i == 0 ? "\n" : ",\n");
+
+            writer.write("{\"test\":" + ResultExporter.json(spec.test) + ",\"route\":" + ResultExporter.json(spec.route)
+                    + ",\"mode\":" + ResultExporter.json(spec.mode) + ",\"source\":" + ResultExporter.json(spec.source)
+                    + ",\"signal\":" + ResultExporter.json(spec.signal)
+                    + ",\"frequency\":" + ResultExporter.number(spec.frequency, "null")
+                    + ",\"amplitude\":" + ResultExporter.number(spec.amplitude, "null")
+                    + ",\"duration\":" + ResultExporter.number(spec.durationSeconds, "null")
+                    + ",\"run\":" + outcome.run + ",\"start_ms\":" + outcome.startMs
+                    + ",\"duration_ms\":" + outcome.durationMs
+                    + ",\"error\":" + (outcome.error != null ? ResultExporter.json(outcome.error) : "null")
+                    + ",\"metrics\":");
+
+            if (outcome.metrics == null) {
+                writer.write("null}");
+                continue;
+            }
+
+            writer.write('{');
+            boolean first = true;
+            for (Map.Entry<String, Double> metric : outcome.metrics.entrySet()) {
+                if (!first) writer.write(',');
+                first = false;
+                writer.write(ResultExporter.json(metric.getKey()) + ":" + ResultExporter.number(metric.getValue(), "null"));
+            }
+            writer.write("}}");
+        }
+
+        writer.write(outcomes.isEmpty() ? "]\n" : "\n]\n");
+        writer.flush();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.audiotester;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One test of a headless run: which test, on which route, mode and input source, with which
+ * signal and for how long.
+ *
+ * Route, mode and source are names as stored in {@link ResultKey}, e.g. "speaker", "in
+ * communication" and "voice communication"; the app maps them to platform constants. Fields
+ * a test does not use are ignored by it.
+ */
+public final class TestSpec {
+
+    public static final List<String> TESTS = Collections.unmodifiableList(Arrays.asList(
+            "play", "latency", "level", "soak", "response", "echo", "route_switch", "codec"));
+    public static final List<String> SIGNALS = Collections.unmodifiableList(Arrays.asList(
+            "sine", "multi_tone", "log_sweep", "white_noise", "pink_noise", "silence"));
+    public static final List<String> KEYS = Collections.unmodifiableList(Arrays.asList(
+            "test", "route", "mode", "source", "signal", "frequency", "amplitude", "duration", "repeat"));
+
+    // a day of back to back 1 min runs; more is a typo, not a plan
+    public static final int MAX_REPEAT = 1440;
+
+    public final String test;
+    public final String route;
+    public final String mode;
+    public final String source;
+    public final String signal;
+    public final double frequency;
+    public final float amplitude;
+    public final double durationSeconds;
+    public final int repeat;
+
+    public TestSpec(String test, String route, String mode, String source, String signal,
+                    double frequency, float amplitude, double durationSeconds, int repeat) {
+        if (!TESTS.contains(test)) {
+            throw new IllegalArgumentException("Unknown test \"" + test + "\", expected one of " + TESTS);
+        }
+        if (!"handset".equals(route) && !"speaker".equals(route)) {
+            throw new IllegalArgumentException("Unknown route \"" + route + "\", expected handset or speaker");
+        }
+        if (!SIGNALS.contains(signal)) {
+            throw new IllegalArgumentException("Unknown signal \"" + signal + "\", expected one of " + SIGNALS);
+        }
+        if (!(frequency > 0) || !(amplitude >= 0 && amplitude <= 1) || !(durationSeconds > 0)
+                || repeat < 1 || repeat > MAX_REPEAT) {
+            throw new IllegalArgumentException("Invalid frequency " + frequency + ", amplitude " + amplitude
+                    + ", duration " + durationSeconds + " or repeat " + repeat);
+        }
+
+        this.test = test;
+        this.route = route;
+        this.mode = mode;
+        this.source = source;
+        this.signal = signal;
+        this.frequency = frequency;
+        this.amplitude = amplitude;
+        this.durationSeconds = durationSeconds;
+        this.repeat = repeat;
+    }
+
+    /**
+     * Spec from key / value pairs, e.g. intent extras or a parsed JSON object. Values may be
+     * strings or numbers; missing keys get the defaults of the UI, unknown keys are an error.
+     */
+    public static TestSpec fromMap(Map<String, ?> values) {
+        for (String key : values.keySet()) {
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("Unknown key \"" + key + "\", expected one of " + KEYS);
+            }
+        }
+
+        String test = string(values, "test", null);
+        if (test == null) throw new IllegalArgumentException("Missing test");
+
+        return new TestSpec(test,
+                string(values, "route", "speaker"),
+                string(values, "mode", "normal"),
+                string(values, "source", "mic"),
+                string(values, "signal", "sine"),
+                number(values, "frequency", 1000),
+                (float) number(values, "amplitude", 0.5),
+                number(values, "duration", 10),
+                count(values, "repeat", 1));
+    }
+
+    public SignalGenerator createSignal(int sampleRate) {
+        switch (signal) {
+            case "multi_tone":
+                return SignalGenerator.multiTone(sampleRate, new double[]{100, 440, 1000, 3150, 8000}, amplitude);
+            case "log_sweep":
+                return SignalGenerator.logSweep(sampleRate, 20, 20000, durationSeconds, amplitude);
+            case "white_noise":
+                return SignalGenerator.whiteNoise(sampleRate, amplitude, System.nanoTime());
+            case "pink_noise":
+                return SignalGenerator.pinkNoise(sampleRate, amplitude, System.nanoTime());
+            case "silence":
+                return SignalGenerator.silence(sampleRate);
+            default:
+                return SignalGenerator.sine(sampleRate, frequency, amplitude);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s on %s / %s / %s, %s %.0f Hz at %.2f, %.1f s x %d",
+                test, route, mode, source, signal, frequency, amplitude, durationSeconds, repeat);
+    }
+
+    private static String string(Map<String, ?> values, String key, String fallback) {
+        Object value = values.get(key);
+        return value != null ? value.toString().trim().toLowerCase(Locale.US) : fallback;
+    }
+
+    // a whole number, checked here because a cast would round 1e10 down to Integer.MAX_VALUE
+    private static int count(Map<String, ?> values, String key, int fallback) {
+        double value = number(values, key, fallback);
+        if (value != Math.rint(value) || Math.abs(value) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid " + key + " \"" + values.get(key) + "\", expected a whole number");
+        }
+        return (int) value;
+    }
+
+    private static double number(Map<String, ?> values, String key, double fallback) {
+        Object value = values.get(key);
+        if (value == null) return fallback;
+        if (value instanceof Number) return ((Number) value).doubleValue();
+
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + " \"" + value + "\"");
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.audiotester;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads test specs from JSON: one spec object, or an array of them.
+ *
+ * Spec objects are flat, so this is a small reader for exactly that rather than a general
+ * JSON library; nested objects and arrays inside a spec are rejected. Errors are reported as
+ * IllegalArgumentException with the offset and, for invalid specs, their index.
+ *
+ * <pre>
+ * [{"test": "latency", "route": "speaker", "mode": "in communication"},
+ *  {"test": "soak", "duration": 600, "signal": "sine", "frequency": 1000}]
+ * </pre>
+ */
+public final class TestSpecParser {
+
+    private final String mText;
+    private int mPosition;
+
+    private TestSpecParser(String text) {
+        mText = text;
+    }
+
+    public static List<TestSpec> parse(String json) {
+        TestSpecParser parser = new TestSpecParser(json);
+
+        List<Map<String, Object>> objects = new ArrayList<>();
+        parser.skipWhitespace();
+        if (parser.peek() == '[') {
+            parser.mPosition++;
+            parser.skipWhitespace();
+            if (parser.peek() == ']') {
+                parser.mPosition++;
+            } else {
+                do {
+                    objects.add(parser.readObject());
+                } while (parser.consume(',', ']'));
+            }
+        } else {
+            objects.add(parser.readObject());
+        }
+
+        parser.skipWhitespace();
+        if (parser.mPosition < json.length()) throw parser.error("Unexpected text after the specs");
+
+        List<TestSpec> specs = new ArrayList<>(objects.size());
+        for (int i = 0; i < objects.size(); i++) {
+            try {
+                specs.add(TestSpec.fromMap(objects.get(i)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Spec " + i + ": " + e.getMessage(), e);
+            }
+        }
+        return specs;
+    }
+
+    private Map<String, Object> readObject() {
+        skipWhitespace();
+        expect('{');
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        skipWhitespace();
+        if (peek() == '}') {
+            mPosition++;
+            return values;
+        }
+
+        do {
+            skipWhitespace();
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            if (values.put(key, readValue()) != null) throw error("Duplicate key \"" + key + "\"");
+        } while (consume(',', '}'));
+
+        return values;
+    }
+
+    private Object readValue() {
+        char c = peek();
+        if (c == '"') return readString();
+        if (c == '-' || (c >= '0' && c <= '9')) return readNumber();
+        if (mText.startsWith("true", mPosition)) {
+            mPosition += 4;
+            return "true";
+        }
+        if (mText.startsWith("false", mPosition)) {
+            mPosition += 5;
+            return "false";
+        }
+        if (mText.startsWith("null", mPosition)) {
+            mPosition += 4;
+            return null;
+        }
+        throw error("Expected a string or number");
+    }
+
+    private String readString() {
+        expect('"');
+
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            if (mPosition >= mText.length()) throw error("Unterminated string");
+
+            char c = mText.charAt(mPosition++);
+            if (c == '"') return builder.toString();
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+
+            if (mPosition >= mText.length()) throw error("Unterminated string");
+            char escaped = mText.charAt(mPosition++);
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    builder.append(escaped);
+                    break;
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (mPosition + 4 > mText.length()) throw error("Invalid unicode escape");
+                    try {
+                        builder.append((char) Integer.parseInt(mText.substring(mPosition, mPosition + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                    mPosition += 4;
+                    break;
+                default:
+                    throw error("Invalid escape \\" + escaped);
+            }
+        }
+    }
+
+    private Double readNumber() {
+        int start = mPosition;
+        while (mPosition < mText.length() && "+-.eE0123456789".indexOf(mText.charAt(mPosition)) >= 0) {
+            mPosition++;
+        }
+
+        try {
+            return Double.parseDouble(mText.substring(start, mPosition));
+        } catch (NumberFormatException e) {
+            mPosition = start;
+            throw error("Invalid number");
+        }
+    }
+
+    // true after a separator, false after the closing character
+    private boolean consume(char separator, char close) {
+        skipWhitespace();
+        char c = peek();
+        if (c == separator || c == close) {
+            mPosition++;
+            return c == separator;
+        }
+        throw error("Expected '" + separator + "' or '" + close + "'");
+    }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("Expected '" + c + "'");
+        mPosition++;
+    }
+
+    private char peek() {
+        return mPosition < mText.length() ? mText.charAt(mPosition) : '\0';
+    }
+
+    private void skipWhitespace() {
+        while (mPosition < mText.length() && Character.isWhitespace(mText.charAt(mPosition))) {
+            mPosition++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + mPosition);
+    }
+}
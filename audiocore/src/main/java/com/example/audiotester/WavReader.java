@@ -0,0 +1,221 @@
+package com.example.audiotester;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped WAV file reader for 16-bit integer and 32-bit float PCM.
+ *
+ * The data chunk is mapped read-only in a window that slides along as it is read, and decoded
+ * straight from the mapping, so a capture of any length, including the 4 GB WavWriter allows,
+ * can be read in fixed blocks without loading it into the heap.
+ */
+public class WavReader implements Closeable {
+
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 22;
+
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+
+    private final int mFormat;
+    private final int mSampleRate;
+    private final int mChannels;
+    private final int mBitsPerSample;
+    private final int mFrameBytes;
+    private final long mFrameCount;
+
+    private final long mDataOffset;
+    private final long mDataBytes;
+    private final int mWindowSize;
+
+    // data bytes from mWindowStart, null until the first read
+    private MappedByteBuffer mWindow;
+    private long mWindowStart;
+    private long mPosition = 0;
+
+    public WavReader(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    WavReader(File file, int windowSize) throws IOException {
+        mRandomAccessFile = new RandomAccessFile(file, "r");
+
+        try {
+            mChannel = mRandomAccessFile.getChannel();
+            long fileSize = mChannel.size();
+            ByteBuffer header = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (readAt(header, 0, 12) < 12 || header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) {
+                throw new IOException("Not a RIFF/WAVE file: " + file);
+            }
+
+            int format = -1;
+            int sampleRate = 0;
+            int channels = 0;
+            int bitsPerSample = 0;
+            long dataOffset = -1;
+            long dataBytes = 0;
+
+            // walk the chunk list, chunks are word aligned
+            long position = 12;
+            while (position + 8 <= fileSize && dataOffset < 0) {
+                readAt(header, position, 8);
+                int id = header.getInt(0);
+                long size = header.getInt(4) & 0xFFFFFFFFL;
+                long body = position + 8;
+
+                if (id == 0x20746D66) { // "fmt "
+                    if (readAt(header, body, (int) Math.min(size, header.capacity())) < 16) {
+                        throw new IOException("Truncated fmt chunk: " + file);
+                    }
+                    format = header.getShort(0) & 0xFFFF;
+                    channels = header.getShort(2) & 0xFFFF;
+                    sampleRate = header.getInt(4);
+                    bitsPerSample = header.getShort(14) & 0xFFFF;
+
+                    if (format == FORMAT_EXTENSIBLE && size >= 26) {
+                        format = header.getShort(24) & 0xFFFF;
+                    }
+                } else if (id == 0x61746164) { // "data"
+                    dataOffset = body;
+                    dataBytes = Math.min(size, fileSize - body);
+                }
+
+                position = body + size + (size & 1);
+            }
+
+            if (format < 0 || dataOffset < 0) {
+                throw new IOException("Missing fmt or data chunk: " + file);
+            }
+            if (!(format == WavWriter.FORMAT_PCM && bitsPerSample == 16)
+                    && !(format == WavWriter.FORMAT_IEEE_FLOAT && bitsPerSample == 32)) {
+                throw new IOException("Unsupported WAV encoding: format " + format + ", " + bitsPerSample + " bits");
+            }
+            if (channels <= 0) {
+                throw new IOException("Invalid channel count: " + channels);
+            }
+
+            mFormat = format;
+            mSampleRate = sampleRate;
+            mChannels = channels;
+            mBitsPerSample = bitsPerSample;
+            mFrameBytes = channels * (bitsPerSample / 8);
+            mFrameCount = dataBytes / mFrameBytes;
+            mDataOffset = dataOffset;
+            mDataBytes = mFrameCount * mFrameBytes;
+
+            // keep windows aligned to whole frames
+            mWindowSize = Math.max(mFrameBytes, windowSize - windowSize % mFrameBytes);
+        } catch (IOException | RuntimeException e) {
+            mRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    public int getFormat() {
+        return mFormat;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannels() {
+        return mChannels;
+    }
+
+    public int getBitsPerSample() {
+        return mBitsPerSample;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getPosition() {
+        return mPosition;
+    }
+
+    public void seek(long frame) {
+        mPosition = Math.max(0, Math.min(frame, mFrameCount));
+    }
+
+    /**
+     * Read-only view of the raw data chunk, little-endian, for zero-copy consumers. A single
+     * buffer cannot span more than 2 GB, so longer data chunks have to be read in blocks.
+     */
+    public ByteBuffer getData() throws IOException {
+        if (mDataBytes > Integer.MAX_VALUE) {
+            throw new IOException("WAV data too large to map at once: " + mDataBytes);
+        }
+        return mChannel.map(FileChannel.MapMode.READ_ONLY, mDataOffset, mDataBytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Decodes up to frames interleaved frames at the current position into dst as floats
+     * in [-1, 1) and returns how many frames were read, or 0 at the end of the data.
+     */
+    public int read(float[] dst, int offset, int frames) throws IOException {
+        int available = (int) Math.min(frames, mFrameCount - mPosition);
+
+        int done = 0;
+        while (done < available) {
+            long byteOffset = mPosition * mFrameBytes;
+            if (mWindow == null || byteOffset < mWindowStart || byteOffset >= mWindowStart + mWindow.limit()) {
+                mapWindow(byteOffset);
+            }
+
+            mWindow.position((int) (byteOffset - mWindowStart));
+            int count = Math.min(available - done, mWindow.remaining() / mFrameBytes);
+            int samples = count * mChannels;
+            int start = offset + done * mChannels;
+
+            if (mBitsPerSample == 16) {
+                for (int i = 0; i < samples; i++) {
+                    dst[start + i] = mWindow.getShort() * (1f / 32768f);
+                }
+            } else {
+                for (int i = 0; i < samples; i++) {
+                    dst[start + i] = mWindow.getFloat();
+                }
+            }
+
+            done += count;
+            mPosition += count;
+        }
+
+        return available;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWindow = null;
+        mRandomAccessFile.close();
+    }
+
+    // maps the window holding the data byte at byteOffset, starting on a window boundary
+    private void mapWindow(long byteOffset) throws IOException {
+        mWindowStart = byteOffset - byteOffset % mWindowSize;
+        long size = Math.min(mWindowSize, mDataBytes - mWindowStart);
+        mWindow = mChannel.map(FileChannel.MapMode.READ_ONLY, mDataOffset + mWindowStart, size);
+        mWindow.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // reads up to length bytes at position into the start of buffer, returns how many were read
+    private int readAt(ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        return buffer.position();
+    }
+}
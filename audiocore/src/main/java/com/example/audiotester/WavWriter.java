@@ -0,0 +1,204 @@
+package com.example.audiotester;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streaming WAV file writer.
+ *
+ * Samples are written into a memory-mapped window of the file that slides forward as it
+ * fills, so memory use stays constant however long the recording runs. The RIFF header is
+ * written with placeholder sizes and patched on {@link #close()}.
+ */
+public class WavWriter implements Closeable, PcmSink {
+
+    public static final int FORMAT_PCM = 1;
+    public static final int FORMAT_IEEE_FLOAT = 3;
+
+    static final int HEADER_SIZE = 44;
+
+    // RIFF sizes are 32-bit
+    private static final long MAX_DATA_BYTES = 0xFFFFFFFFL - (HEADER_SIZE - 8);
+
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 20;
+
+    private final File mFile;
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+
+    private final int mSampleRate;
+    private final int mChannels;
+    private final int mBitsPerSample;
+    private final int mFormat;
+    private final int mWindowSize;
+
+    private MappedByteBuffer mWindow;
+    private long mWindowPosition;
+    private long mDataBytes = 0;
+    private boolean mClosed = false;
+
+    /**
+     * @param bitsPerSample 16 for integer PCM or 32 for float PCM
+     */
+    public WavWriter(File file, int sampleRate, int channels, int bitsPerSample) throws IOException {
+        this(file, sampleRate, channels, bitsPerSample, DEFAULT_WINDOW_SIZE);
+    }
+
+    WavWriter(File file, int sampleRate, int channels, int bitsPerSample, int windowSize) throws IOException {
+        if (bitsPerSample != 16 && bitsPerSample != 32) {
+            throw new IllegalArgumentException("Unsupported sample size: " + bitsPerSample);
+        }
+
+        mFile = file;
+        mSampleRate = sampleRate;
+        mChannels = channels;
+        mBitsPerSample = bitsPerSample;
+        mFormat = bitsPerSample == 32 ? FORMAT_IEEE_FLOAT : FORMAT_PCM;
+
+        // keep windows aligned to whole samples
+        int bytesPerSample = bitsPerSample / 8;
+        mWindowSize = Math.max(bytesPerSample, windowSize - windowSize % bytesPerSample);
+
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+
+        try {
+            mRandomAccessFile.setLength(0);
+            mChannel = mRandomAccessFile.getChannel();
+
+            writeHeader();
+            mapWindow(HEADER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            mWindow = null;
+            mRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannels() {
+        return mChannels;
+    }
+
+    public long getDataBytes() {
+        return mDataBytes;
+    }
+
+    public long getFrameCount() {
+        return mDataBytes / (mChannels * (mBitsPerSample / 8));
+    }
+
+    @Override
+    public void write(short[] samples, int offset, int length) throws IOException {
+        ensureCapacity(length);
+
+        for (int i = offset; i < offset + length; i++) {
+            if (!mWindow.hasRemaining()) nextWindow();
+
+            if (mBitsPerSample == 16) {
+                mWindow.putShort(samples[i]);
+            } else {
+                mWindow.putFloat(samples[i] * (1f / 32768f));
+            }
+        }
+
+        mDataBytes += (long) length * (mBitsPerSample / 8);
+    }
+
+    public void write(float[] samples, int offset, int length) throws IOException {
+        ensureCapacity(length);
+
+        for (int i = offset; i < offset + length; i++) {
+            if (!mWindow.hasRemaining()) nextWindow();
+
+            if (mBitsPerSample == 16) {
+                float clipped = Math.max(-1f, Math.min(1f, samples[i]));
+                mWindow.putShort((short) Math.round(clipped * 32767f));
+            } else {
+                mWindow.putFloat(samples[i]);
+            }
+        }
+
+        mDataBytes += (long) length * (mBitsPerSample / 8);
+    }
+
+    /**
+     * Patches the header with the final sizes and trims the file to its real length.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) return;
+        mClosed = true;
+
+        try {
+            mWindow.force();
+            mWindow = null;
+
+            writeHeader();
+            mChannel.truncate(HEADER_SIZE + mDataBytes);
+            mChannel.force(false);
+        } finally {
+            mRandomAccessFile.close();
+        }
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (mClosed) {
+            throw new IOException("WAV writer is closed");
+        }
+
+        if (mDataBytes + (long) length * (mBitsPerSample / 8) > MAX_DATA_BYTES) {
+            throw new IOException("WAV data size limit reached");
+        }
+    }
+
+    private void nextWindow() throws IOException {
+        mapWindow(mWindowPosition + mWindowSize);
+    }
+
+    private void mapWindow(long position) throws IOException {
+        if (mWindow != null) {
+            mWindow.force();
+        }
+
+        mWindowPosition = position;
+        mWindow = mChannel.map(FileChannel.MapMode.READ_WRITE, position, mWindowSize);
+        mWindow.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void writeHeader() throws IOException {
+        int blockAlign = mChannels * mBitsPerSample / 8;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        header.putInt((int) (HEADER_SIZE - 8 + mDataBytes));
+        header.put(new byte[]{'W', 'A', 'V', 'E'});
+
+        header.put(new byte[]{'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort((short) mFormat);
+        header.putShort((short) mChannels);
+        header.putInt(mSampleRate);
+        header.putInt(mSampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) mBitsPerSample);
+
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        header.putInt((int) mDataBytes);
+        header.flip();
+
+        mChannel.write(header, 0);
+    }
+}
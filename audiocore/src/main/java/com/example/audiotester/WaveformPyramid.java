@@ -0,0 +1,326 @@
+package com.example.audiotester;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Min/max decimation pyramid of a mono capture, for drawing its waveform at any zoom.
+ *
+ * Level 0 holds the minimum and maximum of every bucket of {@link #getBucketFrames()} frames,
+ * and every level above holds those of factor buckets of the level below. The pyramid is built
+ * incrementally as blocks arrive, so it can be fed from the capture and is complete when the
+ * recording is. {@link #query} draws from the coarsest level that still has a bucket per
+ * column, so any range costs at most about factor buckets per column, whatever its duration.
+ * Values are stored as 16-bit PCM, the resolution of the captures, and a pyramid can be saved
+ * next to its recording with {@link #write(File)}. Methods are synchronized, so a view can query
+ * while the capture thread writes.
+ */
+public class WaveformPyramid implements PcmSink, BlockProcessor {
+
+    public static final int DEFAULT_BUCKET_FRAMES = 128;
+    public static final int DEFAULT_FACTOR = 4;
+
+    private static final int MAGIC = 0x57465059; // "WFPY"
+    private static final int VERSION = 1;
+    private static final int MAX_LEVELS = 16;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int mSampleRate;
+    private final int mBucketFrames;
+    private final int mFactor;
+
+    private final short[][] mMin = new short[MAX_LEVELS][];
+    private final short[][] mMax = new short[MAX_LEVELS][];
+    private final int[] mCounts = new int[MAX_LEVELS];
+    private int mLevels = 1;
+
+    // bucket being filled on each level: frames on level 0, buckets of the level below above it
+    private final short[] mPendingMin = new short[MAX_LEVELS];
+    private final short[] mPendingMax = new short[MAX_LEVELS];
+    private final int[] mPendingCount = new int[MAX_LEVELS];
+
+    private long mFrameCount = 0;
+    private boolean mFinished = false;
+
+    public WaveformPyramid(int sampleRate, int bucketFrames, int factor) {
+        if (bucketFrames <= 0 || factor < 2) {
+            throw new IllegalArgumentException("Invalid pyramid of " + bucketFrames + " frames x " + factor);
+        }
+
+        mSampleRate = sampleRate;
+        mBucketFrames = bucketFrames;
+        mFactor = factor;
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            mPendingMin[level] = Short.MAX_VALUE;
+            mPendingMax[level] = Short.MIN_VALUE;
+        }
+        mMin[0] = new short[INITIAL_CAPACITY];
+        mMax[0] = new short[INITIAL_CAPACITY];
+    }
+
+    public WaveformPyramid(int sampleRate) {
+        this(sampleRate, DEFAULT_BUCKET_FRAMES, DEFAULT_FACTOR);
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getBucketFrames() {
+        return mBucketFrames;
+    }
+
+    public int getFactor() {
+        return mFactor;
+    }
+
+    public synchronized long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public synchronized int getLevelCount() {
+        return mLevels;
+    }
+
+    public synchronized boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Frames per bucket on level.
+     */
+    public long getBucketFrames(int level) {
+        long frames = mBucketFrames;
+        for (int i = 0; i < level; i++) {
+            frames *= mFactor;
+        }
+        return frames;
+    }
+
+    @Override
+    public synchronized void write(short[] samples, int offset, int length) {
+        checkNotFinished();
+        for (int i = offset; i < offset + length; i++) {
+            addSample(samples[i]);
+        }
+        mFrameCount += length;
+    }
+
+    @Override
+    public synchronized void process(float[] samples, int offset, int length) {
+        checkNotFinished();
+        for (int i = offset; i < offset + length; i++) {
+            addSample(toShort(samples[i]));
+        }
+        mFrameCount += length;
+    }
+
+    /**
+     * Closes the partly filled buckets at the end of the capture. Nothing can be added after.
+     */
+    public synchronized void finish() {
+        if (mFinished) return;
+
+        for (int level = 0; level < mLevels; level++) {
+            if (mPendingCount[level] > 0) closeBucket(level);
+        }
+        mFinished = true;
+    }
+
+    /**
+     * Fills min and max with the envelope of [fromFrame, toFrame) split into columns, scaled to
+     * [-1, 1), and returns how many buckets were read. Each column spans whole buckets, so it can
+     * reach up to a bucket beyond its share of the range; columns past the data are NaN. Below
+     * one bucket per column the columns repeat level 0 buckets, use {@link #envelope} on the
+     * samples there.
+     */
+    public synchronized int query(long fromFrame, long toFrame, int columns, float[] min, float[] max) {
+        if (columns <= 0) return 0;
+
+        int level = levelFor((double) (toFrame - fromFrame) / columns);
+        long bucketFrames = getBucketFrames(level);
+        short[] levelMin = mMin[level];
+        short[] levelMax = mMax[level];
+        int count = mCounts[level];
+
+        int read = 0;
+        for (int column = 0; column < columns; column++) {
+            long start = fromFrame + (toFrame - fromFrame) * column / columns;
+            long end = fromFrame + (toFrame - fromFrame) * (column + 1) / columns;
+
+            long first = Math.floorDiv(start, bucketFrames);
+            long last = Math.min(count, Math.max(first + 1, ceilDiv(end, bucketFrames)));
+            first = Math.max(0, first);
+            if (first >= last) {
+                min[column] = Float.NaN;
+                max[column] = Float.NaN;
+                continue;
+            }
+
+            short low = Short.MAX_VALUE;
+            short high = Short.MIN_VALUE;
+            for (int bucket = (int) first; bucket < last; bucket++) {
+                if (levelMin[bucket] < low) low = levelMin[bucket];
+                if (levelMax[bucket] > high) high = levelMax[bucket];
+            }
+            min[column] = low / 32768f;
+            max[column] = high / 32768f;
+            read += (int) (last - first);
+        }
+        return read;
+    }
+
+    /**
+     * Coarsest level with buckets no longer than framesPerColumn, 0 if even those are longer.
+     */
+    public synchronized int levelFor(double framesPerColumn) {
+        int level = 0;
+        while (level + 1 < mLevels && mCounts[level + 1] > 0 && getBucketFrames(level + 1) <= framesPerColumn) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Envelope of length raw samples split into columns, for zooms below one bucket per column.
+     */
+    public static void envelope(float[] samples, int offset, int length, int columns, float[] min, float[] max) {
+        for (int column = 0; column < columns; column++) {
+            int start = offset + (int) ((long) length * column / columns);
+            int end = offset + (int) ((long) length * (column + 1) / columns);
+            if (end <= start) {
+                min[column] = Float.NaN;
+                max[column] = Float.NaN;
+                continue;
+            }
+
+            float low = samples[start];
+            float high = samples[start];
+            for (int i = start + 1; i < end; i++) {
+                low = Math.min(low, samples[i]);
+                high = Math.max(high, samples[i]);
+            }
+            min[column] = low;
+            max[column] = high;
+        }
+    }
+
+    public synchronized void write(File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(mSampleRate);
+            output.writeInt(mBucketFrames);
+            output.writeInt(mFactor);
+            output.writeLong(mFrameCount);
+            output.writeBoolean(mFinished);
+            output.writeInt(mLevels);
+            for (int level = 0; level < mLevels; level++) {
+                output.writeInt(mCounts[level]);
+                for (int i = 0; i < mCounts[level]; i++) {
+                    output.writeShort(mMin[level][i]);
+                    output.writeShort(mMax[level][i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A pyramid saved with {@link #write(File)}. Pending buckets are not saved, so a pyramid
+     * saved before {@link #finish()} is read back finished without its last partial buckets.
+     */
+    public static WaveformPyramid read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a waveform pyramid: " + file);
+            }
+
+            WaveformPyramid pyramid = new WaveformPyramid(input.readInt(), input.readInt(), input.readInt());
+            pyramid.mFrameCount = input.readLong();
+            input.readBoolean();
+            int levels = input.readInt();
+            if (levels < 1 || levels > MAX_LEVELS) {
+                throw new IOException("Invalid level count: " + levels);
+            }
+
+            pyramid.mLevels = levels;
+            for (int level = 0; level < levels; level++) {
+                int count = input.readInt();
+                if (count < 0) throw new IOException("Invalid bucket count: " + count);
+
+                pyramid.mCounts[level] = count;
+                pyramid.mMin[level] = new short[Math.max(count, 1)];
+                pyramid.mMax[level] = new short[Math.max(count, 1)];
+                for (int i = 0; i < count; i++) {
+                    pyramid.mMin[level][i] = input.readShort();
+                    pyramid.mMax[level][i] = input.readShort();
+                }
+            }
+            pyramid.mFinished = true;
+            return pyramid;
+        }
+    }
+
+    private void addSample(short sample) {
+        if (sample < mPendingMin[0]) mPendingMin[0] = sample;
+        if (sample > mPendingMax[0]) mPendingMax[0] = sample;
+        if (++mPendingCount[0] == mBucketFrames) closeBucket(0);
+    }
+
+    // appends the pending bucket of level and folds it into the level above
+    private void closeBucket(int level) {
+        short low = mPendingMin[level];
+        short high = mPendingMax[level];
+        mPendingMin[level] = Short.MAX_VALUE;
+        mPendingMax[level] = Short.MIN_VALUE;
+        mPendingCount[level] = 0;
+
+        int count = mCounts[level];
+        if (count == mMin[level].length) {
+            mMin[level] = Arrays.copyOf(mMin[level], count * 2);
+            mMax[level] = Arrays.copyOf(mMax[level], count * 2);
+        }
+        mMin[level][count] = low;
+        mMax[level][count] = high;
+        mCounts[level] = count + 1;
+
+        int above = level + 1;
+        if (above == MAX_LEVELS) return;
+        if (above == mLevels) {
+            // a level is only worth keeping once it summarizes more than one bucket
+            if (mCounts[level] < mFactor) return;
+            mMin[above] = new short[INITIAL_CAPACITY];
+            mMax[above] = new short[INITIAL_CAPACITY];
+            mLevels++;
+            for (int i = 0; i < mFactor - 1; i++) {
+                foldInto(above, mMin[level][i], mMax[level][i]);
+            }
+        }
+        foldInto(above, low, high);
+    }
+
+    private void foldInto(int level, short low, short high) {
+        if (low < mPendingMin[level]) mPendingMin[level] = low;
+        if (high > mPendingMax[level]) mPendingMax[level] = high;
+        if (++mPendingCount[level] == mFactor) closeBucket(level);
+    }
+
+    private void checkNotFinished() {
+        if (mFinished) throw new IllegalStateException("Pyramid is finished");
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    private static short toShort(float sample) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(sample * 32768f)));
+    }
+}
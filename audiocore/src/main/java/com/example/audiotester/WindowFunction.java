@@ -0,0 +1,49 @@
+package com.example.audiotester;
+
+/**
+ * Analysis windows for spectral measurements.
+ */
+public enum WindowFunction {
+
+    RECTANGULAR,
+    HANN,
+    BLACKMAN_HARRIS;
+
+    /**
+     * Periodic window coefficients of the given size.
+     */
+    public float[] coefficients(int size) {
+        float[] window = new float[size];
+
+        for (int i = 0; i < size; i++) {
+            double x = 2 * Math.PI * i / size;
+
+            switch (this) {
+                case HANN:
+                    window[i] = (float) (0.5 - 0.5 * Math.cos(x));
+                    break;
+                case BLACKMAN_HARRIS:
+                    window[i] = (float) (0.35875 - 0.48829 * Math.cos(x)
+                            + 0.14128 * Math.cos(2 * x) - 0.01168 * Math.cos(3 * x));
+                    break;
+                default:
+                    window[i] = 1f;
+                    break;
+            }
+        }
+
+        return window;
+    }
+
+    /**
+     * Mean of the coefficients, used to read sine amplitudes off a windowed spectrum.
+     */
+    public static float coherentGain(float[] coefficients) {
+        double sum = 0;
+        for (float c : coefficients) {
+            sum += c;
+        }
+
+        return (float) (sum / coefficients.length);
+    }
+}
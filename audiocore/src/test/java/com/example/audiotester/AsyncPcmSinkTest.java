@@ -0,0 +1,180 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncPcmSinkTest {
+
+    /** Sink that can be held up, records what it receives and which arrays it was given. */
+    private static class FakeSink implements PcmSink, Closeable {
+        final CountDownLatch release;
+        final long delayMs;
+        final Set<short[]> arrays = Collections.newSetFromMap(new IdentityHashMap<>());
+        short[] received = new short[1 << 16];
+        int length = 0;
+        boolean closed = false;
+
+        FakeSink(CountDownLatch release, long delayMs) {
+            this.release = release;
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public void write(short[] samples, int offset, int count) throws IOException {
+            try {
+                release.await();
+                if (delayMs > 0) Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+
+            synchronized (this) {
+                arrays.add(samples);
+                if (length + count > received.length) received = Arrays.copyOf(received, received.length * 2);
+                System.arraycopy(samples, offset, received, length, count);
+                length += count;
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static short[] ramp(int start, int length) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) (start + i);
+        }
+        return samples;
+    }
+
+    @Test
+    public void write_recyclesPoolAndKeepsOrder() throws IOException {
+        FakeSink target = new FakeSink(new CountDownLatch(0), 0);
+        AsyncPcmSink sink = new AsyncPcmSink(target, 100, 3);
+
+        // blocks that straddle buffer boundaries, never more than two buffers behind
+        int total = 0;
+        for (int i = 0; i < 200; i++) {
+            sink.write(ramp(total, 37), 0, 37);
+            total += 37;
+            while (total - sink.getWrittenFrames() > 200) Thread.yield();
+        }
+        sink.close();
+
+        assertEquals(0, sink.getDroppedFrames());
+        assertEquals(total, sink.getWrittenFrames());
+        assertEquals(total, target.length);
+        for (int i = 0; i < total; i++) {
+            assertEquals(i, target.received[i]);
+        }
+
+        // only pooled buffers ever reach the target
+        assertTrue(target.arrays.size() <= 3);
+        assertTrue(target.closed);
+    }
+
+    @Test
+    public void write_dropsAndCountsWhenStorageStalls() throws IOException {
+        CountDownLatch release = new CountDownLatch(1);
+        FakeSink target = new FakeSink(release, 0);
+        AsyncPcmSink sink = new AsyncPcmSink(target, 100, 4);
+
+        // 4 buffers fit, everything after that has to be dropped without blocking
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            sink.write(ramp(i * 100, 100), 0, 100);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue("write blocked for " + elapsedMs + " ms", elapsedMs < 500);
+        assertEquals(600, sink.getDroppedFrames());
+        assertEquals(6, sink.getBackpressureEvents());
+        assertTrue(sink.getMaxQueueDepth() >= 3);
+
+        release.countDown();
+        sink.close();
+
+        assertEquals(400, sink.getWrittenFrames());
+        assertEquals(400, target.length);
+        for (int i = 0; i < 400; i++) {
+            assertEquals(i, target.received[i]);
+        }
+    }
+
+    @Test
+    public void write_recoversOnceStorageCatchesUp() throws IOException, InterruptedException {
+        FakeSink target = new FakeSink(new CountDownLatch(0), 20);
+        AsyncPcmSink sink = new AsyncPcmSink(target, 100, 2);
+
+        for (int i = 0; i < 5; i++) {
+            sink.write(ramp(0, 100), 0, 100);
+        }
+        assertTrue(sink.getDroppedFrames() > 0);
+        long dropped = sink.getDroppedFrames();
+
+        // the slow sink frees buffers again after its delay
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sink.getWrittenFrames() < 200 && System.nanoTime() < deadline) Thread.sleep(5);
+        sink.write(ramp(0, 100), 0, 100);
+        sink.close();
+
+        assertEquals(dropped, sink.getDroppedFrames());
+        assertEquals(600 - dropped, sink.getWrittenFrames());
+        assertTrue(sink.getMaxWriteMs() >= 15);
+    }
+
+    @Test
+    public void targetError_reachesTheCaptureThread() throws InterruptedException {
+        AsyncPcmSink sink = new AsyncPcmSink((samples, offset, length) -> {
+            throw new IOException("disk full");
+        }, 10, 2);
+
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (System.nanoTime() < deadline) {
+                sink.write(new short[10], 0, 10);
+                Thread.sleep(1);
+            }
+            fail("Expected the write error");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+
+        try {
+            sink.close();
+            fail("Expected the write error on close");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+
+    @Test
+    public void close_writesPartialBufferAndRejectsLaterWrites() throws IOException {
+        FakeSink target = new FakeSink(new CountDownLatch(0), 0);
+        AsyncPcmSink sink = new AsyncPcmSink(target, 100, 2);
+
+        sink.write(ramp(0, 42), 0, 42);
+        sink.close();
+        sink.close();
+
+        assertEquals(42, target.length);
+        try {
+            sink.write(new short[1], 0, 1);
+            fail("Expected the closed sink to reject writes");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.audiotester;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BatchAnalyzerTest {
+
+    private static final int RATE = 48000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void writeTone(File file, double frequency, float amplitude, int frames) throws IOException {
+        float[] samples = new float[frames];
+        SignalGenerator.sine(RATE, frequency, amplitude).fill(samples, 0, frames);
+        try (WavWriter writer = new WavWriter(file, RATE, 1, 16)) {
+            writer.write(samples, 0, frames);
+        }
+    }
+
+    // two devices, a capture at the root, an unreadable capture and a file that is no capture
+    private File corpus() throws IOException {
+        File root = folder.newFolder("captures");
+        File pixel = new File(root, "pixel");
+        File other = new File(root, "other/run1");
+        assertTrue(pixel.mkdirs());
+        assertTrue(other.mkdirs());
+
+        writeTone(new File(pixel, "a.wav"), 1000, 0.5f, RATE);
+        writeTone(new File(pixel, "b.WAV"), 1000, 0.25f, RATE / 2);
+        writeTone(new File(other, "c.wav"), 2000, 0.5f, 2 * RATE);
+        writeTone(new File(root, "d.wav"), 500, 0.1f, RATE / 10);
+        Files.write(new File(root, "broken.wav").toPath(), new byte[]{1, 2, 3});
+        Files.write(new File(pixel, "notes.txt").toPath(), new byte[]{1, 2, 3});
+        return root;
+    }
+
+    @Test
+    public void analyze_groupsByDirectoryAndReportsFailures() throws IOException {
+        File root = corpus();
+        List<File> captures = BatchAnalyzer.findCaptures(root);
+        assertEquals(5, captures.size());
+
+        BatchReport report = new BatchAnalyzer(3, 1024).analyze(root);
+
+        assertEquals(4, report.getAnalyses().size());
+        assertEquals(Arrays.asList("broken.wav"), Arrays.asList(report.getFailures().keySet().toArray()));
+        assertTrue(report.getFailures().get("broken.wav").startsWith("java.io.IOException: "));
+        assertEquals("d.wav", report.getAnalyses().get(0).path);
+        assertEquals("other/run1/c.wav", report.getAnalyses().get(1).path);
+        assertEquals("pixel", report.getAnalyses().get(2).group);
+        assertEquals(3.6, report.getTotalSeconds(), 1e-9);
+
+        Map<String, Map<String, Double>> groups = report.groupMetrics();
+        assertEquals(Arrays.asList(".", "other/run1", "pixel"), Arrays.asList(groups.keySet().toArray()));
+        Map<String, Double> pixelMetrics = groups.get("pixel");
+        assertEquals(2, pixelMetrics.get("files"), 0);
+        assertEquals(1.5, pixelMetrics.get("duration_s"), 1e-9);
+        assertEquals(-15.05, pixelMetrics.get("rms_db_min"), 0.1);
+        assertEquals(-9.03, pixelMetrics.get("rms_db_max"), 0.1);
+        assertEquals(2000, groups.get("other/run1").get("dominant_hz_median"), 12);
+        assertFalse(pixelMetrics.containsKey("first_marker_ms_median"));
+
+        StringWriter files = new StringWriter();
+        report.writeCsv(files);
+        String[] lines = files.toString().split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("path,group,sample_rate,channels,duration_s,rms_db"));
+        assertTrue(lines[4], lines[4].startsWith("pixel/b.WAV,pixel,48000,1,0.5,"));
+
+        StringWriter json = new StringWriter();
+        report.writeJson(json);
+        assertTrue(json.toString(), json.toString().startsWith("{\"files\":4,\"failures\":{\"broken.wav\":"));
+        assertTrue(report.summary(), report.summary().startsWith("4 files, 1 failed"));
+    }
+
+    @Test
+    public void analyze_doesNotDependOnParallelism() throws IOException {
+        File root = corpus();
+
+        BatchAnalyzer serial = new BatchAnalyzer(1, 1024);
+        BatchAnalyzer parallel = new BatchAnalyzer(4, 1024);
+        serial.setMarkerProbe(BatchAnalyzer.latencyProbe(), BatchAnalyzer.PROBE_SAMPLE_RATE, 0.5f);
+        parallel.setMarkerProbe(BatchAnalyzer.latencyProbe(), BatchAnalyzer.PROBE_SAMPLE_RATE, 0.5f);
+
+        List<CaptureAnalysis> expected = serial.analyze(root).getAnalyses();
+        List<CaptureAnalysis> actual = parallel.analyze(root).getAnalyses();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).path, actual.get(i).path);
+            assertEquals(expected.get(i).toMetrics(), actual.get(i).toMetrics());
+        }
+    }
+}
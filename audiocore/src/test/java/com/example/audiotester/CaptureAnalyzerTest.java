@@ -0,0 +1,108 @@
+package com.example.audiotester;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class CaptureAnalyzerTest {
+
+    private static final int RATE = 48000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // a second of quiet noise, then a second of a 1 kHz tone over it
+    private static float[] noiseThenTone() {
+        float[] samples = new float[2 * RATE];
+        SignalGenerator.whiteNoise(RATE, 0.003f, 1).fill(samples, 0, samples.length);
+        for (int i = RATE; i < samples.length; i++) {
+            samples[i] += (float) (0.5 * Math.sin(2 * Math.PI * 1000 * i / RATE));
+        }
+        return samples;
+    }
+
+    private File write(String name, float[] samples, int channels, int bitsPerSample) throws IOException {
+        File file = folder.newFile(name);
+        float[] interleaved = new float[samples.length * channels];
+        for (int i = 0; i < interleaved.length; i++) {
+            interleaved[i] = samples[i / channels];
+        }
+        try (WavWriter writer = new WavWriter(file, RATE, channels, bitsPerSample)) {
+            writer.write(interleaved, 0, interleaved.length);
+        }
+        return file;
+    }
+
+    @Test
+    public void analyze_matchesLevelStatsOfWholeCapture() throws IOException {
+        float[] samples = noiseThenTone();
+        File file = write("tone.wav", samples, 1, 32);
+
+        // an odd block size splits windows and spectrum frames across blocks
+        CaptureAnalysis analysis = new CaptureAnalyzer(1000).analyze(file, "tone.wav", ".");
+        LevelStats expected = LevelStats.analyze(samples, samples.length, RATE);
+
+        assertEquals(RATE, analysis.sampleRate);
+        assertEquals(2, analysis.durationSeconds, 1e-9);
+        assertEquals(expected.rmsDb, analysis.rmsDb, 0.01);
+        assertEquals(expected.peakDb, analysis.peakDb, 0.01);
+        assertEquals(expected.noiseFloorDb, analysis.noiseFloorDb, 0.1);
+        assertEquals(expected.snrDb, analysis.snrDb, 0.2);
+        assertEquals(expected.truePeakDb, analysis.truePeakDb, 0.01);
+        assertEquals(expected.loudnessLufs, analysis.loudnessLufs, 0.01);
+
+        assertEquals(1000, analysis.dominantHz, (double) RATE / CaptureAnalyzer.SPECTRUM_SIZE);
+        assertEquals(0, analysis.markerCount);
+        assertTrue(Double.isNaN(analysis.firstMarkerMs));
+    }
+
+    @Test
+    public void analyze_findsMarkersInMixOfChannels() throws IOException {
+        float[] probe = BatchAnalyzer.latencyProbe();
+        float[] samples = new float[2 * RATE];
+        SignalGenerator.whiteNoise(RATE, 0.01f, 2).fill(samples, 0, samples.length);
+        for (int start = RATE / 4; start + probe.length < samples.length; start += RATE / 2) {
+            for (int i = 0; i < probe.length; i++) {
+                samples[start + i] += 0.5f * probe[i];
+            }
+        }
+        File file = write("markers.wav", samples, 2, 16);
+
+        CaptureAnalyzer analyzer = new CaptureAnalyzer(CaptureAnalyzer.DEFAULT_BLOCK_FRAMES, probe, RATE, 0.5f);
+        CaptureAnalysis analysis = analyzer.analyze(file, "markers.wav", ".");
+        assertEquals(2, analysis.channels);
+        assertEquals(4, analysis.markerCount);
+        assertEquals(250, analysis.firstMarkerMs, 0.05);
+        assertEquals(500, analysis.markerIntervalMs, 0.05);
+
+        // the analyzer is reused, and a capture without the probe has no markers
+        analysis = analyzer.analyze(write("none.wav", noiseThenTone(), 1, 16), "none.wav", ".");
+        assertEquals(0, analysis.markerCount);
+        assertTrue(Double.isNaN(analysis.markerIntervalMs));
+        assertEquals(-6, analysis.peakDb, 0.1);
+    }
+
+    @Test
+    public void analyze_handlesCapturesShorterThanOneWindow() throws IOException {
+        float[] samples = new float[100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (float) (0.5 * Math.sin(2 * Math.PI * 4800 * i / RATE));
+        }
+        CaptureAnalysis analysis = new CaptureAnalyzer(64).analyze(write("short.wav", samples, 1, 32), "short.wav", ".");
+
+        assertEquals(100.0 / RATE, analysis.durationSeconds, 1e-9);
+        assertEquals(-9, analysis.rmsDb, 0.1);
+        assertEquals(0, analysis.snrDb, 1e-9);
+        assertEquals(4800, analysis.dominantHz, (double) RATE / CaptureAnalyzer.SPECTRUM_SIZE);
+
+        analysis = new CaptureAnalyzer(64).analyze(write("empty.wav", new float[0], 1, 16), "empty.wav", ".");
+        assertEquals(0, analysis.durationSeconds, 0);
+        assertEquals(LevelStats.MIN_DB, analysis.rmsDb, 0);
+        assertTrue(Double.isNaN(analysis.dominantHz));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ClockTimelineTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final long START_NANOS = 123_456_789_000_000L;
+
+    // one timestamp per 10 ms buffer, for a stream running ppm fast, with gaussian jitter
+    private static ClockTimeline stream(double ppm, double jitterNanos, double seconds, long seed) {
+        Random random = new Random(seed);
+        ClockTimeline timeline = new ClockTimeline(SAMPLE_RATE, 1000, 1_000_000_000L);
+        double rate = SAMPLE_RATE * (1 + ppm * 1e-6);
+
+        for (long frame = 0; frame < seconds * SAMPLE_RATE; frame += 480) {
+            double nanos = frame * 1e9 / rate + jitterNanos * random.nextGaussian();
+            timeline.add(1000 + frame, START_NANOS + Math.round(nanos));
+        }
+        return timeline;
+    }
+
+    @Test
+    public void fit_recoversSkew() {
+        ClockDrift drift = stream(35, 0, 60, 1).fit();
+
+        assertEquals(35, drift.ppm(), 0.01);
+        assertEquals(SAMPLE_RATE * (1 + 35e-6), drift.sampleRate, 1e-3);
+        assertEquals(0, drift.jitterNanos, 1);
+    }
+
+    @Test
+    public void fit_averagesOutJitter() {
+        // 200 us of jitter per timestamp, over one hour
+        ClockDrift drift = stream(-20, 200_000, 3600, 1).fit();
+
+        assertEquals(-20, drift.ppm(), 0.1);
+        assertEquals(200_000, drift.jitterNanos, 5_000);
+        assertEquals(360_000, drift.count);
+    }
+
+    @Test
+    public void relativePpm_comparesStreams() {
+        ClockDrift output = stream(30, 50_000, 120, 1).fit();
+        ClockDrift input = stream(-10, 50_000, 120, 2).fit();
+
+        assertEquals(40, ClockDrift.relativePpm(output, input), 1);
+        assertEquals(-40, ClockDrift.relativePpm(input, output), 1);
+    }
+
+    @Test
+    public void fittedLine_alignsFramesAndTime() {
+        ClockDrift drift = stream(100, 0, 10, 1).fit();
+
+        long time = drift.nanoTimeAt(1000 + SAMPLE_RATE);
+        assertEquals(START_NANOS + 1e9 / (1 + 100e-6), time, 1000);
+        assertEquals(1000 + SAMPLE_RATE, drift.frameAt(time), 0.01);
+        assertEquals(1000, drift.frameAt(START_NANOS), 0.01);
+    }
+
+    @Test
+    public void add_ignoresRepeatedTimestamps() {
+        ClockTimeline timeline = new ClockTimeline(SAMPLE_RATE, 10, 0);
+        timeline.add(0, START_NANOS);
+        timeline.add(0, START_NANOS);
+        assertNull(timeline.fit());
+
+        timeline.add(480, START_NANOS + 10_000_000);
+        timeline.add(480, START_NANOS + 10_000_000);
+        assertEquals(2, timeline.getCount());
+        assertEquals(SAMPLE_RATE, timeline.fit().sampleRate, 1e-6);
+    }
+
+    @Test
+    public void storage_isDecimatedAndBounded() {
+        // 10 ms timestamps, stored once per second, room for 1000
+        ClockTimeline timeline = stream(0, 0, 60, 1);
+        assertEquals(6000, timeline.getCount());
+        assertEquals(60, timeline.size());
+        assertEquals(START_NANOS + 1_000_000_000L, timeline.getNanoTime(1));
+
+        ClockTimeline small = new ClockTimeline(SAMPLE_RATE, 3, 0);
+        for (int i = 0; i < 10; i++) small.add(i * 480, START_NANOS + i * 10_000_000L);
+        assertEquals(3, small.size());
+        assertEquals(10, small.getCount());
+        assertEquals(SAMPLE_RATE, small.fit().sampleRate, 1e-6);
+    }
+
+    @Test
+    public void clear_resetsFit() {
+        ClockTimeline timeline = stream(50, 0, 10, 1);
+        timeline.clear();
+        assertNull(timeline.fit());
+        assertEquals(0, timeline.size());
+
+        for (int i = 0; i < 100; i++) timeline.add(5000 + i * 480, START_NANOS + i * 10_000_000L);
+        assertEquals(0, timeline.fit().ppm(), 1e-6);
+        assertEquals(5000, timeline.fit().frameAt(START_NANOS), 1e-6);
+    }
+
+    @Test
+    public void writeCsv_tagsStream() throws IOException {
+        ClockTimeline timeline = new ClockTimeline(SAMPLE_RATE, 10, 0);
+        timeline.add(0, 100);
+        timeline.add(480, 200);
+
+        StringWriter writer = new StringWriter();
+        writer.write(ClockTimeline.CSV_HEADER);
+        timeline.writeCsv(writer, "input");
+        assertEquals("stream,frame,nano_time\ninput,0,100\ninput,480,200\n", writer.toString());
+    }
+}
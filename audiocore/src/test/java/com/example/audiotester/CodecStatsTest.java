@@ -0,0 +1,72 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CodecStatsTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int LENGTH = 1 << 16;
+
+    private static float[] noise() {
+        float[] samples = new float[LENGTH];
+        SignalGenerator.whiteNoise(SAMPLE_RATE, 0.3f, 1).fill(samples, 0, LENGTH);
+        return samples;
+    }
+
+    // priming silence, then the signal scaled by gain
+    private static float[] delayed(float[] signal, int delay, float gain) {
+        float[] decoded = new float[delay + signal.length];
+        for (int i = 0; i < signal.length; i++) {
+            decoded[delay + i] = gain * signal[i];
+        }
+        return decoded;
+    }
+
+    @Test
+    public void analyze_alignsPrimingAndMeasuresError() {
+        float[] reference = noise();
+
+        CodecStats lossless = CodecStats.analyze(reference, delayed(reference, 1024, 1), LENGTH + 1024, SAMPLE_RATE, 4800);
+        assertEquals(1024, lossless.delayFrames);
+        assertEquals(1024 * 1000.0 / SAMPLE_RATE, lossless.delayMs, 1e-9);
+        assertEquals(-LevelStats.MIN_DB, lossless.snrDb, 0);
+        assertEquals(0, lossless.spectralErrorDb, 1e-6);
+        assertEquals(SAMPLE_RATE / 2.0, lossless.bandwidthHz, 0);
+
+        // half the amplitude leaves half the signal as error
+        CodecStats quiet = CodecStats.analyze(reference, delayed(reference, 300, 0.5f), LENGTH + 300, SAMPLE_RATE, 4800);
+        assertEquals(300, quiet.delayFrames);
+        assertEquals(6.02, quiet.snrDb, 0.01);
+        assertEquals(6.02, quiet.spectralErrorDb, 0.01);
+    }
+
+    @Test
+    public void analyze_findsLowPass() {
+        float[] reference = noise();
+
+        // brick-wall low-pass at 4 kHz
+        float[] decoded = Arrays.copyOf(reference, LENGTH);
+        RealFft fft = new RealFft(LENGTH);
+        fft.forward(decoded);
+        int cutoff = 4000 * LENGTH / SAMPLE_RATE;
+        decoded[1] = 0;
+        for (int k = cutoff + 1; k < LENGTH / 2; k++) {
+            decoded[2 * k] = 0;
+            decoded[2 * k + 1] = 0;
+        }
+        fft.inverse(decoded);
+
+        CodecStats stats = CodecStats.analyze(reference, decoded, LENGTH, SAMPLE_RATE, 4800);
+        assertEquals(0, stats.delayFrames);
+        assertEquals(4000, stats.bandwidthHz, 100);
+        assertTrue(stats.toString(), stats.spectralErrorDb < 0.5);
+        assertTrue(stats.toString(), stats.snrDb > 0 && stats.snrDb < 1);
+
+        assertEquals(Arrays.asList("delay_ms_aac", "snr_db_aac", "spectral_error_db_aac", "bandwidth_hz_aac"),
+                Arrays.asList(stats.toMetrics("_aac").keySet().toArray()));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DistortionStatsTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    private static float[] tone(double frequency, double amplitude, double secondHarmonic, double noise) {
+        Random random = new Random(7);
+        float[] samples = new float[SAMPLE_RATE];
+        for (int i = 0; i < samples.length; i++) {
+            double phase = 2 * Math.PI * frequency * i / SAMPLE_RATE;
+            samples[i] = (float) (amplitude * Math.sin(phase)
+                    + secondHarmonic * Math.sin(2 * phase)
+                    + noise * random.nextGaussian());
+        }
+        return samples;
+    }
+
+    @Test
+    public void cleanTone_hasNegligibleDistortion() {
+        DistortionStats stats = DistortionStats.analyze(tone(1000, 0.5, 0, 0), 0, SAMPLE_RATE, SAMPLE_RATE, 1000);
+
+        assertEquals(1000, stats.frequency, 1);
+        assertEquals(-6.02, stats.fundamentalDb, 0.1);
+        // limited by Blackman-Harris side lobes and float precision
+        assertTrue("thd+n " + stats.thdPlusNDb, stats.thdPlusNDb < -80);
+    }
+
+    @Test
+    public void secondHarmonic_readsAsThd() {
+        // 1 % second harmonic is -40 dB
+        DistortionStats stats = DistortionStats.analyze(tone(1000, 0.5, 0.005, 0), 0, SAMPLE_RATE, SAMPLE_RATE, 1000);
+
+        assertEquals(-40, stats.thdDb, 0.2);
+        assertEquals(-40, stats.thdPlusNDb, 0.2);
+        assertEquals(1.0, stats.thdPlusNPercent(), 0.03);
+    }
+
+    @Test
+    public void noise_readsAsThdPlusNButNotThd() {
+        // white noise of 0.005 rms against a 0.5 amplitude tone, band-limited to 20 kHz of 24
+        DistortionStats stats = DistortionStats.analyze(tone(1000, 0.5, 0, 0.005), 0, SAMPLE_RATE, SAMPLE_RATE, 1000);
+
+        double expected = 10 * Math.log10(0.005 * 0.005 * (20000 - 20) / 24000 / (0.5 * 0.5 / 2));
+        assertEquals(expected, stats.thdPlusNDb, 0.5);
+        assertTrue(stats.thdDb < stats.thdPlusNDb - 10);
+    }
+
+    @Test
+    public void fundamental_isFoundDespiteClockOffset() {
+        DistortionStats stats = DistortionStats.analyze(tone(1005, 0.5, 0, 0), 0, SAMPLE_RATE, SAMPLE_RATE, 1000);
+
+        assertEquals(1005, stats.frequency, 1);
+        assertTrue(stats.thdPlusNDb < -80);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EchoStatsTest {
+
+    private static final int SAMPLE_RATE = 16000;
+
+    private static float[] noise(int length, float amplitude, long seed) {
+        float[] samples = new float[length];
+        SignalGenerator.whiteNoise(SAMPLE_RATE, amplitude, seed).fill(samples, 0, length);
+        return samples;
+    }
+
+    // bulk delay followed by a short room-like path, plus a noise floor
+    private static float[] echo(float[] reference, int delay, float[] path, float noiseAmplitude) {
+        float[] captured = noise(reference.length + delay, noiseAmplitude, 7);
+        for (int i = 0; i < captured.length; i++) {
+            for (int k = 0; k < path.length; k++) {
+                int index = i - delay - k;
+                if (index >= 0 && index < reference.length) captured[i] += path[k] * reference[index];
+            }
+        }
+        return captured;
+    }
+
+    @Test
+    public void analyze_recoversDelayAndLoss() {
+        float[] reference = noise(5 * SAMPLE_RATE, 0.1f, 1);
+        float[] path = {0.3f, 0.15f, -0.09f, 0.03f};
+        float[] captured = echo(reference, 400, path, 1e-4f);
+
+        EchoStats stats = EchoStats.analyze(reference, captured, captured.length, SAMPLE_RATE,
+                EchoStats.DEFAULT_TAPS, SAMPLE_RATE / 2);
+
+        double gain = 0;
+        for (float tap : path) gain += tap * tap;
+
+        assertEquals(400, stats.delayFrames);
+        assertEquals(25.0, stats.delayMs, 1e-9);
+        assertEquals(-10 * Math.log10(gain), stats.erlDb, 0.5);
+        assertTrue("ERLE " + stats.erleDb, stats.erleDb > 20);
+    }
+
+    @Test
+    public void analyze_noEcho_hasNoEnhancement() {
+        float[] reference = noise(2 * SAMPLE_RATE, 0.1f, 1);
+        float[] captured = noise(2 * SAMPLE_RATE, 0.01f, 2);
+
+        EchoStats stats = EchoStats.analyze(reference, captured, captured.length, SAMPLE_RATE, 128, 1000);
+
+        assertEquals(20, stats.erlDb, 0.5);
+        // nothing to cancel; misadjustment can only add a little noise
+        assertTrue("ERLE " + stats.erleDb, stats.erleDb < 1);
+    }
+
+    @Test
+    public void findDelay_searchesWithinLimit() {
+        float[] reference = noise(8000, 0.1f, 1);
+        float[] captured = echo(reference, 1200, new float[]{0.5f}, 0);
+
+        assertEquals(1200, EchoStats.findDelay(reference, captured, captured.length, 2000));
+        assertNotEquals(1200, EchoStats.findDelay(reference, captured, captured.length, 1000));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FftConvolverTest {
+
+    private static float[] random(int length, long seed) {
+        Random random = new Random(seed);
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (float) random.nextGaussian();
+        }
+        return samples;
+    }
+
+    private static float[] direct(float[] signal, float[] kernel) {
+        float[] output = new float[signal.length + kernel.length - 1];
+        for (int i = 0; i < signal.length; i++) {
+            for (int j = 0; j < kernel.length; j++) {
+                output[i + j] += signal[i] * kernel[j];
+            }
+        }
+        return output;
+    }
+
+    @Test
+    public void convolve_matchesDirectConvolution() {
+        float[] signal = random(1000, 1);
+        float[] kernel = random(77, 2);
+
+        float[] expected = direct(signal, kernel);
+        float[] actual = FftConvolver.convolve(signal, signal.length, kernel, kernel.length);
+
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("sample " + i, expected[i], actual[i], 1e-3);
+        }
+    }
+
+    @Test
+    public void process_streamsOddBlocksLikeOneShot() {
+        float[] signal = random(5000, 3);
+        float[] kernel = random(300, 4);
+        float[] expected = direct(signal, kernel);
+
+        FftConvolver convolver = new FftConvolver(kernel, kernel.length, 256);
+        float[] input = new float[expected.length];
+        System.arraycopy(signal, 0, input, 0, signal.length);
+        float[] output = new float[expected.length];
+
+        int offset = 0;
+        int step = 1;
+        while (offset < input.length) {
+            int length = Math.min(Math.min(step, 256), input.length - offset);
+            convolver.process(input, offset, length, output, offset);
+            offset += length;
+            step = step * 3 % 257 + 1;
+        }
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("sample " + i, expected[i], output[i], 1e-3);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GlitchDetectorTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final double FREQUENCY = 1000;
+
+    private static float[] sine(int length, float amplitude, float noise, long seed) {
+        Random random = new Random(seed);
+        float[] signal = new float[length];
+        for (int i = 0; i < length; i++) {
+            signal[i] = (float) (amplitude * Math.sin(2 * Math.PI * FREQUENCY * i / SAMPLE_RATE)
+                    + noise * random.nextGaussian());
+        }
+        return signal;
+    }
+
+    private static GlitchTimeline detect(float[] signal) {
+        GlitchTimeline timeline = new GlitchTimeline(100);
+        GlitchDetector detector = new GlitchDetector(SAMPLE_RATE, FREQUENCY, timeline);
+
+        for (int offset = 0; offset < signal.length; offset += 256) {
+            detector.process(signal, offset, Math.min(256, signal.length - offset));
+        }
+        return timeline;
+    }
+
+    @Test
+    public void cleanSine_hasNoGlitches() {
+        assertEquals(0, detect(sine(SAMPLE_RATE * 10, 0.5f, 0f, 1)).getTotal());
+    }
+
+    @Test
+    public void noisySine_hasNoGlitches() {
+        // 40 dB SNR, typical of an acoustic loopback
+        assertEquals(0, detect(sine(SAMPLE_RATE * 10, 0.1f, 0.0007f, 2)).getTotal());
+    }
+
+    @Test
+    public void droppedSamples_areReportedOnce() {
+        float[] clean = sine(SAMPLE_RATE * 4, 0.5f, 0f, 3);
+        int gapAt = SAMPLE_RATE * 2 + 123;
+
+        // splice out 7 samples, as a lost buffer fragment would
+        float[] signal = new float[clean.length - 7];
+        System.arraycopy(clean, 0, signal, 0, gapAt);
+        System.arraycopy(clean, gapAt + 7, signal, gapAt, signal.length - gapAt);
+
+        GlitchTimeline timeline = detect(signal);
+
+        assertEquals(1, timeline.getTotal());
+        assertEquals(GlitchTimeline.Type.DISCONTINUITY, timeline.getType(0));
+        assertEquals(gapAt * 1000L / SAMPLE_RATE, timeline.getTimeMs(0), 1);
+    }
+
+    @Test
+    public void silentGap_isReportedAsDropout() {
+        float[] signal = sine(SAMPLE_RATE * 4, 0.5f, 0f, 4);
+        int gapAt = SAMPLE_RATE * 3;
+        Arrays.fill(signal, gapAt, gapAt + SAMPLE_RATE / 10, 0f);
+
+        GlitchTimeline timeline = detect(signal);
+
+        assertEquals(1, timeline.getTotal(GlitchTimeline.Type.DROPOUT));
+        for (int i = 0; i < timeline.size(); i++) {
+            assertEquals(3000, timeline.getTimeMs(i), 120);
+        }
+    }
+
+    @Test
+    public void glitchesAreCountedPerMinute() {
+        GlitchTimeline timeline = new GlitchTimeline(2);
+        timeline.add(GlitchTimeline.Type.UNDERRUN, 1_000, 2);
+        timeline.add(GlitchTimeline.Type.DISCONTINUITY, 61_000, 1);
+        timeline.add(GlitchTimeline.Type.STALL, 150_000, 1);
+        timeline.add(GlitchTimeline.Type.STALL, 150_000, 0);
+
+        // the third event is past the capacity: not stored, but still counted per minute
+        assertEquals(2, timeline.size());
+        assertEquals(4, timeline.getTotal());
+        assertEquals(1, timeline.getTotal(GlitchTimeline.Type.STALL));
+        assertArrayEquals(new int[]{2, 1, 1}, timeline.countsPerMinute(180_000));
+        assertArrayEquals(new int[]{2, 2}, timeline.countsPerMinute(120_000));
+    }
+
+    @Test
+    public void timelineIsExportedAsCsv() throws Exception {
+        GlitchTimeline timeline = new GlitchTimeline(10);
+        timeline.add(GlitchTimeline.Type.DROPOUT, 1234, 1);
+
+        StringWriter csv = new StringWriter();
+        timeline.writeCsv(csv);
+
+        assertEquals("time_ms,type,count\n1234,DROPOUT,1\n", csv.toString());
+        assertEquals("1.0 min, 1 glitches, DROPOUT = 1", timeline.summary(60_000));
+    }
+}
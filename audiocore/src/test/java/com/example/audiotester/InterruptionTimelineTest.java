@@ -0,0 +1,150 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class InterruptionTimelineTest {
+
+    @Test
+    public void recovery_isMeasuredFromFocusReturn() {
+        InterruptionTimeline timeline = new InterruptionTimeline(10);
+
+        timeline.begin(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT, 1000);
+        assertTrue(timeline.isInterrupted());
+        timeline.focusReturned(4000);
+        assertTrue(timeline.isInterrupted());
+        timeline.resumed(4120);
+
+        assertFalse(timeline.isInterrupted());
+        assertEquals(1, timeline.size());
+        assertEquals(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT, timeline.getType(0));
+        assertEquals(120, timeline.getRecoveryMs(0));
+        assertEquals(120, timeline.maxRecoveryMs());
+    }
+
+    @Test
+    public void ended_closesTheSegmentWithoutRecovery() {
+        InterruptionTimeline timeline = new InterruptionTimeline(10);
+
+        timeline.begin(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT, 1000);
+        timeline.ended(4000);
+
+        assertFalse(timeline.isInterrupted());
+        assertEquals(4000, timeline.getReturnMs(0));
+        assertEquals(4000, timeline.getResumeMs(0));
+        assertEquals(-1, timeline.getRecoveryMs(0));
+        assertEquals(-1, timeline.maxRecoveryMs());
+        assertTrue(timeline.overlaps(3000, 3500));
+        assertFalse(timeline.overlaps(4001, 5000));
+        assertEquals("1 interruptions", timeline.summary());
+    }
+
+    @Test
+    public void addMetrics_combinesWithOtherTimelines() {
+        InterruptionTimeline paused = new InterruptionTimeline(10);
+        paused.begin(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT, 1000);
+        paused.focusReturned(1500);
+        paused.resumed(1600);
+
+        InterruptionTimeline running = new InterruptionTimeline(10);
+        running.begin(InterruptionTimeline.Type.HEADSET_PLUG, 200);
+        running.ended(300);
+        running.begin(InterruptionTimeline.Type.FOCUS_LOSS, 5000);
+
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        paused.addMetrics(metrics, 10_000);
+        assertEquals(1, metrics.get("interruptions"), 0);
+        assertEquals(600, metrics.get("interrupted_ms"), 0);
+        assertEquals(1000, metrics.get("first_interruption_ms"), 0);
+        assertEquals(100, metrics.get("max_resume_ms"), 0);
+
+        // the open interruption lasts until now
+        running.addMetrics(metrics, 6000);
+        assertEquals(3, metrics.get("interruptions"), 0);
+        assertEquals(600 + 100 + 1000, metrics.get("interrupted_ms"), 0);
+        assertEquals(200, metrics.get("first_interruption_ms"), 0);
+        assertEquals(100, metrics.get("max_resume_ms"), 0);
+
+        Map<String, Double> clean = new LinkedHashMap<>();
+        new InterruptionTimeline(10).addMetrics(clean, 1000);
+        assertEquals(2, clean.size());
+        assertEquals(0, clean.get("interruptions"), 0);
+    }
+
+    @Test
+    public void begin_whileInterrupted_extendsTheOpenInterruption() {
+        InterruptionTimeline timeline = new InterruptionTimeline(10);
+
+        timeline.begin(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT, 1000);
+        timeline.begin(InterruptionTimeline.Type.HEADSET_PLUG, 1500);
+        timeline.resumed(2000);
+        timeline.begin(InterruptionTimeline.Type.BECOMING_NOISY, 3000);
+
+        assertEquals(2, timeline.size());
+        assertEquals(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT, timeline.getType(0));
+        assertEquals(2000, timeline.getReturnMs(0));
+        assertEquals(0, timeline.getRecoveryMs(0));
+        assertEquals(-1, timeline.getRecoveryMs(1));
+    }
+
+    @Test
+    public void overlaps_coversSegmentsAndOpenInterruptions() {
+        InterruptionTimeline timeline = new InterruptionTimeline(10);
+        timeline.begin(InterruptionTimeline.Type.FOCUS_LOSS_DUCK, 1000);
+        timeline.resumed(2000);
+
+        assertFalse(timeline.overlaps(0, 999));
+        assertTrue(timeline.overlaps(0, 1000));
+        assertTrue(timeline.overlaps(1500, 1600));
+        assertTrue(timeline.overlaps(2000, 3000));
+        assertFalse(timeline.overlaps(2001, 3000));
+
+        timeline.begin(InterruptionTimeline.Type.FOCUS_LOSS, 5000);
+        assertTrue(timeline.overlaps(100_000, 200_000));
+    }
+
+    @Test
+    public void capacity_countsDroppedInterruptions() {
+        InterruptionTimeline timeline = new InterruptionTimeline(1);
+
+        timeline.begin(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT, 0);
+        timeline.resumed(10);
+        timeline.begin(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT, 100);
+
+        assertEquals(1, timeline.size());
+        assertEquals(2, timeline.getTotal());
+        assertTrue(timeline.isInterrupted());
+        assertTrue(timeline.overlaps(20, 30));
+
+        timeline.resumed(200);
+        assertFalse(timeline.isInterrupted());
+        assertFalse(timeline.overlaps(20, 30));
+
+        timeline.clear();
+        assertEquals(0, timeline.getTotal());
+        assertEquals(-1, timeline.maxRecoveryMs());
+    }
+
+    @Test
+    public void writeCsv_leavesMissingTimesEmpty() throws IOException {
+        InterruptionTimeline timeline = new InterruptionTimeline(10);
+        timeline.begin(InterruptionTimeline.Type.FOCUS_LOSS_TRANSIENT, 100);
+        timeline.focusReturned(300);
+        timeline.resumed(350);
+        timeline.begin(InterruptionTimeline.Type.FOCUS_LOSS, 1000);
+
+        StringWriter writer = new StringWriter();
+        timeline.writeCsv(writer);
+
+        assertEquals("start_ms,type,return_ms,resume_ms,recovery_ms\n"
+                + "100,FOCUS_LOSS_TRANSIENT,300,350,50\n"
+                + "1000,FOCUS_LOSS,,,\n", writer.toString());
+        assertEquals("2 interruptions, resumed within 50 ms, interrupted now", timeline.summary());
+    }
+}
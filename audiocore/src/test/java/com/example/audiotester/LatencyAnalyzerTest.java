@@ -0,0 +1,91 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyAnalyzerTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    private static float[] delayed(float[] probe, int delay, int length, float gain, float noise, long seed) {
+        Random random = new Random(seed);
+        float[] signal = new float[length];
+
+        for (int i = 0; i < length; i++) {
+            signal[i] = (float) (random.nextGaussian() * noise);
+        }
+        for (int i = 0; i < probe.length && delay + i < length; i++) {
+            signal[delay + i] += gain * probe[i];
+        }
+
+        return signal;
+    }
+
+    @Test
+    public void findDelay_locatesAttenuatedNoisyProbe() {
+        float[] probe = LatencyAnalyzer.createChirp(SAMPLE_RATE, 2048, 500, 8000, 0.5f);
+        LatencyAnalyzer analyzer = new LatencyAnalyzer(probe);
+
+        int[] delays = {0, 1, 480, 3571, 9000};
+        for (int delay : delays) {
+            float[] captured = delayed(probe, delay, 12000, 0.05f, 0.005f, delay);
+
+            assertEquals(delay, analyzer.findDelay(captured, captured.length));
+            assertTrue(analyzer.getLastCorrelation() > 0.5f);
+        }
+    }
+
+    @Test
+    public void findDelay_ignoresTrailingBufferContents() {
+        float[] probe = LatencyAnalyzer.createChirp(SAMPLE_RATE, 1024, 500, 8000, 0.5f);
+        LatencyAnalyzer analyzer = new LatencyAnalyzer(probe);
+        float[] captured = delayed(probe, 5000, 8000, 1f, 0f, 1);
+
+        assertEquals(-1, analyzer.findDelay(captured, 4000));
+        assertEquals(5000, analyzer.findDelay(captured, 8000));
+    }
+
+    @Test
+    public void findDelay_rejectsNoiseOnly() {
+        float[] probe = LatencyAnalyzer.createChirp(SAMPLE_RATE, 2048, 500, 8000, 0.5f);
+        LatencyAnalyzer analyzer = new LatencyAnalyzer(probe);
+        float[] captured = delayed(probe, 0, 8000, 0f, 0.1f, 7);
+
+        assertEquals(-1, analyzer.findDelay(captured, captured.length));
+        assertEquals(-1, analyzer.findDelay(new float[8000], 8000));
+    }
+
+    @Test
+    public void findDelay_requiresCaptureLongerThanProbe() {
+        float[] probe = LatencyAnalyzer.createChirp(SAMPLE_RATE, 2048, 500, 8000, 0.5f);
+
+        assertEquals(-1, new LatencyAnalyzer(probe).findDelay(new float[100], 100));
+    }
+
+    @Test
+    public void stats_reportsMinMedianP99() {
+        double[] values = new double[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 - i;
+        }
+
+        LatencyStats stats = LatencyStats.of(values, values.length);
+
+        assertEquals(100, stats.count);
+        assertEquals(1, stats.min, 0);
+        assertEquals(50, stats.median, 0);
+        assertEquals(99, stats.p99, 0);
+        assertEquals(100, stats.max, 0);
+    }
+
+    @Test
+    public void stats_handlesEmptyInput() {
+        LatencyStats stats = LatencyStats.of(new double[4], 0);
+
+        assertEquals(0, stats.count);
+        assertTrue(Double.isNaN(stats.median));
+    }
+}
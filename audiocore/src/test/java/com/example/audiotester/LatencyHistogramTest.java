@@ -0,0 +1,136 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_stayWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long value = (long) Math.pow(10, random.nextDouble() * 12);
+            int index = histogram.indexOf(value);
+
+            long low = histogram.lowestEquivalentValue(index);
+            long high = histogram.highestEquivalentValue(index);
+            assertTrue(value + " not in [" + low + ", " + high + "]", low <= value && value <= high);
+            assertTrue("bucket of " + value + " is " + (high - low + 1) + " wide", high - low + 1 <= Math.max(1, value / 64));
+        }
+
+        // small values are exact and buckets are contiguous
+        for (int index = 0; index < 1000; index++) {
+            if (index < 128) assertEquals(index, histogram.lowestEquivalentValue(index));
+            assertEquals(histogram.highestEquivalentValue(index) + 1, histogram.lowestEquivalentValue(index + 1));
+        }
+    }
+
+    @Test
+    public void percentiles_matchUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long ms = 1; ms <= 1000; ms++) {
+            histogram.record(ms * 1_000_000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMin());
+        assertEquals(1_000_000_000, histogram.getMax());
+        assertEquals(500.5e6, histogram.getMean(), 1);
+
+        assertEquals(500e6, histogram.valueAtPercentile(50), 500e6 / 64);
+        assertEquals(990e6, histogram.valueAtPercentile(99), 990e6 / 64);
+        assertEquals(1_000_000_000, histogram.valueAtPercentile(100));
+        assertEquals(1_000_000, histogram.valueAtPercentile(0));
+    }
+
+    @Test
+    public void record_clampsOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram(1_000_000, 7);
+        histogram.record(-5);
+        histogram.record(5_000_000);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(5_000_000, histogram.getMax());
+        assertEquals(5_000_000, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.valueAtPercentile(50));
+
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.valueAtPercentile(99));
+
+        histogram.record(7);
+        assertEquals(7, histogram.getMin());
+        assertEquals(7, histogram.valueAtPercentile(50));
+    }
+
+    @Test
+    public void record_countsEveryValueFromManyThreads() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long offset = t * 1000;
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 50000; i++) histogram.record(offset + i % 1000 + 1);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(200000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(4000, histogram.getMax());
+    }
+
+    @Test
+    public void record_doesNotAllocate() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 10000; i++) histogram.record(i * 997L);
+
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 1000; i++) histogram.recordSince(System.nanoTime() - i * 12345L);
+        long allocated = bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void telemetry_tableListsRecordedOperations() throws IOException {
+        Telemetry telemetry = Telemetry.getInstance();
+        telemetry.histogram("test.idle");
+        telemetry.histogram("test.op").record(2_000_000);
+        assertSame(telemetry.histogram("test.op"), telemetry.histogram("test.op"));
+
+        StringWriter writer = new StringWriter();
+        telemetry.writeTable(writer);
+        String table = writer.toString();
+
+        assertTrue(table.startsWith("operation"));
+        assertTrue(table, table.matches("(?s).*test\\.op\\s+1\\s+2\\.000\\s+2\\.000\\s+2\\.000\\n.*"));
+        assertFalse(table.contains("test.idle"));
+
+        telemetry.reset();
+        assertEquals(0, telemetry.histogram("test.op").getCount());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LevelTraceTest {
+
+    private static final int RATE = 48000;
+
+    private static float[] tone(int length, float amplitude) {
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (float) (amplitude * Math.sin(2 * Math.PI * 1000 * i / RATE));
+        }
+        return samples;
+    }
+
+    @Test
+    public void findCrossing_locatesLevelStep() {
+        LevelTrace trace = new LevelTrace(RATE, 0.005, 10);
+        assertEquals(240, trace.getWindowFrames());
+
+        // -30 dB for 0.5 s, then -10 dB, fed in odd block sizes
+        float[] quiet = tone(24000, 0.0447f);
+        float[] loud = tone(24000, 0.447f);
+        for (int i = 0; i < quiet.length; i += 100) trace.process(quiet, i, Math.min(100, quiet.length - i));
+        for (int i = 0; i < loud.length; i += 100) trace.process(loud, i, Math.min(100, loud.length - i));
+
+        assertEquals(48000, trace.getPosition());
+        assertEquals(-30, trace.median(0, 24000), 0.5);
+        assertEquals(-10, trace.median(24000, 48000), 0.5);
+
+        assertEquals(24000, trace.findCrossing(12000, -20, true, 4));
+        assertEquals(-1, trace.findCrossing(24000, -20, false, 4));
+        assertEquals(0, trace.findCrossing(0, -20, false, 4));
+    }
+
+    @Test
+    public void findCrossing_ignoresShortExcursions() {
+        LevelTrace trace = new LevelTrace(RATE, 0.005, 10);
+        trace.process(tone(4800, 0.01f), 0, 4800);
+        // two windows loud, then quiet again, then loud for good
+        trace.process(tone(480, 0.5f), 0, 480);
+        trace.process(tone(4800, 0.01f), 0, 4800);
+        trace.process(tone(4800, 0.5f), 0, 4800);
+
+        assertEquals(10080, trace.findCrossing(0, -20, true, 4));
+        assertEquals(4800, trace.findCrossing(0, -20, true, 2));
+    }
+
+    @Test
+    public void history_isBoundedByCapacity() {
+        LevelTrace trace = new LevelTrace(RATE, 0.005, 0.1);
+        trace.process(tone(48000, 0.5f), 0, 48000);
+
+        // only the last 0.1 s is kept
+        assertEquals(-1, trace.findCrossing(0, -20, true, 1));
+        assertEquals(48000 - 2400, trace.findCrossing(48000 - 2400, -20, true, 1));
+        assertTrue(Double.isNaN(trace.median(0, 24000)));
+        assertEquals(-9, trace.median(0, 48000), 0.5);
+
+        trace.reset();
+        assertEquals(0, trace.getPosition());
+        assertEquals(-1, trace.findCrossing(0, -20, true, 1));
+    }
+}
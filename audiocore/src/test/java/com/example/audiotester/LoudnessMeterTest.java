@@ -0,0 +1,112 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class LoudnessMeterTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    private static float[] sine(double frequency, double amplitude, double phase, double seconds) {
+        float[] samples = new float[(int) (SAMPLE_RATE * seconds)];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (float) (amplitude * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE + phase));
+        }
+        return samples;
+    }
+
+    private static LoudnessMeter meter(float[] samples) {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE);
+        // odd block size so 100 ms blocks straddle process() calls
+        for (int offset = 0; offset < samples.length; offset += 333) {
+            meter.process(samples, offset, Math.min(333, samples.length - offset));
+        }
+        return meter;
+    }
+
+    @Test
+    public void fullScaleSine_readsMinus3Lufs() {
+        // BS.1770 reference: 0 dBFS 1 kHz sine on one channel is -3.01 LKFS
+        LoudnessMeter meter = meter(sine(1000, 1.0, 0, 5));
+
+        assertEquals(-3.01, meter.getMomentaryLufs(), 0.05);
+        assertEquals(-3.01, meter.getShortTermLufs(), 0.05);
+        assertEquals(-3.01, meter.getIntegratedLufs(), 0.1);
+        assertEquals(-3.01, meter.getRmsDb(), 0.01);
+        assertEquals(0, meter.getPeakDb(), 0.01);
+        assertEquals(3.01, meter.getCrestFactorDb(), 0.02);
+    }
+
+    @Test
+    public void loudness_tracksLevel() {
+        LoudnessMeter meter = meter(sine(1000, 0.1, 0, 5));
+
+        assertEquals(-23.01, meter.getMomentaryLufs(), 0.05);
+        assertEquals(-20, meter.getPeakDb(), 0.01);
+    }
+
+    @Test
+    public void kWeighting_attenuatesLowsAndBoostsHighs() {
+        double reference = meter(sine(1000, 1.0, 0, 2)).getMomentaryLufs();
+        double low = meter(sine(100, 1.0, 0, 2)).getMomentaryLufs();
+        double high = meter(sine(10000, 1.0, 0, 2)).getMomentaryLufs();
+
+        // BS.1770 filter response relative to 1 kHz
+        assertEquals(-1.83, low - reference, 0.1);
+        assertEquals(3.34, high - reference, 0.1);
+    }
+
+    @Test
+    public void truePeak_findsInterSamplePeak() {
+        // fs/4 sine at 45 degrees: every sample is +-0.707 but the waveform peaks at 1.0
+        LoudnessMeter meter = meter(sine(SAMPLE_RATE / 4.0, 1.0, Math.PI / 4, 1));
+
+        assertEquals(-3.01, meter.getPeakDb(), 0.01);
+        assertEquals(0, meter.getTruePeakDb(), 0.5);
+        assertTrue(meter.getMaxTruePeakDb() >= meter.getTruePeakDb());
+    }
+
+    @Test
+    public void momentary_reactsWithin400ms_shortTermLags() {
+        float[] samples = new float[SAMPLE_RATE * 4];
+        float[] loud = sine(1000, 1.0, 0, 0.5);
+        System.arraycopy(sine(1000, 0.01, 0, 3.5), 0, samples, 0, SAMPLE_RATE * 7 / 2);
+        System.arraycopy(loud, 0, samples, SAMPLE_RATE * 7 / 2, loud.length);
+
+        LoudnessMeter meter = meter(samples);
+
+        assertEquals(-3.01, meter.getMomentaryLufs(), 0.1);
+        assertTrue(meter.getShortTermLufs() < -10);
+    }
+
+    @Test
+    public void integrated_gatesSilence() {
+        float[] samples = new float[SAMPLE_RATE * 6];
+        System.arraycopy(sine(1000, 0.1, 0, 3), 0, samples, 0, SAMPLE_RATE * 3);
+
+        LoudnessMeter meter = meter(samples);
+
+        assertEquals(LoudnessMeter.MIN_LUFS, meter.getMomentaryLufs(), 0);
+        // silence is gated out, only the windows straddling the edge pull the result down
+        assertEquals(-23.01, meter.getIntegratedLufs(), 0.3);
+    }
+
+    @Test
+    public void process_doesNotAllocate() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE);
+        float[] block = sine(997, 0.5, 0, 0.01);
+        for (int i = 0; i < 200; i++) meter.process(block, 0, block.length);
+
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 1000; i++) meter.process(block, 0, block.length);
+        long allocated = bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class NlmsFilterTest {
+
+    private static float[] noise(int length, float amplitude, long seed) {
+        float[] samples = new float[length];
+        SignalGenerator.whiteNoise(16000, amplitude, seed).fill(samples, 0, length);
+        return samples;
+    }
+
+    private static float[] filter(float[] signal, float[] path) {
+        float[] out = new float[signal.length];
+        for (int i = 0; i < signal.length; i++) {
+            float sum = 0;
+            for (int k = 0; k < path.length && k <= i; k++) {
+                sum += path[k] * signal[i - k];
+            }
+            out[i] = sum;
+        }
+        return out;
+    }
+
+    @Test
+    public void converges_toEchoPath() {
+        float[] path = {0.4f, 0.2f, -0.1f, 0.05f, 0, 0, -0.02f};
+        float[] reference = noise(32000, 0.1f, 1);
+        float[] microphone = filter(reference, path);
+
+        NlmsFilter filter = new NlmsFilter(16);
+        float[] residual = new float[reference.length];
+        filter.process(reference, microphone, residual, 0, reference.length);
+
+        float[] weights = filter.getWeights();
+        for (int k = 0; k < 16; k++) {
+            assertEquals("tap " + k, k < path.length ? path[k] : 0, weights[k], 1e-3);
+        }
+        assertEquals(0, residual[reference.length - 1], 1e-4);
+    }
+
+    @Test
+    public void leavesUncorrelatedSignal() {
+        float[] reference = noise(32000, 0.1f, 1);
+        float[] nearEnd = noise(32000, 0.1f, 2);
+
+        NlmsFilter filter = new NlmsFilter(32, 0.1f);
+        float[] residual = new float[reference.length];
+        filter.process(reference, nearEnd, residual, 0, reference.length);
+
+        // near-end speech must pass through nearly untouched
+        double in = 0;
+        double out = 0;
+        for (int i = reference.length / 2; i < reference.length; i++) {
+            in += nearEnd[i] * nearEnd[i];
+            out += residual[i] * residual[i];
+        }
+        assertEquals(0, 10 * Math.log10(out / in), 0.5);
+    }
+
+    @Test
+    public void reset_clearsState() {
+        float[] reference = noise(4000, 0.1f, 1);
+        NlmsFilter filter = new NlmsFilter(8);
+        filter.process(reference, reference, new float[reference.length], 0, reference.length);
+        assertNotEquals(0, filter.getWeights()[0], 0);
+
+        filter.reset();
+        for (float weight : filter.getWeights()) {
+            assertEquals(0, weight, 0);
+        }
+        assertEquals(0.5f, filter.process(0.5f, 0.5f), 0);
+    }
+
+    @Test
+    public void process_doesNotAllocate() {
+        NlmsFilter filter = new NlmsFilter(256);
+        float[] reference = noise(480, 0.1f, 1);
+        float[] residual = new float[reference.length];
+        for (int i = 0; i < 200; i++) filter.process(reference, reference, residual, 0, reference.length);
+
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 1000; i++) filter.process(reference, reference, residual, 0, reference.length);
+        long allocated = bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PcmRingBufferTest {
+
+    @Test
+    public void capacity_isRoundedUpToPowerOfTwo() {
+        assertEquals(1024, new PcmRingBuffer(1000).capacity());
+        assertEquals(1024, new PcmRingBuffer(1024).capacity());
+        assertEquals(1, new PcmRingBuffer(1).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacity_mustBePositive() {
+        new PcmRingBuffer(0);
+    }
+
+    @Test
+    public void write_stopsWhenFull() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        float[] data = new float[12];
+
+        assertEquals(8, buffer.write(data, 0, data.length));
+        assertEquals(0, buffer.write(data, 0, 1));
+        assertEquals(8, buffer.availableToRead());
+        assertEquals(0, buffer.availableToWrite());
+    }
+
+    @Test
+    public void read_wrapsAroundEnd() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        float[] out = new float[8];
+
+        buffer.write(new float[]{1, 2, 3, 4, 5, 6}, 0, 6);
+        assertEquals(6, buffer.read(out, 0, 6));
+
+        buffer.write(new float[]{7, 8, 9, 10, 11}, 0, 5);
+        assertEquals(5, buffer.read(out, 0, 8));
+        assertArrayEquals(new float[]{7, 8, 9, 10, 11}, java.util.Arrays.copyOf(out, 5), 0f);
+        assertEquals(0, buffer.read(out, 0, 1));
+    }
+
+    @Test
+    public void write_convertsShortsToUnitRange() {
+        PcmRingBuffer buffer = new PcmRingBuffer(4);
+        float[] out = new float[3];
+
+        buffer.write(new short[]{Short.MIN_VALUE, 0, 16384}, 0, 3);
+        buffer.read(out, 0, 3);
+
+        assertArrayEquals(new float[]{-1f, 0f, 0.5f}, out, 0f);
+    }
+
+    @Test
+    public void skip_dropsSamples() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        float[] out = new float[1];
+
+        buffer.write(new float[]{1, 2, 3}, 0, 3);
+        assertEquals(2, buffer.skip(2));
+        buffer.read(out, 0, 1);
+
+        assertEquals(3f, out[0], 0f);
+        assertEquals(0, buffer.skip(5));
+    }
+
+    @Test
+    public void concurrentProducerConsumer_preservesOrder() throws InterruptedException {
+        final int total = 2_000_000;
+        final PcmRingBuffer buffer = new PcmRingBuffer(1024);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread producer = new Thread(() -> {
+            Random random = new Random(1);
+            float[] block = new float[256];
+            int next = 0;
+
+            while (next < total) {
+                int length = Math.min(1 + random.nextInt(block.length), total - next);
+                for (int i = 0; i < length; i++) {
+                    block[i] = next + i;
+                }
+
+                int offset = 0;
+                while (offset < length) {
+                    int written = buffer.write(block, offset, length - offset);
+                    if (written == 0) Thread.yield();
+                    offset += written;
+                }
+                next += length;
+            }
+        });
+
+        Thread consumer = new Thread(() -> {
+            Random random = new Random(2);
+            float[] block = new float[300];
+            int expected = 0;
+
+            while (expected < total) {
+                int read = buffer.read(block, 0, 1 + random.nextInt(block.length));
+                if (read == 0) Thread.yield();
+                for (int i = 0; i < read; i++) {
+                    if (block[i] != expected) {
+                        failure.compareAndSet(null, "expected " + expected + " but was " + block[i]);
+                        return;
+                    }
+                    expected++;
+                }
+            }
+        });
+
+        producer.start();
+        consumer.start();
+        producer.join(30_000);
+        consumer.join(30_000);
+
+        assertNull(failure.get());
+        assertFalse(producer.isAlive() || consumer.isAlive());
+        assertEquals(0, buffer.availableToRead());
+    }
+}
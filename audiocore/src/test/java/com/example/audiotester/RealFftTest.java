@@ -0,0 +1,83 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RealFftTest {
+
+    private static float[] randomSignal(int size, long seed) {
+        Random random = new Random(seed);
+        float[] signal = new float[size];
+        for (int i = 0; i < size; i++) {
+            signal[i] = random.nextFloat() * 2 - 1;
+        }
+        return signal;
+    }
+
+    @Test
+    public void forward_matchesDirectDft() {
+        for (int size : new int[]{4, 8, 64, 512}) {
+            float[] signal = randomSignal(size, size);
+            float[] data = signal.clone();
+
+            new RealFft(size).forward(data);
+
+            for (int k = 0; k <= size / 2; k++) {
+                double re = 0;
+                double im = 0;
+                for (int n = 0; n < size; n++) {
+                    re += signal[n] * Math.cos(2 * Math.PI * k * n / size);
+                    im -= signal[n] * Math.sin(2 * Math.PI * k * n / size);
+                }
+
+                if (k == 0) {
+                    assertEquals(re, data[0], 1e-3);
+                } else if (k == size / 2) {
+                    assertEquals(re, data[1], 1e-3);
+                } else {
+                    assertEquals("re " + k + " of " + size, re, data[2 * k], 1e-3);
+                    assertEquals("im " + k + " of " + size, im, data[2 * k + 1], 1e-3);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void inverse_restoresSignal() {
+        int size = 4096;
+        float[] signal = randomSignal(size, 3);
+        float[] data = signal.clone();
+        RealFft fft = new RealFft(size);
+
+        fft.forward(data);
+        fft.inverse(data);
+
+        assertArrayEquals(signal, data, 1e-4f);
+    }
+
+    @Test
+    public void magnitudes_peakAtSineBin() {
+        int size = 1024;
+        float[] data = new float[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (float) Math.sin(2 * Math.PI * 37 * i / size);
+        }
+
+        RealFft fft = new RealFft(size);
+        float[] magnitudes = new float[size / 2 + 1];
+        fft.forward(data);
+        fft.magnitudes(data, magnitudes);
+
+        assertEquals(size / 2f, magnitudes[37], 1e-2f);
+        assertEquals(0f, magnitudes[36], 1e-2f);
+        assertEquals(0f, magnitudes[0], 1e-2f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPowerOfTwo() {
+        new RealFft(1000);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class ResamplerTest {
+
+    private static float[] sine(int sampleRate, double frequency, int length) {
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (float) (0.5 * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+        }
+        return samples;
+    }
+
+    private static float[] resample(Resampler resampler, float[] input) {
+        float[] output = new float[resampler.maxOutputLength(input.length)];
+        int written = resampler.process(input, 0, input.length, output, 0);
+        float[] trimmed = new float[written];
+        System.arraycopy(output, 0, trimmed, 0, written);
+        return trimmed;
+    }
+
+    // output level relative to the input in dB, over one second after the filter has settled
+    private static double gainDb(int inputRate, int outputRate, double frequency) {
+        Resampler resampler = new Resampler(inputRate, outputRate);
+        float[] output = resample(resampler, sine(inputRate, frequency, inputRate * 3));
+
+        double power = 0;
+        for (int i = outputRate; i < 2 * outputRate; i++) {
+            power += output[i] * output[i];
+        }
+        return 10 * Math.log10(power / outputRate / 0.125);
+    }
+
+    @Test
+    public void downsampling_passbandIsFlat() {
+        // passband ends at 0.8 x 8 kHz
+        for (double frequency : new double[]{100, 1000, 3000, 6000, 6400}) {
+            assertEquals(frequency + " Hz", 0, gainDb(48000, 16000, frequency), 0.01);
+        }
+    }
+
+    @Test
+    public void downsampling_rejectsAliases() {
+        for (double frequency : new double[]{8000, 8500, 12000, 20000}) {
+            double gain = gainDb(48000, 16000, frequency);
+            assertTrue(frequency + " Hz aliased at " + gain + " dB", gain < -Resampler.STOPBAND_DB + 5);
+        }
+    }
+
+    @Test
+    public void upsampling_passbandIsFlat() {
+        for (double frequency : new double[]{100, 1000, 3200}) {
+            assertEquals(frequency + " Hz", 0, gainDb(8000, 48000, frequency), 0.01);
+        }
+    }
+
+    @Test
+    public void conversion_matchesIdealSine() {
+        // 44.1 -> 48 kHz has 160 phases; the output must be the same tone at the new rate
+        Resampler resampler = new Resampler(44100, 48000);
+        float[] output = resample(resampler, sine(44100, 997, 44100));
+        double delay = resampler.getDelayFrames();
+
+        double error = 0;
+        double signal = 0;
+        for (int i = 4800; i < 43000; i++) {
+            double expected = 0.5 * Math.sin(2 * Math.PI * 997 * (i - delay) / 48000);
+            error += (output[i] - expected) * (output[i] - expected);
+            signal += expected * expected;
+        }
+        double errorDb = 10 * Math.log10(error / signal);
+        assertTrue("error " + errorDb + " dB", errorDb < -80);
+    }
+
+    @Test
+    public void upsampling_suppressesImages() {
+        Resampler resampler = new Resampler(8000, 48000);
+        float[] output = resample(resampler, sine(8000, 1000, 8000));
+        double delay = resampler.getDelayFrames();
+
+        double error = 0;
+        double signal = 0;
+        for (int i = 4800; i < 43000; i++) {
+            double expected = 0.5 * Math.sin(2 * Math.PI * 1000 * (i - delay) / 48000);
+            error += (output[i] - expected) * (output[i] - expected);
+            signal += expected * expected;
+        }
+        double errorDb = 10 * Math.log10(error / signal);
+        assertTrue("images at " + errorDb + " dB", errorDb < -80);
+    }
+
+    @Test
+    public void streaming_matchesSingleBlock() {
+        float[] input = sine(44100, 1234, 10000);
+        float[] whole = resample(new Resampler(44100, 48000), input);
+
+        Resampler resampler = new Resampler(44100, 48000);
+        float[] output = new float[whole.length];
+        int written = 0;
+        float[] block = new float[resampler.maxOutputLength(333)];
+        for (int offset = 0; offset < input.length; offset += 333) {
+            int count = resampler.process(input, offset, Math.min(333, input.length - offset), block, 0);
+            System.arraycopy(block, 0, output, written, count);
+            written += count;
+        }
+
+        assertEquals(whole.length, written);
+        assertArrayEquals(whole, output, 0f);
+    }
+
+    @Test
+    public void outputLength_followsRatio() {
+        Resampler resampler = new Resampler(44100, 48000);
+        assertEquals(48000, resample(resampler, new float[44100]).length);
+
+        for (int length = 1; length < 500; length += 7) {
+            resampler.reset();
+            int written = resample(resampler, new float[length]).length;
+            assertTrue(written <= resampler.maxOutputLength(length));
+            assertEquals((double) length * 48000 / 44100, written, 1);
+        }
+    }
+
+    @Test
+    public void sameRate_passesThroughDelayed() {
+        Resampler resampler = new Resampler(16000, 16000);
+        float[] output = resample(resampler, sine(16000, 440, 4000));
+        double delay = resampler.getDelayFrames();
+
+        // an even number of taps delays by a fractional frame
+        assertEquals(4000, output.length);
+        assertEquals(resampler.getTaps() / 2.0 - 0.5, delay, 1e-9);
+        for (int i = 1000; i < 3000; i++) {
+            assertEquals(0.5 * Math.sin(2 * Math.PI * 440 * (i - delay) / 16000), output[i], 1e-4);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unreducibleRatio_isRejected() {
+        new Resampler(48000, 44099);
+    }
+
+    @Test
+    public void process_doesNotAllocate() {
+        Resampler resampler = new Resampler(44100, 48000);
+        float[] input = sine(44100, 1000, 441);
+        float[] output = new float[resampler.maxOutputLength(input.length)];
+        for (int i = 0; i < 200; i++) resampler.process(input, 0, input.length, output, 0);
+
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 1000; i++) resampler.process(input, 0, input.length, output, 0);
+        long allocated = bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
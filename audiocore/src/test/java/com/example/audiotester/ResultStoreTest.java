@@ -0,0 +1,320 @@
+package com.example.audiotester;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ResultStoreTest {
+
+    private static final ResultKey SPEAKER = new ResultKey("Pixel 5", "speaker", "normal", "");
+    private static final ResultKey HANDSET = new ResultKey("Pixel 5", "receiver", "in call", "mic");
+
+    // compactions run when flushed, so tests control when they happen
+    private final List<Runnable> mPending = new ArrayList<>();
+    private final Executor mExecutor = mPending::add;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static TestResult result(ResultKey key, long timestampMs, double median) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        metrics.put("median_ms", median);
+        metrics.put("count", 10.0);
+        return new TestResult(timestampMs, "latency", key, metrics);
+    }
+
+    private ResultStore open(File directory, int compactThreshold) throws IOException {
+        return new ResultStore(directory, mExecutor, compactThreshold);
+    }
+
+    private void runPending() {
+        List<Runnable> tasks = new ArrayList<>(mPending);
+        mPending.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    public void append_assignsIdsAndPersists() throws IOException {
+        File directory = folder.newFolder();
+
+        try (ResultStore store = open(directory, 0)) {
+            assertEquals(1, store.append(result(SPEAKER, 1000, 12.5)).id);
+            assertEquals(2, store.append(result(HANDSET, 2000, 30)).id);
+        }
+
+        try (ResultStore store = open(directory, 0)) {
+            assertEquals(2, store.size());
+            TestResult first = store.get(1);
+            assertEquals(SPEAKER, first.key);
+            assertEquals("latency", first.test);
+            assertEquals(12.5, first.getMetric("median_ms"), 0);
+            assertTrue(Double.isNaN(first.getMetric("missing")));
+
+            // ids continue after reopening
+            assertEquals(3, store.append(result(SPEAKER, 3000, 11)).id);
+        }
+    }
+
+    @Test
+    public void history_isIndexedByKeyAndTime() throws IOException {
+        try (ResultStore store = open(folder.newFolder(), 0)) {
+            // appended out of time order
+            for (long t : new long[]{5000, 1000, 3000, 4000, 2000}) {
+                store.append(result(SPEAKER, t, t / 1000.0));
+                store.append(result(HANDSET, t, 0));
+            }
+
+            List<TestResult> history = store.history(SPEAKER);
+            assertEquals(5, history.size());
+            for (int i = 0; i < history.size(); i++) {
+                assertEquals((i + 1) * 1000, history.get(i).timestampMs);
+            }
+
+            List<TestResult> range = store.history(SPEAKER, 2000, 4000);
+            assertEquals(2, range.size());
+            assertEquals(2.0, range.get(0).getMetric("median_ms"), 0);
+            assertEquals(3.0, range.get(1).getMetric("median_ms"), 0);
+
+            assertTrue(store.history(new ResultKey("other", "", "", "")).isEmpty());
+            assertEquals(2, store.keys().size());
+        }
+    }
+
+    @Test
+    public void delete_isLoggedAndReplayed() throws IOException {
+        File directory = folder.newFolder();
+
+        try (ResultStore store = open(directory, 0)) {
+            store.append(result(SPEAKER, 1000, 1));
+            store.append(result(SPEAKER, 2000, 2));
+            assertTrue(store.delete(1));
+            assertFalse(store.delete(1));
+        }
+
+        try (ResultStore store = open(directory, 0)) {
+            assertEquals(1, store.size());
+            assertNull(store.get(1));
+            assertEquals(1, store.history(SPEAKER).size());
+        }
+    }
+
+    @Test
+    public void compaction_runsInBackgroundAndTruncatesLog() throws IOException {
+        File directory = folder.newFolder();
+
+        try (ResultStore store = open(directory, 4)) {
+            for (int i = 0; i < 3; i++) store.append(result(SPEAKER, i, i));
+            assertTrue(mPending.isEmpty());
+
+            store.append(result(SPEAKER, 3, 3));
+            store.delete(2);
+            assertEquals(1, mPending.size());
+
+            runPending();
+            assertEquals(0, store.getLogRecordCount());
+            assertEquals(0, new File(directory, ResultStore.LOG_FILE).length());
+            assertTrue(new File(directory, ResultStore.SNAPSHOT_FILE).exists());
+
+            store.append(result(HANDSET, 10, 10));
+        }
+
+        try (ResultStore store = open(directory, 4)) {
+            assertEquals(4, store.size());
+            assertNull(store.get(2));
+            assertEquals(6, store.append(result(SPEAKER, 20, 20)).id);
+        }
+    }
+
+    @Test
+    public void appendsDuringCompaction_areKeptInTheLog() throws Exception {
+        File directory = folder.newFolder();
+
+        try (ResultStore store = open(directory, 0)) {
+            store.append(result(SPEAKER, 1000, 1));
+            store.append(result(SPEAKER, 2000, 2));
+
+            // on another thread, so it would block if the snapshot were written under the lock
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            store.compact(() -> {
+                Thread writer = new Thread(() -> {
+                    try {
+                        store.append(result(HANDSET, 3000, 3));
+                        store.delete(1);
+                    } catch (IOException e) {
+                        failure.set(e);
+                    }
+                });
+                writer.start();
+                try {
+                    writer.join(10_000);
+                } catch (InterruptedException e) {
+                    failure.set(e);
+                }
+                assertFalse(writer.isAlive());
+            });
+
+            assertNull(failure.get());
+            assertEquals(2, store.getLogRecordCount());
+        }
+
+        try (ResultStore store = open(directory, 0)) {
+            assertEquals(2, store.size());
+            assertNull(store.get(1));
+            assertEquals(3.0, store.history(HANDSET).get(0).getMetric("median_ms"), 0);
+        }
+    }
+
+    @Test
+    public void replayingLogOverSnapshot_isHarmless() throws IOException {
+        File directory = folder.newFolder();
+        File log = new File(directory, ResultStore.LOG_FILE);
+        byte[] logBeforeCompaction;
+
+        try (ResultStore store = open(directory, 0)) {
+            store.append(result(SPEAKER, 1000, 1));
+            store.append(result(SPEAKER, 2000, 2));
+            store.delete(1);
+            logBeforeCompaction = Files.readAllBytes(log.toPath());
+            store.compact();
+        }
+
+        // as if the process died between writing the snapshot and truncating the log
+        Files.write(log.toPath(), logBeforeCompaction);
+
+        try (ResultStore store = open(directory, 0)) {
+            assertEquals(1, store.size());
+            assertEquals(2, store.history(SPEAKER).get(0).id);
+            assertEquals(1, store.history(SPEAKER).size());
+        }
+    }
+
+    @Test
+    public void tornLogRecord_isDropped() throws IOException {
+        File directory = folder.newFolder();
+        File log = new File(directory, ResultStore.LOG_FILE);
+
+        try (ResultStore store = open(directory, 0)) {
+            store.append(result(SPEAKER, 1000, 1));
+            store.append(result(SPEAKER, 2000, 2));
+        }
+
+        long intact = log.length();
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(intact - 5);
+        }
+
+        try (ResultStore store = open(directory, 0)) {
+            assertEquals(1, store.size());
+            assertEquals(2, store.append(result(SPEAKER, 3000, 3)).id);
+        }
+
+        try (ResultStore store = open(directory, 0)) {
+            assertEquals(2, store.size());
+            assertEquals(3.0, store.history(SPEAKER).get(1).getMetric("median_ms"), 0);
+        }
+    }
+
+    @Test
+    public void corruptLogRecord_isDropped() throws IOException {
+        File directory = folder.newFolder();
+        File log = new File(directory, ResultStore.LOG_FILE);
+
+        try (ResultStore store = open(directory, 0)) {
+            store.append(result(SPEAKER, 1000, 1));
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        try (ResultStore store = open(directory, 0)) {
+            assertEquals(0, store.size());
+            assertEquals(0, log.length());
+        }
+    }
+
+    @Test
+    public void loadingThousandsOfSessions_keepsEveryResult() throws IOException {
+        File directory = folder.newFolder();
+        ResultKey[] keys = new ResultKey[20];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new ResultKey("device " + i % 4, "route " + i % 5, "normal", "");
+        }
+
+        try (ResultStore store = open(directory, 0)) {
+            for (int i = 0; i < 5000; i++) {
+                store.append(result(keys[i % keys.length], i * 1000L, i));
+            }
+            store.compact();
+        }
+
+        try (ResultStore store = open(directory, 0)) {
+            assertEquals(5000, store.size());
+            for (ResultKey key : keys) {
+                assertEquals(250, store.history(key).size());
+                assertEquals(10, store.history(key, 1_000_000, 1_200_000).size());
+            }
+        }
+    }
+
+    @Test
+    public void exportCsv_hasOneRowPerMetric() throws IOException {
+        try (ResultStore store = open(folder.newFolder(), 0)) {
+            store.append(result(new ResultKey("Pixel, 5", "speaker", "normal", ""), 1000, 12.5));
+
+            StringWriter writer = new StringWriter();
+            store.exportCsv(writer);
+            assertEquals(ResultExporter.CSV_HEADER
+                    + "1,1000,latency,\"Pixel, 5\",speaker,normal,,median_ms,12.5\n"
+                    + "1,1000,latency,\"Pixel, 5\",speaker,normal,,count,10\n", writer.toString());
+        }
+    }
+
+    @Test
+    public void exportJson_nestsMetrics() throws IOException {
+        try (ResultStore store = open(folder.newFolder(), 0)) {
+            StringWriter empty = new StringWriter();
+            store.exportJson(empty);
+            assertEquals("[]\n", empty.toString());
+
+            Map<String, Double> metrics = new LinkedHashMap<>();
+            metrics.put("snr_db", Double.NaN);
+            metrics.put("rms_db", -20.25);
+            store.append(new TestResult(5, "sweep", new ResultKey("A \"B\"", "r", "m", "s"), metrics));
+            store.append(result(SPEAKER, 6, 1));
+
+            StringWriter writer = new StringWriter();
+            store.exportJson(writer);
+            assertEquals("[\n"
+                    + "{\"id\":1,\"timestamp_ms\":5,\"test\":\"sweep\",\"device\":\"A \\\"B\\\"\",\"route\":\"r\","
+                    + "\"mode\":\"m\",\"source\":\"s\",\"metrics\":{\"snr_db\":null,\"rms_db\":-20.25}},\n"
+                    + "{\"id\":2,\"timestamp_ms\":6,\"test\":\"latency\",\"device\":\"Pixel 5\",\"route\":\"speaker\","
+                    + "\"mode\":\"normal\",\"source\":\"\",\"metrics\":{\"median_ms\":1,\"count\":10}}\n"
+                    + "]\n", writer.toString());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void closedStore_rejectsAppends() throws IOException {
+        ResultStore store = open(folder.newFolder(), 0);
+        store.close();
+        store.append(result(SPEAKER, 1, 1));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RouteSwitchStatsTest {
+
+    private static final String[] STATES = {"normal / handset", "normal / speaker"};
+
+    @Test
+    public void stats_separateOutcomesAndTransitions() throws IOException {
+        RouteSwitchStats stats = new RouteSwitchStats(STATES, 10);
+        stats.add(0, 1, RouteSwitchStats.Outcome.SWITCHED, 20, 120);
+        stats.add(1, 0, RouteSwitchStats.Outcome.SWITCHED, 30, 400);
+        stats.add(0, 1, RouteSwitchStats.Outcome.SWITCHED, 25, 140);
+        stats.add(1, 0, RouteSwitchStats.Outcome.ACOUSTIC_TIMEOUT, 35, Double.NaN);
+        stats.add(0, 1, RouteSwitchStats.Outcome.ROUTE_TIMEOUT, Double.NaN, Double.NaN);
+        stats.add(1, 0, RouteSwitchStats.Outcome.UNCHANGED, Double.NaN, Double.NaN);
+
+        assertEquals(6, stats.getTotal());
+        assertEquals(2, stats.getFailures());
+        assertEquals(4, stats.routeLatency().count);
+        assertEquals(35, stats.routeLatency().max, 0);
+        assertEquals(3, stats.acousticLatency().count);
+        assertEquals(2, stats.acousticLatency(0, 1).count);
+        assertEquals(140, stats.acousticLatency(0, 1).max, 0);
+        assertEquals(400, stats.acousticLatency(1, 0).median, 0);
+
+        Map<String, Double> metrics = stats.toMetrics();
+        assertEquals(6, metrics.get("switches"), 0);
+        assertEquals(2, metrics.get("failures"), 0);
+        assertEquals(1, metrics.get("route_timeout"), 0);
+        assertEquals(0, metrics.get("wrong_route"), 0);
+        assertEquals(400, metrics.get("acoustic_max_ms"), 0);
+
+        String summary = stats.summary();
+        assertTrue(summary, summary.startsWith("6 switches, 2 failed, 1 unchanged, 1 route_timeout, 1 acoustic_timeout"));
+        assertTrue(summary, summary.contains("normal / handset -> normal / speaker: n = 2"));
+
+        StringWriter writer = new StringWriter();
+        stats.writeCsv(writer);
+        String[] lines = writer.toString().split("\n");
+        assertEquals(7, lines.length);
+        assertEquals("3,\"normal / speaker\",\"normal / handset\",ACOUSTIC_TIMEOUT,35.0,", lines[4]);
+    }
+
+    @Test
+    public void add_countsPastCapacity() {
+        RouteSwitchStats stats = new RouteSwitchStats(STATES, 1);
+        stats.add(0, 1, RouteSwitchStats.Outcome.SWITCHED, 10, 10);
+        stats.add(1, 0, RouteSwitchStats.Outcome.WRONG_ROUTE, Double.NaN, Double.NaN);
+
+        assertEquals(1, stats.size());
+        assertEquals(2, stats.getTotal());
+        assertEquals(1, stats.getFailures());
+
+        stats.clear();
+        assertEquals(0, stats.getTotal());
+        assertEquals(0, stats.routeLatency().count);
+        assertFalse(stats.toMetrics().containsKey("route_median_ms"));
+    }
+}
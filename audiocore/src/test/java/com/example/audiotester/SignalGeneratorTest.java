@@ -0,0 +1,174 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class SignalGeneratorTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    private static float[] render(SignalGenerator generator, int length, int blockSize) {
+        float[] signal = new float[length];
+        for (int offset = 0; offset < length; offset += blockSize) {
+            generator.fill(signal, offset, Math.min(blockSize, length - offset));
+        }
+        return signal;
+    }
+
+    private static int zeroCrossings(float[] signal, int from, int to) {
+        int crossings = 0;
+        for (int i = from + 1; i < to; i++) {
+            if ((signal[i - 1] < 0) != (signal[i] < 0)) crossings++;
+        }
+        return crossings;
+    }
+
+    private static double bandPower(float[] signal, int fftSize, double lowHz, double highHz) {
+        RealFft fft = new RealFft(fftSize);
+        float[] frame = new float[fftSize];
+        float[] magnitudes = new float[fftSize / 2 + 1];
+        double power = 0;
+
+        for (int offset = 0; offset + fftSize <= signal.length; offset += fftSize) {
+            System.arraycopy(signal, offset, frame, 0, fftSize);
+            fft.forward(frame);
+            fft.magnitudes(frame, magnitudes);
+
+            for (int k = 0; k < magnitudes.length; k++) {
+                double frequency = (double) k * SAMPLE_RATE / fftSize;
+                if (frequency >= lowHz && frequency < highHz) power += magnitudes[k] * magnitudes[k];
+            }
+        }
+
+        return power;
+    }
+
+    @Test
+    public void sine_hasRequestedFrequencyAndLevel() {
+        float[] signal = render(SignalGenerator.sine(SAMPLE_RATE, 997, 0.5f), SAMPLE_RATE * 10, 192);
+
+        // a 997 Hz sine crosses zero 19940 times in 10 s
+        assertEquals(19940, zeroCrossings(signal, 0, signal.length), 2);
+
+        LevelStats stats = LevelStats.analyze(signal, signal.length, SAMPLE_RATE);
+        assertEquals(-6.02, stats.peakDb, 0.01);
+        assertEquals(-9.03, stats.rmsDb, 0.01);
+    }
+
+    @Test
+    public void fill_isContinuousAcrossBlocks() {
+        float[] whole = render(SignalGenerator.sine(SAMPLE_RATE, 1234.5, 0.5f), 10000, 10000);
+        float[] blocks = render(SignalGenerator.sine(SAMPLE_RATE, 1234.5, 0.5f), 10000, 97);
+
+        assertArrayEquals(whole, blocks, 1e-6f);
+
+        float[] noise = render(SignalGenerator.pinkNoise(SAMPLE_RATE, 0.5f, 42), 10000, 10000);
+        float[] noiseBlocks = render(SignalGenerator.pinkNoise(SAMPLE_RATE, 0.5f, 42), 10000, 33);
+
+        assertArrayEquals(noise, noiseBlocks, 0f);
+    }
+
+    @Test
+    public void multiTone_hasEnergyOnlyAtItsTones() {
+        double[] tones = {375, 1500, 6000};
+        float[] signal = render(SignalGenerator.multiTone(SAMPLE_RATE, tones, 0.9f), 8192, 256);
+
+        for (float sample : signal) {
+            assertTrue(Math.abs(sample) <= 0.9f);
+        }
+
+        double total = bandPower(signal, 8192, 0, SAMPLE_RATE / 2.0);
+        for (double tone : tones) {
+            assertEquals(1.0 / 3, bandPower(signal, 8192, tone - 20, tone + 20) / total, 0.01);
+        }
+    }
+
+    @Test
+    public void logSweep_coversItsRangeAndRestarts() {
+        SignalGenerator generator = SignalGenerator.logSweep(SAMPLE_RATE, 100, 10000, 1, 0.5f);
+        float[] signal = render(generator, SAMPLE_RATE * 2, 480);
+
+        // instantaneous frequency over the first and last 10 ms of each pass
+        int window = SAMPLE_RATE / 100;
+        double start = zeroCrossings(signal, 0, window) * 50.0;
+        double end = zeroCrossings(signal, SAMPLE_RATE - window, SAMPLE_RATE) * 50.0;
+
+        assertEquals(100, start, 60);
+        assertEquals(9500, end, 600);
+        assertArrayEquals(
+                Arrays.copyOfRange(signal, 0, window),
+                Arrays.copyOfRange(signal, SAMPLE_RATE, SAMPLE_RATE + window), 1e-3f);
+    }
+
+    @Test
+    public void whiteNoise_hasUniformLevelAndFlatSpectrum() {
+        float[] signal = render(SignalGenerator.whiteNoise(SAMPLE_RATE, 0.5f, 7), SAMPLE_RATE * 4, 1024);
+
+        // uniform noise in [-a, a) has an rms of a / sqrt(3)
+        LevelStats stats = LevelStats.analyze(signal, signal.length, SAMPLE_RATE);
+        assertEquals(LevelStats.amplitudeToDb(0.5 / Math.sqrt(3)), stats.rmsDb, 0.1);
+
+        double low = bandPower(signal, 4096, 1000, 2000);
+        double high = bandPower(signal, 4096, 10000, 11000);
+        assertEquals(1.0, low / high, 0.1);
+    }
+
+    @Test
+    public void pinkNoise_hasEqualPowerPerOctave() {
+        float[] signal = render(SignalGenerator.pinkNoise(SAMPLE_RATE, 0.5f, 11), SAMPLE_RATE * 8, 1024);
+
+        double low = bandPower(signal, 4096, 250, 500);
+        double high = bandPower(signal, 4096, 4000, 8000);
+
+        assertEquals(0, 10 * Math.log10(low / high), 1.0);
+        for (float sample : signal) {
+            assertTrue(Math.abs(sample) < 1f);
+        }
+    }
+
+    @Test
+    public void silence_isZero() {
+        float[] signal = new float[100];
+        Arrays.fill(signal, 1f);
+
+        SignalGenerator.silence(SAMPLE_RATE).fill(signal, 10, 80);
+
+        assertEquals(1f, signal[9], 0f);
+        assertEquals(0f, signal[10], 0f);
+        assertEquals(0f, signal[89], 0f);
+        assertEquals(1f, signal[90], 0f);
+    }
+
+    @Test
+    public void fill_doesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        SignalGenerator[] generators = {
+                SignalGenerator.sine(SAMPLE_RATE, 1000, 0.5f),
+                SignalGenerator.multiTone(SAMPLE_RATE, new double[]{100, 1000}, 0.5f),
+                SignalGenerator.logSweep(SAMPLE_RATE, 20, 20000, 1, 0.5f),
+                SignalGenerator.whiteNoise(SAMPLE_RATE, 0.5f, 1),
+                SignalGenerator.pinkNoise(SAMPLE_RATE, 0.5f, 1),
+                SignalGenerator.silence(SAMPLE_RATE)
+        };
+        float[] buffer = new float[256];
+
+        for (SignalGenerator generator : generators) {
+            // warm up so the JIT and class loading are out of the way
+            for (int i = 0; i < 2000; i++) generator.fill(buffer, 0, buffer.length);
+
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 2000; i++) generator.fill(buffer, 0, buffer.length);
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+            assertTrue(generator.getType() + " allocated " + allocated + " bytes", allocated < 1024);
+        }
+    }
+}
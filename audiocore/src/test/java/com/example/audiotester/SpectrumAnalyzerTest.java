@@ -0,0 +1,81 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpectrumAnalyzerTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    private static float[] sine(double frequency, double amplitude, int length) {
+        float[] signal = new float[length];
+        for (int i = 0; i < length; i++) {
+            signal[i] = (float) (amplitude * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+        }
+        return signal;
+    }
+
+    private static int peakBin(float[] spectrum) {
+        int peak = 0;
+        for (int k = 1; k < spectrum.length; k++) {
+            if (spectrum[k] > spectrum[peak]) peak = k;
+        }
+        return peak;
+    }
+
+    @Test
+    public void sine_readsItsLevelAtItsFrequency() {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SAMPLE_RATE, 4096);
+        float[] spectrum = new float[analyzer.getBinCount()];
+        // 1500 Hz falls between bins at 4096 points, so allow for scalloping loss
+        float[] signal = sine(1500, 0.5, SAMPLE_RATE / 2);
+
+        analyzer.process(signal, 0, signal.length);
+        analyzer.copySpectrum(spectrum);
+
+        int peak = peakBin(spectrum);
+        assertEquals(1500, analyzer.getBinFrequency(peak), SAMPLE_RATE / 4096f);
+        assertEquals(-6.02f, spectrum[peak], 1.5f);
+        assertTrue(spectrum[binOf(analyzer, 6000)] < -80f);
+    }
+
+    private static int binOf(SpectrumAnalyzer analyzer, float frequency) {
+        return Math.round(frequency * analyzer.getFftSize() / analyzer.getSampleRate());
+    }
+
+    @Test
+    public void hop_keepsFrameRateAboveTarget() {
+        for (int size = 1024; size <= 8192; size <<= 1) {
+            SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SAMPLE_RATE, size);
+            float[] second = new float[SAMPLE_RATE];
+
+            analyzer.process(second, 0, second.length);
+            analyzer.process(second, 0, second.length);
+
+            // the first frame needs a full window, after that one frame per hop
+            assertTrue("size " + size, analyzer.getFrameCount() >= SpectrumAnalyzer.TARGET_FRAME_RATE);
+        }
+    }
+
+    @Test
+    public void analysisThread_feedsBlocksToProcessors() {
+        PcmRingBuffer ring = new PcmRingBuffer(8192);
+        AnalysisThread thread = new AnalysisThread(ring, 256);
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SAMPLE_RATE, 1024, WindowFunction.HANN, 512);
+        thread.addProcessor(analyzer);
+        thread.addProcessor(analyzer);
+
+        float[] signal = sine(3000, 0.25, 2048 + 100);
+        ring.write(signal, 0, signal.length);
+
+        assertEquals(8, thread.drain());
+        assertEquals(100, ring.availableToRead());
+        assertEquals(3, analyzer.getFrameCount());
+
+        thread.removeProcessor(analyzer);
+        ring.write(signal, 0, 200);
+        thread.drain();
+        assertEquals(3, analyzer.getFrameCount());
+    }
+}
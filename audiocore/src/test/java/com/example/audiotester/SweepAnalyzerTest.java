@@ -0,0 +1,113 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SweepAnalyzerTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    private static float[] withDelay(float[] signal, int delay, int tail) {
+        float[] output = new float[signal.length + delay + tail];
+        System.arraycopy(signal, 0, output, delay, signal.length);
+        return output;
+    }
+
+    @Test
+    public void passThrough_isFlatAtZeroDb() {
+        SweepAnalyzer analyzer = new SweepAnalyzer(SAMPLE_RATE, 50, 16000, 2);
+        float[] captured = withDelay(analyzer.getSweep(), 0, 4800);
+
+        float[] response = analyzer.impulseResponse(captured, captured.length);
+        int peak = SweepAnalyzer.findPeak(response);
+        FrequencyResponse frequencyResponse = analyzer.frequencyResponse(response, peak, 4096, 3);
+
+        assertEquals(analyzer.getSweep().length - 1, peak);
+        assertEquals(0, frequencyResponse.levelAt(1000), 0.2);
+        assertTrue("ripple " + frequencyResponse.deviation(200, 8000), frequencyResponse.deviation(200, 8000) < 0.5);
+    }
+
+    @Test
+    public void delayAndGain_areRecovered() {
+        SweepAnalyzer analyzer = new SweepAnalyzer(SAMPLE_RATE, 50, 16000, 2);
+        float[] captured = withDelay(analyzer.getSweep(), 1234, 4800);
+        for (int i = 0; i < captured.length; i++) captured[i] *= 0.5f;
+
+        float[] response = analyzer.impulseResponse(captured, captured.length);
+        int peak = SweepAnalyzer.findPeak(response);
+        FrequencyResponse frequencyResponse = analyzer.frequencyResponse(response, peak, 4096, 3);
+
+        assertEquals(analyzer.getSweep().length - 1 + 1234, peak);
+        assertEquals(-6.02, frequencyResponse.levelAt(1000), 0.2);
+    }
+
+    @Test
+    public void lowPass_matchesAnalyticResponse() {
+        SweepAnalyzer analyzer = new SweepAnalyzer(SAMPLE_RATE, 50, 20000, 3);
+        float[] sweep = analyzer.getSweep();
+
+        // one-pole low-pass, |H| = (1 - a) / |1 - a e^-jw|
+        double a = 0.9;
+        float[] captured = new float[sweep.length + 9600];
+        double state = 0;
+        for (int i = 0; i < captured.length; i++) {
+            double x = i < sweep.length ? sweep[i] : 0;
+            state = (1 - a) * x + a * state;
+            captured[i] = (float) state;
+        }
+
+        float[] response = analyzer.impulseResponse(captured, captured.length);
+        // low frequencies need a long window for resolution, narrow bands follow the slope
+        FrequencyResponse frequencyResponse = analyzer.frequencyResponse(response, SweepAnalyzer.findPeak(response), 32768, 12);
+
+        for (int i = 0; i < frequencyResponse.size(); i++) {
+            double frequency = frequencyResponse.frequencies[i];
+            if (frequency < 100 || frequency > 10000) continue;
+
+            double w = 2 * Math.PI * frequency / SAMPLE_RATE;
+            double magnitude = (1 - a) / Math.hypot(1 - a * Math.cos(w), a * Math.sin(w));
+            assertEquals("at " + frequency + " Hz", 20 * Math.log10(magnitude), frequencyResponse.magnitudeDb[i], 0.3);
+        }
+    }
+
+    @Test
+    public void harmonicDistortion_isSeparatedFromLinearResponse() {
+        SweepAnalyzer analyzer = new SweepAnalyzer(SAMPLE_RATE, 50, 16000, 2);
+        float[] sweep = analyzer.getSweep();
+
+        // memoryless nonlinearity, its x^2 term is a second harmonic plus DC
+        float[] captured = new float[sweep.length + 4800];
+        for (int i = 0; i < sweep.length; i++) {
+            captured[i] = sweep[i] + 0.1f * sweep[i] * sweep[i];
+        }
+
+        float[] response = analyzer.impulseResponse(captured, captured.length);
+        int peak = SweepAnalyzer.findPeak(response);
+        FrequencyResponse linear = analyzer.frequencyResponse(response, peak, 4096, 3);
+
+        assertEquals(sweep.length - 1, peak);
+        assertEquals(0, linear.levelAt(1000), 0.3);
+
+        // the second-harmonic impulse response sits L ln 2 before the linear peak
+        int second = peak - analyzer.harmonicOffset(2);
+        float secondPeak = 0;
+        for (int i = second - 50; i < second + 50; i++) {
+            secondPeak = Math.max(secondPeak, Math.abs(response[i]));
+        }
+        float between = 0;
+        for (int i = second + 500; i < second + 1500; i++) {
+            between = Math.max(between, Math.abs(response[i]));
+        }
+        assertTrue(secondPeak > 10 * between);
+    }
+
+    @Test
+    public void tenSecondSweep_findsDelayedPeak() {
+        SweepAnalyzer analyzer = new SweepAnalyzer(SAMPLE_RATE, 20, 20000, 10);
+        float[] captured = withDelay(analyzer.getSweep(), 2400, 24000);
+
+        float[] response = analyzer.impulseResponse(captured, captured.length);
+        assertEquals(analyzer.getSweep().length - 1 + 2400, SweepAnalyzer.findPeak(response));
+    }
+}
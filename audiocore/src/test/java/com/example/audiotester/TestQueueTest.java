@@ -0,0 +1,79 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class TestQueueTest {
+
+    private static final List<TestSpec> SPECS = TestSpecParser.parse("{\"test\": \"latency\", \"repeat\": 2}");
+
+    // batches run when flushed, so tests control when the executor picks them up
+    private final List<Runnable> mPending = new ArrayList<>();
+    private final Executor mExecutor = mPending::add;
+
+    private final List<String> mStarted = new ArrayList<>();
+    private final List<List<TestScheduler.Outcome>> mReports = new ArrayList<>();
+
+    private void runPending() {
+        List<Runnable> tasks = new ArrayList<>(mPending);
+        mPending.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    public void cancel_beforeTheBatchStartsSkipsIt() {
+        TestQueue queue = new TestQueue(mExecutor, (spec) -> {
+            mStarted.add(spec.test);
+            return Collections.singletonMap("median_ms", 42.0);
+        });
+
+        queue.submit(SPECS, null, mReports::add);
+        queue.cancelAll();
+        queue.submit(SPECS, null, mReports::add);
+        runPending();
+
+        // only the batch submitted after the cancel ran
+        assertEquals(2, mStarted.size());
+        assertEquals(2, mReports.size());
+        for (TestScheduler.Outcome outcome : mReports.get(0)) {
+            assertEquals("cancelled", outcome.error);
+        }
+        for (TestScheduler.Outcome outcome : mReports.get(1)) {
+            assertTrue(outcome.isSuccess());
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void cancel_interruptsTheRunningBatchOnly() {
+        TestQueue[] queue = new TestQueue[1];
+        queue[0] = new TestQueue(mExecutor, (spec) -> {
+            mStarted.add(spec.test);
+            if (mStarted.size() == 1) {
+                queue[0].cancelAll();
+                if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            }
+            return Collections.singletonMap("median_ms", 42.0);
+        });
+
+        queue[0].submit(SPECS, null, (outcomes) -> {
+            mReports.add(outcomes);
+            assertFalse(Thread.currentThread().isInterrupted());
+        });
+        runPending();
+        queue[0].submit(SPECS, null, mReports::add);
+        runPending();
+
+        assertEquals("cancelled", mReports.get(0).get(0).error);
+        assertEquals("cancelled", mReports.get(0).get(1).error);
+        assertTrue(mReports.get(1).get(0).isSuccess());
+        assertTrue(mReports.get(1).get(1).isSuccess());
+        assertEquals(3, mStarted.size());
+    }
+}
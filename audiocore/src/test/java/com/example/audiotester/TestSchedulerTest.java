@@ -0,0 +1,125 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestSchedulerTest {
+
+    @Test
+    public void run_repeatsSpecsInOrderAndKeepsGoingAfterFailures() {
+        List<TestSpec> specs = TestSpecParser.parse("[{\"test\": \"latency\", \"repeat\": 2},"
+                + " {\"test\": \"echo\"}, {\"test\": \"level\"}]");
+        List<String> started = new ArrayList<>();
+
+        TestScheduler scheduler = new TestScheduler((spec) -> {
+            started.add(spec.test);
+            if (spec.test.equals("echo")) throw new IllegalStateException("no loopback");
+            if (spec.test.equals("level")) return null;
+            return Collections.singletonMap("median_ms", 42.0);
+        });
+
+        List<Integer> indexes = new ArrayList<>();
+        List<TestScheduler.Outcome> outcomes = scheduler.run(specs, (outcome, index, count) -> {
+            assertEquals(4, count);
+            indexes.add(index);
+        });
+
+        assertEquals(4, TestScheduler.runCount(specs));
+        assertEquals(Arrays.asList("latency", "latency", "echo", "level"), started);
+        assertEquals(Arrays.asList(0, 1, 2, 3), indexes);
+
+        assertEquals(1, outcomes.get(0).run);
+        assertEquals(2, outcomes.get(1).run);
+        assertTrue(outcomes.get(1).isSuccess());
+        assertEquals(42.0, outcomes.get(1).metrics.get("median_ms"), 0);
+        assertEquals("IllegalStateException: no loopback", outcomes.get(2).error);
+        assertEquals("no result", outcomes.get(3).error);
+        assertNull(outcomes.get(3).metrics);
+    }
+
+    @Test
+    public void cancel_skipsRemainingRuns() {
+        List<TestSpec> specs = TestSpecParser.parse("{\"test\": \"soak\", \"repeat\": 3}");
+        TestScheduler[] scheduler = new TestScheduler[1];
+        int[] runs = {0};
+
+        scheduler[0] = new TestScheduler((spec) -> {
+            runs[0]++;
+            scheduler[0].cancel();
+            return Collections.singletonMap("glitches", 0.0);
+        });
+        List<TestScheduler.Outcome> outcomes = scheduler[0].run(specs, null);
+
+        assertEquals(1, runs[0]);
+        assertEquals(3, outcomes.size());
+        assertTrue(outcomes.get(0).isSuccess());
+        assertEquals("cancelled", outcomes.get(1).error);
+        assertEquals("cancelled", outcomes.get(2).error);
+    }
+
+    @Test
+    public void cancel_beforeRunSkipsTheBatch() {
+        List<TestSpec> specs = TestSpecParser.parse("{\"test\": \"play\", \"repeat\": 2}");
+        int[] runs = {0};
+
+        TestScheduler scheduler = new TestScheduler((spec) -> {
+            runs[0]++;
+            return Collections.singletonMap("duration_s", 1.0);
+        });
+        scheduler.cancel();
+        List<TestScheduler.Outcome> outcomes = scheduler.run(specs, null);
+
+        assertEquals(0, runs[0]);
+        assertEquals("cancelled", outcomes.get(0).error);
+        assertEquals("cancelled", outcomes.get(1).error);
+
+        scheduler.reset();
+        assertTrue(scheduler.run(specs, null).get(1).isSuccess());
+        assertEquals(2, runs[0]);
+    }
+
+    @Test
+    public void run_treatsInterruptionAsCancel() {
+        List<TestSpec> specs = TestSpecParser.parse("[{\"test\": \"play\"}, {\"test\": \"play\"}]");
+
+        List<TestScheduler.Outcome> outcomes = new TestScheduler((spec) -> {
+            throw new InterruptedException();
+        }).run(specs, null);
+
+        assertTrue(Thread.interrupted());
+        assertEquals("cancelled", outcomes.get(0).error);
+        assertEquals("cancelled", outcomes.get(1).error);
+    }
+
+    @Test
+    public void writeJson_reportsSpecsMetricsAndErrors() throws IOException {
+        List<TestSpec> specs = TestSpecParser.parse("[{\"test\": \"latency\", \"mode\": \"in communication\"},"
+                + " {\"test\": \"echo\"}]");
+        List<TestScheduler.Outcome> outcomes = new TestScheduler((spec) -> {
+            if (spec.test.equals("echo")) throw new IllegalStateException("say \"hi\"");
+            return Collections.singletonMap("median_ms", 12.5);
+        }).run(specs, null);
+
+        StringWriter writer = new StringWriter();
+        TestScheduler.writeJson(outcomes, writer);
+        String json = writer.toString();
+
+        assertTrue(json, json.startsWith("[\n{\"test\":\"latency\",\"route\":\"speaker\",\"mode\":\"in communication\","
+                + "\"source\":\"mic\",\"signal\":\"sine\",\"frequency\":1000,\"amplitude\":0.5,\"duration\":10,\"run\":1,"));
+        assertTrue(json, json.contains("\"error\":null,\"metrics\":{\"median_ms\":12.5}}"));
+        assertTrue(json, json.contains("\"error\":\"IllegalStateException: say \\\"hi\\\"\",\"metrics\":null}"));
+        assertTrue(json, json.endsWith("}\n]\n"));
+
+        writer = new StringWriter();
+        TestScheduler.writeJson(Collections.emptyList(), writer);
+        assertEquals("[]\n", writer.toString());
+    }
+}
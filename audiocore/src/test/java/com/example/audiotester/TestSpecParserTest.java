@@ -0,0 +1,90 @@
+package com.example.audiotester;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestSpecParserTest {
+
+    @Test
+    public void parse_readsArrayOfSpecs() {
+        List<TestSpec> specs = TestSpecParser.parse("[\n"
+                + "  {\"test\": \"latency\", \"route\": \"handset\", \"mode\": \"In Communication\"},\n"
+                + "  {\"test\": \"soak\", \"duration\": 600, \"signal\": \"pink_noise\", \"amplitude\": 0.25, \"repeat\": 3}\n"
+                + "]");
+
+        assertEquals(2, specs.size());
+
+        TestSpec latency = specs.get(0);
+        assertEquals("latency", latency.test);
+        assertEquals("handset", latency.route);
+        assertEquals("in communication", latency.mode);
+        assertEquals("mic", latency.source);
+        assertEquals(1, latency.repeat);
+
+        TestSpec soak = specs.get(1);
+        assertEquals("soak", soak.test);
+        assertEquals("speaker", soak.route);
+        assertEquals("pink_noise", soak.signal);
+        assertEquals(600, soak.durationSeconds, 0);
+        assertEquals(0.25f, soak.amplitude, 0);
+        assertEquals(3, soak.repeat);
+    }
+
+    @Test
+    public void parse_readsSingleObjectAndEscapes() {
+        List<TestSpec> specs = TestSpecParser.parse("{\"test\":\"level\",\"source\":\"voice\\u0020recognition\",\"frequency\":1e3}");
+
+        assertEquals(1, specs.size());
+        assertEquals("voice recognition", specs.get(0).source);
+        assertEquals(1000, specs.get(0).frequency, 0);
+        assertTrue(TestSpecParser.parse(" [ ] ").isEmpty());
+    }
+
+    @Test
+    public void fromMap_acceptsStringValues() {
+        // intent extras arrive as strings
+        Map<String, String> extras = new HashMap<>();
+        extras.put("test", "play");
+        extras.put("signal", "sine");
+        extras.put("frequency", "440");
+        extras.put("duration", " 2.5 ");
+
+        TestSpec spec = TestSpec.fromMap(extras);
+
+        assertEquals(440, spec.frequency, 0);
+        assertEquals(2.5, spec.durationSeconds, 0);
+        assertEquals(SignalGenerator.Type.SINE, spec.createSignal(48000).getType());
+    }
+
+    @Test
+    public void parse_rejectsInvalidSpecs() {
+        assertInvalid("{\"test\": \"latency\"", "Expected");
+        assertInvalid("{\"test\": \"latency\"} x", "Unexpected text");
+        assertInvalid("{\"test\": \"latency\", \"test\": \"soak\"}", "Duplicate key");
+        assertInvalid("{\"test\": \"latency\", \"route\": {\"a\": 1}}", "Expected a string or number");
+        assertInvalid("[{\"test\": \"latency\"}, {\"test\": \"warp\"}]", "Spec 1: Unknown test");
+        assertInvalid("{\"test\": \"latency\", \"speed\": 2}", "Unknown key");
+        assertInvalid("{\"route\": \"speaker\"}", "Missing test");
+        assertInvalid("{\"test\": \"soak\", \"duration\": \"long\"}", "Invalid duration");
+        assertInvalid("{\"test\": \"soak\", \"duration\": 0}", "Invalid");
+        assertInvalid("{\"test\": \"play\", \"route\": \"bluetooth\"}", "Unknown route");
+        assertInvalid("{\"test\": \"play\", \"repeat\": 1e10}", "expected a whole number");
+        assertInvalid("{\"test\": \"play\", \"repeat\": 2.5}", "expected a whole number");
+        assertInvalid("{\"test\": \"play\", \"repeat\": 1441}", "repeat 1441");
+        assertInvalid("{\"test\": \"play\", \"repeat\": 0}", "repeat 0");
+    }
+
+    private static void assertInvalid(String json, String message) {
+        try {
+            TestSpecParser.parse(json);
+            fail("Expected " + json + " to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
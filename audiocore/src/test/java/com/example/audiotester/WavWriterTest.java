@@ -0,0 +1,218 @@
+package com.example.audiotester;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class WavWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static float[] ramp(int length) {
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = ((i % 200) - 100) / 128f;
+        }
+        return samples;
+    }
+
+    @Test
+    public void pcm16_roundTripsAcrossMappedWindows() throws IOException {
+        File file = folder.newFile("pcm16.wav");
+        float[] samples = ramp(10_000);
+
+        // a 1000 byte window forces many remaps
+        try (WavWriter writer = new WavWriter(file, 48000, 1, 16, 1000)) {
+            for (int offset = 0; offset < samples.length; offset += 333) {
+                writer.write(samples, offset, Math.min(333, samples.length - offset));
+            }
+            assertEquals(samples.length, writer.getFrameCount());
+        }
+
+        assertEquals(WavWriter.HEADER_SIZE + 2 * samples.length, file.length());
+
+        try (WavReader reader = new WavReader(file)) {
+            assertEquals(48000, reader.getSampleRate());
+            assertEquals(1, reader.getChannels());
+            assertEquals(16, reader.getBitsPerSample());
+            assertEquals(samples.length, reader.getFrameCount());
+
+            float[] read = new float[samples.length];
+            int frames = 0;
+            int count;
+            while ((count = reader.read(read, frames, 1024)) > 0) {
+                frames += count;
+            }
+
+            assertEquals(samples.length, frames);
+            assertArrayEquals(samples, read, 1f / 32767);
+        }
+    }
+
+    @Test
+    public void reader_seeksAndReadsAcrossSmallWindows() throws IOException {
+        File file = folder.newFile("stereo.wav");
+        float[] samples = ramp(4000);
+
+        try (WavWriter writer = new WavWriter(file, 48000, 2, 32)) {
+            writer.write(samples, 0, samples.length);
+        }
+
+        // 100 bytes round down to 12 stereo float frames per window
+        try (WavReader reader = new WavReader(file, 100)) {
+            reader.seek(1001);
+            float[] read = new float[2 * 500];
+            assertEquals(500, reader.read(read, 0, 500));
+            assertEquals(1501, reader.getPosition());
+            for (int i = 0; i < read.length; i++) {
+                assertEquals(samples[2 * 1001 + i], read[i], 0);
+            }
+
+            reader.seek(1990);
+            assertEquals(10, reader.read(read, 0, 500));
+            assertEquals(0, reader.read(read, 0, 500));
+        }
+    }
+
+    @Test
+    public void reader_readsPastTwoGigabytes() throws IOException {
+        File file = folder.newFile("long.wav");
+        long dataBytes = (1L << 31) + 4096;
+        long boundaryFrame = (1L << 31) / 2;
+        short[] samples = {1000, 2000, 3000, 4000, 5000, 6000};
+
+        // a sparse file, only the header and the samples around 2 GB are written
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            ByteBuffer header = ByteBuffer.allocate(WavWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0x46464952).putInt((int) (dataBytes + WavWriter.HEADER_SIZE - 8)).putInt(0x45564157);
+            header.putInt(0x20746D66).putInt(16).putShort((short) WavWriter.FORMAT_PCM).putShort((short) 1);
+            header.putInt(48000).putInt(96000).putShort((short) 2).putShort((short) 16);
+            header.putInt(0x61746164).putInt((int) dataBytes);
+            raf.write(header.array());
+
+            ByteBuffer data = ByteBuffer.allocate(2 * samples.length).order(ByteOrder.LITTLE_ENDIAN);
+            for (short sample : samples) {
+                data.putShort(sample);
+            }
+            raf.seek(WavWriter.HEADER_SIZE + 2 * (boundaryFrame - 3));
+            raf.write(data.array());
+            raf.setLength(WavWriter.HEADER_SIZE + dataBytes);
+        }
+
+        try (WavReader reader = new WavReader(file)) {
+            assertEquals(dataBytes / 2, reader.getFrameCount());
+
+            reader.seek(boundaryFrame - 3);
+            float[] read = new float[samples.length];
+            assertEquals(samples.length, reader.read(read, 0, samples.length));
+            for (int i = 0; i < samples.length; i++) {
+                assertEquals(samples[i] / 32768f, read[i], 0);
+            }
+
+            reader.seek(reader.getFrameCount() - 1);
+            assertEquals(1, reader.read(read, 0, samples.length));
+            assertEquals(0, read[0], 0);
+        }
+    }
+
+    @Test
+    public void shortsAreWrittenVerbatim() throws IOException {
+        File file = folder.newFile("shorts.wav");
+        short[] samples = {0, 1, -1, Short.MAX_VALUE, Short.MIN_VALUE};
+
+        try (WavWriter writer = new WavWriter(file, 16000, 1, 16)) {
+            writer.write(samples, 0, samples.length);
+        }
+
+        ByteBuffer data;
+        try (WavReader reader = new WavReader(file)) {
+            data = reader.getData();
+            for (short sample : samples) {
+                assertEquals(sample, data.getShort());
+            }
+            assertFalse(data.hasRemaining());
+        }
+    }
+
+    @Test
+    public void float32_roundTripsExactly() throws IOException {
+        File file = folder.newFile("float.wav");
+        float[] samples = ramp(4000);
+        samples[0] = 1.5f;
+
+        try (WavWriter writer = new WavWriter(file, 44100, 2, 32, 1024)) {
+            writer.write(samples, 0, samples.length);
+            assertEquals(2000, writer.getFrameCount());
+        }
+
+        try (WavReader reader = new WavReader(file)) {
+            assertEquals(WavWriter.FORMAT_IEEE_FLOAT, reader.getFormat());
+            assertEquals(2, reader.getChannels());
+            assertEquals(2000, reader.getFrameCount());
+
+            reader.seek(1000);
+            float[] read = new float[20];
+            assertEquals(10, reader.read(read, 0, 10));
+            assertEquals(samples[2000], read[0], 0f);
+            assertEquals(samples[2019], read[19], 0f);
+
+            reader.seek(0);
+            assertEquals(1, reader.read(read, 0, 1));
+            assertEquals(1.5f, read[0], 0f);
+        }
+    }
+
+    @Test
+    public void header_isPatchedOnClose() throws IOException {
+        File file = folder.newFile("header.wav");
+
+        try (WavWriter writer = new WavWriter(file, 8000, 1, 16)) {
+            writer.write(new short[300], 0, 300);
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(36 + 600, header.getInt(4));
+        assertEquals(8000, header.getInt(24));
+        assertEquals(16000, header.getInt(28));
+        assertEquals(600, header.getInt(40));
+    }
+
+    @Test
+    public void emptyRecording_isValid() throws IOException {
+        File file = folder.newFile("empty.wav");
+        new WavWriter(file, 48000, 1, 16).close();
+
+        try (WavReader reader = new WavReader(file)) {
+            assertEquals(0, reader.getFrameCount());
+            assertEquals(0, reader.read(new float[10], 0, 10));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void write_failsAfterClose() throws IOException {
+        WavWriter writer = new WavWriter(folder.newFile("closed.wav"), 48000, 1, 16);
+        writer.close();
+        writer.write(new short[1], 0, 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void reader_rejectsNonWavFiles() throws IOException {
+        File file = folder.newFile("not.wav");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("this is not a wav file at all".getBytes("US-ASCII"));
+        }
+
+        new WavReader(file).close();
+    }
+}
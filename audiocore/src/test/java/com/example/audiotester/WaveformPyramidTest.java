@@ -0,0 +1,190 @@
+package com.example.audiotester;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WaveformPyramidTest {
+
+    private static final int SAMPLE_RATE = 48000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static short[] noise(int length, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) (random.nextGaussian() * 4000);
+        }
+        return samples;
+    }
+
+    // written in uneven blocks, as a capture delivers them
+    private static WaveformPyramid build(short[] samples) {
+        WaveformPyramid pyramid = new WaveformPyramid(SAMPLE_RATE);
+        for (int offset = 0; offset < samples.length; offset += 997) {
+            pyramid.write(samples, offset, Math.min(997, samples.length - offset));
+        }
+        pyramid.finish();
+        return pyramid;
+    }
+
+    @Test
+    public void query_matchesSamplesOfTheBucketsItSpans() {
+        short[] samples = noise(1 << 20, 1);
+        WaveformPyramid pyramid = build(samples);
+        assertEquals(samples.length, pyramid.getFrameCount());
+        assertTrue(pyramid.getLevelCount() > 5);
+
+        int columns = 300;
+        float[] min = new float[columns];
+        float[] max = new float[columns];
+        long[][] ranges = {{0, samples.length}, {12345, 12345 + 40000}, {5000, 600000}, {777, 777 + 128 * 300}};
+        for (long[] range : ranges) {
+            pyramid.query(range[0], range[1], columns, min, max);
+            long bucket = pyramid.getBucketFrames(pyramid.levelFor((double) (range[1] - range[0]) / columns));
+
+            for (int column = 0; column < columns; column++) {
+                long start = range[0] + (range[1] - range[0]) * column / columns;
+                long end = range[0] + (range[1] - range[0]) * (column + 1) / columns;
+                int first = (int) (start / bucket * bucket);
+                int last = (int) Math.min(samples.length, Math.max(first + bucket, (end + bucket - 1) / bucket * bucket));
+
+                short low = Short.MAX_VALUE;
+                short high = Short.MIN_VALUE;
+                for (int i = first; i < last; i++) {
+                    low = (short) Math.min(low, samples[i]);
+                    high = (short) Math.max(high, samples[i]);
+                }
+                assertEquals(low / 32768f, min[column], 0);
+                assertEquals(high / 32768f, max[column], 0);
+            }
+        }
+    }
+
+    @Test
+    public void query_readsAboutAScreenWhateverTheDuration() {
+        WaveformPyramid pyramid = new WaveformPyramid(SAMPLE_RATE);
+        short[] second = noise(SAMPLE_RATE, 2);
+        for (int i = 0; i < 600; i++) {
+            pyramid.write(second, 0, second.length);
+        }
+        long frames = pyramid.getFrameCount();
+
+        int columns = 1080;
+        float[] min = new float[columns];
+        float[] max = new float[columns];
+        for (long span : new long[]{frames, frames / 7, 60L * SAMPLE_RATE, SAMPLE_RATE, 2000}) {
+            int read = pyramid.query(frames - span, frames, columns, min, max);
+            assertTrue(span + " frames read " + read, read <= columns * (pyramid.getFactor() + 2));
+        }
+        assertEquals(0, pyramid.levelFor(100));
+        assertEquals(pyramid.getLevelCount() - 1, pyramid.levelFor(frames));
+    }
+
+    @Test
+    public void query_outsideTheDataIsNaN() {
+        WaveformPyramid pyramid = build(noise(1000, 3));
+
+        float[] min = new float[4];
+        float[] max = new float[4];
+        pyramid.query(-1024, 2048, 4, min, max);
+        assertTrue(Float.isNaN(min[0]) && Float.isNaN(max[0]));
+        assertFalse(Float.isNaN(min[1]) || Float.isNaN(min[2]));
+        assertTrue(Float.isNaN(min[3]) && Float.isNaN(max[3]));
+    }
+
+    @Test
+    public void finish_flushesPartialBuckets() {
+        short[] samples = new short[1000];
+        samples[999] = Short.MAX_VALUE;
+        samples[998] = Short.MIN_VALUE;
+        WaveformPyramid pyramid = new WaveformPyramid(SAMPLE_RATE);
+        pyramid.write(samples, 0, samples.length);
+
+        float[] min = new float[1];
+        float[] max = new float[1];
+        pyramid.query(0, 1000, 1, min, max);
+        assertEquals(0, max[0], 0);
+
+        pyramid.finish();
+        pyramid.query(0, 1000, 1, min, max);
+        assertEquals(-1, min[0], 0);
+        assertEquals(Short.MAX_VALUE / 32768f, max[0], 0);
+
+        try {
+            pyramid.write(samples, 0, 1);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void process_matchesPcm() {
+        short[] samples = noise(50000, 4);
+        float[] floats = new float[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            floats[i] = samples[i] / 32768f;
+        }
+        WaveformPyramid fromFloats = new WaveformPyramid(SAMPLE_RATE);
+        fromFloats.process(floats, 0, floats.length);
+        fromFloats.finish();
+        WaveformPyramid fromPcm = build(samples);
+
+        assertSameQueries(fromPcm, fromFloats);
+    }
+
+    @Test
+    public void write_roundTrips() throws IOException {
+        WaveformPyramid pyramid = build(noise(300000, 5));
+        File file = folder.newFile("capture_waveform.bin");
+        pyramid.write(file);
+
+        WaveformPyramid read = WaveformPyramid.read(file);
+        assertEquals(SAMPLE_RATE, read.getSampleRate());
+        assertEquals(pyramid.getFrameCount(), read.getFrameCount());
+        assertEquals(pyramid.getLevelCount(), read.getLevelCount());
+        assertTrue(read.isFinished());
+        assertSameQueries(pyramid, read);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherFiles() throws IOException {
+        File file = folder.newFile("capture.wav");
+        try (WavWriter writer = new WavWriter(file, SAMPLE_RATE, 1, 16)) {
+            writer.write(new float[100], 0, 100);
+        }
+        WaveformPyramid.read(file);
+    }
+
+    @Test
+    public void envelope_splitsRawSamples() {
+        float[] samples = {0, 1, -1, 0.5f, 0.25f, -0.5f, 0, 0};
+        float[] min = new float[4];
+        float[] max = new float[4];
+        WaveformPyramid.envelope(samples, 1, 6, 3, min, max);
+        assertArrayEquals(new float[]{-1, 0.25f, -0.5f}, new float[]{min[0], min[1], min[2]}, 0);
+        assertArrayEquals(new float[]{1, 0.5f, 0}, new float[]{max[0], max[1], max[2]}, 0);
+    }
+
+    private static void assertSameQueries(WaveformPyramid expected, WaveformPyramid actual) {
+        int columns = 64;
+        float[] expectedMin = new float[columns];
+        float[] expectedMax = new float[columns];
+        float[] actualMin = new float[columns];
+        float[] actualMax = new float[columns];
+        for (long span = expected.getFrameCount(); span >= columns; span /= 5) {
+            expected.query(0, span, columns, expectedMin, expectedMax);
+            actual.query(0, span, columns, actualMin, actualMax);
+            assertArrayEquals(expectedMin, actualMin, 0);
+            assertArrayEquals(expectedMax, actualMax, 0);
+        }
+    }
+}